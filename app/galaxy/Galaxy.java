@@ -0,0 +1,240 @@
+package galaxy;
+
+import javax.swing.Timer;
+
+import gravity.BarnesHut;
+import gravity.Bodies;
+import gravity.DirectSum;
+import gravity.FastMultipole;
+import gravity.GravitySolver;
+import gravity.ParticleMesh;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.Random;
+
+import javax.swing.JFrame;
+
+/**
+ * Two disk galaxies of mutually attracting bodies falling into each other.
+ *
+ * <p>The body count is the first program argument (default
+ * {@value #DEFAULT_BODIES}); every body pulls on every other through a
+ * Barnes-Hut tree or the fast multipole method ({@code F} switches).
+ * {@code Up}/{@code Down} change the opening angle and {@code Left}/{@code Right}
+ * the multipole order to trade accuracy for speed, a click drops a heavy
+ * perturber at rest, {@code Space} pauses.</p>
+ */
+public class Galaxy {
+    private static final int DEFAULT_BODIES = 50000;
+    private static final double CORE_MASS = 2000;
+    private static final double DISK_MASS = 1500;
+    private static final double THETA_STEP = 0.1;
+    private static final int ERROR_SAMPLES = 32;
+    private static final double MIN_DISTANCE = 10;
+    private static final int[] MESH_SIZES = { 128, 256, 512, 1024 };
+
+    private Timer sceneTimer;
+    private final SceneModel model;
+    private final ScenePanel panel;
+    private final JFrame frame;
+    private final Bodies bodies = new Bodies();
+    private final BarnesHut tree = new BarnesHut(0.6);
+    private final FastMultipole multipole = new FastMultipole(0.6, 4);
+    /** Particle-mesh solvers by grid size, created when first chosen. */
+    private final ParticleMesh[] meshes = new ParticleMesh[MESH_SIZES.length];
+    private int mesh = 1;
+    private boolean p3m = false;
+    private final DirectSum reference = new DirectSum();
+    private final Random random = new Random(725630);
+    private final int count;
+
+    public Dimension dim = new Dimension(1280, 720);
+
+    private boolean isRunning = false;
+    private long tick = 0;
+    private long stepNanos = 0;
+
+    public Galaxy(int count) {
+        this.count = count;
+        tree.setDistanceClamp(MIN_DISTANCE, Double.POSITIVE_INFINITY);
+        multipole.setMinDistance(MIN_DISTANCE);
+        reference.setDistanceClamp(MIN_DISTANCE, Double.POSITIVE_INFINITY);
+        model = new SceneModel(dim, bodies, tree);
+        panel = new ScenePanel(model);
+        frame = new JFrame("Galaxy");
+
+        panel.setPreferredSize(dim);
+        panel.setBackground(Color.black);
+
+        panel.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                bodies.add(e.getX(), e.getY(), 0, 0, CORE_MASS / 2);
+            }
+        });
+
+        panel.setFocusable(true);
+        panel.addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                if (e.getKeyCode() == KeyEvent.VK_SPACE) {
+                    if (isRunning) {
+                        stopLoop();
+                    } else {
+                        startLoop();
+                    }
+                }
+
+                if (e.getKeyCode() == KeyEvent.VK_F) {
+                    GravitySolver solver = model.getSolver();
+                    model.setSolver(solver == tree ? multipole : solver == multipole ? mesh() : tree);
+                }
+
+                if (e.getKeyCode() == KeyEvent.VK_P && model.getSolver() instanceof ParticleMesh) {
+                    p3m = !p3m;
+                    model.setSolver(mesh());
+                }
+
+                if (model.getSolver() instanceof ParticleMesh) {
+                    if (e.getKeyCode() == KeyEvent.VK_UP) {
+                        mesh = Math.min(MESH_SIZES.length - 1, mesh + 1);
+                        model.setSolver(mesh());
+                    }
+                    if (e.getKeyCode() == KeyEvent.VK_DOWN) {
+                        mesh = Math.max(0, mesh - 1);
+                        model.setSolver(mesh());
+                    }
+                    return;
+                }
+
+                if (e.getKeyCode() == KeyEvent.VK_UP) {
+                    if (model.getSolver() == tree) {
+                        tree.setTheta(Math.min(1.5, tree.getTheta() + THETA_STEP));
+                    } else {
+                        multipole.setTheta(Math.min(1.0, multipole.getTheta() + THETA_STEP));
+                    }
+                }
+
+                if (e.getKeyCode() == KeyEvent.VK_DOWN) {
+                    if (model.getSolver() == tree) {
+                        tree.setTheta(Math.max(0.0, tree.getTheta() - THETA_STEP));
+                    } else {
+                        multipole.setTheta(Math.max(THETA_STEP, multipole.getTheta() - THETA_STEP));
+                    }
+                }
+
+                if (e.getKeyCode() == KeyEvent.VK_RIGHT) {
+                    multipole.setOrder(Math.min(10, multipole.getOrder() + 1));
+                }
+
+                if (e.getKeyCode() == KeyEvent.VK_LEFT) {
+                    multipole.setOrder(Math.max(1, multipole.getOrder() - 1));
+                }
+            }
+        });
+
+        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        frame.add(panel);
+        frame.pack();
+        frame.setLocationRelativeTo(null);
+    }
+
+    /** @return particle-mesh solver of the chosen grid size */
+    private ParticleMesh mesh() {
+        if (meshes[mesh] == null) {
+            meshes[mesh] = new ParticleMesh(MESH_SIZES[mesh]);
+            meshes[mesh].setSoftening(reference.getSoftening());
+        }
+        meshes[mesh].setP3m(p3m);
+        return meshes[mesh];
+    }
+
+    public void startLoop() {
+        if (sceneTimer == null) {
+            sceneTimer = new Timer(16, e -> {
+                update();
+                panel.repaint();
+            });
+        }
+        sceneTimer.start();
+        isRunning = true;
+        frame.setVisible(true);
+    }
+
+    public void stopLoop() {
+        if (sceneTimer != null) {
+            sceneTimer.stop();
+        }
+        isRunning = false;
+    }
+
+    private void update() {
+        long start = System.nanoTime();
+        model.update();
+        stepNanos += System.nanoTime() - start;
+        tick++;
+
+        if (tick % 30 == 0) {
+            // Spot-check the solver against exact sums for a few bodies
+            double error = reference.sampleError(bodies, ERROR_SAMPLES);
+            String solver;
+            if (model.getSolver() == tree) {
+                solver = String.format("Barnes-Hut theta %.1f", tree.getTheta());
+            } else if (model.getSolver() == multipole) {
+                solver = String.format("FMM theta %.1f order %d", multipole.getTheta(), multipole.getOrder());
+            } else {
+                solver = String.format("particle mesh %d² spacing %.2f%s", MESH_SIZES[mesh], mesh().getSpacing(),
+                        p3m ? " + P3M" : "");
+            }
+            frame.setTitle(String.format("Galaxy - %d bodies, %s, %.1f ms per tick, force error %.2f %%",
+                    bodies.count, solver, stepNanos / 30 / 1e6, 100 * error));
+            stepNanos = 0;
+        }
+    }
+
+    /**
+     * Adds a disk of bodies on near-circular orbits around a heavy core. The
+     * surface density falls off exponentially with the radius, and each body
+     * gets the circular speed for the core plus the disk mass inside its
+     * orbit.
+     */
+    private void addDisk(int n, double cx, double cy, double vx, double vy, double scale, boolean clockwise) {
+        bodies.add(cx, cy, vx, vy, CORE_MASS);
+        double inner = 0.5 * scale;
+        double outer = 3.0 * scale;
+        double bodyMass = DISK_MASS / n;
+        double spin = clockwise ? 1 : -1;
+        for (int i = 0; i < n; i++) {
+            double r;
+            do {
+                r = -scale * Math.log(1 - random.nextDouble());
+            } while (r < inner || r > outer);
+            double angle = 2 * Math.PI * random.nextDouble();
+            double inside = DISK_MASS * (1 - Math.exp(-r / scale) * (1 + r / scale));
+            double speed = Math.sqrt((CORE_MASS + inside) / r);
+            double cos = Math.cos(angle);
+            double sin = Math.sin(angle);
+            bodies.add(cx + r * cos, cy + r * sin,
+                    vx - spin * speed * sin, vy + spin * speed * cos, bodyMass);
+        }
+    }
+
+    private void setupScene() {
+        bodies.reserve(count + 2);
+        int first = (int) (0.6 * count);
+        addDisk(first, 440, 330, 0.6, 0.25, 70, true);
+        addDisk(count - first, 900, 420, -0.9, -0.4, 50, false);
+    }
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_BODIES;
+        Galaxy galaxy = new Galaxy(count);
+        galaxy.setupScene();
+        galaxy.startLoop();
+    }
+}
@@ -0,0 +1,67 @@
+package galaxy;
+
+import gravity.Bodies;
+import gravity.BodyRaster;
+import gravity.GravitySolver;
+import gravity.Leapfrog;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+
+/**
+ * Holds the galaxy's bodies, the gravity solver that makes every body pull on
+ * every other and the raster they are drawn into.
+ */
+public class SceneModel {
+    private final Bodies bodies;
+    private final Leapfrog leapfrog;
+    private final BodyRaster raster;
+
+    private Dimension sceneDim;
+    private double dt = 0.25;
+
+    public SceneModel(Dimension scene, Bodies bodies, GravitySolver solver) {
+        this.sceneDim = scene;
+        this.bodies = bodies;
+        this.leapfrog = new Leapfrog(solver);
+        this.raster = new BodyRaster(scene.width, scene.height);
+    }
+
+    /**
+     * Advances the bodies by one kick-drift-kick leapfrog step. The
+     * accelerations left in the bodies match their new positions, which is
+     * what the error spot checks compare against.
+     */
+    public void update() {
+        leapfrog.step(bodies, dt);
+        raster.draw(bodies);
+    }
+
+    public void render(Graphics2D g2d) {
+        raster.render(g2d);
+    }
+
+    public Bodies getBodies() {
+        return bodies;
+    }
+
+    public GravitySolver getSolver() {
+        return leapfrog.getSolver();
+    }
+
+    public void setSolver(GravitySolver solver) {
+        leapfrog.setSolver(solver);
+    }
+
+    public double getTimeStep() {
+        return dt;
+    }
+
+    public void setTimeStep(double dt) {
+        this.dt = dt;
+    }
+
+    public Dimension getDimensions() {
+        return this.sceneDim;
+    }
+}
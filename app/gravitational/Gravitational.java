@@ -3,9 +3,19 @@ package gravitational;
 import javax.swing.Timer;
 
 import data.Vec;
+import gravity.Accretion;
+import gravity.BarnesHut;
+import gravity.BlockTimesteps;
+import gravity.Bodies;
+import gravity.ConservationMonitor;
+import gravity.DirectSum;
+import gravity.GravitySolver;
+import gravity.Softening;
+import gravity.TrajectoryPredictor;
 import interfaces.Attractor;
 import interfaces.Moveable;
 import objects.Ball;
+import objects.SceneObject;
 
 import java.awt.Color;
 import java.awt.Dimension;
@@ -13,7 +23,11 @@ import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
 
 import javax.swing.JFrame;
 
@@ -21,13 +35,64 @@ public class Gravitational {
 
     public Dimension dim = new Dimension(1280, 720);
 
+    /** Most movers summed exactly before switching to the tree. */
+    private static final int DIRECT_LIMIT = 2000;
+    /** Plummer softening length, about the size of a mover. */
+    private static final double EPSILON = 5;
+    /** Test particles orbiting the attractors. */
+    private static final int SWARM = 1500;
+    /** Deepest block time step level: the swarm's finest step is 1/64 tick. */
+    private static final int MAX_LEVEL = 6;
+    /** Launch velocity per pixel of slingshot pull. */
+    private static final double LAUNCH_SCALE = 0.02;
+    /** Launch speeds of the predicted candidates, relative to the aimed one. */
+    private static final double[] CANDIDATES = { 1.0, 0.9, 1.1 };
+
     private Timer sceneTimer;
     private final SceneModel model;
     private final ScenePanel panel;
     private final JFrame frame;
+    private final Bodies bodies = new Bodies();
+    private final DirectSum direct = new DirectSum();
+    private final BarnesHut tree = new BarnesHut(0.5);
+    /** Movers whose accelerations are in {@link #bodies}, or -1 if none are. */
+    private int solvedMovers = -1;
+    /** The movers followed by the swarm's zero-mass test particles. */
+    private final Bodies swarm = new Bodies();
+    private final DirectSum swarmSolver = new DirectSum();
+    private final BlockTimesteps swarmSteps = new BlockTimesteps(swarmSolver, MAX_LEVEL);
+    /** Movers the swarm's first bodies follow; null once a mover was absorbed. */
+    private Moveable[] swarmMovers = new Moveable[0];
+    private long tick = 0;
+    private long evaluations = 0;
+    /** Paths of launches being aimed, integrated off the event thread. */
+    private final DirectSum predictorSolver = new DirectSum();
+    private final TrajectoryPredictor predictor = new TrajectoryPredictor(predictorSolver);
+    private final Bodies aimAttractors = new Bodies();
+    private final Bodies aimCandidates = new Bodies();
+    private Vec aimFrom;
+    private Vec aimTo;
+    /** Energy and momenta of the movers, summed off the event thread every few ticks. */
+    private final ConservationMonitor monitor;
+    private final Bodies monitored = new Bodies();
+    /** Movers pulled by attractors that are not movers themselves. */
+    private final Bodies pulled = new Bodies();
+    /** Merges balls that touch; works on {@link #monitored}. */
+    private final Accretion accretion = new Accretion();
     private static boolean isRunning = true;
 
     public Gravitational() {
+        // Plummer-softened Newtonian gravity instead of the [5, 25] distance
+        // clamp of Ball.attract, which keeps pulling at full strength far away
+        Softening softening = Softening.plummer(EPSILON);
+        direct.setSoftening(softening);
+        tree.setSoftening(softening);
+        swarmSolver.setSoftening(softening);
+        swarmSteps.setAccuracy(0.2, EPSILON);
+        predictorSolver.setSoftening(softening);
+        predictorSolver.setParallel(false);
+        predictor.setHorizon(300, 3000);
+        monitor = new ConservationMonitor(softening, 10, 600);
         model = new SceneModel(this.dim);
         model.setShowComponents(true);
 
@@ -41,12 +106,65 @@ public class Gravitational {
                 model.setMousePos(new Vec(e.getX(), e.getY()));
                 panel.repaint();
             }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                if (aimFrom != null) {
+                    aimTo = new Vec(e.getX(), e.getY());
+                    aim();
+                    panel.repaint();
+                }
+            }
+        });
+        panel.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                if (e.getButton() == MouseEvent.BUTTON1) {
+                    aimFrom = new Vec(e.getX(), e.getY());
+                    aimTo = aimFrom;
+                    aim();
+                } else {
+                    endAim();
+                }
+                panel.repaint();
+            }
+
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                if (e.getButton() == MouseEvent.BUTTON1 && aimFrom != null) {
+                    launch();
+                    endAim();
+                    panel.repaint();
+                }
+            }
         });
 
         panel.setFocusable(true);
         panel.addKeyListener(new KeyAdapter() {
             @Override
             public void keyPressed(KeyEvent e) {
+                if (e.getKeyCode() == KeyEvent.VK_ESCAPE) {
+                    endAim();
+                    panel.repaint();
+                }
+
+                if (e.getKeyCode() == KeyEvent.VK_E) {
+                    model.setMonitor(model.getMonitor() == null ? monitor : null);
+                    panel.repaint();
+                }
+
+                if (e.getKeyCode() == KeyEvent.VK_C) {
+                    try {
+                        monitor.writeCsv(System.out);
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                }
+
+                if (e.getKeyCode() == KeyEvent.VK_B) {
+                    swarmSteps.setShared(!swarmSteps.isShared());
+                }
+
                 if (e.getKeyCode() == KeyEvent.VK_SPACE) {
                     if (!isRunning) {
                         startLoop();
@@ -83,23 +201,234 @@ public class Gravitational {
     };
 
     private void update() {
+        tick++;
         ArrayList<Attractor> attractors = model.getAttractors();
         ArrayList<Moveable> movers = model.getMovers();
+
+        // Moveable attractors pull through an exact pair sum, or a Barnes-Hut
+        // tree for many movers, on every mover that is not itself an
+        // attractor. The movers follow a kick-drift-kick leapfrog: Ball#update
+        // adds the accumulated acceleration to the velocity and then moves,
+        // so a half-step force turns it into the first kick and the drift;
+        // the second half kick uses the accelerations at the new positions,
+        // which are also the first kick of the next tick
+        if (solvedMovers != movers.size()) {
+            solve(movers);
+        }
+        for (int i = 0; i < movers.size(); i++) {
+            Moveable m = movers.get(i);
+            if (!m.isAttractor()) {
+                m.applyForce(new Vec(0.5 * bodies.ax[i] * m.getMass(), 0.5 * bodies.ay[i] * m.getMass()));
+            }
+        }
+
+        // Attractors without a location and mass pull through their batch
+        // method: one call per attractor over the movers' positions
+        fieldPull(attractors, movers);
+
+        model.update();
+        updateSwarm();
+
+        solve(movers);
+        for (int i = 0; i < movers.size(); i++) {
+            Moveable m = movers.get(i);
+            if (!m.isAttractor()) {
+                m.setVelocity(m.getVelocity().plus(new Vec(0.5 * bodies.ax[i], 0.5 * bodies.ay[i])));
+            }
+        }
+
+        // Velocities are synchronized with the positions only here, after the
+        // second half kick, so touching balls merge here and the monitor
+        // samples the merged state
+        monitored.clear();
+        for (Moveable m : movers) {
+            Vec loc = m.getLocation();
+            Vec vel = m.getVelocity();
+            monitored.add(loc.x(), loc.y(), vel.x(), vel.y(), m instanceof Attractor ? m.getMass() : 0.0,
+                    m instanceof Ball ? ((Ball) m).getRadius() : 0.0);
+        }
+        if (accretion.merge(monitored) > 0) {
+            absorb(movers);
+            // Merging turns the relative motion into heat; measure drift from here on
+            monitor.reset();
+        }
+        monitor.sample(tick, monitored);
+
+        // Moving attractors restart the prediction, still ones let it grow
+        if (aimFrom != null) {
+            aim();
+        }
+    };
+
+    /**
+     * Gathers the movers into {@link #pulled} and adds the acceleration of
+     * every attractor that is not itself a mover with one batch
+     * {@link Attractor#attract(double[], double[], double[], int, double[], double[])}
+     * call each, then applies the summed force to the movers that are not
+     * flagged as attractors.
+     */
+    private void fieldPull(ArrayList<Attractor> attractors, ArrayList<Moveable> movers) {
+        pulled.clear();
         for (Attractor a : attractors) {
-            for (Moveable m : movers) {
-                Vec force = a.attract(m);
+            if (a instanceof Moveable) {
+                continue;
+            }
+            if (pulled.count == 0) {
+                for (Moveable m : movers) {
+                    Vec loc = m.getLocation();
+                    pulled.add(loc.x(), loc.y(), 0.0, 0.0, m.getMass());
+                }
+            }
+            a.attract(pulled.x, pulled.y, pulled.mass, pulled.count, pulled.ax, pulled.ay);
+        }
+        for (int i = 0; i < pulled.count; i++) {
+            Moveable m = movers.get(i);
+            if (!m.isAttractor()) {
+                m.applyForce(new Vec(pulled.ax[i] * pulled.mass[i], pulled.ay[i] * pulled.mass[i]));
+            }
+        }
+    }
+
+    /**
+     * Applies the last merge to the balls: survivors take the merged mass,
+     * center of mass, velocity and radius, absorbed balls leave the scene
+     * once all survivors are updated. Flagged attractors are held in place,
+     * so they only gain mass and size.
+     */
+    private void absorb(ArrayList<Moveable> movers) {
+        boolean[] grown = new boolean[monitored.count];
+        for (int i = 0; i < movers.size(); i++) {
+            if (accretion.isAbsorbed(i)) {
+                grown[accretion.indexOf(i)] = true;
+            }
+        }
+        ArrayList<Moveable> absorbed = new ArrayList<>();
+        for (int i = 0; i < movers.size(); i++) {
+            Moveable m = movers.get(i);
+            int k = accretion.indexOf(i);
+            if (accretion.isAbsorbed(i)) {
+                absorbed.add(m);
+            } else if (grown[k]) {
+                m.setMass(monitored.mass[k]);
+                ((Ball) m).setRadius((int) Math.round(monitored.radius[k]));
                 if (!m.isAttractor()) {
-                    m.applyForce(force);
+                    m.setLocation(new Vec(monitored.x[k], monitored.y[k]));
+                    m.setVelocity(new Vec(monitored.vx[k], monitored.vy[k]));
                 }
             }
         }
+        for (Moveable m : absorbed) {
+            for (int i = 0; i < swarmMovers.length; i++) {
+                if (swarmMovers[i] == m) {
+                    swarmMovers[i] = null;
+                }
+            }
+            model.removeObject((SceneObject) m);
+        }
+        // The survivors moved and the indices shifted; a launch could bring
+        // the count back before the next tick
+        solvedMovers = -1;
+    }
 
-        model.update();
-    };
+    /**
+     * Hands the current aim to the predictor: the flagged attractors as they
+     * are now and one candidate launch per entry of {@link #CANDIDATES}. The
+     * worker integrates with the tick as its step and the scene's softening,
+     * so the aimed path is the one the launched ball will fly while the
+     * attractors keep still.
+     */
+    private void aim() {
+        aimAttractors.clear();
+        for (Moveable m : model.getMovers()) {
+            if (m.isAttractor()) {
+                Vec loc = m.getLocation();
+                Vec vel = m.getVelocity();
+                aimAttractors.add(loc.x(), loc.y(), vel.x(), vel.y(), m.getMass());
+            }
+        }
+        Vec velocity = launchVelocity();
+        aimCandidates.clear();
+        for (double f : CANDIDATES) {
+            aimCandidates.add(aimFrom.x(), aimFrom.y(), f * velocity.x(), f * velocity.y(), 0.0);
+        }
+        predictor.predict(aimAttractors, aimCandidates);
+        model.setAim(aimFrom, aimTo, predictor);
+    }
+
+    private void endAim() {
+        aimFrom = null;
+        aimTo = null;
+        predictor.cancel();
+        model.setAim(null, null, null);
+    }
+
+    /** Slingshot: the launch goes opposite to the pull, faster the further it is pulled. */
+    private Vec launchVelocity() {
+        return aimFrom.minus(aimTo).scale(LAUNCH_SCALE);
+    }
+
+    /** Adds a mover at the aim's start with the aimed velocity. */
+    private void launch() {
+        Ball ball = new Ball("launched", 5, 0.1, aimFrom, this.dim, Color.orange);
+        ball.setVisible(true);
+        ball.setFrictionCoefficient(0);
+        ball.setDragCoefficient(0);
+        ball.setVelocity(launchVelocity());
+        model.addObject(ball);
+        solvedMovers = -1;
+        // The launch adds energy; measure drift from here on
+        monitor.reset();
+    }
+
+    /**
+     * Advances the swarm by one tick with block time steps. The scene's
+     * initial movers are copied in front of the test particles first and pull from where they
+     * stand at the start of the tick; particles close to an attractor take
+     * up to 64 substeps while the distant ones take one. Absorbed movers stop
+     * pulling.
+     */
+    private void updateSwarm() {
+        if (swarm.count == 0) {
+            return;
+        }
+        for (int i = 0; i < swarmMovers.length; i++) {
+            Moveable m = swarmMovers[i];
+            if (m == null) {
+                swarm.mass[i] = 0.0;
+                continue;
+            }
+            swarm.x[i] = m.getLocation().x();
+            swarm.y[i] = m.getLocation().y();
+            swarm.vx[i] = m.getVelocity().x();
+            swarm.vy[i] = m.getVelocity().y();
+            swarm.mass[i] = m instanceof Attractor ? m.getMass() : 0.0;
+        }
+        swarmSteps.step(swarm, 1.0);
+
+        if (tick % 30 == 0) {
+            long done = swarmSteps.getForceEvaluations();
+            frame.setTitle(String.format("Gravitational - %d particles, %s, %d force evaluations per tick, levels %s",
+                    SWARM, swarmSteps.isShared() ? "shared step" : "block steps", (done - evaluations) / 30,
+                    Arrays.toString(swarmSteps.getPopulation())));
+            evaluations = done;
+        }
+    }
+
+    /** Solves the accelerations of all movers at their current locations. */
+    private void solve(ArrayList<Moveable> movers) {
+        bodies.clear();
+        for (Moveable m : movers) {
+            Vec loc = m.getLocation();
+            bodies.add(loc.x(), loc.y(), 0.0, 0.0, m instanceof Attractor ? m.getMass() : 0.0);
+        }
+        GravitySolver solver = movers.size() <= DIRECT_LIMIT ? direct : tree;
+        solver.accelerations(bodies);
+        solvedMovers = movers.size();
+    }
 
     private void setupScene() {
         int radiusAttractor = 50;
-        double massAttractor = 5;
+        double massAttractor = 200;
         int radiusMover = 5;
         double massMover = 0.1;
         Vec locAttractor = new Vec(640, 360);
@@ -117,6 +446,25 @@ public class Gravitational {
 
         model.addObject(attractor);
         model.addObject(mover);
+
+        // Test particles on orbits of all eccentricities; the slow ones fall
+        // deep into the attractor and need the finest steps near it
+        Random random = new Random(725630);
+        swarm.reserve(model.getMovers().size() + SWARM);
+        for (Moveable m : model.getMovers()) {
+            swarm.add(m.getLocation().x(), m.getLocation().y(), 0.0, 0.0, m instanceof Attractor ? m.getMass() : 0.0);
+        }
+        for (int i = 0; i < SWARM; i++) {
+            double r = 70 + 260 * random.nextDouble();
+            double angle = 2 * Math.PI * random.nextDouble();
+            double speed = (0.2 + 0.85 * random.nextDouble()) * Math.sqrt(massAttractor / r);
+            double cos = Math.cos(angle);
+            double sin = Math.sin(angle);
+            swarm.add(locAttractor.x() + r * cos, locAttractor.y() + r * sin, -speed * sin, speed * cos, 0.0);
+        }
+        monitor.setOrigin(locAttractor.x(), locAttractor.y());
+        swarmMovers = model.getMovers().toArray(new Moveable[0]);
+        model.setSwarm(swarm, swarmMovers.length, swarmSteps);
     }
 
     public static void main(String[] args) {
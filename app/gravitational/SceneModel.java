@@ -8,11 +8,17 @@ import interfaces.Updateable;
 import objects.SceneObject;
 import objects.SimpleLiquid;
 
+import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics2D;
 import java.util.ArrayList;
 
 import data.Vec;
+import gravity.ConservationMonitor;
+import ui.ConservationOverlay;
+import gravity.BlockTimesteps;
+import gravity.Bodies;
+import gravity.TrajectoryPredictor;
 
 public class SceneModel {
     private boolean isShowComponents = false;
@@ -28,6 +34,18 @@ public class SceneModel {
 
     private Vec mousePos = origin;
 
+    private Bodies swarm;
+    private int swarmFrom;
+    private BlockTimesteps swarmSteps;
+    private Color[] levelColors = new Color[0];
+    private ConservationMonitor monitor;
+
+    private Vec aimFrom;
+    private Vec aimTo;
+    private TrajectoryPredictor prediction;
+    private static final Color PATH_COLOR = new Color(120, 255, 140);
+    private static final Color CANDIDATE_COLOR = new Color(120, 255, 140, 90);
+
     public SceneModel(Dimension scene) {
         this.dim = scene;
         this.origin = new Vec(this.dim.width / 2, this.dim.height / 2);
@@ -58,6 +76,14 @@ public class SceneModel {
         }
     }
 
+    public void removeObject(SceneObject obj) {
+        objects.remove(obj);
+        movers.remove(obj);
+        updaters.remove(obj);
+        renderers.remove(obj);
+        attractors.remove(obj);
+    }
+
     public void update() {
         for (Moveable mover : movers) {
             /*
@@ -107,6 +133,83 @@ public class SceneModel {
         for (Renderable l : liquidBodies) {
             l.render(g2d);
         }
+
+        renderSwarm(g2d);
+        renderAim(g2d);
+
+        if (monitor != null) {
+            ConservationOverlay.draw(g2d, monitor, 10, 10, 440, 190);
+        }
+    }
+
+    /**
+     * Shows a conservation monitor in the top left corner.
+     *
+     * @param monitor monitor to show, or null to hide it
+     */
+    public void setMonitor(ConservationMonitor monitor) {
+        this.monitor = monitor;
+    }
+
+    public ConservationMonitor getMonitor() {
+        return this.monitor;
+    }
+
+    /** Draws the slingshot and the predicted paths, the aimed one on top. */
+    private void renderAim(Graphics2D g2d) {
+        if (aimFrom == null) {
+            return;
+        }
+        for (int i = prediction.getPathCount() - 1; i >= 0; i--) {
+            g2d.setColor(i == 0 ? PATH_COLOR : CANDIDATE_COLOR);
+            prediction.getPath(i).draw(g2d);
+        }
+        g2d.setColor(Color.white);
+        g2d.drawLine((int) aimFrom.x(), (int) aimFrom.y(), (int) aimTo.x(), (int) aimTo.y());
+        g2d.fillOval((int) aimFrom.x() - 3, (int) aimFrom.y() - 3, 6, 6);
+    }
+
+    /**
+     * Shows a launch being aimed.
+     *
+     * @param from       launch position, or null to hide the aim
+     * @param to         point the slingshot is pulled to
+     * @param prediction predictor whose paths to draw
+     */
+    public void setAim(Vec from, Vec to, TrajectoryPredictor prediction) {
+        this.aimFrom = from;
+        this.aimTo = to;
+        this.prediction = prediction;
+    }
+
+    /** Draws the swarm's particles as dots colored from blue (coarsest step) to red (finest). */
+    private void renderSwarm(Graphics2D g2d) {
+        if (swarm == null) {
+            return;
+        }
+        for (int i = swarmFrom; i < swarm.count; i++) {
+            g2d.setColor(levelColors[swarmSteps.getLevel(i)]);
+            g2d.fillRect((int) swarm.x[i] - 1, (int) swarm.y[i] - 1, 2, 2);
+        }
+    }
+
+    /**
+     * Shows test particles advanced by block time steps.
+     *
+     * @param swarm bodies holding the particles
+     * @param from  index of the first particle; earlier bodies are movers
+     * @param steps integrator whose levels color the particles
+     */
+    public void setSwarm(Bodies swarm, int from, BlockTimesteps steps) {
+        this.swarm = swarm;
+        this.swarmFrom = from;
+        this.swarmSteps = steps;
+        int levels = steps.getMaxLevel() + 1;
+        this.levelColors = new Color[levels];
+        for (int k = 0; k < levels; k++) {
+            float t = levels > 1 ? k / (float) (levels - 1) : 0f;
+            this.levelColors[k] = new Color(0.3f + 0.7f * t, 0.5f - 0.2f * t, 1f - 0.8f * t);
+        }
     }
 
     public void setShowComponents(boolean state) {
@@ -0,0 +1,99 @@
+package gravity_bench;
+
+import gravity.BarnesHut;
+import gravity.Bodies;
+import gravity.DirectSum;
+import gravity.FastMultipole;
+import gravity.GravitySolver;
+import gravity.ParticleMesh;
+
+import java.util.Random;
+
+/**
+ * Console benchmark of the gravity solvers: time per solve against force
+ * error on the same clustered body set.
+ *
+ * <p>The body count is the first program argument (default
+ * {@value #DEFAULT_BODIES}). Every configuration is warmed up, then timed
+ * over {@value #RUNS} solves; the error is the mean relative deviation from
+ * exact sums, over all bodies for small sets and over
+ * {@value #ERROR_SAMPLES} spread samples otherwise.</p>
+ */
+public class GravityBench {
+    private static final int DEFAULT_BODIES = 20000;
+    private static final int RUNS = 3;
+    private static final int ERROR_SAMPLES = 256;
+    /** Largest body count that is timed with direct summation. */
+    private static final int DIRECT_LIMIT = 20000;
+    private static final double MIN_DISTANCE = 10;
+
+    private static final double[] THETAS = { 0.3, 0.5, 0.7, 1.0 };
+    private static final int[] ORDERS = { 2, 4, 6, 8 };
+    private static final double[] FMM_THETAS = { 0.5, 0.7 };
+    private static final int[] MESH_SIZES = { 128, 256, 512 };
+
+    private final Bodies bodies = new Bodies();
+    private final DirectSum reference = new DirectSum();
+
+    public GravityBench(int count) {
+        reference.setDistanceClamp(MIN_DISTANCE, Double.POSITIVE_INFINITY);
+        addCluster((int) (0.6 * count), 440, 330, 70);
+        addCluster(count - (int) (0.6 * count), 900, 420, 50);
+    }
+
+    /** Adds bodies with an exponential surface density around a center. */
+    private void addCluster(int n, double cx, double cy, double scale) {
+        Random random = new Random(725630 + n);
+        for (int i = 0; i < n; i++) {
+            double r = -scale * Math.log(1 - random.nextDouble());
+            double angle = 2 * Math.PI * random.nextDouble();
+            bodies.add(cx + r * Math.cos(angle), cy + r * Math.sin(angle), 0, 0, 0.5 + random.nextDouble());
+        }
+    }
+
+    public void run() {
+        System.out.printf("%d bodies, %d cores%n", bodies.count, Runtime.getRuntime().availableProcessors());
+        System.out.printf("%-28s %12s %16s%n", "solver", "ms / solve", "mean rel. error");
+
+        if (bodies.count <= DIRECT_LIMIT) {
+            report("DirectSum", reference);
+        }
+        for (double theta : THETAS) {
+            BarnesHut solver = new BarnesHut(theta);
+            solver.setDistanceClamp(MIN_DISTANCE, Double.POSITIVE_INFINITY);
+            report(String.format("BarnesHut theta %.1f", theta), solver);
+        }
+        for (double theta : FMM_THETAS) {
+            for (int order : ORDERS) {
+                FastMultipole solver = new FastMultipole(theta, order);
+                solver.setMinDistance(MIN_DISTANCE);
+                report(String.format("FastMultipole theta %.1f p %d", theta, order), solver);
+            }
+        }
+        for (int grid : MESH_SIZES) {
+            for (boolean p3m : new boolean[] { false, true }) {
+                ParticleMesh solver = new ParticleMesh(grid);
+                solver.setSoftening(reference.getSoftening());
+                solver.setP3m(p3m);
+                report(String.format("ParticleMesh %d%s", grid, p3m ? " P3M" : ""), solver);
+            }
+        }
+    }
+
+    private void report(String name, GravitySolver solver) {
+        solver.accelerations(bodies);
+        long start = System.nanoTime();
+        for (int run = 0; run < RUNS; run++) {
+            solver.accelerations(bodies);
+        }
+        double millis = (System.nanoTime() - start) / 1e6 / RUNS;
+        int samples = bodies.count <= ERROR_SAMPLES * 8 ? bodies.count : ERROR_SAMPLES;
+        double error = reference.sampleError(bodies, samples);
+        System.out.printf("%-28s %12.1f %16.2e%n", name, millis, error);
+    }
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_BODIES;
+        new GravityBench(count).run();
+    }
+}
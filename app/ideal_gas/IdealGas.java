@@ -0,0 +1,149 @@
+package ideal_gas;
+
+import javax.swing.Timer;
+
+import data.Vec;
+import objects.Ball;
+import physics.HardSphereEngine;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.util.Random;
+
+import javax.swing.JFrame;
+
+/**
+ * A dilute gas of elastic balls around one heavy ball, simulated event by
+ * event with {@link HardSphereEngine}.
+ *
+ * <p>The engine jumps from collision to collision; every frame only samples
+ * the positions at the current tick. The heavy ball performs Brownian motion
+ * from the hits of the small ones. {@code Up}/{@code Down} heat and cool the
+ * gas, {@code Space} pauses.</p>
+ */
+public class IdealGas {
+    private static final int PARTICLES = 2000;
+    private static final double HEAT_STEP = 1.25;
+
+    private Timer sceneTimer;
+    private final SceneModel model;
+    private final ScenePanel panel;
+    private final JFrame frame;
+    private final HardSphereEngine engine;
+
+    public Dimension dim = new Dimension(1280, 720);
+
+    private boolean isRunning = false;
+    private long tick = 0;
+    private long lastCollisions = 0;
+
+    public IdealGas() {
+        model = new SceneModel(dim);
+        engine = new HardSphereEngine(dim);
+        panel = new ScenePanel(model);
+        frame = new JFrame("IdealGas");
+
+        panel.setPreferredSize(dim);
+        panel.setBackground(Color.black);
+
+        panel.setFocusable(true);
+        panel.addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                if (e.getKeyCode() == KeyEvent.VK_SPACE) {
+                    if (isRunning) {
+                        stopLoop();
+                    } else {
+                        startLoop();
+                    }
+                }
+
+                if (e.getKeyCode() == KeyEvent.VK_UP) {
+                    scaleVelocities(HEAT_STEP);
+                }
+
+                if (e.getKeyCode() == KeyEvent.VK_DOWN) {
+                    scaleVelocities(1 / HEAT_STEP);
+                }
+            }
+        });
+
+        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        frame.add(panel);
+        frame.pack();
+        frame.setLocationRelativeTo(null);
+    }
+
+    public void startLoop() {
+        if (sceneTimer == null) {
+            sceneTimer = new Timer(16, e -> {
+                update();
+                panel.repaint();
+            });
+        }
+        sceneTimer.start();
+        isRunning = true;
+        frame.setVisible(true);
+    }
+
+    public void stopLoop() {
+        if (sceneTimer != null) {
+            sceneTimer.stop();
+        }
+        isRunning = false;
+    }
+
+    private void update() {
+        tick++;
+        engine.advanceTo(tick);
+
+        if (tick % 60 == 0) {
+            long collisions = engine.getPairCollisions() + engine.getWallCollisions();
+            frame.setTitle(String.format("IdealGas - %d balls, %d collisions/s, energy %.1f",
+                    engine.size(), collisions - lastCollisions, engine.kineticEnergy()));
+            lastCollisions = collisions;
+        }
+    }
+
+    private void scaleVelocities(double factor) {
+        for (int i = 0; i < engine.size(); i++) {
+            engine.setVelocity(i, engine.getVelocityX(i) * factor, engine.getVelocityY(i) * factor);
+        }
+    }
+
+    private void setupScene() {
+        Random r = new Random(725630);
+
+        Ball heavy = new Ball("heavy", 24, 400, new Vec(640, 360), dim, Color.orange);
+        heavy.setVisible(true);
+        engine.addBall(heavy);
+        model.addObject(heavy);
+
+        // Spawn the gas on a jittered grid so no two balls start overlapping
+        int columns = 64;
+        int rows = 36;
+        double cell = dim.getWidth() / columns;
+        int placed = 0;
+        for (int k = 0; k < columns * rows && placed < PARTICLES; k++) {
+            double x = (k % columns + 0.5) * cell + (r.nextDouble() - 0.5) * 6;
+            double y = (k / columns + 0.5) * cell + (r.nextDouble() - 0.5) * 6;
+            if (Math.hypot(x - 640, y - 360) < 24 + cell) {
+                continue;
+            }
+            Ball b = new Ball("gas" + placed, 3, 1, new Vec(x, y), dim, Color.green);
+            b.setVelocity(new Vec(r.nextGaussian(), r.nextGaussian()));
+            b.setVisible(true);
+            engine.addBall(b);
+            model.addObject(b);
+            placed++;
+        }
+    }
+
+    public static void main(String[] args) {
+        IdealGas gas = new IdealGas();
+        gas.setupScene();
+        gas.startLoop();
+    }
+}
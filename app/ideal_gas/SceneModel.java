@@ -0,0 +1,49 @@
+package ideal_gas;
+
+import objects.SceneObject;
+import interfaces.Renderable;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.util.ArrayList;
+
+/**
+ * Holds the balls of the gas. Motion is owned by the event-driven engine, so
+ * the model only renders.
+ */
+public class SceneModel {
+    private ArrayList<SceneObject> objects;
+    private ArrayList<Renderable> renderers;
+
+    private Dimension sceneDim;
+
+    public SceneModel(Dimension scene) {
+        this.sceneDim = scene;
+
+        objects = new ArrayList<>();
+        renderers = new ArrayList<>();
+    }
+
+    public void addObject(SceneObject obj) {
+        objects.add(obj);
+        if (obj instanceof Renderable) {
+            renderers.add((Renderable) obj);
+        }
+    }
+
+    public void render(Graphics2D g2d) {
+        for (Renderable r : renderers) {
+            if (r.isVisible()) {
+                r.render(g2d);
+            }
+        }
+    }
+
+    public ArrayList<SceneObject> getObjects() {
+        return objects;
+    }
+
+    public Dimension getDimensions() {
+        return this.sceneDim;
+    }
+}
@@ -0,0 +1,21 @@
+package ideal_gas;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+
+public class SceneRenderer {
+    private Dimension scene;
+
+    SceneRenderer(Dimension scene) {
+        this.scene = scene;
+    }
+
+    public void render(Graphics2D g2d, SceneModel model) {
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.setColor(Color.black);
+        g2d.fillRect(0, 0, (int) this.scene.getWidth(), (int) this.scene.getHeight());
+        model.render(g2d);
+    }
+}
@@ -2,12 +2,27 @@ package massive_balls;
 
 import javax.swing.Timer;
 
+import data.NoiseTiles;
+import data.SimplexNoise;
 import data.Vec;
+import gravity.Bodies;
+import gravity.ConservationMonitor;
+import gravity.Softening;
 import ui.ColorScheme;
 import interfaces.Moveable;
 import objects.Ball;
-import objects.SceneObject;
+import objects.Box;
+import objects.MoBox;
+import objects.Polygon;
 import objects.SimpleLiquid;
+import physics.CollisionWorld;
+import physics.ContactBatch;
+import physics.ContactStream;
+import physics.ForceField;
+import physics.HingeJoint;
+import physics.TriggerListener;
+import physics.TriggerVolume;
+import physics.TriggerWorld;
 
 import java.awt.Color;
 import java.awt.Dimension;
@@ -16,7 +31,13 @@ import java.awt.event.KeyEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseMotionListener;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.swing.JFrame;
 
@@ -25,12 +46,26 @@ public class MassiveBalls {
     private final SceneModel model;
     private final ScenePanel panel;
     private final JFrame frame;
+    private final CollisionWorld world;
+    private final TriggerWorld triggers;
+    private final ForceField wind;
+    private final NoiseTiles breeze = new NoiseTiles(new SimplexNoise(725630), 320, 16, 256);
+    private final ContactStream contacts = new ContactStream();
+    private final Map<TriggerVolume, SimpleLiquid> liquids = new HashMap<>();
+    private final AtomicLong ledgeHits = new AtomicLong();
+    private long shownLedgeHits = -1;
+    /** Energy and momenta of the movers, summed off the event thread every few ticks. */
+    private final ConservationMonitor monitor = new ConservationMonitor(Softening.plummer(1), 10, 600);
+    private final Bodies monitored = new Bodies();
 
     public Dimension dim = new Dimension(1280, 720);
     private double airBounceFactor = 0.8;
     private double waterBounceFactor = 0.2;
 
     private static double[] draggedPos = new double[2];
+    private static final double GUST_RADIUS = 240;
+    private static final int BREEZE_INTERVAL = 5;
+    private long tick = 0;
 
     private boolean windyLeft = false;
     private boolean windyRight = false;
@@ -38,6 +73,9 @@ public class MassiveBalls {
 
     public MassiveBalls() {
         model = new SceneModel(dim);
+        world = new CollisionWorld(dim);
+        triggers = new TriggerWorld();
+        wind = new ForceField(dim, 32);
         panel = new ScenePanel(model);
         frame = new JFrame("MassiveBalls");
 
@@ -47,6 +85,8 @@ public class MassiveBalls {
         panel.addMouseListener(new MouseAdapter() {
             @Override
             public void mousePressed(MouseEvent e) {
+                draggedPos[0] = e.getX();
+                draggedPos[1] = e.getY();
                 if (e.getButton() == MouseEvent.BUTTON1) {
                     windyRight = true;
                 }
@@ -88,6 +128,19 @@ public class MassiveBalls {
         panel.addKeyListener(new KeyAdapter() {
             @Override
             public void keyPressed(KeyEvent e) {
+                if (e.getKeyCode() == KeyEvent.VK_E) {
+                    model.setMonitor(model.getMonitor() == null ? monitor : null);
+                    panel.repaint();
+                }
+
+                if (e.getKeyCode() == KeyEvent.VK_C) {
+                    try {
+                        monitor.writeCsv(System.out);
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                }
+
                 if (e.getKeyCode() == KeyEvent.VK_SPACE) {
                     if (!isRunning) {
                         startLoop();
@@ -136,47 +189,105 @@ public class MassiveBalls {
     private void update() {
         Vec gravity = new Vec(0.0, 0.3);
         Vec drag = new Vec(0.0, 0.0);
-        Vec wind_right = new Vec(-10.0, 0.0);
-        Vec wind_left = new Vec(10.0, 0.0);
 
-        for (Moveable m : model.getMovers()) {
-            m.applyForce(gravity.scale(m.getMass()));
-            if (windyRight) {
-                m.applyForce(wind_right);
-            }
+        // Held mouse buttons paint gusts around the cursor; painted wind
+        // settles at ten times the per-tick amount and dies down when released
+        if (windyRight) {
+            wind.paint(draggedPos[0], draggedPos[1], GUST_RADIUS, -1.0, 0.0);
+        }
+        if (windyLeft) {
+            wind.paint(draggedPos[0], draggedPos[1], GUST_RADIUS, 1.0, 0.0);
+        }
+        wind.fadePaint(0.9);
+        // The breeze drifts with time; refreshing it reads cached noise tiles
+        if (++tick % BREEZE_INTERVAL == 0) {
+            wind.invalidateAll();
+        }
+        wind.apply(model.getMovers());
 
-            if (windyLeft) {
-                m.applyForce(wind_left);
-            }
+        // Bounce factors switch in the trigger listeners; buoyancy and drag
+        // come from each liquid's layered field in one pass over the movers
+        triggers.update();
+        for (SimpleLiquid liquidBody : liquids.values()) {
+            liquidBody.getField().apply(model.getMovers(), gravity.y());
+        }
 
-            if (m.isLanded() && m.getHasFriction()) {
-                Vec friction = new Vec(m.getVelocity().norm().scale(m.getFrictionCoefficient()));
+        for (Moveable m : model.getMovers()) {
+            m.applyForce(gravity.scale(m.getMass()));
+            double speed = m.getVelocity().mag();
+            if (m.isLanded() && m.getHasFriction() && speed > 0) {
+                Vec friction = m.getVelocity().scale(m.getFrictionCoefficient() / speed);
                 m.applyForce(friction);
             }
 
             if (m.getHasDrag()) {
-                double speed = m.getVelocity().mag();
-                drag = m.getVelocity().norm().scale(m.getDragCoefficient() * speed * speed);
+                drag = m.getVelocity().scale(m.getDragCoefficient() * speed);
                 m.applyForce(drag);
             }
+        }
 
-            for (SceneObject obj : model.getObjects()) {
-                if (obj instanceof SimpleLiquid && m.getVelocity().mag() > 0) {
-                    SimpleLiquid liquidBody = (SimpleLiquid) obj;
-                    if (liquidBody.contains(m)) {
-                        m.setBounceFactor(this.waterBounceFactor);
-                        liquidBody.drag(m);
-                    } else {
-                        m.setBounceFactor(this.airBounceFactor);
+        // Every mover integrates once, after all forces are in, and then
+        // the collision world resolves contacts and joints once
+        model.update();
+        world.step();
+
+        // The balls do not attract each other: their energy is kinetic plus
+        // the uniform gravity's potential, and friction, drag, wind and
+        // bounces show up as its drift
+        monitored.clear();
+        for (Moveable m : model.getMovers()) {
+            Vec loc = m.getLocation();
+            Vec vel = m.getVelocity();
+            monitored.add(loc.x(), loc.y(), vel.x(), vel.y(), m.getMass());
+        }
+        monitor.sample(tick, monitored);
+
+        long hits = ledgeHits.get();
+        if (hits != shownLedgeHits) {
+            frame.setTitle("MassiveBalls - ledge hits: " + hits);
+            shownLedgeHits = hits;
+        }
+    };
+
+    /**
+     * Counts bodies landing on the ledges. The listener runs on the stream's
+     * executor and only sees one batch of contacts per world step.
+     */
+    private void listenForLedgeHits() {
+        world.setContactStream(contacts);
+        contacts.subscribe(new Flow.Subscriber<ContactBatch>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(ContactBatch batch) {
+                for (int k = 0; k < batch.size(); k++) {
+                    if (batch.phase(k) == ContactBatch.BEGIN && ContactBatch.isObstacle(batch.bodyA(k))) {
+                        ledgeHits.incrementAndGet();
                     }
                 }
             }
-            model.update();
-        }
-    };
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+    }
 
     private void setupScene() {
         Random r = new Random(725630);
+
+        // A light breeze that varies over the scene and drifts with time, and a
+        // current swirling in the water
+        breeze.setAnimation(120, 0.2);
+        wind.add(ForceField.noise(breeze, 0.4, () -> tick));
+        wind.add(ForceField.vortex(330, 540, 3.0, 120));
         for (int i = 0; i < 4; i++) {
             int x = (int) (r.nextGaussian() * 360) + 640;
             int y = (int) (r.nextGaussian() * 120) + 260;
@@ -190,7 +301,10 @@ public class MassiveBalls {
             b.setBouncy(true);
             b.setFrictionCoefficient(0.05);
             b.setDragCoefficient(0.01);
+            // Small balls pick up the most speed from the wind
+            b.setContinuous(radius <= 10);
             b.setVisible(true);
+            world.addBody(b);
             model.addObject(b);
         }
 
@@ -199,12 +313,85 @@ public class MassiveBalls {
                 new Vec(10, 360), this.dim,
                 ColorScheme.WATER_COLOR);
 
+        // Light water over heavy brine: big balls float on top, medium ones
+        // on the brine and small ones sink
+        liquidBody.getField()
+                .layer(0, 200, 0.06, 16)
+                .layer(200, Double.MAX_VALUE, 0.12, 24);
         liquidBody.setVisible(true);
         model.addObject(liquidBody);
+        addLiquidTrigger(liquidBody);
+
+        Box upperLedge = new Box("upperLedge", new Vec(760, 260), 320, 8, this.dim, Color.gray);
+        upperLedge.setAngle(0.2);
+        upperLedge.setVisible(true);
+        world.addObstacle(upperLedge);
+        model.addObject(upperLedge);
+
+        Box lowerLedge = new Box("lowerLedge", new Vec(860, 520), 260, 8, this.dim, Color.gray);
+        lowerLedge.setAngle(-0.25);
+        lowerLedge.setVisible(true);
+        world.addObstacle(lowerLedge);
+        model.addObject(lowerLedge);
+        world.bake();
+
+        Polygon wedge = new Polygon("wedge", new Vec(900, 120),
+                new double[] { -30, 30, 10 }, new double[] { 20, 20, -25 }, 60, this.dim, Color.orange);
+        wedge.setBouncy(true);
+        wedge.setVisible(true);
+        world.addBody(wedge);
+        model.addObject(wedge);
+
+        Polygon hexagon = Polygon.regular("hexagon", new Vec(1000, 80), 6, 22, 50, this.dim, Color.orange);
+        hexagon.setBouncy(true);
+        hexagon.setVisible(true);
+        world.addBody(hexagon);
+        model.addObject(hexagon);
+
+        // Chain of hinged links hanging from the ceiling
+        MoBox previous = null;
+        for (int i = 0; i < 5; i++) {
+            MoBox link = new MoBox("link" + i, new Vec(316, 20 + 36 * i), 8, 36, 4, this.dim, Color.lightGray);
+            link.setVisible(true);
+            world.addBody(link);
+            model.addObject(link);
+            world.addJoint(new HingeJoint(link, previous, new Vec(320, 20 + 36 * i)));
+            previous = link;
+        }
 
+        for (Moveable m : model.getMovers()) {
+            m.setBounceFactor(this.airBounceFactor);
+            triggers.addBody(m);
+        }
+
+        monitor.setSelfGravity(false);
+        monitor.setUniformField(0.0, 0.3);
+        monitor.setOrigin(this.dim.width / 2.0, this.dim.height / 2.0);
+        listenForLedgeHits();
         model.setShowComponents(true);
     }
 
+    /**
+     * Turns a liquid into a trigger volume: movers get the water bounce factor
+     * when they enter it and the air bounce factor back when they leave.
+     */
+    private void addLiquidTrigger(SimpleLiquid liquidBody) {
+        TriggerVolume volume = liquidBody.toTrigger();
+        volume.addListener(new TriggerListener() {
+            @Override
+            public void onEnter(TriggerVolume v, Moveable body) {
+                body.setBounceFactor(waterBounceFactor);
+            }
+
+            @Override
+            public void onExit(TriggerVolume v, Moveable body) {
+                body.setBounceFactor(airBounceFactor);
+            }
+        });
+        liquids.put(volume, liquidBody);
+        triggers.addVolume(volume);
+    }
+
     public static void main(String[] args) {
         MassiveBalls mb = new MassiveBalls();
         mb.setupScene();
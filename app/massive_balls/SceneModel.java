@@ -12,6 +12,8 @@ import java.awt.Graphics2D;
 import java.util.ArrayList;
 
 import data.Vec;
+import gravity.ConservationMonitor;
+import ui.ConservationOverlay;
 
 public class SceneModel {
     private boolean isShowComponents = false;
@@ -24,6 +26,7 @@ public class SceneModel {
     private Dimension sceneDim;
     private Vec mouseOrigin;
     private Vec mousePos = mouseOrigin;
+    private ConservationMonitor monitor;
 
     public SceneModel(Dimension scene) {
         this.sceneDim = scene;
@@ -96,6 +99,23 @@ public class SceneModel {
         for (Renderable l : liquidBodies) {
             l.render(g2d);
         }
+
+        if (monitor != null) {
+            ConservationOverlay.draw(g2d, monitor, 10, 10, 440, 190);
+        }
+    }
+
+    /**
+     * Shows a conservation monitor in the top left corner.
+     *
+     * @param monitor monitor to show, or null to hide it
+     */
+    public void setMonitor(ConservationMonitor monitor) {
+        this.monitor = monitor;
+    }
+
+    public ConservationMonitor getMonitor() {
+        return this.monitor;
     }
 
     public ArrayList<SceneObject> getObjects() {
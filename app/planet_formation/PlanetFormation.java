@@ -0,0 +1,170 @@
+package planet_formation;
+
+import javax.swing.Timer;
+
+import gravity.BarnesHut;
+import gravity.Bodies;
+import gravity.Softening;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.util.Random;
+
+import javax.swing.JFrame;
+
+/**
+ * A protoplanetary disk of planetesimals around a star that stick together
+ * when they touch and grow into planets.
+ *
+ * <p>The planetesimal count is the first program argument (default
+ * {@value #DEFAULT_BODIES}); every body pulls on every other through a
+ * Barnes-Hut tree and touching bodies merge through
+ * {@link gravity.Accretion}, so the count falls by orders of magnitude while
+ * the scene runs. {@code R} starts a new disk, {@code Space} pauses.</p>
+ */
+public class PlanetFormation {
+    private static final int DEFAULT_BODIES = 50000;
+    private static final double STAR_MASS = 3000;
+    private static final double STAR_RADIUS = 12;
+    private static final double DISK_MASS = 300;
+    private static final double INNER = 60;
+    private static final double OUTER = 330;
+    /** Planetesimal radius as a fraction of their mean spacing. */
+    private static final double FILL = 0.2;
+    /** Random velocity relative to the circular speed. */
+    private static final double DISPERSION = 0.03;
+    private static final double EPSILON = 1;
+
+    private Timer sceneTimer;
+    private final SceneModel model;
+    private final ScenePanel panel;
+    private final JFrame frame;
+    private final Bodies bodies = new Bodies();
+    private final BarnesHut tree = new BarnesHut(0.6);
+    private final Random random = new Random(725630);
+    private final int count;
+
+    public Dimension dim = new Dimension(1280, 720);
+
+    private boolean isRunning = false;
+    private long tick = 0;
+    private long stepNanos = 0;
+    private long merged = 0;
+
+    public PlanetFormation(int count) {
+        this.count = count;
+        tree.setSoftening(Softening.plummer(EPSILON));
+        model = new SceneModel(dim, bodies, tree);
+        panel = new ScenePanel(model);
+        frame = new JFrame("Planet formation");
+
+        panel.setPreferredSize(dim);
+        panel.setBackground(Color.black);
+
+        panel.setFocusable(true);
+        panel.addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                if (e.getKeyCode() == KeyEvent.VK_SPACE) {
+                    if (isRunning) {
+                        stopLoop();
+                    } else {
+                        startLoop();
+                    }
+                }
+
+                if (e.getKeyCode() == KeyEvent.VK_R) {
+                    setupScene();
+                    panel.repaint();
+                }
+            }
+        });
+
+        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        frame.add(panel);
+        frame.pack();
+        frame.setLocationRelativeTo(null);
+    }
+
+    public void startLoop() {
+        if (sceneTimer == null) {
+            sceneTimer = new Timer(16, e -> {
+                update();
+                panel.repaint();
+            });
+        }
+        sceneTimer.start();
+        isRunning = true;
+        frame.setVisible(true);
+    }
+
+    public void stopLoop() {
+        if (sceneTimer != null) {
+            sceneTimer.stop();
+        }
+        isRunning = false;
+    }
+
+    private void update() {
+        long start = System.nanoTime();
+        model.update();
+        stepNanos += System.nanoTime() - start;
+        merged += model.takeMerged();
+        tick++;
+
+        if (tick % 30 == 0) {
+            int largest = 1;
+            for (int i = 2; i < bodies.count; i++) {
+                if (bodies.mass[i] > bodies.mass[largest]) {
+                    largest = i;
+                }
+            }
+            double planet = bodies.count > 1 ? bodies.mass[largest] : 0.0;
+            frame.setTitle(String.format(
+                    "Planet formation - tick %d, %d bodies (arrays for %d), %d merged, largest planet %.1f %% of the disk, %.1f ms per tick",
+                    tick, bodies.count, bodies.x.length, merged, 100 * planet / DISK_MASS, stepNanos / 30 / 1e6));
+            stepNanos = 0;
+        }
+    }
+
+    /**
+     * Puts the star at the center and spreads the planetesimals evenly over
+     * the area of a ring on circular orbits, plus a small random velocity so
+     * neighbours drift into each other. Their radius is a fixed fraction of
+     * their mean spacing, so the disk starts equally crowded at any count.
+     */
+    private void setupScene() {
+        bodies.clear();
+        bodies.reserve(count + 1);
+        double cx = dim.width / 2.0;
+        double cy = dim.height / 2.0;
+        bodies.add(cx, cy, 0, 0, STAR_MASS, STAR_RADIUS);
+        double area = Math.PI * (OUTER * OUTER - INNER * INNER);
+        double radius = FILL * Math.sqrt(area / count);
+        double bodyMass = DISK_MASS / count;
+        for (int i = 0; i < count; i++) {
+            double r = Math.sqrt(INNER * INNER + (OUTER * OUTER - INNER * INNER) * random.nextDouble());
+            double angle = 2 * Math.PI * random.nextDouble();
+            double inside = DISK_MASS * (r * r - INNER * INNER) / (OUTER * OUTER - INNER * INNER);
+            double speed = Math.sqrt((STAR_MASS + inside) / r);
+            double cos = Math.cos(angle);
+            double sin = Math.sin(angle);
+            double kick = DISPERSION * speed;
+            bodies.add(cx + r * cos, cy + r * sin,
+                    -speed * sin + kick * random.nextGaussian(), speed * cos + kick * random.nextGaussian(),
+                    bodyMass, radius);
+        }
+        model.invalidate();
+        tick = 0;
+        merged = 0;
+    }
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_BODIES;
+        PlanetFormation scene = new PlanetFormation(count);
+        scene.setupScene();
+        scene.startLoop();
+    }
+}
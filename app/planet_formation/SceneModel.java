@@ -0,0 +1,93 @@
+package planet_formation;
+
+import gravity.Accretion;
+import gravity.Bodies;
+import gravity.BodyRaster;
+import gravity.GravitySolver;
+import gravity.Leapfrog;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+
+/**
+ * Holds the disk's bodies, the gravity solver, the accretion that merges
+ * touching bodies and the raster the planetesimals are drawn into.
+ */
+public class SceneModel {
+    /** Bodies at least this large are drawn as disks on top of the raster. */
+    private static final double DRAWN_RADIUS = 1.5;
+
+    private final Bodies bodies;
+    private final Leapfrog leapfrog;
+    private final Accretion accretion = new Accretion();
+    private final BodyRaster raster;
+
+    private Dimension sceneDim;
+    private double dt = 0.25;
+    private int merged;
+
+    public SceneModel(Dimension scene, Bodies bodies, GravitySolver solver) {
+        this.sceneDim = scene;
+        this.bodies = bodies;
+        this.leapfrog = new Leapfrog(solver);
+        this.raster = new BodyRaster(scene.width, scene.height);
+    }
+
+    /**
+     * Advances the bodies by one kick-drift-kick leapfrog step and merges
+     * the ones that touch afterwards. A merge changes the body count, so the
+     * next step solves the merged set before its first kick.
+     */
+    public void update() {
+        leapfrog.step(bodies, dt);
+        merged += accretion.merge(bodies);
+        raster.draw(bodies);
+    }
+
+    /** Draws the planetesimals as raster points and the grown bodies as disks. */
+    public void render(Graphics2D g2d) {
+        raster.render(g2d);
+        for (int i = 0; i < bodies.count; i++) {
+            double r = bodies.radius[i];
+            if (r >= DRAWN_RADIUS) {
+                float t = (float) Math.min(1.0, (r - DRAWN_RADIUS) / 6.0);
+                g2d.setColor(i == 0 ? Color.orange : new Color(0.5f + 0.5f * t, 0.6f + 0.2f * t, 1f - 0.6f * t));
+                int d = (int) Math.round(2 * r);
+                g2d.fillOval((int) Math.round(bodies.x[i] - r), (int) Math.round(bodies.y[i] - r), d, d);
+            }
+        }
+    }
+
+    /** Makes the next step solve first, after the bodies were replaced. */
+    public void invalidate() {
+        leapfrog.invalidate();
+    }
+
+    /** @return bodies absorbed since the last call */
+    public int takeMerged() {
+        int m = merged;
+        merged = 0;
+        return m;
+    }
+
+    public Bodies getBodies() {
+        return bodies;
+    }
+
+    public GravitySolver getSolver() {
+        return leapfrog.getSolver();
+    }
+
+    public double getTimeStep() {
+        return dt;
+    }
+
+    public void setTimeStep(double dt) {
+        this.dt = dt;
+    }
+
+    public Dimension getDimensions() {
+        return this.sceneDim;
+    }
+}
@@ -0,0 +1,93 @@
+package smoke;
+
+import fluids.DyeRaster;
+import fluids.GridFluid;
+import objects.Ball;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.util.ArrayList;
+
+import data.Vec;
+
+/**
+ * Holds the grid fluid, its dye raster and the balls carried by the flow.
+ */
+public class SceneModel {
+    /** Share of the velocity difference to the flow a ball makes up per tick. */
+    private static final double COUPLING = 0.15;
+
+    private final GridFluid fluid;
+    private final DyeRaster raster;
+    private final ArrayList<Ball> balls;
+
+    private Dimension sceneDim;
+    private double[] xs = new double[0];
+    private double[] ys = new double[0];
+    private double[] us = new double[0];
+    private double[] vs = new double[0];
+
+    public SceneModel(Dimension scene, GridFluid fluid) {
+        this.sceneDim = scene;
+        this.fluid = fluid;
+        this.raster = new DyeRaster(fluid);
+        this.balls = new ArrayList<>();
+    }
+
+    public void addBall(Ball ball) {
+        balls.add(ball);
+        if (xs.length < balls.size()) {
+            int capacity = 2 * balls.size();
+            xs = new double[capacity];
+            ys = new double[capacity];
+            us = new double[capacity];
+            vs = new double[capacity];
+        }
+    }
+
+    /**
+     * Steps the fluid, then drags every ball towards the flow velocity at its
+     * center, sampled for all balls in one call.
+     */
+    public void update() {
+        fluid.step();
+
+        int n = balls.size();
+        for (int i = 0; i < n; i++) {
+            Vec loc = balls.get(i).getLocation();
+            xs[i] = loc.x();
+            ys[i] = loc.y();
+        }
+        fluid.sampleVelocity(xs, ys, n, us, vs);
+        for (int i = 0; i < n; i++) {
+            Ball b = balls.get(i);
+            Vec vel = b.getVelocity();
+            double k = COUPLING * b.getMass();
+            b.applyForce(new Vec(k * (us[i] - vel.x()), k * (vs[i] - vel.y())));
+            b.update();
+        }
+
+        raster.draw(fluid);
+    }
+
+    public void render(Graphics2D g2d) {
+        raster.render(g2d, sceneDim.width, sceneDim.height);
+        for (Ball b : balls) {
+            if (b.isVisible()) {
+                b.render(g2d);
+            }
+        }
+    }
+
+    public ArrayList<Ball> getBalls() {
+        return balls;
+    }
+
+    public GridFluid getFluid() {
+        return fluid;
+    }
+
+    public Dimension getDimensions() {
+        return this.sceneDim;
+    }
+}
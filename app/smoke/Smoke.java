@@ -0,0 +1,166 @@
+package smoke;
+
+import javax.swing.Timer;
+
+import data.Vec;
+import fluids.GridFluid;
+import objects.Ball;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.Random;
+
+import javax.swing.JFrame;
+
+/**
+ * Colored smoke from two rotating jets on a {@link GridFluid}, with balls
+ * carried along by the flow.
+ *
+ * <p>Drag the mouse to stir the smoke and add dye. {@code S} switches between
+ * the Jacobi and red-black Gauss-Seidel pressure solvers, {@code V} toggles
+ * vorticity confinement, {@code Space} pauses.</p>
+ */
+public class Smoke {
+    private static final int CELL = 4;
+    private static final int BALLS = 40;
+    private static final double VORTICITY = 0.15;
+
+    private Timer sceneTimer;
+    private final SceneModel model;
+    private final ScenePanel panel;
+    private final JFrame frame;
+    private final GridFluid fluid;
+
+    public Dimension dim = new Dimension(1280, 720);
+
+    private boolean isRunning = false;
+    private long tick = 0;
+    private long stepNanos = 0;
+    private Vec lastDrag;
+    private boolean vorticityOn = true;
+
+    public Smoke() {
+        fluid = new GridFluid(dim.width / CELL, dim.height / CELL, CELL);
+        model = new SceneModel(dim, fluid);
+        panel = new ScenePanel(model);
+        frame = new JFrame("Smoke");
+
+        panel.setPreferredSize(dim);
+        panel.setBackground(Color.black);
+
+        MouseAdapter stir = new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                lastDrag = new Vec(e.getX(), e.getY());
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                Vec pos = new Vec(e.getX(), e.getY());
+                if (lastDrag != null) {
+                    Vec delta = pos.minus(lastDrag);
+                    fluid.addVelocity(pos.x(), pos.y(), 24, 0.5 * delta.x(), 0.5 * delta.y());
+                    fluid.addDye(pos.x(), pos.y(), 16, 0.6);
+                }
+                lastDrag = pos;
+            }
+
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                lastDrag = null;
+            }
+        };
+        panel.addMouseListener(stir);
+        panel.addMouseMotionListener(stir);
+
+        panel.setFocusable(true);
+        panel.addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                if (e.getKeyCode() == KeyEvent.VK_SPACE) {
+                    if (isRunning) {
+                        stopLoop();
+                    } else {
+                        startLoop();
+                    }
+                }
+
+                if (e.getKeyCode() == KeyEvent.VK_S) {
+                    fluid.setSolver(fluid.getSolver() == GridFluid.Solver.JACOBI
+                            ? GridFluid.Solver.RED_BLACK
+                            : GridFluid.Solver.JACOBI);
+                }
+
+                if (e.getKeyCode() == KeyEvent.VK_V) {
+                    vorticityOn = !vorticityOn;
+                    fluid.setVorticity(vorticityOn ? VORTICITY : 0.0);
+                }
+            }
+        });
+
+        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        frame.add(panel);
+        frame.pack();
+        frame.setLocationRelativeTo(null);
+    }
+
+    public void startLoop() {
+        if (sceneTimer == null) {
+            sceneTimer = new Timer(16, e -> {
+                update();
+                panel.repaint();
+            });
+        }
+        sceneTimer.start();
+        isRunning = true;
+        frame.setVisible(true);
+    }
+
+    public void stopLoop() {
+        if (sceneTimer != null) {
+            sceneTimer.stop();
+        }
+        isRunning = false;
+    }
+
+    private void update() {
+        // Two jets slowly turning in opposite directions
+        double angle = tick * 0.01;
+        fluid.addVelocity(320, 360, 28, 2.5 * Math.cos(angle), 2.5 * Math.sin(angle));
+        fluid.addDye(320, 360, 20, 0.4);
+        fluid.addVelocity(960, 360, 28, -2.5 * Math.cos(angle), -2.5 * Math.sin(angle));
+        fluid.addDye(960, 360, 20, 0.4);
+
+        long start = System.nanoTime();
+        model.update();
+        stepNanos += System.nanoTime() - start;
+        tick++;
+
+        if (tick % 60 == 0) {
+            frame.setTitle(String.format("Smoke - %d x %d cells, %s, %.1f ms per tick",
+                    fluid.getColumns(), fluid.getRows(), fluid.getSolver(), stepNanos / 60 / 1e6));
+            stepNanos = 0;
+        }
+    }
+
+    private void setupScene() {
+        Random r = new Random(725630);
+        for (int i = 0; i < BALLS; i++) {
+            Vec spawn = new Vec(40 + r.nextDouble() * (dim.width - 80), 40 + r.nextDouble() * (dim.height - 80));
+            Ball b = new Ball("ball" + i, 4 + r.nextInt(6), 1, spawn, dim, Color.white);
+            b.setBouncy(true);
+            b.setVisible(true);
+            model.addBall(b);
+        }
+    }
+
+    public static void main(String[] args) {
+        Smoke smoke = new Smoke();
+        smoke.setupScene();
+        smoke.startLoop();
+    }
+}
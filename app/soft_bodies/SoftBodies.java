@@ -0,0 +1,181 @@
+package soft_bodies;
+
+import javax.swing.Timer;
+
+import data.Vec;
+import objects.Box;
+import objects.ParticleBody;
+import physics.CollisionWorld;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+
+import javax.swing.JFrame;
+
+/**
+ * Ropes, a cloth sheet and soft blobs simulated with XPBD constraints.
+ *
+ * <p>Drag any particle with the left mouse button, hold the right button for
+ * wind, press {@code P} to switch between the Gauss-Seidel and the
+ * graph-colored parallel solver and {@code Space} to pause.</p>
+ */
+public class SoftBodies {
+    private static final double GRAB_DISTANCE = 20.0;
+
+    private Timer sceneTimer;
+    private final SceneModel model;
+    private final ScenePanel panel;
+    private final JFrame frame;
+    private final CollisionWorld world;
+
+    public Dimension dim = new Dimension(1280, 720);
+
+    private boolean isRunning = false;
+    private boolean windy = false;
+    private boolean parallel = false;
+    private ParticleBody dragged;
+
+    public SoftBodies() {
+        model = new SceneModel(dim);
+        world = new CollisionWorld(dim);
+        panel = new ScenePanel(model);
+        frame = new JFrame("SoftBodies");
+
+        panel.setPreferredSize(dim);
+        panel.setBackground(Color.black);
+
+        MouseAdapter mouse = new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                if (e.getButton() == MouseEvent.BUTTON1) {
+                    Vec pos = new Vec(e.getX(), e.getY());
+                    for (ParticleBody body : model.getBodies()) {
+                        if (body.grab(pos, GRAB_DISTANCE)) {
+                            dragged = body;
+                            break;
+                        }
+                    }
+                }
+
+                if (e.getButton() == MouseEvent.BUTTON3) {
+                    windy = true;
+                }
+            }
+
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                if (dragged != null) {
+                    dragged.release();
+                    dragged = null;
+                }
+                windy = false;
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                if (dragged != null) {
+                    dragged.drag(new Vec(e.getX(), e.getY()));
+                }
+            }
+
+            @Override
+            public void mouseMoved(MouseEvent e) {
+                model.setMousePos(new Vec(e.getX(), e.getY()));
+            }
+        };
+        panel.addMouseListener(mouse);
+        panel.addMouseMotionListener(mouse);
+
+        panel.setFocusable(true);
+        panel.addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                if (e.getKeyCode() == KeyEvent.VK_SPACE) {
+                    if (isRunning) {
+                        stopLoop();
+                    } else {
+                        startLoop();
+                    }
+                }
+
+                if (e.getKeyCode() == KeyEvent.VK_P) {
+                    parallel = !parallel;
+                    for (ParticleBody body : model.getBodies()) {
+                        body.getSolver().setParallel(parallel);
+                    }
+                    frame.setTitle(parallel ? "SoftBodies (colored parallel)" : "SoftBodies (Gauss-Seidel)");
+                }
+            }
+        });
+
+        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        frame.add(panel);
+        frame.pack();
+        frame.setLocationRelativeTo(null);
+    }
+
+    public void startLoop() {
+        if (sceneTimer == null) {
+            sceneTimer = new Timer(16, e -> {
+                update();
+                panel.repaint();
+            });
+        }
+        sceneTimer.start();
+        isRunning = true;
+        frame.setVisible(true);
+    }
+
+    public void stopLoop() {
+        if (sceneTimer != null) {
+            sceneTimer.stop();
+        }
+        isRunning = false;
+    }
+
+    private void update() {
+        Vec wind = new Vec(0.15, 0.0);
+        if (windy) {
+            for (ParticleBody body : model.getBodies()) {
+                body.applyForce(wind);
+            }
+        }
+        model.update();
+    }
+
+    private void setupScene() {
+        Box ledge = new Box("ledge", new Vec(700, 420), 300, 10, this.dim, Color.gray);
+        ledge.setAngle(0.15);
+        ledge.setVisible(true);
+        world.addObstacle(ledge);
+        world.bake();
+        model.addObject(ledge);
+
+        for (int i = 0; i < 3; i++) {
+            ParticleBody rope = ParticleBody.rope("rope" + i, new Vec(80 + 60 * i, 20),
+                    24 + 6 * i, 10, 1, 3, this.dim, Color.lightGray);
+            addBody(rope);
+        }
+
+        addBody(ParticleBody.cloth("cloth", new Vec(320, 40), 36, 26, 10, 1, 2, this.dim, Color.cyan));
+
+        addBody(ParticleBody.blob("blob", new Vec(820, 200), 24, 50, 1, 3, this.dim, Color.pink));
+        addBody(ParticleBody.blob("smallBlob", new Vec(1040, 120), 16, 30, 1, 3, this.dim, Color.orange));
+    }
+
+    private void addBody(ParticleBody body) {
+        body.getSolver().setCollisionWorld(world);
+        body.setVisible(true);
+        model.addObject(body);
+    }
+
+    public static void main(String[] args) {
+        SoftBodies sb = new SoftBodies();
+        sb.setupScene();
+        sb.startLoop();
+    }
+}
@@ -0,0 +1,83 @@
+package sph_tank;
+
+import fluids.FluidRaster;
+import fluids.SphFluid;
+import objects.Ball;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.util.ArrayList;
+
+import data.Vec;
+
+/**
+ * Holds the SPH liquid, the balls floating in it and the raster the liquid is
+ * drawn into.
+ */
+public class SceneModel {
+    private final SphFluid fluid;
+    private final FluidRaster raster;
+    private final ArrayList<Ball> balls;
+
+    private Dimension sceneDim;
+    private double gravityX = 0.0;
+    private double gravityY = 0.2;
+
+    public SceneModel(Dimension scene, SphFluid fluid) {
+        this.sceneDim = scene;
+        this.fluid = fluid;
+        this.raster = new FluidRaster(scene.width, scene.height, 2);
+        this.balls = new ArrayList<>();
+    }
+
+    public void addBall(Ball ball) {
+        balls.add(ball);
+        fluid.addBall(ball);
+    }
+
+    /**
+     * Steps the liquid first so its push on the balls is part of their next
+     * update, then redraws the raster.
+     */
+    public void update() {
+        for (Ball b : balls) {
+            b.applyForce(new Vec(gravityX * b.getMass(), gravityY * b.getMass()));
+        }
+        fluid.step();
+        for (Ball b : balls) {
+            b.update();
+        }
+        raster.draw(fluid);
+    }
+
+    public void render(Graphics2D g2d) {
+        raster.render(g2d);
+        for (Ball b : balls) {
+            if (b.isVisible()) {
+                b.render(g2d);
+            }
+        }
+    }
+
+    public void setGravity(double x, double y) {
+        this.gravityX = x;
+        this.gravityY = y;
+        fluid.setGravity(x, y);
+    }
+
+    public double getGravityX() {
+        return this.gravityX;
+    }
+
+    public ArrayList<Ball> getBalls() {
+        return balls;
+    }
+
+    public SphFluid getFluid() {
+        return fluid;
+    }
+
+    public Dimension getDimensions() {
+        return this.sceneDim;
+    }
+}
@@ -0,0 +1,158 @@
+package sph_tank;
+
+import javax.swing.Timer;
+
+import data.Vec;
+import fluids.SphFluid;
+import objects.Ball;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.Random;
+
+import javax.swing.JFrame;
+
+/**
+ * A tank of SPH liquid released as a dam break, with balls floating and
+ * sinking in it.
+ *
+ * <p>The particle count is the first program argument (default
+ * {@value #DEFAULT_PARTICLES}); the rest spacing is chosen so the liquid fills
+ * about 40 % of the tank. Click to drop a ball, {@code Left}/{@code Right}
+ * tilt gravity to slosh the tank, {@code Space} pauses.</p>
+ */
+public class SphTank {
+    private static final int DEFAULT_PARTICLES = 12000;
+    private static final double GRAVITY = 0.2;
+    private static final double TILT = 0.1;
+
+    private Timer sceneTimer;
+    private final SceneModel model;
+    private final ScenePanel panel;
+    private final JFrame frame;
+    private final SphFluid fluid;
+    private final Random random = new Random(725630);
+    private final int particles;
+
+    public Dimension dim = new Dimension(1280, 720);
+
+    private boolean isRunning = false;
+    private long tick = 0;
+    private long stepNanos = 0;
+
+    public SphTank(int particles) {
+        this.particles = particles;
+        double spacing = Math.sqrt(0.4 * dim.getWidth() * dim.getHeight() / particles);
+        fluid = new SphFluid(dim, spacing);
+        fluid.setSubsteps(fluid.getStableSubsteps());
+        model = new SceneModel(dim, fluid);
+        panel = new ScenePanel(model);
+        frame = new JFrame("SphTank");
+
+        panel.setPreferredSize(dim);
+        panel.setBackground(Color.black);
+
+        panel.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                dropBall(new Vec(e.getX(), e.getY()));
+            }
+        });
+
+        panel.setFocusable(true);
+        panel.addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                if (e.getKeyCode() == KeyEvent.VK_SPACE) {
+                    if (isRunning) {
+                        stopLoop();
+                    } else {
+                        startLoop();
+                    }
+                }
+
+                if (e.getKeyCode() == KeyEvent.VK_LEFT) {
+                    model.setGravity(Math.max(-2 * TILT, model.getGravityX() - TILT), GRAVITY);
+                }
+
+                if (e.getKeyCode() == KeyEvent.VK_RIGHT) {
+                    model.setGravity(Math.min(2 * TILT, model.getGravityX() + TILT), GRAVITY);
+                }
+            }
+        });
+
+        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        frame.add(panel);
+        frame.pack();
+        frame.setLocationRelativeTo(null);
+    }
+
+    public void startLoop() {
+        if (sceneTimer == null) {
+            sceneTimer = new Timer(16, e -> {
+                update();
+                panel.repaint();
+            });
+        }
+        sceneTimer.start();
+        isRunning = true;
+        frame.setVisible(true);
+    }
+
+    public void stopLoop() {
+        if (sceneTimer != null) {
+            sceneTimer.stop();
+        }
+        isRunning = false;
+    }
+
+    private void update() {
+        long start = System.nanoTime();
+        model.update();
+        stepNanos += System.nanoTime() - start;
+        tick++;
+
+        if (tick % 60 == 0) {
+            frame.setTitle(String.format("SphTank - %d particles, %d substeps, %.1f ms per tick",
+                    fluid.size(), fluid.getSubsteps(), stepNanos / 60 / 1e6));
+            stepNanos = 0;
+        }
+    }
+
+    /** Drops a ball whose density is drawn around the liquid's. */
+    private void dropBall(Vec pos) {
+        int radius = 10 + random.nextInt(16);
+        double waterMass = fluid.getParticleMass() / (fluid.getSpacing() * fluid.getSpacing())
+                * Math.PI * radius * radius;
+        double mass = waterMass * (0.4 + 1.2 * random.nextDouble());
+        Color color = mass < waterMass ? Color.orange : Color.red;
+        Ball b = new Ball("ball" + model.getBalls().size(), radius, mass, pos, dim, color);
+        b.setBouncy(true);
+        b.setBounceFactor(0.3);
+        b.setVisible(true);
+        model.addBall(b);
+    }
+
+    private void setupScene() {
+        // Dam break: a column of liquid against the left wall
+        double width = 0.45 * dim.getWidth();
+        double height = Math.min(dim.getHeight() - 40,
+                fluid.getSpacing() * fluid.getSpacing() * particles / width);
+        fluid.fill(0, dim.getHeight() - height, width, height);
+
+        dropBall(new Vec(800, 200));
+        dropBall(new Vec(1000, 150));
+        dropBall(new Vec(1150, 250));
+    }
+
+    public static void main(String[] args) {
+        int particles = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PARTICLES;
+        SphTank tank = new SphTank(particles);
+        tank.setupScene();
+        tank.startLoop();
+    }
+}
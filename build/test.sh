@@ -0,0 +1,9 @@
+#!/usr/bin/env bash
+# Compiles the library and the checks under test/ and runs every *Test class.
+set -euo pipefail
+mkdir -p bin-test
+find "$PWD/app" "$PWD/core" "$PWD/test" -type f -name "*.java" -print > test-sources.txt
+javac -d bin-test '@test-sources.txt'
+for test in $(cd test && find . -name "*Test.java" | sed 's|^\./||; s|\.java$||; s|/|.|g'); do
+  java -cp bin-test "$test"
+done
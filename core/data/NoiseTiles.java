@@ -0,0 +1,249 @@
+package data;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Animated fractal noise served from a cache of precomputed tiles.
+ *
+ * <p>
+ * Each octave of the fBm sum is sampled on a regular grid, a few samples per
+ * feature, and the grid is cut into square tiles. A tile holds one octave at
+ * one time slice and is filled in a single {@link SimplexNoise#fill} call the
+ * first time it is needed. Lookups then interpolate bilinearly inside the tile
+ * and linearly between the two time slices around the requested time, so an
+ * animated field costs a few array reads per octave instead of several
+ * simplex evaluations.
+ * </p>
+ *
+ * <p>
+ * Tiles are keyed by (tile x, tile y, octave, time slice) and kept in an LRU
+ * map: as time moves on, tiles of old slices stop being touched and are
+ * evicted first once {@code maxTiles} is exceeded. It should hold the tiles
+ * of two slices of every octave over the sampled area, or lookups start
+ * refilling tiles they just evicted. The cache is not thread safe; share one
+ * instance per scene thread.
+ * </p>
+ */
+public final class NoiseTiles {
+    /** Samples per noise unit (one feature) along each axis. */
+    private static final int RESOLUTION = 8;
+    /** Distance in z between octaves, so their slices are uncorrelated. */
+    private static final double OCTAVE_OFFSET = 17.31;
+
+    private final SimplexNoise noise;
+    private final double scale;
+    private final int tileSize;
+    private final int maxTiles;
+    private final LinkedHashMap<Long, double[]> tiles;
+    // Last tile per octave and slice parity; neighboring lookups usually
+    // land in the same tile and skip the map
+    private final long[] recentKeys = new long[32];
+    private final double[][] recentTiles = new double[32][];
+
+    private int octaves = 3;
+    private double lacunarity = 2.0;
+    private double gain = 0.5;
+    private double sliceLength = 30.0;
+    private double sliceStep = 0.15;
+
+    private long hits;
+    private long misses;
+
+    /**
+     * Creates a cache.
+     *
+     * @param noise    noise to sample
+     * @param scale    feature size of the first octave, in the caller's units
+     *                 (usually pixels)
+     * @param tileSize samples along each side of a tile
+     * @param maxTiles tiles kept before the least recently used are evicted
+     */
+    public NoiseTiles(SimplexNoise noise, double scale, int tileSize, int maxTiles) {
+        if (scale <= 0) {
+            throw new IllegalArgumentException("scale must be positive: " + scale);
+        }
+        if (tileSize < 1) {
+            throw new IllegalArgumentException("tileSize must be at least 1: " + tileSize);
+        }
+        if (maxTiles < 2) {
+            throw new IllegalArgumentException("maxTiles must be at least 2: " + maxTiles);
+        }
+        this.noise = noise;
+        this.scale = scale;
+        this.tileSize = tileSize;
+        this.maxTiles = maxTiles;
+        this.tiles = new LinkedHashMap<>(2 * maxTiles, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, double[]> eldest) {
+                return size() > NoiseTiles.this.maxTiles;
+            }
+        };
+    }
+
+    /**
+     * Sets the fBm layering and drops all cached tiles.
+     *
+     * @param octaves    number of layers, 1 to 16
+     * @param lacunarity frequency factor between layers
+     * @param gain       amplitude factor between layers
+     */
+    public void setOctaves(int octaves, double lacunarity, double gain) {
+        if (octaves < 1 || octaves > 16) {
+            throw new IllegalArgumentException("octaves must be between 1 and 16: " + octaves);
+        }
+        this.octaves = octaves;
+        this.lacunarity = lacunarity;
+        this.gain = gain;
+        clear();
+    }
+
+    /**
+     * Sets how fast the noise evolves and drops all cached tiles.
+     *
+     * @param sliceLength time between cached slices, in the caller's units
+     *                    (usually ticks)
+     * @param sliceStep   distance in noise z between consecutive slices;
+     *                    smaller values change more slowly
+     */
+    public void setAnimation(double sliceLength, double sliceStep) {
+        if (sliceLength <= 0) {
+            throw new IllegalArgumentException("sliceLength must be positive: " + sliceLength);
+        }
+        this.sliceLength = sliceLength;
+        this.sliceStep = sliceStep;
+        clear();
+    }
+
+    /**
+     * Samples the fBm sum at a point and time.
+     *
+     * @param x x-coordinate
+     * @param y y-coordinate
+     * @param t time
+     * @return value in {@code [-1, 1]}
+     */
+    public double sample(double x, double y, double t) {
+        double s = t / this.sliceLength;
+        int slice = (int) Math.floor(s);
+        double ts = s - slice;
+
+        double sum = 0.0;
+        double norm = 0.0;
+        double amplitude = 1.0;
+        double frequency = RESOLUTION / this.scale;
+        for (int o = 0; o < this.octaves; o++) {
+            double u = x * frequency;
+            double v = y * frequency;
+            double a = sampleSlice(u, v, o, slice);
+            double b = ts > 0 ? sampleSlice(u, v, o, slice + 1) : a;
+            sum += amplitude * (a + (b - a) * ts);
+            norm += amplitude;
+            amplitude *= this.gain;
+            frequency *= this.lacunarity;
+        }
+        return sum / norm;
+    }
+
+    /**
+     * Samples many points at the same time.
+     *
+     * @param xs  x-coordinates
+     * @param ys  y-coordinates
+     * @param n   number of points
+     * @param t   time
+     * @param out values in {@code [-1, 1]} (output)
+     */
+    public void sample(double[] xs, double[] ys, int n, double t, double[] out) {
+        for (int i = 0; i < n; i++) {
+            out[i] = sample(xs[i], ys[i], t);
+        }
+    }
+
+    /** Bilinear lookup at sample coordinates {@code (u, v)} of one tile. */
+    private double sampleSlice(double u, double v, int octave, int slice) {
+        int cu = (int) Math.floor(u);
+        int cv = (int) Math.floor(v);
+        int tx = Math.floorDiv(cu, this.tileSize);
+        int ty = Math.floorDiv(cv, this.tileSize);
+        double[] tile = tile(tx, ty, octave, slice);
+
+        int c = cu - tx * this.tileSize;
+        int r = cv - ty * this.tileSize;
+        double fu = u - cu;
+        double fv = v - cv;
+        int side = this.tileSize + 1;
+        int k = r * side + c;
+        double top = tile[k] + (tile[k + 1] - tile[k]) * fu;
+        double bottom = tile[k + side] + (tile[k + side + 1] - tile[k + side]) * fu;
+        return top + (bottom - top) * fv;
+    }
+
+    /**
+     * Returns a cached tile or fills a new one. Tiles include the first row
+     * and column of their right and lower neighbors, so every lookup stays
+     * inside one tile.
+     */
+    private double[] tile(int tx, int ty, int octave, int slice) {
+        // 20 bits per tile coordinate and slice, 4 for the octave
+        long key = (tx & 0xFFFFFL) << 44 | (ty & 0xFFFFFL) << 24 | (long) octave << 20 | slice & 0xFFFFFL;
+        int recent = 2 * octave + (slice & 1);
+        double[] tile = this.recentTiles[recent];
+        if (tile != null && this.recentKeys[recent] == key) {
+            this.hits++;
+            return tile;
+        }
+        tile = this.tiles.get(key);
+        if (tile != null) {
+            this.hits++;
+            this.recentKeys[recent] = key;
+            this.recentTiles[recent] = tile;
+            return tile;
+        }
+        this.misses++;
+        int side = this.tileSize + 1;
+        tile = new double[side * side];
+        double step = 1.0 / RESOLUTION;
+        this.noise.fill(tile, side, side, (double) tx * this.tileSize * step, (double) ty * this.tileSize * step,
+                slice * this.sliceStep + octave * OCTAVE_OFFSET, step);
+        this.tiles.put(key, tile);
+        this.recentKeys[recent] = key;
+        this.recentTiles[recent] = tile;
+        return tile;
+    }
+
+    /** Drops all cached tiles. */
+    public void clear() {
+        this.tiles.clear();
+        Arrays.fill(this.recentTiles, null);
+    }
+
+    /** @return number of cached tiles */
+    public int size() {
+        return this.tiles.size();
+    }
+
+    /** @return largest number of cached tiles */
+    public int getMaxTiles() {
+        return this.maxTiles;
+    }
+
+    /** @return tile lookups served from the cache */
+    public long getHits() {
+        return this.hits;
+    }
+
+    /** @return tile lookups that had to fill a new tile */
+    public long getMisses() {
+        return this.misses;
+    }
+
+    /** Resets the hit and miss counters. */
+    public void resetCounters() {
+        this.hits = 0;
+        this.misses = 0;
+    }
+}
@@ -0,0 +1,262 @@
+package data;
+
+import java.util.Random;
+
+/**
+ * Seeded 2D and 3D simplex noise with fractal (fBm) sums.
+ *
+ * <p>
+ * Simplex noise is coherent: nearby points get similar values, and the result
+ * varies smoothly at a feature size of about one unit, in the range
+ * {@code [-1, 1]}. Unlike lattice (Perlin) noise it sums the contributions of
+ * only three (2D) or four (3D) simplex corners, which keeps it cheap and free
+ * of axis-aligned artifacts. The third coordinate is usually time, giving
+ * smoothly animated 2D fields.
+ * </p>
+ *
+ * <p>
+ * {@link #fbm(double, double, double, int, double, double)} adds octaves of
+ * rising frequency and falling amplitude for turbulent detail, and the
+ * {@code fill} methods evaluate whole grids in one call with the loop
+ * invariants hoisted out. Instances are immutable after construction and may
+ * be shared between threads.
+ * </p>
+ */
+public final class SimplexNoise {
+    private static final double F2 = 0.5 * (Math.sqrt(3.0) - 1.0);
+    private static final double G2 = (3.0 - Math.sqrt(3.0)) / 6.0;
+    private static final double F3 = 1.0 / 3.0;
+    private static final double G3 = 1.0 / 6.0;
+
+    private static final int[] GRAD3 = {
+            1, 1, 0, -1, 1, 0, 1, -1, 0, -1, -1, 0,
+            1, 0, 1, -1, 0, 1, 1, 0, -1, -1, 0, -1,
+            0, 1, 1, 0, -1, 1, 0, 1, -1, 0, -1, -1 };
+
+    /** Doubled permutation so {@code perm[i + perm[j]]} needs no wrapping. */
+    private final int[] perm = new int[512];
+    private final int[] permMod12 = new int[512];
+
+    /**
+     * Creates a noise function.
+     *
+     * @param seed seed of the gradient permutation; equal seeds give equal
+     *             noise
+     */
+    public SimplexNoise(long seed) {
+        int[] p = new int[256];
+        for (int i = 0; i < 256; i++) {
+            p[i] = i;
+        }
+        Random r = new Random(seed);
+        for (int i = 255; i > 0; i--) {
+            int j = r.nextInt(i + 1);
+            int t = p[i];
+            p[i] = p[j];
+            p[j] = t;
+        }
+        for (int i = 0; i < 512; i++) {
+            this.perm[i] = p[i & 255];
+            this.permMod12[i] = this.perm[i] % 12;
+        }
+    }
+
+    /**
+     * 2D simplex noise.
+     *
+     * @param x x-coordinate in noise units
+     * @param y y-coordinate in noise units
+     * @return value in {@code [-1, 1]}
+     */
+    public double noise(double x, double y) {
+        double s = (x + y) * F2;
+        int i = fastFloor(x + s);
+        int j = fastFloor(y + s);
+        double t = (i + j) * G2;
+        double x0 = x - (i - t);
+        double y0 = y - (j - t);
+
+        int i1 = x0 > y0 ? 1 : 0;
+        int j1 = 1 - i1;
+        double x1 = x0 - i1 + G2;
+        double y1 = y0 - j1 + G2;
+        double x2 = x0 - 1.0 + 2.0 * G2;
+        double y2 = y0 - 1.0 + 2.0 * G2;
+
+        int ii = i & 255;
+        int jj = j & 255;
+        double n = corner2(this.permMod12[ii + this.perm[jj]], x0, y0)
+                + corner2(this.permMod12[ii + i1 + this.perm[jj + j1]], x1, y1)
+                + corner2(this.permMod12[ii + 1 + this.perm[jj + 1]], x2, y2);
+        return 70.0 * n;
+    }
+
+    /**
+     * 3D simplex noise.
+     *
+     * @param x x-coordinate in noise units
+     * @param y y-coordinate in noise units
+     * @param z z-coordinate (often time) in noise units
+     * @return value in {@code [-1, 1]}
+     */
+    public double noise(double x, double y, double z) {
+        double s = (x + y + z) * F3;
+        int i = fastFloor(x + s);
+        int j = fastFloor(y + s);
+        int k = fastFloor(z + s);
+        double t = (i + j + k) * G3;
+        double x0 = x - (i - t);
+        double y0 = y - (j - t);
+        double z0 = z - (k - t);
+
+        // Which of the six tetrahedra of the skewed cube the point lies in
+        int i1, j1, k1, i2, j2, k2;
+        if (x0 >= y0) {
+            if (y0 >= z0) {
+                i1 = 1; j1 = 0; k1 = 0; i2 = 1; j2 = 1; k2 = 0;
+            } else if (x0 >= z0) {
+                i1 = 1; j1 = 0; k1 = 0; i2 = 1; j2 = 0; k2 = 1;
+            } else {
+                i1 = 0; j1 = 0; k1 = 1; i2 = 1; j2 = 0; k2 = 1;
+            }
+        } else {
+            if (y0 < z0) {
+                i1 = 0; j1 = 0; k1 = 1; i2 = 0; j2 = 1; k2 = 1;
+            } else if (x0 < z0) {
+                i1 = 0; j1 = 1; k1 = 0; i2 = 0; j2 = 1; k2 = 1;
+            } else {
+                i1 = 0; j1 = 1; k1 = 0; i2 = 1; j2 = 1; k2 = 0;
+            }
+        }
+
+        double x1 = x0 - i1 + G3;
+        double y1 = y0 - j1 + G3;
+        double z1 = z0 - k1 + G3;
+        double x2 = x0 - i2 + 2.0 * G3;
+        double y2 = y0 - j2 + 2.0 * G3;
+        double z2 = z0 - k2 + 2.0 * G3;
+        double x3 = x0 - 1.0 + 3.0 * G3;
+        double y3 = y0 - 1.0 + 3.0 * G3;
+        double z3 = z0 - 1.0 + 3.0 * G3;
+
+        int ii = i & 255;
+        int jj = j & 255;
+        int kk = k & 255;
+        double n = corner3(this.permMod12[ii + this.perm[jj + this.perm[kk]]], x0, y0, z0)
+                + corner3(this.permMod12[ii + i1 + this.perm[jj + j1 + this.perm[kk + k1]]], x1, y1, z1)
+                + corner3(this.permMod12[ii + i2 + this.perm[jj + j2 + this.perm[kk + k2]]], x2, y2, z2)
+                + corner3(this.permMod12[ii + 1 + this.perm[jj + 1 + this.perm[kk + 1]]], x3, y3, z3);
+        return 32.0 * n;
+    }
+
+    /**
+     * 2D fractal Brownian motion: {@code octaves} layers of noise, each at
+     * {@code lacunarity} times the frequency and {@code gain} times the
+     * amplitude of the previous one, normalized back to {@code [-1, 1]}.
+     *
+     * @param x          x-coordinate in noise units
+     * @param y          y-coordinate in noise units
+     * @param octaves    number of layers (at least 1)
+     * @param lacunarity frequency factor between layers, usually 2
+     * @param gain       amplitude factor between layers, usually 0.5
+     * @return value in {@code [-1, 1]}
+     */
+    public double fbm(double x, double y, int octaves, double lacunarity, double gain) {
+        double sum = 0.0;
+        double norm = 0.0;
+        double amplitude = 1.0;
+        double frequency = 1.0;
+        for (int o = 0; o < octaves; o++) {
+            sum += amplitude * noise(x * frequency, y * frequency);
+            norm += amplitude;
+            amplitude *= gain;
+            frequency *= lacunarity;
+        }
+        return sum / norm;
+    }
+
+    /**
+     * 3D fractal Brownian motion, see
+     * {@link #fbm(double, double, int, double, double)}.
+     *
+     * @return value in {@code [-1, 1]}
+     */
+    public double fbm(double x, double y, double z, int octaves, double lacunarity, double gain) {
+        double sum = 0.0;
+        double norm = 0.0;
+        double amplitude = 1.0;
+        double frequency = 1.0;
+        for (int o = 0; o < octaves; o++) {
+            sum += amplitude * noise(x * frequency, y * frequency, z * frequency);
+            norm += amplitude;
+            amplitude *= gain;
+            frequency *= lacunarity;
+        }
+        return sum / norm;
+    }
+
+    /**
+     * Evaluates 2D noise on a regular grid.
+     *
+     * @param out    row-major results, at least {@code width * height} long
+     * @param width  samples per row
+     * @param height rows
+     * @param x0     x-coordinate of the first sample
+     * @param y0     y-coordinate of the first sample
+     * @param step   distance between samples in noise units
+     */
+    public void fill(double[] out, int width, int height, double x0, double y0, double step) {
+        for (int r = 0; r < height; r++) {
+            double y = y0 + r * step;
+            int row = r * width;
+            for (int c = 0; c < width; c++) {
+                out[row + c] = noise(x0 + c * step, y);
+            }
+        }
+    }
+
+    /**
+     * Evaluates a 2D slice of 3D noise on a regular grid, e.g. one frame of an
+     * animated field.
+     *
+     * @param out    row-major results, at least {@code width * height} long
+     * @param width  samples per row
+     * @param height rows
+     * @param x0     x-coordinate of the first sample
+     * @param y0     y-coordinate of the first sample
+     * @param z      z-coordinate of the slice
+     * @param step   distance between samples in noise units
+     */
+    public void fill(double[] out, int width, int height, double x0, double y0, double z, double step) {
+        for (int r = 0; r < height; r++) {
+            double y = y0 + r * step;
+            int row = r * width;
+            for (int c = 0; c < width; c++) {
+                out[row + c] = noise(x0 + c * step, y, z);
+            }
+        }
+    }
+
+    private static double corner2(int gradient, double x, double y) {
+        double t = 0.5 - x * x - y * y;
+        if (t < 0) {
+            return 0.0;
+        }
+        t *= t;
+        return t * t * (GRAD3[3 * gradient] * x + GRAD3[3 * gradient + 1] * y);
+    }
+
+    private static double corner3(int gradient, double x, double y, double z) {
+        double t = 0.6 - x * x - y * y - z * z;
+        if (t < 0) {
+            return 0.0;
+        }
+        t *= t;
+        return t * t * (GRAD3[3 * gradient] * x + GRAD3[3 * gradient + 1] * y + GRAD3[3 * gradient + 2] * z);
+    }
+
+    private static int fastFloor(double x) {
+        int i = (int) x;
+        return x < i ? i - 1 : i;
+    }
+}
@@ -0,0 +1,109 @@
+package fluids;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.stream.IntStream;
+
+/**
+ * Draws the dye of a {@link GridFluid} into an ARGB raster, one pixel per
+ * cell.
+ *
+ * <p>
+ * Dye amounts are mapped through a 256-entry palette that blends from
+ * transparent over a dark and a mid color to a bright one; the mapping runs
+ * row-parallel straight into the {@code int[]} pixels of a
+ * {@link BufferedImage}, which {@link #render(Graphics2D, int, int)} scales
+ * to the scene with bilinear filtering. Like the solver itself, the cost
+ * depends only on the grid size.
+ * </p>
+ */
+public final class DyeRaster {
+    private final int columns;
+    private final int rows;
+    private final BufferedImage image;
+    private final int[] pixels;
+    private final int[] palette = new int[256];
+    private double saturation = 1.0;
+
+    /**
+     * Creates a raster for a fluid grid.
+     *
+     * @param fluid fluid whose grid size the raster takes
+     */
+    public DyeRaster(GridFluid fluid) {
+        this.columns = fluid.getColumns();
+        this.rows = fluid.getRows();
+        this.image = new BufferedImage(this.columns, this.rows, BufferedImage.TYPE_INT_ARGB);
+        this.pixels = ((DataBufferInt) this.image.getRaster().getDataBuffer()).getData();
+        setColors(new Color(60, 20, 120), new Color(230, 80, 40), new Color(255, 240, 180));
+    }
+
+    /**
+     * Rebuilds the palette.
+     *
+     * @param low    color of thin dye
+     * @param mid    color of medium dye
+     * @param bright color of dye at or above the saturation amount
+     */
+    public void setColors(Color low, Color mid, Color bright) {
+        for (int k = 0; k < 256; k++) {
+            double t = k / 255.0;
+            Color a = t < 0.5 ? low : mid;
+            Color b = t < 0.5 ? mid : bright;
+            double s = t < 0.5 ? 2 * t : 2 * t - 1;
+            int r = (int) (a.getRed() + (b.getRed() - a.getRed()) * s);
+            int g = (int) (a.getGreen() + (b.getGreen() - a.getGreen()) * s);
+            int bl = (int) (a.getBlue() + (b.getBlue() - a.getBlue()) * s);
+            int alpha = (int) (255 * Math.min(1.0, 3 * t));
+            this.palette[k] = alpha << 24 | r << 16 | g << 8 | bl;
+        }
+    }
+
+    /** @param saturation dye amount drawn with the brightest color */
+    public void setSaturation(double saturation) {
+        this.saturation = saturation;
+    }
+
+    /**
+     * Redraws the raster from the fluid's dye.
+     *
+     * @param fluid fluid of the size this raster was created for
+     */
+    public void draw(GridFluid fluid) {
+        double[] dye = fluid.getDye();
+        int stride = this.columns + 2;
+        double scale = 255.0 / this.saturation;
+        IntStream.range(0, this.rows).parallel().forEach(j -> {
+            int src = (j + 1) * stride + 1;
+            int dst = j * this.columns;
+            for (int i = 0; i < this.columns; i++) {
+                int level = (int) (dye[src + i] * scale);
+                this.pixels[dst + i] = this.palette[Math.max(0, Math.min(255, level))];
+            }
+        });
+    }
+
+    /**
+     * Draws the raster stretched over the scene.
+     *
+     * @param g2d    graphics of the scene
+     * @param width  scene width in pixels
+     * @param height scene height in pixels
+     */
+    public void render(Graphics2D g2d, int width, int height) {
+        Object interpolation = g2d.getRenderingHint(RenderingHints.KEY_INTERPOLATION);
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g2d.drawImage(this.image, 0, 0, width, height, null);
+        if (interpolation != null) {
+            g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation);
+        }
+    }
+
+    /** @return raster the dye is drawn into */
+    public BufferedImage getImage() {
+        return this.image;
+    }
+}
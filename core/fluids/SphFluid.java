@@ -0,0 +1,513 @@
+package fluids;
+
+import java.awt.Dimension;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import data.Vec;
+import objects.Ball;
+
+/**
+ * Weakly compressible smoothed-particle hydrodynamics (SPH) liquid.
+ *
+ * <p>
+ * Particles live in flat primitive arrays. Every substep they are bucketed
+ * into a cell list with cells one smoothing length wide (counting sort) and
+ * the arrays are physically reordered by cell, so neighbours are close in
+ * memory and a particle only visits the 3 × 3 cells around it. The density,
+ * force and integration passes each write only the particle they are
+ * evaluating, which makes them embarrassingly parallel; large systems split
+ * them into chunks on the common fork/join pool.
+ * </p>
+ *
+ * <p>
+ * The kernels are the usual 2D ones: poly6 for the density, the gradient of
+ * the spiky kernel for the pressure and the Laplacian of the viscosity
+ * kernel. The pressure follows the linear equation of state
+ * {@code p = c²·max(ρ − ρ₀, 0)}, where the rest density ρ₀ is measured on a
+ * square lattice at the rest spacing, so particles at rest spacing feel no
+ * pressure whatever the kernel constants are. The speed of sound {@code c}
+ * trades incompressibility against the substep length.
+ * </p>
+ *
+ * <p>
+ * {@link Ball}s are coupled both ways: particles that enter a ball are pushed
+ * out to its surface and lose their approaching velocity, and the momentum
+ * they lose is applied to the ball as a force. Balls are advanced by the
+ * scene as usual; the fluid treats them as moving at constant velocity during
+ * a tick. As elsewhere in the scenes, lengths are in pixels and time is in
+ * ticks.
+ * </p>
+ */
+public final class SphFluid {
+    /** Particles per parallel chunk; smaller systems run on the calling thread. */
+    private static final int CHUNK = 2048;
+
+    private final Dimension bounds;
+    private final double h;
+    private final double h2;
+    private final double spacing;
+    private final double poly6;
+    private final double spikyGrad;
+    private final double viscLap;
+    private final double restDensity;
+
+    private double soundSpeed = 30.0;
+    private double viscosity = 10;
+    private double gravityX = 0.0;
+    private double gravityY = 0.2;
+    private double particleMass = 6.0;
+    private double wallDamping = 0.3;
+    private int substeps = 5;
+    private boolean parallel = true;
+
+    private int count;
+    private double[] x = new double[0];
+    private double[] y = new double[0];
+    private double[] vx = new double[0];
+    private double[] vy = new double[0];
+    private double[] density = new double[0];
+    private double[] pressure = new double[0];
+    private double[] ax = new double[0];
+    private double[] ay = new double[0];
+
+    // Cell list: particles of cell c are [cellStart[c], cellStart[c + 1])
+    // after the arrays were sorted by cell
+    private final int columns;
+    private final int rows;
+    private final int[] cellStart;
+    private int[] cellOf = new int[0];
+    private int[] order = new int[0];
+    private double[] scratch = new double[0];
+
+    private final ArrayList<Ball> balls = new ArrayList<>();
+
+    /**
+     * Creates an empty fluid.
+     *
+     * @param bounds  walls of the container
+     * @param spacing rest distance between particles in pixels; the smoothing
+     *                length is twice the spacing
+     */
+    public SphFluid(Dimension bounds, double spacing) {
+        if (spacing <= 0) {
+            throw new IllegalArgumentException("spacing must be positive: " + spacing);
+        }
+        this.bounds = bounds;
+        this.spacing = spacing;
+        this.h = 2.0 * spacing;
+        this.h2 = this.h * this.h;
+        this.poly6 = 4.0 / (Math.PI * Math.pow(this.h, 8));
+        this.spikyGrad = -30.0 / (Math.PI * Math.pow(this.h, 5));
+        this.viscLap = 40.0 / (Math.PI * Math.pow(this.h, 5));
+        this.columns = Math.max(1, (int) Math.ceil(bounds.getWidth() / this.h));
+        this.rows = Math.max(1, (int) Math.ceil(bounds.getHeight() / this.h));
+        this.cellStart = new int[this.columns * this.rows + 1];
+
+        double rest = 0.0;
+        int reach = (int) Math.ceil(this.h / spacing);
+        for (int j = -reach; j <= reach; j++) {
+            for (int i = -reach; i <= reach; i++) {
+                double r2 = (i * i + j * j) * spacing * spacing;
+                if (r2 < this.h2) {
+                    double d = this.h2 - r2;
+                    rest += this.poly6 * d * d * d;
+                }
+            }
+        }
+        this.restDensity = rest;
+    }
+
+    /**
+     * Adds a particle.
+     *
+     * @param px x-coordinate
+     * @param py y-coordinate
+     * @param pvx velocity x-component
+     * @param pvy velocity y-component
+     * @return particle index (until the next step reorders the particles)
+     */
+    public int add(double px, double py, double pvx, double pvy) {
+        if (this.count == this.x.length) {
+            int capacity = Math.max(256, 2 * this.count);
+            this.x = Arrays.copyOf(this.x, capacity);
+            this.y = Arrays.copyOf(this.y, capacity);
+            this.vx = Arrays.copyOf(this.vx, capacity);
+            this.vy = Arrays.copyOf(this.vy, capacity);
+            this.density = Arrays.copyOf(this.density, capacity);
+            this.pressure = Arrays.copyOf(this.pressure, capacity);
+            this.ax = Arrays.copyOf(this.ax, capacity);
+            this.ay = Arrays.copyOf(this.ay, capacity);
+            this.cellOf = Arrays.copyOf(this.cellOf, capacity);
+            this.order = Arrays.copyOf(this.order, capacity);
+            this.scratch = Arrays.copyOf(this.scratch, capacity);
+        }
+        int i = this.count++;
+        this.x[i] = px;
+        this.y[i] = py;
+        this.vx[i] = pvx;
+        this.vy[i] = pvy;
+        this.density[i] = this.restDensity;
+        return i;
+    }
+
+    /**
+     * Fills a rectangle with particles at rest spacing.
+     *
+     * @param left   left edge
+     * @param top    top edge
+     * @param width  width in pixels
+     * @param height height in pixels
+     * @return number of particles added
+     */
+    public int fill(double left, double top, double width, double height) {
+        int added = 0;
+        for (double py = top + 0.5 * this.spacing; py < top + height; py += this.spacing) {
+            for (double px = left + 0.5 * this.spacing; px < left + width; px += this.spacing) {
+                add(px, py, 0.0, 0.0);
+                added++;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Couples a ball with the fluid. The scene keeps updating the ball.
+     *
+     * @param ball ball to push and be pushed by
+     */
+    public void addBall(Ball ball) {
+        this.balls.add(ball);
+    }
+
+    public boolean removeBall(Ball ball) {
+        return this.balls.remove(ball);
+    }
+
+    /**
+     * Advances the fluid by one tick and applies the coupling forces to the
+     * balls; call it before the balls update.
+     */
+    public void step() {
+        double dt = 1.0 / this.substeps;
+        double[] impulseX = new double[this.balls.size()];
+        double[] impulseY = new double[this.balls.size()];
+        for (int s = 0; s < this.substeps; s++) {
+            sortIntoCells();
+            forEachChunk(this::computeDensity);
+            forEachChunk(this::computeAcceleration);
+            forEachChunk((from, to) -> integrate(from, to, dt));
+            for (int b = 0; b < this.balls.size(); b++) {
+                collideBall(b, impulseX, impulseY);
+            }
+        }
+        for (int b = 0; b < this.balls.size(); b++) {
+            if (impulseX[b] != 0.0 || impulseY[b] != 0.0) {
+                this.balls.get(b).applyForce(new Vec(impulseX[b], impulseY[b]));
+            }
+        }
+    }
+
+    /** Counting sort of the particles by cell, then reorder the arrays. */
+    private void sortIntoCells() {
+        int n = this.count;
+        int cells = this.columns * this.rows;
+        Arrays.fill(this.cellStart, 0);
+        for (int i = 0; i < n; i++) {
+            int cx = Math.min(this.columns - 1, Math.max(0, (int) (this.x[i] / this.h)));
+            int cy = Math.min(this.rows - 1, Math.max(0, (int) (this.y[i] / this.h)));
+            int c = cy * this.columns + cx;
+            this.cellOf[i] = c;
+            this.cellStart[c + 1]++;
+        }
+        for (int c = 0; c < cells; c++) {
+            this.cellStart[c + 1] += this.cellStart[c];
+        }
+        int[] fill = Arrays.copyOf(this.cellStart, cells);
+        for (int i = 0; i < n; i++) {
+            this.order[fill[this.cellOf[i]]++] = i;
+        }
+        this.x = permute(this.x);
+        this.y = permute(this.y);
+        this.vx = permute(this.vx);
+        this.vy = permute(this.vy);
+    }
+
+    private double[] permute(double[] values) {
+        double[] sorted = this.scratch;
+        for (int k = 0; k < this.count; k++) {
+            sorted[k] = values[this.order[k]];
+        }
+        this.scratch = values;
+        return sorted;
+    }
+
+    private void computeDensity(int from, int to) {
+        for (int i = from; i < to; i++) {
+            double xi = this.x[i];
+            double yi = this.y[i];
+            double rho = 0.0;
+            int cx = Math.min(this.columns - 1, Math.max(0, (int) (xi / this.h)));
+            int cy = Math.min(this.rows - 1, Math.max(0, (int) (yi / this.h)));
+            for (int gy = Math.max(0, cy - 1); gy <= Math.min(this.rows - 1, cy + 1); gy++) {
+                int row = gy * this.columns;
+                int start = this.cellStart[row + Math.max(0, cx - 1)];
+                int end = this.cellStart[row + Math.min(this.columns - 1, cx + 1) + 1];
+                for (int j = start; j < end; j++) {
+                    double dx = this.x[j] - xi;
+                    double dy = this.y[j] - yi;
+                    double r2 = dx * dx + dy * dy;
+                    if (r2 < this.h2) {
+                        double d = this.h2 - r2;
+                        rho += d * d * d;
+                    }
+                }
+            }
+            rho *= this.poly6;
+            this.density[i] = rho;
+            this.pressure[i] = this.soundSpeed * this.soundSpeed * Math.max(0.0, rho - this.restDensity);
+        }
+    }
+
+    private void computeAcceleration(int from, int to) {
+        for (int i = from; i < to; i++) {
+            double xi = this.x[i];
+            double yi = this.y[i];
+            double pi = this.pressure[i] / (this.density[i] * this.density[i]);
+            double fx = 0.0;
+            double fy = 0.0;
+            double vxSum = 0.0;
+            double vySum = 0.0;
+            int cx = Math.min(this.columns - 1, Math.max(0, (int) (xi / this.h)));
+            int cy = Math.min(this.rows - 1, Math.max(0, (int) (yi / this.h)));
+            for (int gy = Math.max(0, cy - 1); gy <= Math.min(this.rows - 1, cy + 1); gy++) {
+                int row = gy * this.columns;
+                int start = this.cellStart[row + Math.max(0, cx - 1)];
+                int end = this.cellStart[row + Math.min(this.columns - 1, cx + 1) + 1];
+                for (int j = start; j < end; j++) {
+                    if (j == i) {
+                        continue;
+                    }
+                    double dx = xi - this.x[j];
+                    double dy = yi - this.y[j];
+                    double r2 = dx * dx + dy * dy;
+                    if (r2 >= this.h2) {
+                        continue;
+                    }
+                    double r = Math.sqrt(r2);
+                    double q = this.h - r;
+                    if (r > 1e-9) {
+                        // Symmetric pressure term: −Σ (pᵢ/ρᵢ² + pⱼ/ρⱼ²) ∇W
+                        double pj = this.pressure[j] / (this.density[j] * this.density[j]);
+                        double grad = this.spikyGrad * q * q / r;
+                        fx -= (pi + pj) * grad * dx;
+                        fy -= (pi + pj) * grad * dy;
+                    }
+                    double lap = this.viscLap * q / this.density[j];
+                    vxSum += (this.vx[j] - this.vx[i]) * lap;
+                    vySum += (this.vy[j] - this.vy[i]) * lap;
+                }
+            }
+            this.ax[i] = fx + this.viscosity * vxSum + this.gravityX;
+            this.ay[i] = fy + this.viscosity * vySum + this.gravityY;
+        }
+    }
+
+    /** Symplectic Euler step and the container walls. */
+    private void integrate(int from, int to, double dt) {
+        double radius = 0.5 * this.spacing;
+        double width = this.bounds.getWidth();
+        double height = this.bounds.getHeight();
+        for (int i = from; i < to; i++) {
+            this.vx[i] += this.ax[i] * dt;
+            this.vy[i] += this.ay[i] * dt;
+            this.x[i] += this.vx[i] * dt;
+            this.y[i] += this.vy[i] * dt;
+            if (this.x[i] < radius) {
+                this.x[i] = radius;
+                this.vx[i] = -this.vx[i] * this.wallDamping;
+            } else if (this.x[i] > width - radius) {
+                this.x[i] = width - radius;
+                this.vx[i] = -this.vx[i] * this.wallDamping;
+            }
+            if (this.y[i] < radius) {
+                this.y[i] = radius;
+                this.vy[i] = -this.vy[i] * this.wallDamping;
+            } else if (this.y[i] > height - radius) {
+                this.y[i] = height - radius;
+                this.vy[i] = -this.vy[i] * this.wallDamping;
+            }
+        }
+    }
+
+    /**
+     * Pushes particles out of a ball and accumulates the momentum they lose
+     * as an impulse on the ball.
+     */
+    private void collideBall(int b, double[] impulseX, double[] impulseY) {
+        Ball ball = this.balls.get(b);
+        double bx = ball.getLocation().x();
+        double by = ball.getLocation().y();
+        double bvx = ball.getVelocity().x();
+        double bvy = ball.getVelocity().y();
+        double reach = ball.getRadius() + 0.5 * this.spacing;
+
+        int x0 = Math.max(0, (int) ((bx - reach) / this.h));
+        int x1 = Math.min(this.columns - 1, (int) ((bx + reach) / this.h));
+        int y0 = Math.max(0, (int) ((by - reach) / this.h));
+        int y1 = Math.min(this.rows - 1, (int) ((by + reach) / this.h));
+        for (int gy = y0; gy <= y1; gy++) {
+            int start = this.cellStart[gy * this.columns + x0];
+            int end = this.cellStart[gy * this.columns + x1 + 1];
+            for (int i = start; i < end; i++) {
+                double dx = this.x[i] - bx;
+                double dy = this.y[i] - by;
+                double d2 = dx * dx + dy * dy;
+                if (d2 >= reach * reach || d2 < 1e-12) {
+                    continue;
+                }
+                double d = Math.sqrt(d2);
+                double nx = dx / d;
+                double ny = dy / d;
+                this.x[i] = bx + nx * reach;
+                this.y[i] = by + ny * reach;
+                double approach = (this.vx[i] - bvx) * nx + (this.vy[i] - bvy) * ny;
+                if (approach < 0) {
+                    this.vx[i] -= approach * nx;
+                    this.vy[i] -= approach * ny;
+                    impulseX[b] += this.particleMass * approach * nx;
+                    impulseY[b] += this.particleMass * approach * ny;
+                }
+            }
+        }
+    }
+
+    private interface Range {
+        void run(int from, int to);
+    }
+
+    private void forEachChunk(Range range) {
+        int n = this.count;
+        if (!this.parallel || n <= CHUNK) {
+            range.run(0, n);
+            return;
+        }
+        int chunks = (n + CHUNK - 1) / CHUNK;
+        IntStream.range(0, chunks).parallel()
+                .forEach(k -> range.run(k * CHUNK, Math.min(n, (k + 1) * CHUNK)));
+    }
+
+    /** @return number of particles */
+    public int size() {
+        return this.count;
+    }
+
+    /** @return particle x-coordinates; entries past {@link #size()} are unused */
+    public double[] getX() {
+        return this.x;
+    }
+
+    /** @return particle y-coordinates; entries past {@link #size()} are unused */
+    public double[] getY() {
+        return this.y;
+    }
+
+    /** @return particle velocity x-components */
+    public double[] getVelocityX() {
+        return this.vx;
+    }
+
+    /** @return particle velocity y-components */
+    public double[] getVelocityY() {
+        return this.vy;
+    }
+
+    /** @return particle densities of the last step */
+    public double[] getDensity() {
+        return this.density;
+    }
+
+    /** @return density of particles at rest spacing */
+    public double getRestDensity() {
+        return this.restDensity;
+    }
+
+    public double getSpacing() {
+        return this.spacing;
+    }
+
+    public double getSmoothingLength() {
+        return this.h;
+    }
+
+    /**
+     * @param soundSpeed speed of sound in pixels per tick; higher values
+     *                   compress less but need more substeps
+     */
+    public void setSoundSpeed(double soundSpeed) {
+        this.soundSpeed = soundSpeed;
+    }
+
+    public double getSoundSpeed() {
+        return this.soundSpeed;
+    }
+
+    /** @param viscosity kinematic viscosity in pixels² per tick */
+    public void setViscosity(double viscosity) {
+        this.viscosity = viscosity;
+    }
+
+    public double getViscosity() {
+        return this.viscosity;
+    }
+
+    /**
+     * @param x acceleration x-component per tick squared
+     * @param y acceleration y-component per tick squared
+     */
+    public void setGravity(double x, double y) {
+        this.gravityX = x;
+        this.gravityY = y;
+    }
+
+    /** @param particleMass mass of a particle as seen by coupled balls */
+    public void setParticleMass(double particleMass) {
+        this.particleMass = particleMass;
+    }
+
+    public double getParticleMass() {
+        return this.particleMass;
+    }
+
+    /** @param wallDamping share of the normal velocity kept when hitting a wall */
+    public void setWallDamping(double wallDamping) {
+        this.wallDamping = wallDamping;
+    }
+
+    /** @param substeps substeps per {@link #step()} (at least 1) */
+    public void setSubsteps(int substeps) {
+        this.substeps = Math.max(1, substeps);
+    }
+
+    public int getSubsteps() {
+        return this.substeps;
+    }
+
+    /**
+     * @return smallest substep count that keeps sound from crossing more than
+     *         0.4 smoothing lengths per substep (CFL condition)
+     */
+    public int getStableSubsteps() {
+        return Math.max(1, (int) Math.ceil(this.soundSpeed / (0.4 * this.h)));
+    }
+
+    /** @param parallel whether large systems use the common fork/join pool */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    public boolean isParallel() {
+        return this.parallel;
+    }
+}
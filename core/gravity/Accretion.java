@@ -0,0 +1,446 @@
+package gravity;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Merges bodies whose disks overlap, for scenes where bodies stick together
+ * instead of passing through each other.
+ *
+ * <p>
+ * A merge conserves mass and linear momentum: the merged body sits at the
+ * center of mass of its parts, moves with their mass-weighted velocity and
+ * covers their summed area, so its radius is {@code sqrt(r1² + r2²)}. Chains
+ * of overlapping bodies merge into one in the same call. The merged body keeps
+ * the index of its heaviest part (the lowest index among equally heavy ones),
+ * so a scene's large bodies keep their identity while they sweep up small
+ * ones. Spin is not tracked; the orbital angular momentum of the parts about
+ * each other is lost, as is the kinetic energy of their relative motion.
+ * </p>
+ *
+ * <p>
+ * Overlaps are found with a counting-sorted cell list over the bodies with a
+ * radius, parallel over chunks of cells. The cell edge is twice a typical
+ * radius, twice the mean capped at the largest, so a pair of typical bodies
+ * is always found within the neighbouring cells; the few bodies larger than
+ * that scan the cells their reach covers and are tested against each other
+ * directly. Removal is deferred: the search and the merges run on stable
+ * indices, absorbed bodies are only flagged, and one
+ * {@link Bodies#compact(boolean[], int[])} pass at the end removes them all.
+ * The compaction and this class's own scratch arrays give memory back as the
+ * count falls, so a disk of 100000 planetesimals that accretes down to a few
+ * hundred bodies ends up with arrays sized for a few hundred.
+ * </p>
+ *
+ * <p>
+ * Overlaps are tested at the positions the bodies hold when
+ * {@link #merge(Bodies)} is called, once per step: bodies that pass through
+ * each other within one step are not merged. A merge changes masses and
+ * removes bodies, so the accelerations held by the bodies no longer match;
+ * {@link Leapfrog} notices the changed count and solves again.
+ * </p>
+ */
+public final class Accretion {
+    /** Bodies per task of the parallel overlap search. */
+    private static final int CHUNK = 1024;
+    /** Cells per body the grid may have before its cells grow. */
+    private static final int CELLS_PER_BODY = 2;
+
+    private boolean parallel = true;
+    private long absorbedTotal;
+
+    // Cell list over the bodies with a radius: bodies of cell c are
+    // sorted[cellStart[c]] to sorted[cellStart[c + 1] - 1]
+    private int[] cellStart = new int[0];
+    private int[] cursor = new int[0];
+    private int[] sorted = new int[0];
+    private int[] cellOf = new int[0];
+    private int[] large = new int[0];
+    private int largeCount;
+    private double minX;
+    private double minY;
+    private double cell;
+    private double small;
+    private int cols;
+    private int rows;
+
+    // Overlapping pairs found by each chunk of the search
+    private Pairs[] pairs = new Pairs[0];
+
+    // Groups of overlapping bodies: union-find forest rooted at the heaviest
+    // body, the group sums per root and where every body went
+    private int[] parent = new int[0];
+    private boolean[] grouped = new boolean[0];
+    private boolean[] absorbed = new boolean[0];
+    private double[] sums = new double[0];
+    private int[] index = new int[0];
+    private int indexed;
+
+    /** Growable list of index pairs. */
+    private static final class Pairs {
+        int[] data = new int[64];
+        int size;
+
+        void add(int a, int b) {
+            if (this.size + 2 > this.data.length) {
+                this.data = Arrays.copyOf(this.data, 2 * this.data.length);
+            }
+            this.data[this.size++] = a;
+            this.data[this.size++] = b;
+        }
+    }
+
+    /**
+     * Merges all groups of overlapping bodies and removes the absorbed ones.
+     * Afterwards {@link #indexOf(int)} and {@link #isAbsorbed(int)} tell
+     * where each body of the call went.
+     *
+     * @param bodies bodies with radii; bodies of radius 0 never merge
+     * @return number of bodies absorbed and removed
+     */
+    public int merge(Bodies bodies) {
+        int n = bodies.count;
+        reserve(n);
+        this.indexed = n;
+        for (int i = 0; i < n; i++) {
+            this.parent[i] = i;
+            this.grouped[i] = false;
+            this.absorbed[i] = false;
+            this.index[i] = i;
+        }
+        int participants = buildCells(bodies);
+        if (participants < 2) {
+            return 0;
+        }
+
+        int chunks = (participants + CHUNK - 1) / CHUNK;
+        if (this.pairs.length < chunks) {
+            this.pairs = Arrays.copyOf(this.pairs, chunks);
+        }
+        for (int k = 0; k < chunks; k++) {
+            if (this.pairs[k] == null) {
+                this.pairs[k] = new Pairs();
+            }
+            this.pairs[k].size = 0;
+        }
+        forEach(chunks, k -> findPairs(bodies, k * CHUNK, Math.min(participants, (k + 1) * CHUNK),
+                this.pairs[k]));
+
+        boolean overlaps = false;
+        for (int k = 0; k < chunks; k++) {
+            Pairs p = this.pairs[k];
+            for (int q = 0; q < p.size; q += 2) {
+                union(bodies, p.data[q], p.data[q + 1]);
+                overlaps = true;
+            }
+        }
+        if (!overlaps) {
+            return 0;
+        }
+
+        int gone = combine(bodies);
+        bodies.compact(this.absorbed, this.index);
+        for (int i = 0; i < n; i++) {
+            if (this.absorbed[i]) {
+                this.index[i] = this.index[find(i)];
+            }
+        }
+        this.absorbedTotal += gone;
+        return gone;
+    }
+
+    /**
+     * Sorts the bodies with a radius into cells and collects the large ones.
+     *
+     * @return number of bodies with a radius
+     */
+    private int buildCells(Bodies b) {
+        int n = b.count;
+        int m = 0;
+        double radiusSum = 0.0;
+        double maxRadius = 0.0;
+        double x0 = Double.POSITIVE_INFINITY;
+        double y0 = Double.POSITIVE_INFINITY;
+        double x1 = Double.NEGATIVE_INFINITY;
+        double y1 = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            double r = b.radius[i];
+            if (r > 0) {
+                m++;
+                radiusSum += r;
+                maxRadius = Math.max(maxRadius, r);
+                x0 = Math.min(x0, b.x[i]);
+                y0 = Math.min(y0, b.y[i]);
+                x1 = Math.max(x1, b.x[i]);
+                y1 = Math.max(y1, b.y[i]);
+            }
+        }
+        if (m < 2) {
+            return m;
+        }
+
+        this.small = Math.min(maxRadius, 2.0 * radiusSum / m);
+        this.cell = 2.0 * this.small;
+        // Far strays would spread few bodies over many cells; coarser cells
+        // stay correct, only fuller
+        double area = ((x1 - x0) / this.cell + 1) * ((y1 - y0) / this.cell + 1);
+        double limit = CELLS_PER_BODY * (double) m + 64;
+        if (area > limit) {
+            this.cell *= Math.sqrt(area / limit);
+        }
+        this.minX = x0;
+        this.minY = y0;
+        this.cols = (int) ((x1 - x0) / this.cell) + 1;
+        this.rows = (int) ((y1 - y0) / this.cell) + 1;
+        int cells = this.cols * this.rows;
+        if (this.cellStart.length < cells + 1 || this.cellStart.length > 4 * cells + 64) {
+            this.cellStart = new int[cells + 1];
+            this.cursor = new int[cells];
+        } else {
+            Arrays.fill(this.cellStart, 0, cells + 1, 0);
+        }
+
+        this.largeCount = 0;
+        for (int i = 0; i < n; i++) {
+            if (b.radius[i] > 0) {
+                int cx = Math.min(this.cols - 1, (int) ((b.x[i] - x0) / this.cell));
+                int cy = Math.min(this.rows - 1, (int) ((b.y[i] - y0) / this.cell));
+                int c = cy * this.cols + cx;
+                this.cellOf[i] = c;
+                this.cellStart[c + 1]++;
+                if (b.radius[i] > this.small) {
+                    this.large[this.largeCount++] = i;
+                }
+            }
+        }
+        for (int c = 0; c < cells; c++) {
+            this.cellStart[c + 1] += this.cellStart[c];
+        }
+        System.arraycopy(this.cellStart, 0, this.cursor, 0, cells);
+        for (int i = 0; i < n; i++) {
+            if (b.radius[i] > 0) {
+                this.sorted[this.cursor[this.cellOf[i]]++] = i;
+            }
+        }
+        return m;
+    }
+
+    /**
+     * Collects the overlapping pairs of the bodies at sorted positions
+     * {@code [from, to)}. A typical body pairs with the typical bodies of
+     * higher index in its own and the neighbouring cells; a large body pairs
+     * with every typical body its reach covers and with the large bodies of
+     * higher index.
+     */
+    private void findPairs(Bodies b, int from, int to, Pairs out) {
+        double[] x = b.x;
+        double[] y = b.y;
+        double[] radius = b.radius;
+        double limit = this.small;
+        for (int p = from; p < to; p++) {
+            int i = this.sorted[p];
+            double xi = x[i];
+            double yi = y[i];
+            double ri = radius[i];
+            int cx0;
+            int cx1;
+            int cy0;
+            int cy1;
+            if (ri <= limit) {
+                int c = this.cellOf[i];
+                int cx = c % this.cols;
+                int cy = c / this.cols;
+                cx0 = Math.max(0, cx - 1);
+                cx1 = Math.min(this.cols - 1, cx + 1);
+                cy0 = Math.max(0, cy - 1);
+                cy1 = Math.min(this.rows - 1, cy + 1);
+            } else {
+                double reach = ri + limit;
+                cx0 = clamp((int) Math.floor((xi - reach - this.minX) / this.cell), this.cols);
+                cx1 = clamp((int) Math.floor((xi + reach - this.minX) / this.cell), this.cols);
+                cy0 = clamp((int) Math.floor((yi - reach - this.minY) / this.cell), this.rows);
+                cy1 = clamp((int) Math.floor((yi + reach - this.minY) / this.cell), this.rows);
+                for (int k = 0; k < this.largeCount; k++) {
+                    int j = this.large[k];
+                    if (j > i && overlaps(xi, yi, ri, x[j], y[j], radius[j])) {
+                        out.add(i, j);
+                    }
+                }
+            }
+            for (int cy = cy0; cy <= cy1; cy++) {
+                int row = cy * this.cols;
+                int end = this.cellStart[row + cx1 + 1];
+                for (int q = this.cellStart[row + cx0]; q < end; q++) {
+                    int j = this.sorted[q];
+                    double rj = radius[j];
+                    if (rj > limit || (ri <= limit && j <= i)) {
+                        continue;
+                    }
+                    if (overlaps(xi, yi, ri, x[j], y[j], rj)) {
+                        out.add(i, j);
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean overlaps(double xi, double yi, double ri, double xj, double yj, double rj) {
+        double dx = xj - xi;
+        double dy = yj - yi;
+        double reach = ri + rj;
+        return dx * dx + dy * dy < reach * reach;
+    }
+
+    private static int clamp(int cell, int cells) {
+        return Math.max(0, Math.min(cells - 1, cell));
+    }
+
+    /** Joins the groups of two bodies under the heavier root. */
+    private void union(Bodies b, int i, int j) {
+        int ri = find(i);
+        int rj = find(j);
+        if (ri == rj) {
+            return;
+        }
+        double mi = b.mass[ri];
+        double mj = b.mass[rj];
+        if (mi > mj || (mi == mj && ri < rj)) {
+            this.parent[rj] = ri;
+        } else {
+            this.parent[ri] = rj;
+        }
+    }
+
+    /** Root of a body's group, halving the path on the way. */
+    private int find(int i) {
+        while (this.parent[i] != i) {
+            this.parent[i] = this.parent[this.parent[i]];
+            i = this.parent[i];
+        }
+        return i;
+    }
+
+    /**
+     * Sums every group into its root and flags the other members as
+     * absorbed.
+     *
+     * @return number of absorbed bodies
+     */
+    private int combine(Bodies b) {
+        int n = b.count;
+        double[] s = this.sums;
+        int gone = 0;
+        for (int i = 0; i < n; i++) {
+            int r = find(i);
+            if (r == i) {
+                continue;
+            }
+            if (!this.grouped[r]) {
+                this.grouped[r] = true;
+                accumulate(b, r, r, false);
+            }
+            accumulate(b, i, r, true);
+            this.absorbed[i] = true;
+            gone++;
+        }
+        for (int r = 0; r < n; r++) {
+            if (!this.grouped[r]) {
+                continue;
+            }
+            int k = 6 * r;
+            double mass = s[k];
+            if (mass > 0) {
+                b.x[r] = s[k + 1] / mass;
+                b.y[r] = s[k + 2] / mass;
+                b.vx[r] = s[k + 3] / mass;
+                b.vy[r] = s[k + 4] / mass;
+            }
+            // Massless groups keep the root's position and velocity
+            b.mass[r] = mass;
+            b.radius[r] = Math.sqrt(s[k + 5]);
+        }
+        return gone;
+    }
+
+    /** Adds body {@code i} to the sums of root {@code r}, or starts them. */
+    private void accumulate(Bodies b, int i, int r, boolean add) {
+        double[] s = this.sums;
+        int k = 6 * r;
+        double m = b.mass[i];
+        if (!add) {
+            Arrays.fill(s, k, k + 6, 0.0);
+        }
+        s[k] += m;
+        s[k + 1] += m * b.x[i];
+        s[k + 2] += m * b.y[i];
+        s[k + 3] += m * b.vx[i];
+        s[k + 4] += m * b.vy[i];
+        s[k + 5] += b.radius[i] * b.radius[i];
+    }
+
+    /**
+     * Grows the scratch arrays to {@code n} bodies, or shrinks them once a
+     * shrinking set uses a quarter of them.
+     */
+    private void reserve(int n) {
+        int length = this.parent.length;
+        if (n <= length && (length <= 64 || n >= length / 4)) {
+            return;
+        }
+        int capacity = n > length ? Math.max(n, 2 * length) : Math.max(16, 2 * n);
+        this.parent = new int[capacity];
+        this.grouped = new boolean[capacity];
+        this.absorbed = new boolean[capacity];
+        this.index = new int[capacity];
+        this.cellOf = new int[capacity];
+        this.sorted = new int[capacity];
+        this.large = new int[capacity];
+        this.sums = new double[6 * capacity];
+    }
+
+    private void forEach(int count, IntConsumer body) {
+        IntStream range = IntStream.range(0, count);
+        if (this.parallel && count > 1) {
+            range = range.parallel();
+        }
+        range.forEach(body);
+    }
+
+    /**
+     * Where a body of the last {@link #merge(Bodies)} call went.
+     *
+     * @param before index of the body before the call
+     * @return index after the call of the body itself or, if it was absorbed,
+     *         of the body it merged into
+     */
+    public int indexOf(int before) {
+        checkIndex(before);
+        return this.index[before];
+    }
+
+    /**
+     * @param before index of a body before the last {@link #merge(Bodies)} call
+     * @return whether the body merged into another one and was removed
+     */
+    public boolean isAbsorbed(int before) {
+        checkIndex(before);
+        return this.absorbed[before];
+    }
+
+    private void checkIndex(int before) {
+        if (before < 0 || before >= this.indexed) {
+            throw new IndexOutOfBoundsException("no body " + before + " in the last merge of " + this.indexed);
+        }
+    }
+
+    /** @return bodies absorbed by all merges so far */
+    public long getAbsorbed() {
+        return this.absorbedTotal;
+    }
+
+    /** @param parallel whether to search for overlaps on the common pool */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+}
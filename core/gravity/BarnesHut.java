@@ -0,0 +1,270 @@
+package gravity;
+
+import java.util.concurrent.atomic.DoubleAdder;
+
+/**
+ * Barnes-Hut gravity: distant groups of bodies pull like a single body at their
+ * center of mass.
+ *
+ * <p>
+ * Each solve sorts the bodies along a Morton (Z-order) curve of their root
+ * square, so every quadtree cell is a contiguous run of the sorted arrays. The
+ * tree is cut at a fixed depth into subtrees that are built in parallel, each
+ * into its own pooled node arrays, and then concatenated in depth-first order
+ * (see {@link MortonTree}). Every node stores the index of the node following its subtree, so the force
+ * pass walks the tree without a stack: a cell that is small compared to its
+ * distance ({@code width < theta * distance}) is used as a whole and skipped,
+ * otherwise the walk descends into its first child. Leaves hold up to
+ * {@value #LEAF_SIZE} bodies that are summed directly. Forces are evaluated
+ * in parallel over chunks of bodies in sorted order, so neighboring bodies
+ * share their walk through the cache.
+ * </p>
+ *
+ * <p>
+ * The opening angle {@code theta} trades accuracy for speed: 0 degenerates to
+ * direct summation, 0.5 keeps typical errors around half a percent and 1 is
+ * fast but coarse. The force law is a {@link Softening}: either the distance
+ * is clamped to {@code [minDistance, maxDistance]}, where {@code (5, 25)}
+ * reproduces {@code Ball.attract} and the default {@code (1, infinity)} is
+ * plain Newtonian gravity that only guards against close encounters, or the
+ * bodies are Plummer-softened.
+ * </p>
+ */
+public final class BarnesHut implements GravitySolver {
+    /** Bodies per leaf before it is split. */
+    private static final int LEAF_SIZE = 8;
+
+    private double theta;
+    private Softening softening = Softening.clamp(1.0, Double.POSITIVE_INFINITY);
+
+    private final MortonTree tree = new MortonTree(LEAF_SIZE);
+
+    /**
+     * Creates a solver.
+     *
+     * @param theta opening angle, at least 0
+     */
+    public BarnesHut(double theta) {
+        setTheta(theta);
+    }
+
+    @Override
+    public void accelerations(Bodies bodies) {
+        int n = bodies.count;
+        if (n == 0) {
+            return;
+        }
+        this.tree.build(bodies);
+
+        double[] ax = bodies.ax;
+        double[] ay = bodies.ay;
+        int[] order = this.tree.order;
+        this.tree.forEachChunk(n, (from, to) -> {
+            double[] a = new double[2];
+            for (int j = from; j < to; j++) {
+                a[0] = 0.0;
+                a[1] = 0.0;
+                accelerationAt(j, a);
+                ax[order[j]] = a[0];
+                ay[order[j]] = a[1];
+            }
+        });
+    }
+
+    /**
+     * Builds the tree over all bodies and walks it for the listed ones only,
+     * so a solve for a few bodies costs the sort and build plus their walks.
+     */
+    @Override
+    public void accelerations(Bodies bodies, int[] active, int count) {
+        if (count == 0) {
+            return;
+        }
+        this.tree.build(bodies);
+
+        int[] rank = this.tree.rank;
+        this.tree.forEachChunk(count, (from, to) -> {
+            double[] a = new double[2];
+            for (int k = from; k < to; k++) {
+                int i = active[k];
+                a[0] = 0.0;
+                a[1] = 0.0;
+                accelerationAt(rank[i], a);
+                bodies.ax[i] = a[0];
+                bodies.ay[i] = a[1];
+            }
+        });
+    }
+
+    /** Walks the tree for sorted body {@code j} and adds its acceleration to {@code a}. */
+    private void accelerationAt(int j, double[] a) {
+        int[] links = this.tree.nodes.links;
+        double[] data = this.tree.nodes.data;
+        int count = this.tree.nodes.count;
+        double[] sx = this.tree.sx;
+        double[] sy = this.tree.sy;
+        double[] sm = this.tree.sm;
+        double px = sx[j];
+        double py = sy[j];
+        double thetaSq = this.theta * this.theta;
+        Softening law = this.softening;
+        double ax = 0.0;
+        double ay = 0.0;
+        int i = 0;
+        while (i < count) {
+            int next = links[3 * i];
+            double m = data[4 * i + 2];
+            if (m == 0.0) {
+                i = next;
+                continue;
+            }
+            if (next == i + 1) {
+                for (int k = links[3 * i + 1], end = links[3 * i + 2]; k < end; k++) {
+                    if (k != j && sm[k] != 0.0) {
+                        double dx = sx[k] - px;
+                        double dy = sy[k] - py;
+                        double f = sm[k] * law.pull(dx * dx + dy * dy);
+                        ax += f * dx;
+                        ay += f * dy;
+                    }
+                }
+                i = next;
+                continue;
+            }
+            double dx = data[4 * i] - px;
+            double dy = data[4 * i + 1] - py;
+            double d2 = dx * dx + dy * dy;
+            if (data[4 * i + 3] < thetaSq * d2) {
+                double f = m * law.pull(d2);
+                ax += f * dx;
+                ay += f * dy;
+                i = next;
+            } else {
+                i++;
+            }
+        }
+        a[0] += ax;
+        a[1] += ay;
+    }
+
+    /**
+     * Total potential energy {@code sum over pairs of m_i m_j potential(d²)}
+     * of the force law, with the same tree and opening angle as the forces:
+     * every body with mass walks the tree and distant cells count with their
+     * total mass at their center of mass. Test particles are skipped. The
+     * walks run in parallel; the bodies' accelerations are left alone.
+     *
+     * @param bodies bodies to sum
+     * @return potential energy
+     * @see Softening#potential(double)
+     */
+    public double potentialEnergy(Bodies bodies) {
+        int n = bodies.count;
+        if (n == 0) {
+            return 0.0;
+        }
+        this.tree.build(bodies);
+
+        double[] sm = this.tree.sm;
+        DoubleAdder total = new DoubleAdder();
+        this.tree.forEachChunk(n, (from, to) -> {
+            double sum = 0.0;
+            for (int j = from; j < to; j++) {
+                if (sm[j] != 0.0) {
+                    sum += sm[j] * potentialAt(j);
+                }
+            }
+            total.add(sum);
+        });
+        // Every pair was counted from both ends
+        return 0.5 * total.sum();
+    }
+
+    /** Walks the tree for sorted body {@code j} and returns the potential of the others there. */
+    private double potentialAt(int j) {
+        int[] links = this.tree.nodes.links;
+        double[] data = this.tree.nodes.data;
+        int count = this.tree.nodes.count;
+        double[] sx = this.tree.sx;
+        double[] sy = this.tree.sy;
+        double[] sm = this.tree.sm;
+        double px = sx[j];
+        double py = sy[j];
+        double thetaSq = this.theta * this.theta;
+        Softening law = this.softening;
+        double phi = 0.0;
+        int i = 0;
+        while (i < count) {
+            int next = links[3 * i];
+            double m = data[4 * i + 2];
+            if (m == 0.0) {
+                i = next;
+                continue;
+            }
+            if (next == i + 1) {
+                for (int k = links[3 * i + 1], end = links[3 * i + 2]; k < end; k++) {
+                    if (k != j && sm[k] != 0.0) {
+                        double dx = sx[k] - px;
+                        double dy = sy[k] - py;
+                        phi += sm[k] * law.potential(dx * dx + dy * dy);
+                    }
+                }
+                i = next;
+                continue;
+            }
+            double dx = data[4 * i] - px;
+            double dy = data[4 * i + 1] - py;
+            double d2 = dx * dx + dy * dy;
+            if (data[4 * i + 3] < thetaSq * d2) {
+                phi += m * law.potential(d2);
+                i = next;
+            } else {
+                i++;
+            }
+        }
+        return phi;
+    }
+
+    /** @return number of tree nodes built by the last solve */
+    public int getNodeCount() {
+        return this.tree.nodes.count;
+    }
+
+    /** @return opening angle */
+    public double getTheta() {
+        return this.theta;
+    }
+
+    /** @param theta opening angle, at least 0 */
+    public void setTheta(double theta) {
+        if (!(theta >= 0)) {
+            throw new IllegalArgumentException("theta must not be negative: " + theta);
+        }
+        this.theta = theta;
+    }
+
+    /**
+     * Clamps the distance used in the force law.
+     *
+     * @param minDistance closest distance the force grows to, at least 0
+     * @param maxDistance distance beyond which the force stops falling off
+     */
+    public void setDistanceClamp(double minDistance, double maxDistance) {
+        this.softening = Softening.clamp(minDistance, maxDistance);
+    }
+
+    /** @return force law at short and long range */
+    public Softening getSoftening() {
+        return this.softening;
+    }
+
+    /** @param softening force law at short and long range */
+    public void setSoftening(Softening softening) {
+        this.softening = softening;
+    }
+
+    /** @param parallel whether to build and walk the tree on the common pool */
+    public void setParallel(boolean parallel) {
+        this.tree.setParallel(parallel);
+    }
+}
@@ -0,0 +1,287 @@
+package gravity;
+
+import java.util.Arrays;
+
+/**
+ * Leapfrog integrator with individual, hierarchical power-of-two time steps
+ * ("block time steps").
+ *
+ * <p>
+ * A step of length {@code dt} is divided into {@code 2^maxLevel} ticks. Every
+ * body sits on a level {@code k} and takes kick-drift-kick steps of
+ * {@code dt / 2^k}, so the bodies of one level are kicked together, and all
+ * levels line up at the end of the step. At each tick where some level
+ * finishes its step, all bodies drift to that time but only the bodies of the
+ * finishing levels (the active block) get their accelerations recomputed,
+ * through {@link GravitySolver#accelerations(Bodies, int[], int)}, and their
+ * velocities kicked. The cost of a step therefore follows the number of bodies
+ * that actually move fast instead of the fastest one: a handful of bodies in
+ * a tight orbit take 64 small steps while the rest takes one.
+ * </p>
+ *
+ * <p>
+ * After each of its kicks a body picks the level whose step is the largest
+ * power-of-two fraction of {@code dt} below both criteria:
+ * </p>
+ * <ul>
+ * <li>acceleration: {@code eta * sqrt(length / |a|)}, the time to move a
+ * fixed distance from rest under the current acceleration;</li>
+ * <li>jerk: {@code eta * |a| / |da/dt|}, the time in which the acceleration
+ * changes by about itself. The jerk is estimated from the change of the
+ * acceleration over the body's last step, so no extra solve is needed.</li>
+ * </ul>
+ * <p>
+ * A body may move to a finer level at any kick but to a coarser one only
+ * when its time lines up with the coarser grid, which keeps every level in
+ * step with the hierarchy.
+ * </p>
+ */
+public final class BlockTimesteps {
+    /** Deepest supported level. */
+    public static final int MAX_LEVELS = 20;
+
+    private GravitySolver solver;
+    private int maxLevel;
+    private double eta = 0.2;
+    private double length = 1.0;
+    private boolean shared;
+
+    private int[] level = new int[0];
+    private double[] lastAx = new double[0];
+    private double[] lastAy = new double[0];
+    private int[] active = new int[0];
+    private final int[] population = new int[MAX_LEVELS + 1];
+
+    private Bodies solved;
+    private int solvedCount = -1;
+    private long evaluations;
+
+    /**
+     * Creates an integrator.
+     *
+     * @param solver   solver computing the accelerations
+     * @param maxLevel deepest level, so the smallest step is
+     *                 {@code dt / 2^maxLevel}; 0 to {@value #MAX_LEVELS}
+     */
+    public BlockTimesteps(GravitySolver solver, int maxLevel) {
+        this.solver = solver;
+        setMaxLevel(maxLevel);
+    }
+
+    /**
+     * Advances the bodies by {@code dt}. Afterwards all bodies are
+     * synchronized and their accelerations match their new positions.
+     *
+     * @param bodies bodies to advance
+     * @param dt     time step of the coarsest level
+     */
+    public void step(Bodies bodies, double dt) {
+        int n = bodies.count;
+        if (bodies != this.solved || n != this.solvedCount) {
+            start(bodies, dt);
+        }
+        if (this.shared) {
+            stepShared(bodies, dt);
+            return;
+        }
+        int ticks = 1 << this.maxLevel;
+        double tick = dt / ticks;
+        int time = 0;
+        while (time < ticks) {
+            // Opening half kicks of the bodies that begin a step now
+            int finest = 0;
+            for (int i = 0; i < n; i++) {
+                int span = 1 << (this.maxLevel - this.level[i]);
+                if (time % span == 0) {
+                    double half = 0.5 * span * tick;
+                    bodies.vx[i] += bodies.ax[i] * half;
+                    bodies.vy[i] += bodies.ay[i] * half;
+                }
+                finest = Math.max(finest, this.level[i]);
+            }
+
+            int next = time + (1 << (this.maxLevel - finest));
+            Leapfrog.drift(bodies, (next - time) * tick);
+            time = next;
+
+            int count = 0;
+            for (int i = 0; i < n; i++) {
+                if (time % (1 << (this.maxLevel - this.level[i])) == 0) {
+                    this.active[count++] = i;
+                }
+            }
+            this.solver.accelerations(bodies, this.active, count);
+            this.evaluations += count;
+
+            // Closing half kicks, then each active body picks its next level
+            for (int k = 0; k < count; k++) {
+                int i = this.active[k];
+                int span = 1 << (this.maxLevel - this.level[i]);
+                double half = 0.5 * span * tick;
+                bodies.vx[i] += bodies.ax[i] * half;
+                bodies.vy[i] += bodies.ay[i] * half;
+                double jerk = Math.hypot(bodies.ax[i] - this.lastAx[i], bodies.ay[i] - this.lastAy[i]) / (span * tick);
+                this.lastAx[i] = bodies.ax[i];
+                this.lastAy[i] = bodies.ay[i];
+                int wanted = levelFor(bodies.ax[i], bodies.ay[i], jerk, dt);
+                int current = this.level[i];
+                if (wanted > current) {
+                    current = wanted;
+                } else {
+                    while (wanted < current && time % (1 << (this.maxLevel - current + 1)) == 0) {
+                        current--;
+                    }
+                }
+                this.level[i] = current;
+            }
+        }
+        this.solved = bodies;
+        this.solvedCount = n;
+    }
+
+    /**
+     * Plain leapfrog with one shared step for all bodies, the step the finest
+     * body asks for at the start; levels are still tracked per body.
+     */
+    private void stepShared(Bodies bodies, double dt) {
+        int n = bodies.count;
+        int finest = 0;
+        for (int i = 0; i < n; i++) {
+            finest = Math.max(finest, this.level[i]);
+        }
+        int substeps = 1 << finest;
+        double h = dt / substeps;
+        for (int s = 0; s < substeps; s++) {
+            Leapfrog.kick(bodies, 0.5 * h);
+            Leapfrog.drift(bodies, h);
+            this.solver.accelerations(bodies);
+            this.evaluations += n;
+            Leapfrog.kick(bodies, 0.5 * h);
+            for (int i = 0; i < n; i++) {
+                double jerk = Math.hypot(bodies.ax[i] - this.lastAx[i], bodies.ay[i] - this.lastAy[i]) / h;
+                this.lastAx[i] = bodies.ax[i];
+                this.lastAy[i] = bodies.ay[i];
+                this.level[i] = levelFor(bodies.ax[i], bodies.ay[i], jerk, dt);
+            }
+        }
+        this.solved = bodies;
+        this.solvedCount = n;
+    }
+
+    /** Solves all bodies and puts each on the level its acceleration asks for. */
+    private void start(Bodies bodies, double dt) {
+        int n = bodies.count;
+        if (n > this.level.length) {
+            int capacity = Math.max(n, 2 * this.level.length);
+            this.level = new int[capacity];
+            this.lastAx = new double[capacity];
+            this.lastAy = new double[capacity];
+            this.active = new int[capacity];
+        }
+        this.solver.accelerations(bodies);
+        this.evaluations += n;
+        for (int i = 0; i < n; i++) {
+            this.lastAx[i] = bodies.ax[i];
+            this.lastAy[i] = bodies.ay[i];
+            this.level[i] = levelFor(bodies.ax[i], bodies.ay[i], 0.0, dt);
+        }
+    }
+
+    /** Coarsest level whose step meets the acceleration and jerk criteria. */
+    private int levelFor(double ax, double ay, double jerk, double dt) {
+        double a = Math.hypot(ax, ay);
+        double wanted = Double.POSITIVE_INFINITY;
+        if (a > 0) {
+            wanted = this.eta * Math.sqrt(this.length / a);
+            if (jerk > 0) {
+                wanted = Math.min(wanted, this.eta * a / jerk);
+            }
+        }
+        if (wanted >= dt) {
+            return 0;
+        }
+        int k = (int) Math.ceil(Math.log(dt / wanted) / Math.log(2));
+        return Math.min(this.maxLevel, k);
+    }
+
+    /** Makes the next step solve all bodies and pick fresh levels first. */
+    public void invalidate() {
+        this.solved = null;
+    }
+
+    /**
+     * Level of one body after the last step.
+     *
+     * @param i index of the body
+     * @return level, 0 being the coarsest
+     */
+    public int getLevel(int i) {
+        return this.level[i];
+    }
+
+    /**
+     * Number of bodies on each level after the last step.
+     *
+     * @return counts indexed by level, {@code maxLevel + 1} entries
+     */
+    public int[] getPopulation() {
+        Arrays.fill(this.population, 0);
+        for (int i = 0; i < this.solvedCount; i++) {
+            this.population[this.level[i]]++;
+        }
+        return Arrays.copyOf(this.population, this.maxLevel + 1);
+    }
+
+    /** @return bodies whose accelerations were computed so far, summed over all solves */
+    public long getForceEvaluations() {
+        return this.evaluations;
+    }
+
+    /** @return deepest level */
+    public int getMaxLevel() {
+        return this.maxLevel;
+    }
+
+    /** @param maxLevel deepest level, 0 to {@value #MAX_LEVELS} */
+    public void setMaxLevel(int maxLevel) {
+        if (maxLevel < 0 || maxLevel > MAX_LEVELS) {
+            throw new IllegalArgumentException("max level must be in [0, " + MAX_LEVELS + "]: " + maxLevel);
+        }
+        this.maxLevel = maxLevel;
+        invalidate();
+    }
+
+    /**
+     * Sets the time step criteria.
+     *
+     * @param eta    accuracy factor, greater than 0; smaller is finer
+     * @param length distance scale of the acceleration criterion, greater than
+     *               0; about the softening length
+     */
+    public void setAccuracy(double eta, double length) {
+        if (!(eta > 0) || !(length > 0)) {
+            throw new IllegalArgumentException("invalid accuracy: " + eta + ", " + length);
+        }
+        this.eta = eta;
+        this.length = length;
+    }
+
+    /**
+     * @param shared whether all bodies take the step of the fastest one, as
+     *               plain leapfrog would; for comparing costs
+     */
+    public void setShared(boolean shared) {
+        this.shared = shared;
+    }
+
+    /** @return whether all bodies take the step of the fastest one */
+    public boolean isShared() {
+        return this.shared;
+    }
+
+    /** @param solver solver computing the accelerations from the next step on */
+    public void setSolver(GravitySolver solver) {
+        this.solver = solver;
+        invalidate();
+    }
+}
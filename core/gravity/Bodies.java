@@ -0,0 +1,165 @@
+package gravity;
+
+import java.util.Arrays;
+
+/**
+ * Structure-of-arrays storage for the point masses of an N-body scene.
+ *
+ * <p>
+ * Like {@link physics.ParticleSystem} the arrays are public so solvers and
+ * integrators can stream through them without accessors. Every body has a
+ * position, a velocity per tick, a mass and the acceleration written by the
+ * last {@link GravitySolver} call. A body with zero mass is a test particle: it
+ * feels the field of the others but does not pull on anything, which is how
+ * {@code Ball}s that are moved but not flagged as attractors behave.
+ * </p>
+ *
+ * <p>
+ * The solvers treat every body as a point; the radius only matters to
+ * {@link Accretion}, which merges bodies that touch. Removing bodies with
+ * {@link #compact(boolean[], int[])} keeps the order of the rest and hands
+ * unused storage back once the set has shrunk to a quarter of its arrays.
+ * </p>
+ */
+public final class Bodies {
+    /** Number of valid bodies. */
+    public int count;
+
+    /** X-coordinates in pixels. */
+    public double[] x = new double[0];
+    /** Y-coordinates in pixels. */
+    public double[] y = new double[0];
+    /** Velocity x-components per tick. */
+    public double[] vx = new double[0];
+    /** Velocity y-components per tick. */
+    public double[] vy = new double[0];
+    /** Gravitating masses (0 for test particles). */
+    public double[] mass = new double[0];
+    /** Acceleration x-components from the last solve. */
+    public double[] ax = new double[0];
+    /** Acceleration y-components from the last solve. */
+    public double[] ay = new double[0];
+    /** Radii in pixels for collisions (0 for points that never merge). */
+    public double[] radius = new double[0];
+
+    /**
+     * Appends a body.
+     *
+     * @param x    x-coordinate
+     * @param y    y-coordinate
+     * @param vx   velocity x-component
+     * @param vy   velocity y-component
+     * @param mass gravitating mass, 0 for a test particle
+     * @return index of the new body
+     */
+    public int add(double x, double y, double vx, double vy, double mass) {
+        return add(x, y, vx, vy, mass, 0.0);
+    }
+
+    /**
+     * Appends a body with a collision radius.
+     *
+     * @param x      x-coordinate
+     * @param y      y-coordinate
+     * @param vx     velocity x-component
+     * @param vy     velocity y-component
+     * @param mass   gravitating mass, 0 for a test particle
+     * @param radius collision radius, 0 for a point
+     * @return index of the new body
+     */
+    public int add(double x, double y, double vx, double vy, double mass, double radius) {
+        if (mass < 0 || radius < 0) {
+            throw new IllegalArgumentException("mass and radius must not be negative: " + mass + ", " + radius);
+        }
+        int i = this.count;
+        reserve(i + 1);
+        this.x[i] = x;
+        this.y[i] = y;
+        this.vx[i] = vx;
+        this.vy[i] = vy;
+        this.mass[i] = mass;
+        this.ax[i] = 0.0;
+        this.ay[i] = 0.0;
+        this.radius[i] = radius;
+        this.count = i + 1;
+        return i;
+    }
+
+    /**
+     * Removes the flagged bodies in one pass, moving the others down in
+     * their order, and shrinks the arrays to twice the remaining count once
+     * at most a quarter of them is in use.
+     *
+     * @param removed flags by index, at least {@code count} long
+     * @param index   receives the new index of every kept body and -1 for
+     *                every removed one, at least {@code count} long; may be null
+     * @return number of removed bodies
+     */
+    public int compact(boolean[] removed, int[] index) {
+        int kept = 0;
+        for (int i = 0; i < this.count; i++) {
+            if (removed[i]) {
+                if (index != null) {
+                    index[i] = -1;
+                }
+                continue;
+            }
+            if (kept != i) {
+                this.x[kept] = this.x[i];
+                this.y[kept] = this.y[i];
+                this.vx[kept] = this.vx[i];
+                this.vy[kept] = this.vy[i];
+                this.mass[kept] = this.mass[i];
+                this.ax[kept] = this.ax[i];
+                this.ay[kept] = this.ay[i];
+                this.radius[kept] = this.radius[i];
+            }
+            if (index != null) {
+                index[i] = kept;
+            }
+            kept++;
+        }
+        int gone = this.count - kept;
+        this.count = kept;
+        if (this.x.length > 64 && kept < this.x.length / 4) {
+            resize(Math.max(16, 2 * kept));
+        }
+        return gone;
+    }
+
+    /** Removes all bodies but keeps the arrays for reuse. */
+    public void clear() {
+        this.count = 0;
+    }
+
+    /** @return total gravitating mass */
+    public double totalMass() {
+        double total = 0.0;
+        for (int i = 0; i < this.count; i++) {
+            total += this.mass[i];
+        }
+        return total;
+    }
+
+    /**
+     * Grows the arrays so at least {@code n} bodies fit without reallocation.
+     *
+     * @param n number of bodies
+     */
+    public void reserve(int n) {
+        if (n > this.x.length) {
+            resize(Math.max(n, Math.max(16, 2 * this.x.length)));
+        }
+    }
+
+    private void resize(int capacity) {
+        this.x = Arrays.copyOf(this.x, capacity);
+        this.y = Arrays.copyOf(this.y, capacity);
+        this.vx = Arrays.copyOf(this.vx, capacity);
+        this.vy = Arrays.copyOf(this.vy, capacity);
+        this.mass = Arrays.copyOf(this.mass, capacity);
+        this.ax = Arrays.copyOf(this.ax, capacity);
+        this.ay = Arrays.copyOf(this.ay, capacity);
+        this.radius = Arrays.copyOf(this.radius, capacity);
+    }
+}
@@ -0,0 +1,111 @@
+package gravity;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Draws {@link Bodies} as points into an RGB raster, for scenes with far too
+ * many bodies to draw one shape each.
+ *
+ * <p>
+ * Every body adds one to the counter of the pixel it falls into; a second
+ * pass, parallel over rows, maps each counter through a saturating brightness
+ * curve onto a color ramp, so dense regions glow instead of clipping to a
+ * solid blob.
+ * </p>
+ */
+public final class BodyRaster {
+    private static final int LEVELS = 256;
+
+    private final int width;
+    private final int height;
+    private final BufferedImage image;
+    private final int[] pixels;
+    private final int[] counts;
+    private final int[] palette = new int[LEVELS];
+
+    private double exposure = 0.6;
+
+    /**
+     * Creates a raster the size of the scene.
+     *
+     * @param width  scene width in pixels
+     * @param height scene height in pixels
+     */
+    public BodyRaster(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        this.pixels = ((DataBufferInt) this.image.getRaster().getDataBuffer()).getData();
+        this.counts = new int[width * height];
+        setColors(new Color(40, 60, 160), new Color(255, 240, 200));
+    }
+
+    /**
+     * Redraws the raster from the bodies' current positions.
+     *
+     * @param bodies bodies to draw
+     */
+    public void draw(Bodies bodies) {
+        Arrays.fill(this.counts, 0);
+        for (int i = 0; i < bodies.count; i++) {
+            int px = (int) bodies.x[i];
+            int py = (int) bodies.y[i];
+            if (px >= 0 && px < this.width && py >= 0 && py < this.height) {
+                this.counts[py * this.width + px]++;
+            }
+        }
+        IntStream.range(0, this.height).parallel().forEach(this::shadeRow);
+    }
+
+    private void shadeRow(int y) {
+        for (int k = y * this.width, end = k + this.width; k < end; k++) {
+            int c = this.counts[k];
+            if (c == 0) {
+                this.pixels[k] = 0;
+            } else {
+                double level = 1.0 - Math.exp(-this.exposure * c);
+                this.pixels[k] = this.palette[(int) (level * (LEVELS - 1))];
+            }
+        }
+    }
+
+    /**
+     * Draws the raster at the scene origin.
+     *
+     * @param g2d graphics of the scene
+     */
+    public void render(Graphics2D g2d) {
+        g2d.drawImage(this.image, 0, 0, null);
+    }
+
+    /**
+     * Sets the color ramp; pixels without bodies stay black.
+     *
+     * @param faint  color at the dim end of the ramp
+     * @param bright color of saturated, crowded pixels
+     */
+    public void setColors(Color faint, Color bright) {
+        for (int i = 0; i < LEVELS; i++) {
+            double t = i / (LEVELS - 1.0);
+            int r = (int) (faint.getRed() + (bright.getRed() - faint.getRed()) * t);
+            int g = (int) (faint.getGreen() + (bright.getGreen() - faint.getGreen()) * t);
+            int b = (int) (faint.getBlue() + (bright.getBlue() - faint.getBlue()) * t);
+            this.palette[i] = r << 16 | g << 8 | b;
+        }
+    }
+
+    /** @param exposure brightness gained per body in a pixel; larger saturates sooner */
+    public void setExposure(double exposure) {
+        this.exposure = exposure;
+    }
+
+    /** @return raster the bodies are drawn into */
+    public BufferedImage getImage() {
+        return this.image;
+    }
+}
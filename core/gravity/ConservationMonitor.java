@@ -0,0 +1,353 @@
+package gravity;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Watches the conserved quantities of a simulation: kinetic and potential
+ * energy, linear momentum and angular momentum, sampled every few ticks.
+ *
+ * <p>
+ * {@link #sample(long, Bodies)} is called by the simulation every tick. On
+ * every {@code interval}-th tick it copies the bodies into a snapshot and
+ * returns; a daemon worker thread sums the snapshot and appends a
+ * {@link Sample} to a bounded history. The potential energy comes from a
+ * {@link BarnesHut} tree, so a sample costs O(N log N) on the worker and
+ * O(N) for the copy on the simulation thread. If the worker is still busy
+ * with the previous snapshot the tick is skipped rather than queued, so a
+ * slow sum can never pile up work or hold up the simulation;
+ * {@link #getSkipped()} counts such ticks.
+ * </p>
+ *
+ * <p>
+ * The energy includes the bodies' mutual gravity under the monitor's
+ * {@link Softening} (which should be the scene's) unless
+ * {@link #setSelfGravity(boolean)} turns it off, and the potential of a
+ * uniform field set with {@link #setUniformField(double, double)}. Angular
+ * momentum is taken about {@link #setOrigin(double, double)}. Masses are the
+ * bodies' masses, so test particles count for nothing. The drift of a
+ * quantity is its change since the first sample relative to the first
+ * sample, which is what an integrator's error budget is about.
+ * </p>
+ *
+ * <p>
+ * The tree's own error limits how small a drift can be seen: with the
+ * default opening angle of 0.3 the potential energy of a few thousand
+ * clustered bodies is off by about 1e-3, an offset that changes slowly as the
+ * bodies rearrange. Sets of up to {@code 8} bodies fit into one leaf and are
+ * summed exactly; {@link #setTheta(double)} with 0 makes any set exact at
+ * O(N²) worker time.
+ * </p>
+ */
+public final class ConservationMonitor implements AutoCloseable {
+    /** Conserved quantities of one snapshot. */
+    public static final class Sample {
+        private final long tick;
+        private final double kinetic;
+        private final double potential;
+        private final double momentumX;
+        private final double momentumY;
+        private final double angularMomentum;
+
+        Sample(long tick, double kinetic, double potential, double momentumX, double momentumY,
+                double angularMomentum) {
+            this.tick = tick;
+            this.kinetic = kinetic;
+            this.potential = potential;
+            this.momentumX = momentumX;
+            this.momentumY = momentumY;
+            this.angularMomentum = angularMomentum;
+        }
+
+        /** @return tick the snapshot was taken at */
+        public long tick() {
+            return this.tick;
+        }
+
+        /** @return kinetic energy {@code sum of m v² / 2} */
+        public double kinetic() {
+            return this.kinetic;
+        }
+
+        /** @return potential energy of mutual gravity and the uniform field */
+        public double potential() {
+            return this.potential;
+        }
+
+        /** @return kinetic plus potential energy */
+        public double energy() {
+            return this.kinetic + this.potential;
+        }
+
+        /** @return x-component of the linear momentum */
+        public double momentumX() {
+            return this.momentumX;
+        }
+
+        /** @return y-component of the linear momentum */
+        public double momentumY() {
+            return this.momentumY;
+        }
+
+        /** @return angular momentum about the monitor's origin */
+        public double angularMomentum() {
+            return this.angularMomentum;
+        }
+    }
+
+    private final int interval;
+    private final int capacity;
+    private final BarnesHut tree;
+    private final ExecutorService worker;
+    private final AtomicBoolean busy = new AtomicBoolean();
+
+    private volatile double theta = 0.3;
+    private volatile boolean selfGravity = true;
+    private volatile double fieldX;
+    private volatile double fieldY;
+    private volatile double originX;
+    private volatile double originY;
+
+    private final Bodies snapshot = new Bodies();
+    private final ArrayDeque<Sample> history = new ArrayDeque<>();
+    private Sample first;
+    /** Bumped by {@link #reset()}; samples of an older generation are dropped. */
+    private long generation;
+    private long skipped;
+    private volatile long computeNanos;
+
+    /**
+     * Creates a monitor with its own daemon worker thread.
+     *
+     * @param softening force law of the potential energy, the scene's
+     * @param interval  ticks between samples, at least 1
+     * @param capacity  samples kept in the history, at least 1; older ones
+     *                  are dropped
+     */
+    public ConservationMonitor(Softening softening, int interval, int capacity) {
+        if (interval < 1 || capacity < 1) {
+            throw new IllegalArgumentException("invalid interval or capacity: " + interval + ", " + capacity);
+        }
+        this.interval = interval;
+        this.capacity = capacity;
+        this.tree = new BarnesHut(this.theta);
+        this.tree.setSoftening(softening);
+        this.worker = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "conservation-monitor");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Takes a snapshot on every {@code interval}-th tick and hands it to the
+     * worker, unless the worker is still busy.
+     *
+     * @param tick   current tick
+     * @param bodies positions, velocities and masses; only read during the call
+     * @return whether a snapshot was taken
+     */
+    public boolean sample(long tick, Bodies bodies) {
+        if (tick % this.interval != 0) {
+            return false;
+        }
+        if (!this.busy.compareAndSet(false, true)) {
+            this.skipped++;
+            return false;
+        }
+        long gen = currentGeneration();
+        Bodies s = this.snapshot;
+        s.clear();
+        s.reserve(bodies.count);
+        for (int i = 0; i < bodies.count; i++) {
+            s.add(bodies.x[i], bodies.y[i], bodies.vx[i], bodies.vy[i], bodies.mass[i]);
+        }
+        this.worker.execute(() -> {
+            try {
+                record(measure(tick, s), gen);
+            } finally {
+                this.busy.set(false);
+            }
+        });
+        return true;
+    }
+
+    /** Worker: sums the snapshot. */
+    private Sample measure(long tick, Bodies s) {
+        long start = System.nanoTime();
+        double kinetic = 0.0;
+        double potential = 0.0;
+        double px = 0.0;
+        double py = 0.0;
+        double angular = 0.0;
+        double gx = this.fieldX;
+        double gy = this.fieldY;
+        double ox = this.originX;
+        double oy = this.originY;
+        for (int i = 0; i < s.count; i++) {
+            double m = s.mass[i];
+            double mvx = m * s.vx[i];
+            double mvy = m * s.vy[i];
+            kinetic += 0.5 * (mvx * s.vx[i] + mvy * s.vy[i]);
+            potential -= m * (gx * s.x[i] + gy * s.y[i]);
+            px += mvx;
+            py += mvy;
+            angular += (s.x[i] - ox) * mvy - (s.y[i] - oy) * mvx;
+        }
+        if (this.selfGravity) {
+            // Only the worker touches the tree
+            this.tree.setTheta(this.theta);
+            potential += this.tree.potentialEnergy(s);
+        }
+        this.computeNanos = System.nanoTime() - start;
+        return new Sample(tick, kinetic, potential, px, py, angular);
+    }
+
+    private synchronized long currentGeneration() {
+        return this.generation;
+    }
+
+    /** Worker: appends a sample unless the history was reset since its snapshot. */
+    private synchronized void record(Sample sample, long gen) {
+        if (gen != this.generation) {
+            return;
+        }
+        if (this.first == null) {
+            this.first = sample;
+        }
+        if (this.history.size() == this.capacity) {
+            this.history.removeFirst();
+        }
+        this.history.addLast(sample);
+    }
+
+    /** @return samples in tick order, oldest first; a copy */
+    public synchronized List<Sample> getHistory() {
+        return new ArrayList<>(this.history);
+    }
+
+    /** @return latest sample, or null before the first one */
+    public synchronized Sample getLatest() {
+        return this.history.peekLast();
+    }
+
+    /** @return first sample since the last {@link #reset()}, the reference for drifts, or null */
+    public synchronized Sample getFirst() {
+        return this.first;
+    }
+
+    /**
+     * Relative energy drift of a sample.
+     *
+     * @param sample sample of this monitor
+     * @return {@code (E - E0) / |E0|} against the first sample, 0 without one
+     */
+    public synchronized double energyDrift(Sample sample) {
+        return drift(sample.energy(), this.first == null ? sample.energy() : this.first.energy());
+    }
+
+    /**
+     * Relative angular momentum drift of a sample.
+     *
+     * @param sample sample of this monitor
+     * @return {@code (L - L0) / |L0|} against the first sample, 0 without one
+     */
+    public synchronized double angularMomentumDrift(Sample sample) {
+        return drift(sample.angularMomentum(),
+                this.first == null ? sample.angularMomentum() : this.first.angularMomentum());
+    }
+
+    private static double drift(double value, double reference) {
+        return reference == 0.0 ? value - reference : (value - reference) / Math.abs(reference);
+    }
+
+    /**
+     * Writes the history as comma-separated values with a header line.
+     *
+     * @param out destination
+     * @throws IOException if writing fails
+     */
+    public void writeCsv(Appendable out) throws IOException {
+        out.append("tick,kinetic,potential,energy,momentum_x,momentum_y,angular_momentum\n");
+        for (Sample s : getHistory()) {
+            out.append(String.format(Locale.ROOT, "%d,%.9g,%.9g,%.9g,%.9g,%.9g,%.9g%n", s.tick(), s.kinetic(),
+                    s.potential(), s.energy(), s.momentumX(), s.momentumY(), s.angularMomentum()));
+        }
+    }
+
+    /**
+     * Drops the history; the next sample becomes the new reference. A sample
+     * still being summed from an earlier snapshot is discarded.
+     */
+    public synchronized void reset() {
+        this.generation++;
+        this.history.clear();
+        this.first = null;
+    }
+
+    /** @return ticks between samples */
+    public int getInterval() {
+        return this.interval;
+    }
+
+    /** @return sampling ticks skipped because the worker was busy */
+    public long getSkipped() {
+        return this.skipped;
+    }
+
+    /** @return worker time of the latest sample in nanoseconds */
+    public long getComputeNanos() {
+        return this.computeNanos;
+    }
+
+    /**
+     * Sets the opening angle of the potential energy tree; takes effect with
+     * the next sample.
+     *
+     * @param theta opening angle, at least 0; 0 sums all pairs exactly
+     */
+    public void setTheta(double theta) {
+        if (!(theta >= 0)) {
+            throw new IllegalArgumentException("theta must not be negative: " + theta);
+        }
+        this.theta = theta;
+    }
+
+    /** @param selfGravity whether the bodies' mutual gravity counts into the potential energy */
+    public void setSelfGravity(boolean selfGravity) {
+        this.selfGravity = selfGravity;
+    }
+
+    /**
+     * Sets a uniform field whose potential energy {@code -m (g · r)} counts
+     * in, such as a scene's constant gravity.
+     *
+     * @param gx x-component of the field's acceleration
+     * @param gy y-component of the field's acceleration
+     */
+    public void setUniformField(double gx, double gy) {
+        this.fieldX = gx;
+        this.fieldY = gy;
+    }
+
+    /**
+     * @param x x-coordinate of the point angular momentum is taken about
+     * @param y y-coordinate of the point angular momentum is taken about
+     */
+    public void setOrigin(double x, double y) {
+        this.originX = x;
+        this.originY = y;
+    }
+
+    /** Stops the worker thread. */
+    @Override
+    public void close() {
+        this.worker.shutdownNow();
+    }
+}
@@ -0,0 +1,242 @@
+package gravity;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Exact gravity by summing over every pair of bodies.
+ *
+ * <p>
+ * The bodies are cut into tiles of {@value #TILE} consecutive indices and the
+ * pair triangle into blocks of two tiles. Each pair is evaluated once and its
+ * force applied to both bodies with opposite signs, which halves the work
+ * compared to summing the full matrix. Symmetric updates write to both tiles
+ * of a block, so blocks are scheduled in round-robin rounds in which every tile
+ * appears at most once: the blocks of a round share no bodies and run in
+ * parallel on the common fork/join pool without locks or private copies of
+ * the accelerations. The inner loop streams the positions and masses of the
+ * second tile while the first tile's body stays in registers.
+ * </p>
+ *
+ * <p>
+ * The cost is O(N²), so this is the solver for scenes with up to a few
+ * thousand bodies and the reference the approximate solvers are checked
+ * against; {@link #accelerationAt(Bodies, int, double[])} gives the exact
+ * acceleration of single bodies for spot checks in large scenes. The force law
+ * is clamped or softened as in {@link BarnesHut}.
+ * </p>
+ */
+public final class DirectSum implements GravitySolver {
+    /** Bodies per tile. */
+    private static final int TILE = 256;
+
+    private Softening softening = Softening.clamp(1.0, Double.POSITIVE_INFINITY);
+    private boolean parallel = true;
+
+    @Override
+    public void accelerations(Bodies bodies) {
+        int n = bodies.count;
+        Arrays.fill(bodies.ax, 0, n, 0.0);
+        Arrays.fill(bodies.ay, 0, n, 0.0);
+        int tiles = (n + TILE - 1) / TILE;
+        if (tiles == 0) {
+            return;
+        }
+
+        // Blocks on the diagonal only touch their own tile
+        forEach(tiles, t -> diagonalBlock(bodies, t * TILE, Math.min(n, (t + 1) * TILE)));
+
+        // Circle method: with an even number of slots (one of them empty for
+        // an odd tile count) every round pairs each tile with exactly one other
+        int slots = tiles + (tiles & 1);
+        for (int round = 0; round < slots - 1; round++) {
+            int r = round;
+            forEach(slots / 2, k -> {
+                int a = k == 0 ? slots - 1 : (r + k) % (slots - 1);
+                int b = (r - k + slots - 1) % (slots - 1);
+                if (a < tiles && b < tiles) {
+                    int i = Math.min(a, b);
+                    int j = Math.max(a, b);
+                    offDiagonalBlock(bodies, i * TILE, Math.min(n, (i + 1) * TILE),
+                            j * TILE, Math.min(n, (j + 1) * TILE));
+                }
+            });
+        }
+    }
+
+    /**
+     * Sums each listed body's pull over all bodies with mass, in parallel over
+     * the listed bodies. Zero-mass test particles are left out of the sums, so
+     * a swarm of them around a few attractors costs O(attractors) per body.
+     */
+    @Override
+    public void accelerations(Bodies bodies, int[] active, int count) {
+        int[] sources = new int[bodies.count];
+        int massive = 0;
+        for (int j = 0; j < bodies.count; j++) {
+            if (bodies.mass[j] != 0.0) {
+                sources[massive++] = j;
+            }
+        }
+        int sourceCount = massive;
+        forEach(count, k -> {
+            int i = active[k];
+            double xi = bodies.x[i];
+            double yi = bodies.y[i];
+            double sx = 0.0;
+            double sy = 0.0;
+            for (int s = 0; s < sourceCount; s++) {
+                int j = sources[s];
+                double dx = bodies.x[j] - xi;
+                double dy = bodies.y[j] - yi;
+                double f = pull(dx * dx + dy * dy);
+                sx += bodies.mass[j] * f * dx;
+                sy += bodies.mass[j] * f * dy;
+            }
+            bodies.ax[i] = sx;
+            bodies.ay[i] = sy;
+        });
+    }
+
+    /** Pairs {@code i < j} inside one tile. */
+    private void diagonalBlock(Bodies bodies, int from, int to) {
+        double[] x = bodies.x;
+        double[] y = bodies.y;
+        double[] m = bodies.mass;
+        double[] ax = bodies.ax;
+        double[] ay = bodies.ay;
+        for (int i = from; i < to; i++) {
+            double xi = x[i];
+            double yi = y[i];
+            double mi = m[i];
+            double sx = 0.0;
+            double sy = 0.0;
+            for (int j = i + 1; j < to; j++) {
+                double dx = x[j] - xi;
+                double dy = y[j] - yi;
+                double f = pull(dx * dx + dy * dy);
+                sx += m[j] * f * dx;
+                sy += m[j] * f * dy;
+                ax[j] -= mi * f * dx;
+                ay[j] -= mi * f * dy;
+            }
+            ax[i] += sx;
+            ay[i] += sy;
+        }
+    }
+
+    /** All pairs between two disjoint tiles. */
+    private void offDiagonalBlock(Bodies bodies, int from, int to, int from2, int to2) {
+        double[] x = bodies.x;
+        double[] y = bodies.y;
+        double[] m = bodies.mass;
+        double[] ax = bodies.ax;
+        double[] ay = bodies.ay;
+        for (int i = from; i < to; i++) {
+            double xi = x[i];
+            double yi = y[i];
+            double mi = m[i];
+            double sx = 0.0;
+            double sy = 0.0;
+            for (int j = from2; j < to2; j++) {
+                double dx = x[j] - xi;
+                double dy = y[j] - yi;
+                double f = pull(dx * dx + dy * dy);
+                sx += m[j] * f * dx;
+                sy += m[j] * f * dy;
+                ax[j] -= mi * f * dx;
+                ay[j] -= mi * f * dy;
+            }
+            ax[i] += sx;
+            ay[i] += sy;
+        }
+    }
+
+    /**
+     * Exact acceleration of one body, in O(N).
+     *
+     * @param bodies bodies
+     * @param i      index of the body
+     * @param out    acceleration x- and y-component (output)
+     */
+    public void accelerationAt(Bodies bodies, int i, double[] out) {
+        double xi = bodies.x[i];
+        double yi = bodies.y[i];
+        double sx = 0.0;
+        double sy = 0.0;
+        for (int j = 0; j < bodies.count; j++) {
+            double dx = bodies.x[j] - xi;
+            double dy = bodies.y[j] - yi;
+            double f = pull(dx * dx + dy * dy);
+            sx += bodies.mass[j] * f * dx;
+            sy += bodies.mass[j] * f * dy;
+        }
+        out[0] = sx;
+        out[1] = sy;
+    }
+
+    /**
+     * Mean relative error of the accelerations currently stored in
+     * {@code bodies} against exact ones, over evenly spread sample bodies.
+     *
+     * @param bodies  bodies after an approximate solve
+     * @param samples number of bodies to check
+     * @return mean of |a - exact| / |exact|
+     */
+    public double sampleError(Bodies bodies, int samples) {
+        int n = bodies.count;
+        int k = Math.min(samples, n);
+        double error = 0.0;
+        int counted = 0;
+        double[] exact = new double[2];
+        for (int s = 0; s < k; s++) {
+            int i = (int) ((long) s * n / k);
+            accelerationAt(bodies, i, exact);
+            double magnitude = Math.hypot(exact[0], exact[1]);
+            if (magnitude > 0) {
+                error += Math.hypot(bodies.ax[i] - exact[0], bodies.ay[i] - exact[1]) / magnitude;
+                counted++;
+            }
+        }
+        return counted > 0 ? error / counted : 0.0;
+    }
+
+    /** Pull per unit offset and unit mass at squared distance {@code d2}. */
+    private double pull(double d2) {
+        return this.softening.pull(d2);
+    }
+
+    private void forEach(int n, IntConsumer body) {
+        IntStream range = IntStream.range(0, n);
+        if (this.parallel && n > 1) {
+            range = range.parallel();
+        }
+        range.forEach(body);
+    }
+
+    /**
+     * Clamps the distance used in the force law.
+     *
+     * @param minDistance closest distance the force grows to, at least 0
+     * @param maxDistance distance beyond which the force stops falling off
+     */
+    public void setDistanceClamp(double minDistance, double maxDistance) {
+        this.softening = Softening.clamp(minDistance, maxDistance);
+    }
+
+    /** @return force law at short and long range */
+    public Softening getSoftening() {
+        return this.softening;
+    }
+
+    /** @param softening force law at short and long range */
+    public void setSoftening(Softening softening) {
+        this.softening = softening;
+    }
+
+    /** @param parallel whether to run the blocks of a round on the common pool */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+}
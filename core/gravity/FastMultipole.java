@@ -0,0 +1,576 @@
+package gravity;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Fast multipole gravity: groups of bodies pull on whole groups of bodies
+ * through series expansions, in O(N) work per solve.
+ *
+ * <p>
+ * The bodies are sorted into the adaptive quadtree of {@link MortonTree}.
+ * The upward pass gives every node a multipole expansion of its bodies about
+ * the center of its bounding box: leaves sum their bodies (P2M), inner nodes
+ * shift and add the expansions of their children (M2M). A dual-tree traversal
+ * then visits pairs of target and source nodes: a pair whose bounding circles
+ * are small compared to their distance ({@code rT + rS < theta * d}) converts
+ * the source's multipole expansion into a local expansion about the target's
+ * center (M2L), small or close pairs are summed body by body (P2P), and all
+ * other pairs split the larger node. The downward pass shifts every local
+ * expansion into the children (L2L) and evaluates its gradient at the bodies
+ * of the leaves (L2P).
+ * </p>
+ *
+ * <p>
+ * Expansions are Cartesian Taylor series of {@code 1 / r} up to a configurable
+ * total order {@code p}: every node keeps {@code (p + 1)(p + 2) / 2}
+ * coefficients for each of its expansions, and terms are kept while the orders
+ * of the multipole and the local coefficient add up to at most {@code p}. The
+ * error falls roughly as {@code theta^(p + 1)}, so raising the order buys
+ * accuracy at a fixed opening angle. The upward pass runs bottom-up in
+ * parallel over the subtrees below a fixed depth, the traversal and the
+ * downward pass in parallel over the same subtrees as targets, so no two tasks
+ * ever write to the same node or body.
+ * </p>
+ *
+ * <p>
+ * The force law is clamped below {@code minDistance} like in
+ * {@link BarnesHut}; expansions are only used between nodes that are further
+ * apart than that, so the clamp is exact. There is no upper clamp: beyond it
+ * the force would no longer derive from a smooth potential the expansions can
+ * represent.
+ * </p>
+ */
+public final class FastMultipole implements GravitySolver {
+    /** Bodies per leaf before it is split. */
+    private static final int LEAF_SIZE = 16;
+    /** Depth of the subtrees that are the units of parallel work. */
+    private static final int TASK_DEPTH = 3;
+    private static final int MAX_ORDER = 10;
+
+    private final MortonTree tree = new MortonTree(LEAF_SIZE);
+    private double theta;
+    private double minDistance = 1.0;
+
+    // Expansion layout and operator tables for the current order
+    private int order;
+    private int terms;
+    private int[] powerX;
+    private int[] powerY;
+    /** Shift table (M2M, L2L): coefficient {@code to} takes {@code from} times the offset to the power {@code by}. */
+    private int[] shiftTo;
+    private int[] shiftFrom;
+    private int[] shiftBy;
+    private double[] shiftFactor;
+    /** M2L table: local {@code to} takes multipole {@code from} times derivative {@code by}. */
+    private int[] m2lTo;
+    private int[] m2lFrom;
+    private int[] m2lBy;
+    private double[] m2lFactor;
+    /** Largest body pair count that is summed directly instead of expanded. */
+    private int directLimit;
+
+    // Per node: bounding box center and radius, expansions
+    private double[] centerX = new double[0];
+    private double[] centerY = new double[0];
+    private double[] radius = new double[0];
+    private double[] box = new double[0];
+    private double[] multipole = new double[0];
+    private double[] local = new double[0];
+
+    // Accelerations in Morton order
+    private double[] sax = new double[0];
+    private double[] say = new double[0];
+
+    /**
+     * Creates a solver.
+     *
+     * @param theta opening angle, greater than 0 and at most 1
+     * @param order expansion order, 1 to {@value #MAX_ORDER}
+     */
+    public FastMultipole(double theta, int order) {
+        setTheta(theta);
+        setOrder(order);
+    }
+
+    @Override
+    public void accelerations(Bodies bodies) {
+        int n = bodies.count;
+        if (n == 0) {
+            return;
+        }
+        this.tree.build(bodies);
+        reserve(this.tree.nodes.count, n);
+
+        // Units of parallel work: subtrees at the task depth, plus the few
+        // nodes above them that are finished serially
+        IntList tasks = new IntList();
+        IntList top = new IntList();
+        collectTasks(0, 0, tasks, top);
+
+        forEachTask(tasks.size, t -> upward(tasks.data[t], new Work(this.order, this.terms)));
+        Work work = new Work(this.order, this.terms);
+        for (int k = top.size - 1; k >= 0; k--) {
+            upwardNode(top.data[k], work);
+        }
+
+        forEachTask(tasks.size, t -> {
+            int node = tasks.data[t];
+            int[] links = this.tree.nodes.links;
+            Arrays.fill(this.local, node * this.terms, links[3 * node] * this.terms, 0.0);
+            Arrays.fill(this.sax, links[3 * node + 1], links[3 * node + 2], 0.0);
+            Arrays.fill(this.say, links[3 * node + 1], links[3 * node + 2], 0.0);
+            Work scratch = new Work(this.order, this.terms);
+            interact(node, 0, scratch);
+            downward(node, scratch);
+        });
+
+        double[] ax = bodies.ax;
+        double[] ay = bodies.ay;
+        int[] sorted = this.tree.order;
+        this.tree.forEachChunk(n, (from, to) -> {
+            for (int j = from; j < to; j++) {
+                ax[sorted[j]] = this.sax[j];
+                ay[sorted[j]] = this.say[j];
+            }
+        });
+    }
+
+    private void collectTasks(int node, int depth, IntList tasks, IntList top) {
+        int[] links = this.tree.nodes.links;
+        if (depth == TASK_DEPTH || isLeaf(node)) {
+            tasks.add(node);
+            return;
+        }
+        top.add(node);
+        for (int c = node + 1, end = links[3 * node]; c < end; c = links[3 * c]) {
+            collectTasks(c, depth + 1, tasks, top);
+        }
+    }
+
+    /** Computes the expansions of a subtree, children before parents. */
+    private void upward(int root, Work work) {
+        for (int node = this.tree.nodes.links[3 * root] - 1; node >= root; node--) {
+            upwardNode(node, work);
+        }
+    }
+
+    /** Bounding box and multipole expansion of one node whose children are done. */
+    private void upwardNode(int node, Work work) {
+        int[] links = this.tree.nodes.links;
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        boolean leaf = isLeaf(node);
+        if (leaf) {
+            for (int k = links[3 * node + 1], end = links[3 * node + 2]; k < end; k++) {
+                minX = Math.min(minX, this.tree.sx[k]);
+                minY = Math.min(minY, this.tree.sy[k]);
+                maxX = Math.max(maxX, this.tree.sx[k]);
+                maxY = Math.max(maxY, this.tree.sy[k]);
+            }
+        } else {
+            for (int c = node + 1, end = links[3 * node]; c < end; c = links[3 * c]) {
+                minX = Math.min(minX, this.box[4 * c]);
+                minY = Math.min(minY, this.box[4 * c + 1]);
+                maxX = Math.max(maxX, this.box[4 * c + 2]);
+                maxY = Math.max(maxY, this.box[4 * c + 3]);
+            }
+        }
+        this.box[4 * node] = minX;
+        this.box[4 * node + 1] = minY;
+        this.box[4 * node + 2] = maxX;
+        this.box[4 * node + 3] = maxY;
+        double cx = 0.5 * (minX + maxX);
+        double cy = 0.5 * (minY + maxY);
+        this.centerX[node] = cx;
+        this.centerY[node] = cy;
+        this.radius[node] = 0.5 * Math.hypot(maxX - minX, maxY - minY);
+
+        int base = node * this.terms;
+        Arrays.fill(this.multipole, base, base + this.terms, 0.0);
+        double[] px = work.powerX;
+        double[] py = work.powerY;
+        if (leaf) {
+            // P2M: M_k = sum of m (-delta)^k
+            for (int k = links[3 * node + 1], end = links[3 * node + 2]; k < end; k++) {
+                double m = this.tree.sm[k];
+                if (m != 0.0) {
+                    powers(cx - this.tree.sx[k], cy - this.tree.sy[k], px, py);
+                    for (int i = 0; i < this.terms; i++) {
+                        this.multipole[base + i] += m * px[this.powerX[i]] * py[this.powerY[i]];
+                    }
+                }
+            }
+        } else {
+            // M2M: shift each child's expansion by the offset between centers
+            for (int c = node + 1, end = links[3 * node]; c < end; c = links[3 * c]) {
+                powers(cx - this.centerX[c], cy - this.centerY[c], px, py);
+                int from = c * this.terms;
+                for (int s = 0; s < this.shiftTo.length; s++) {
+                    int by = this.shiftBy[s];
+                    this.multipole[base + this.shiftTo[s]] += this.shiftFactor[s]
+                            * this.multipole[from + this.shiftFrom[s]] * px[this.powerX[by]] * py[this.powerY[by]];
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the pull of all bodies in {@code source} to the bodies in
+     * {@code target}, either into the target's local expansion or directly
+     * into the accelerations of its bodies.
+     */
+    private void interact(int target, int source, Work work) {
+        int[] links = this.tree.nodes.links;
+        if (this.tree.nodes.data[4 * source + 2] == 0.0) {
+            return;
+        }
+        boolean leafT = isLeaf(target);
+        boolean leafS = isLeaf(source);
+        if (target == source) {
+            if (leafT) {
+                direct(target, source);
+            } else {
+                for (int a = target + 1, end = links[3 * target]; a < end; a = links[3 * a]) {
+                    for (int b = target + 1; b < end; b = links[3 * b]) {
+                        interact(a, b, work);
+                    }
+                }
+            }
+            return;
+        }
+
+        int pairs = (links[3 * target + 2] - links[3 * target + 1]) * (links[3 * source + 2] - links[3 * source + 1]);
+        double dx = this.centerX[target] - this.centerX[source];
+        double dy = this.centerY[target] - this.centerY[source];
+        double d = Math.sqrt(dx * dx + dy * dy);
+        double r = this.radius[target] + this.radius[source];
+        if (pairs <= this.directLimit) {
+            direct(target, source);
+        } else if (r < this.theta * d && d - r > this.minDistance) {
+            multipoleToLocal(target, source, dx, dy, work);
+        } else if (leafT && leafS) {
+            direct(target, source);
+        } else if (leafS || !leafT && this.radius[target] >= this.radius[source]) {
+            for (int c = target + 1, end = links[3 * target]; c < end; c = links[3 * c]) {
+                interact(c, source, work);
+            }
+        } else {
+            for (int c = source + 1, end = links[3 * source]; c < end; c = links[3 * c]) {
+                interact(target, c, work);
+            }
+        }
+    }
+
+    /** P2P: sums the clamped pull of every source body on every target body. */
+    private void direct(int target, int source) {
+        int[] links = this.tree.nodes.links;
+        double[] sx = this.tree.sx;
+        double[] sy = this.tree.sy;
+        double[] sm = this.tree.sm;
+        int sourceFrom = links[3 * source + 1];
+        int sourceTo = links[3 * source + 2];
+        for (int j = links[3 * target + 1], end = links[3 * target + 2]; j < end; j++) {
+            double px = sx[j];
+            double py = sy[j];
+            double ax = 0.0;
+            double ay = 0.0;
+            for (int k = sourceFrom; k < sourceTo; k++) {
+                double dx = sx[k] - px;
+                double dy = sy[k] - py;
+                double d2 = dx * dx + dy * dy;
+                if (d2 > 0.0) {
+                    double d = Math.sqrt(d2);
+                    double c = Math.max(d, this.minDistance);
+                    double f = sm[k] / (c * c * d);
+                    ax += f * dx;
+                    ay += f * dy;
+                }
+            }
+            this.sax[j] += ax;
+            this.say[j] += ay;
+        }
+    }
+
+    /**
+     * M2L: {@code L_n += C(n + k, n) D_(n + k) M_k} with the Taylor
+     * coefficients {@code D} of {@code 1 / r} at the offset between the
+     * centers.
+     */
+    private void multipoleToLocal(int target, int source, double dx, double dy, Work work) {
+        derivatives(dx, dy, work.derivatives);
+        int to = target * this.terms;
+        int from = source * this.terms;
+        for (int s = 0; s < this.m2lTo.length; s++) {
+            this.local[to + this.m2lTo[s]] += this.m2lFactor[s] * work.derivatives[this.m2lBy[s]]
+                    * this.multipole[from + this.m2lFrom[s]];
+        }
+    }
+
+    /**
+     * Pushes the local expansions of a subtree down to its leaves (L2L) and
+     * adds their gradient to the leaf bodies (L2P), parents before children.
+     */
+    private void downward(int root, Work work) {
+        int[] links = this.tree.nodes.links;
+        double[] px = work.powerX;
+        double[] py = work.powerY;
+        for (int node = root, end = links[3 * root]; node < end; node++) {
+            int base = node * this.terms;
+            if (isLeaf(node)) {
+                for (int j = links[3 * node + 1], last = links[3 * node + 2]; j < last; j++) {
+                    powers(this.tree.sx[j] - this.centerX[node], this.tree.sy[j] - this.centerY[node], px, py);
+                    double ax = 0.0;
+                    double ay = 0.0;
+                    for (int i = 1; i < this.terms; i++) {
+                        int a = this.powerX[i];
+                        int b = this.powerY[i];
+                        double l = this.local[base + i];
+                        if (a > 0) {
+                            ax += a * l * px[a - 1] * py[b];
+                        }
+                        if (b > 0) {
+                            ay += b * l * px[a] * py[b - 1];
+                        }
+                    }
+                    this.sax[j] += ax;
+                    this.say[j] += ay;
+                }
+            } else {
+                for (int c = node + 1, last = links[3 * node]; c < last; c = links[3 * c]) {
+                    powers(this.centerX[c] - this.centerX[node], this.centerY[c] - this.centerY[node], px, py);
+                    int to = c * this.terms;
+                    for (int s = 0; s < this.shiftTo.length; s++) {
+                        int by = this.shiftBy[s];
+                        this.local[to + this.shiftFrom[s]] += this.shiftFactor[s]
+                                * this.local[base + this.shiftTo[s]] * px[this.powerX[by]] * py[this.powerY[by]];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Taylor coefficients {@code D_k = d^k (1 / r) / k!} at {@code (x, y)} for
+     * every multi-index up to the order, from the recurrence
+     * {@code n r² D_k = -(2n - 1) (x D_(k - ex) + y D_(k - ey)) - (n - 1) (D_(k - 2ex) + D_(k - 2ey))}.
+     */
+    private void derivatives(double x, double y, double[] out) {
+        double r2 = x * x + y * y;
+        out[0] = 1.0 / Math.sqrt(r2);
+        for (int n = 1; n <= this.order; n++) {
+            int row = n * (n + 1) / 2;
+            for (int b = 0; b <= n; b++) {
+                int a = n - b;
+                double sum = 0.0;
+                if (a > 0) {
+                    sum -= (2 * n - 1) * x * out[index(a - 1, b)];
+                }
+                if (b > 0) {
+                    sum -= (2 * n - 1) * y * out[index(a, b - 1)];
+                }
+                if (a > 1) {
+                    sum -= (n - 1) * out[index(a - 2, b)];
+                }
+                if (b > 1) {
+                    sum -= (n - 1) * out[index(a, b - 2)];
+                }
+                out[row + b] = sum / (n * r2);
+            }
+        }
+    }
+
+    private void powers(double x, double y, double[] px, double[] py) {
+        px[0] = 1.0;
+        py[0] = 1.0;
+        for (int i = 1; i <= this.order; i++) {
+            px[i] = px[i - 1] * x;
+            py[i] = py[i - 1] * y;
+        }
+    }
+
+    /** Coefficient index of the multi-index {@code (a, b)}: by total order, then by {@code b}. */
+    private static int index(int a, int b) {
+        int n = a + b;
+        return n * (n + 1) / 2 + b;
+    }
+
+    private boolean isLeaf(int node) {
+        return this.tree.nodes.links[3 * node] == node + 1;
+    }
+
+    private void forEachTask(int n, IntConsumer task) {
+        IntStream range = IntStream.range(0, n);
+        if (this.tree.isParallel() && n > 1) {
+            range = range.parallel();
+        }
+        range.forEach(task);
+    }
+
+    private void reserve(int nodes, int n) {
+        if (nodes > this.radius.length || nodes * this.terms > this.multipole.length) {
+            int capacity = Math.max(nodes, 2 * this.radius.length);
+            this.centerX = new double[capacity];
+            this.centerY = new double[capacity];
+            this.radius = new double[capacity];
+            this.box = new double[4 * capacity];
+            this.multipole = new double[capacity * this.terms];
+            this.local = new double[capacity * this.terms];
+        }
+        if (n > this.sax.length) {
+            int capacity = Math.max(n, 2 * this.sax.length);
+            this.sax = new double[capacity];
+            this.say = new double[capacity];
+        }
+    }
+
+    /** @return expansion order */
+    public int getOrder() {
+        return this.order;
+    }
+
+    /**
+     * Sets the expansion order and rebuilds the operator tables.
+     *
+     * @param order expansion order, 1 to {@value #MAX_ORDER}
+     */
+    public void setOrder(int order) {
+        if (order < 1 || order > MAX_ORDER) {
+            throw new IllegalArgumentException("order must be in [1, " + MAX_ORDER + "]: " + order);
+        }
+        int terms = (order + 1) * (order + 2) / 2;
+        double[][] binomial = new double[order + 1][order + 1];
+        for (int i = 0; i <= order; i++) {
+            binomial[i][0] = 1.0;
+            for (int j = 1; j <= i; j++) {
+                binomial[i][j] = binomial[i - 1][j - 1] + (j < i ? binomial[i - 1][j] : 0.0);
+            }
+        }
+        int[] powerX = new int[terms];
+        int[] powerY = new int[terms];
+        for (int n = 0; n <= order; n++) {
+            for (int b = 0; b <= n; b++) {
+                powerX[index(n - b, b)] = n - b;
+                powerY[index(n - b, b)] = b;
+            }
+        }
+
+        IntList shift = new IntList();
+        IntList m2l = new IntList();
+        for (int k = 0; k < terms; k++) {
+            for (int j = 0; j < terms; j++) {
+                int ka = powerX[k];
+                int kb = powerY[k];
+                int ja = powerX[j];
+                int jb = powerY[j];
+                if (ja <= ka && jb <= kb) {
+                    shift.add(k);
+                    shift.add(j);
+                    shift.add(index(ka - ja, kb - jb));
+                }
+                if (ka + kb + ja + jb <= order) {
+                    m2l.add(k);
+                    m2l.add(j);
+                    m2l.add(index(ka + ja, kb + jb));
+                }
+            }
+        }
+        int shifts = shift.size / 3;
+        this.shiftTo = new int[shifts];
+        this.shiftFrom = new int[shifts];
+        this.shiftBy = new int[shifts];
+        this.shiftFactor = new double[shifts];
+        for (int s = 0; s < shifts; s++) {
+            int k = shift.data[3 * s];
+            int j = shift.data[3 * s + 1];
+            this.shiftTo[s] = k;
+            this.shiftFrom[s] = j;
+            this.shiftBy[s] = shift.data[3 * s + 2];
+            this.shiftFactor[s] = binomial[powerX[k]][powerX[j]] * binomial[powerY[k]][powerY[j]];
+        }
+        int m2ls = m2l.size / 3;
+        this.m2lTo = new int[m2ls];
+        this.m2lFrom = new int[m2ls];
+        this.m2lBy = new int[m2ls];
+        this.m2lFactor = new double[m2ls];
+        for (int s = 0; s < m2ls; s++) {
+            int n = m2l.data[3 * s];
+            int k = m2l.data[3 * s + 1];
+            int sum = m2l.data[3 * s + 2];
+            this.m2lTo[s] = n;
+            this.m2lFrom[s] = k;
+            this.m2lBy[s] = sum;
+            this.m2lFactor[s] = binomial[powerX[sum]][powerX[n]] * binomial[powerY[sum]][powerY[n]];
+        }
+
+        this.order = order;
+        this.terms = terms;
+        this.powerX = powerX;
+        this.powerY = powerY;
+        // A direct pair costs about as much as one term of an M2L
+        this.directLimit = m2ls;
+        this.multipole = new double[0];
+        this.local = new double[0];
+        this.radius = new double[0];
+    }
+
+    /** @return opening angle */
+    public double getTheta() {
+        return this.theta;
+    }
+
+    /** @param theta opening angle, greater than 0 and at most 1 */
+    public void setTheta(double theta) {
+        if (!(theta > 0 && theta <= 1)) {
+            throw new IllegalArgumentException("theta must be in (0, 1]: " + theta);
+        }
+        this.theta = theta;
+    }
+
+    /** @param minDistance closest distance the force grows to, at least 0 */
+    public void setMinDistance(double minDistance) {
+        if (!(minDistance >= 0)) {
+            throw new IllegalArgumentException("invalid min distance: " + minDistance);
+        }
+        this.minDistance = minDistance;
+    }
+
+    /** @param parallel whether to build the tree and run the passes on the common pool */
+    public void setParallel(boolean parallel) {
+        this.tree.setParallel(parallel);
+    }
+
+    /** @return number of tree nodes built by the last solve */
+    public int getNodeCount() {
+        return this.tree.nodes.count;
+    }
+
+    /** Scratch arrays of one parallel task. */
+    private static final class Work {
+        final double[] derivatives;
+        final double[] powerX;
+        final double[] powerY;
+
+        Work(int order, int terms) {
+            this.derivatives = new double[terms];
+            this.powerX = new double[order + 1];
+            this.powerY = new double[order + 1];
+        }
+    }
+
+    /** Minimal growable int list. */
+    private static final class IntList {
+        int[] data = new int[64];
+        int size;
+
+        void add(int v) {
+            if (this.size == this.data.length) {
+                this.data = Arrays.copyOf(this.data, 2 * this.size);
+            }
+            this.data[this.size++] = v;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package gravity;
+
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Radix-2 complex fast Fourier transform of square power-of-two grids, with
+ * precomputed twiddle factors and bit-reversal permutation.
+ *
+ * <p>
+ * Grids are stored row-major in separate real and imaginary arrays. A 2D
+ * transform runs the 1D transform over all rows in parallel, transposes the
+ * grid and runs it over the rows again, so every pass streams through
+ * contiguous memory. The forward transform leaves its result transposed:
+ * spectra are only multiplied element by element, which does not care, and
+ * the inverse transform undoes the transposition.
+ * </p>
+ */
+final class Fft {
+    /** Edge of the tiles the transposition swaps. */
+    private static final int TILE = 32;
+
+    private final int n;
+    private final int[] reverse;
+    private final double[] cos;
+    private final double[] sin;
+    private boolean parallel = true;
+
+    /** @param n transform length and grid edge, a power of two */
+    Fft(int n) {
+        if (n < 2 || Integer.bitCount(n) != 1) {
+            throw new IllegalArgumentException("FFT size must be a power of two: " + n);
+        }
+        this.n = n;
+        int bits = Integer.numberOfTrailingZeros(n);
+        this.reverse = new int[n];
+        for (int i = 0; i < n; i++) {
+            this.reverse[i] = Integer.reverse(i) >>> (32 - bits);
+        }
+        this.cos = new double[n / 2];
+        this.sin = new double[n / 2];
+        for (int k = 0; k < n / 2; k++) {
+            double angle = -2.0 * Math.PI * k / n;
+            this.cos[k] = Math.cos(angle);
+            this.sin[k] = Math.sin(angle);
+        }
+    }
+
+    /**
+     * Forward 2D transform in place; the spectrum is left transposed.
+     *
+     * @param re real parts, {@code n * n} row-major
+     * @param im imaginary parts, {@code n * n} row-major
+     */
+    void forward(double[] re, double[] im) {
+        rows(re, im, false);
+        transpose(re);
+        transpose(im);
+        rows(re, im, false);
+    }
+
+    /**
+     * Inverse 2D transform in place of a spectrum left by {@link #forward},
+     * scaled by {@code 1 / n²} so it restores the original grid.
+     *
+     * @param re real parts, {@code n * n} row-major
+     * @param im imaginary parts, {@code n * n} row-major
+     */
+    void inverse(double[] re, double[] im) {
+        rows(re, im, true);
+        transpose(re);
+        transpose(im);
+        rows(re, im, true);
+        double scale = 1.0 / ((double) this.n * this.n);
+        forEach(this.n, r -> {
+            for (int i = r * this.n, end = i + this.n; i < end; i++) {
+                re[i] *= scale;
+                im[i] *= scale;
+            }
+        });
+    }
+
+    /** 1D transforms of all rows, in parallel. */
+    private void rows(double[] re, double[] im, boolean inverse) {
+        forEach(this.n, r -> transform(re, im, r * this.n, inverse));
+    }
+
+    /** Iterative radix-2 transform of one row starting at {@code offset}. */
+    private void transform(double[] re, double[] im, int offset, boolean inverse) {
+        int n = this.n;
+        for (int i = 0; i < n; i++) {
+            int j = this.reverse[i];
+            if (j > i) {
+                double t = re[offset + i];
+                re[offset + i] = re[offset + j];
+                re[offset + j] = t;
+                t = im[offset + i];
+                im[offset + i] = im[offset + j];
+                im[offset + j] = t;
+            }
+        }
+        double sign = inverse ? -1.0 : 1.0;
+        for (int half = 1; half < n; half <<= 1) {
+            int stride = n / (2 * half);
+            for (int start = 0; start < n; start += 2 * half) {
+                for (int k = 0; k < half; k++) {
+                    double wr = this.cos[k * stride];
+                    double wi = sign * this.sin[k * stride];
+                    int a = offset + start + k;
+                    int b = a + half;
+                    double tr = wr * re[b] - wi * im[b];
+                    double ti = wr * im[b] + wi * re[b];
+                    re[b] = re[a] - tr;
+                    im[b] = im[a] - ti;
+                    re[a] += tr;
+                    im[a] += ti;
+                }
+            }
+        }
+    }
+
+    /** Transposes a square grid in place, tile by tile, rows of tiles in parallel. */
+    private void transpose(double[] a) {
+        int n = this.n;
+        int tiles = (n + TILE - 1) / TILE;
+        forEach(tiles, ti -> {
+            int r0 = ti * TILE;
+            int r1 = Math.min(n, r0 + TILE);
+            for (int c0 = r0; c0 < n; c0 += TILE) {
+                int c1 = Math.min(n, c0 + TILE);
+                for (int r = r0; r < r1; r++) {
+                    for (int c = Math.max(c0, r + 1); c < c1; c++) {
+                        double t = a[r * n + c];
+                        a[r * n + c] = a[c * n + r];
+                        a[c * n + r] = t;
+                    }
+                }
+            }
+        });
+    }
+
+    private void forEach(int count, IntConsumer body) {
+        IntStream range = IntStream.range(0, count);
+        if (this.parallel && count > 1) {
+            range = range.parallel();
+        }
+        range.forEach(body);
+    }
+
+    /** @return transform length and grid edge */
+    int size() {
+        return this.n;
+    }
+
+    /** @param parallel whether to run the rows on the common pool */
+    void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+}
@@ -0,0 +1,49 @@
+package gravity;
+
+import java.util.Arrays;
+
+/**
+ * Computes the gravitational acceleration of every body of a {@link Bodies}
+ * set.
+ *
+ * <p>
+ * Solvers follow the conventions of {@code Ball.attract}: the gravitational
+ * constant is 1, so a body of mass {@code M} at distance {@code d} accelerates
+ * another by {@code M / d²} towards itself. Solvers differ in how exactly and
+ * how quickly they evaluate the sum over all pairs; all of them overwrite
+ * {@link Bodies#ax} and {@link Bodies#ay}.
+ * </p>
+ */
+public interface GravitySolver {
+    /**
+     * Writes the acceleration of every body caused by all others.
+     *
+     * @param bodies bodies to solve; positions and masses are read,
+     *               accelerations written
+     */
+    void accelerations(Bodies bodies);
+
+    /**
+     * Writes the acceleration of the listed bodies only, caused by all
+     * bodies; the others keep theirs. Integrators with individual time steps
+     * call this with the few bodies that are due for a kick. The default
+     * solves all bodies and puts the other accelerations back; solvers that
+     * can do less work override it.
+     *
+     * @param bodies bodies to solve
+     * @param active indices of the bodies to solve
+     * @param count  number of entries of {@code active} to use
+     */
+    default void accelerations(Bodies bodies, int[] active, int count) {
+        double[] keepX = Arrays.copyOf(bodies.ax, bodies.count);
+        double[] keepY = Arrays.copyOf(bodies.ay, bodies.count);
+        accelerations(bodies);
+        for (int k = 0; k < count; k++) {
+            int i = active[k];
+            keepX[i] = bodies.ax[i];
+            keepY[i] = bodies.ay[i];
+        }
+        System.arraycopy(keepX, 0, bodies.ax, 0, bodies.count);
+        System.arraycopy(keepY, 0, bodies.ay, 0, bodies.count);
+    }
+}
@@ -0,0 +1,362 @@
+package gravity;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Adaptive quadtree over Morton-sorted bodies, shared by the tree solvers.
+ *
+ * <p>
+ * Each build sorts the bodies along a Morton (Z-order) curve of their root
+ * square, so every cell is a contiguous run of the sorted arrays. The tree is
+ * cut at a fixed depth into subtrees that are built in parallel, each into its
+ * own pooled node arrays, and then concatenated in depth-first order. Cells are
+ * split until they hold at most {@code leafSize} bodies, so the tree follows
+ * the density of the bodies.
+ * </p>
+ *
+ * <p>
+ * Nodes are stored as in {@link NodePool}: the first child of an inner node
+ * {@code i} is {@code i + 1}, each child's skip link leads to its next sibling
+ * and the last sibling's skip link equals the parent's. Body ranges refer to
+ * the sorted arrays; {@link #order} maps them back to the caller's indices.
+ * </p>
+ */
+final class MortonTree {
+    /** Morton bits per axis; also the deepest tree level. */
+    static final int BITS = 20;
+    /** Level at which the tree is cut into independently built subtrees. */
+    static final int SPLIT_LEVEL = 2;
+    /** Bits left for the body index below the Morton code in a sort key. */
+    static final int INDEX_BITS = 63 - 2 * BITS;
+    static final int CHUNK = 1024;
+
+    private final int leafSize;
+    private boolean parallel = true;
+
+    // Bodies in Morton order
+    private long[] keys = new long[0];
+    int[] order = new int[0];
+    /** Inverse of {@link #order}: sorted position of each body. */
+    int[] rank = new int[0];
+    double[] sx = new double[0];
+    double[] sy = new double[0];
+    double[] sm = new double[0];
+
+    final NodePool nodes = new NodePool();
+    private NodePool[] pools = new NodePool[0];
+    private final double[] width = new double[BITS + 1];
+    private double rootX;
+    private double rootY;
+
+    /** @param leafSize bodies per leaf before it is split, at least 1 */
+    MortonTree(int leafSize) {
+        if (leafSize < 1) {
+            throw new IllegalArgumentException("leaf size must be positive: " + leafSize);
+        }
+        this.leafSize = leafSize;
+    }
+
+    /** Sorts the bodies along the Morton curve and builds the tree. */
+    void build(Bodies bodies) {
+        int n = bodies.count;
+        if (n > 1 << INDEX_BITS) {
+            throw new IllegalArgumentException("too many bodies: " + n);
+        }
+        reserve(n);
+
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            minX = Math.min(minX, bodies.x[i]);
+            minY = Math.min(minY, bodies.y[i]);
+            maxX = Math.max(maxX, bodies.x[i]);
+            maxY = Math.max(maxY, bodies.y[i]);
+        }
+        this.rootX = minX;
+        this.rootY = minY;
+        double rootSize = Math.max(Math.max(maxX - minX, maxY - minY), 1e-9) * (1 + 1e-9);
+        for (int level = 0; level <= BITS; level++) {
+            this.width[level] = rootSize / (1 << level);
+        }
+
+        double cells = (1 << BITS) / rootSize;
+        forEachChunk(n, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                int qx = Math.min((1 << BITS) - 1, (int) ((bodies.x[i] - this.rootX) * cells));
+                int qy = Math.min((1 << BITS) - 1, (int) ((bodies.y[i] - this.rootY) * cells));
+                this.keys[i] = interleave(qx, qy) << INDEX_BITS | i;
+            }
+        });
+        if (this.parallel) {
+            Arrays.parallelSort(this.keys, 0, n);
+        } else {
+            Arrays.sort(this.keys, 0, n);
+        }
+        forEachChunk(n, (from, to) -> {
+            for (int j = from; j < to; j++) {
+                int i = (int) (this.keys[j] & (1L << INDEX_BITS) - 1);
+                this.order[j] = i;
+                this.rank[i] = j;
+                this.sx[j] = bodies.x[i];
+                this.sy[j] = bodies.y[i];
+                this.sm[j] = bodies.mass[i];
+            }
+        });
+
+        // Subtrees below the split level are independent: collect them in
+        // depth-first order, build them in parallel, then stitch the top
+        IntArray tasks = new IntArray();
+        collectTasks(0, n, 0, tasks);
+        int taskCount = tasks.size / 3;
+        if (this.pools.length < taskCount) {
+            int old = this.pools.length;
+            this.pools = Arrays.copyOf(this.pools, taskCount);
+            for (int t = old; t < taskCount; t++) {
+                this.pools[t] = new NodePool();
+            }
+        }
+        IntStream range = IntStream.range(0, taskCount);
+        if (this.parallel) {
+            range = range.parallel();
+        }
+        range.forEach(t -> {
+            NodePool pool = this.pools[t];
+            pool.count = 0;
+            buildNode(pool, tasks.data[3 * t], tasks.data[3 * t + 1], tasks.data[3 * t + 2]);
+        });
+        this.nodes.count = 0;
+        if (n > 0) {
+            emitTop(0, n, 0, new int[1]);
+        }
+    }
+
+    /** Records the subtrees rooted at the split level (or at shallower leaves). */
+    private void collectTasks(int lo, int hi, int level, IntArray tasks) {
+        if (lo == hi) {
+            return;
+        }
+        if (level == SPLIT_LEVEL || isLeaf(lo, hi, level)) {
+            tasks.add(lo);
+            tasks.add(hi);
+            tasks.add(level);
+            return;
+        }
+        int[] bounds = new int[5];
+        split(lo, hi, level, bounds);
+        for (int q = 0; q < 4; q++) {
+            collectTasks(bounds[q], bounds[q + 1], level + 1, tasks);
+        }
+    }
+
+    /**
+     * Writes the nodes above the split level and copies the prebuilt subtrees
+     * in the same depth-first order as {@link #collectTasks}.
+     *
+     * @return node index of the emitted subtree root
+     */
+    private int emitTop(int lo, int hi, int level, int[] task) {
+        if (level == SPLIT_LEVEL || isLeaf(lo, hi, level)) {
+            NodePool pool = this.pools[task[0]++];
+            int offset = this.nodes.count;
+            this.nodes.append(pool, offset);
+            return offset;
+        }
+        int node = this.nodes.push(lo, hi, this.width[level] * this.width[level]);
+        int[] bounds = new int[5];
+        split(lo, hi, level, bounds);
+        double mass = 0.0;
+        double mx = 0.0;
+        double my = 0.0;
+        for (int q = 0; q < 4; q++) {
+            if (bounds[q] < bounds[q + 1]) {
+                int child = emitTop(bounds[q], bounds[q + 1], level + 1, task);
+                double[] data = this.nodes.data;
+                double m = data[4 * child + 2];
+                mass += m;
+                mx += m * data[4 * child];
+                my += m * data[4 * child + 1];
+            }
+        }
+        this.nodes.finish(node, mass, mx, my);
+        return node;
+    }
+
+    /** Builds a subtree depth-first into a pool and returns its root. */
+    private int buildNode(NodePool pool, int lo, int hi, int level) {
+        int node = pool.push(lo, hi, this.width[level] * this.width[level]);
+        double mass = 0.0;
+        double mx = 0.0;
+        double my = 0.0;
+        if (isLeaf(lo, hi, level)) {
+            for (int k = lo; k < hi; k++) {
+                mass += this.sm[k];
+                mx += this.sm[k] * this.sx[k];
+                my += this.sm[k] * this.sy[k];
+            }
+        } else {
+            int[] bounds = new int[5];
+            split(lo, hi, level, bounds);
+            for (int q = 0; q < 4; q++) {
+                if (bounds[q] < bounds[q + 1]) {
+                    int child = buildNode(pool, bounds[q], bounds[q + 1], level + 1);
+                    double m = pool.data[4 * child + 2];
+                    mass += m;
+                    mx += m * pool.data[4 * child];
+                    my += m * pool.data[4 * child + 1];
+                }
+            }
+        }
+        pool.finish(node, mass, mx, my);
+        return node;
+    }
+
+    private boolean isLeaf(int lo, int hi, int level) {
+        return hi - lo <= this.leafSize || level == BITS;
+    }
+
+    /**
+     * Splits a cell's sorted run into its four quadrants: quadrant {@code q}
+     * is {@code [bounds[q], bounds[q + 1])}.
+     */
+    private void split(int lo, int hi, int level, int[] bounds) {
+        int shift = INDEX_BITS + 2 * (BITS - 1 - level);
+        bounds[0] = lo;
+        bounds[4] = hi;
+        for (int q = 1; q < 4; q++) {
+            int a = bounds[q - 1];
+            int b = hi;
+            while (a < b) {
+                int mid = (a + b) >>> 1;
+                if ((int) (this.keys[mid] >>> shift & 3) < q) {
+                    a = mid + 1;
+                } else {
+                    b = mid;
+                }
+            }
+            bounds[q] = a;
+        }
+    }
+
+    /** Spreads the bits of {@code x} and {@code y} into a Z-order code. */
+    private static long interleave(int x, int y) {
+        return spread(x) | spread(y) << 1;
+    }
+
+    private static long spread(int v) {
+        long x = v & 0xFFFFFL;
+        x = (x | x << 16) & 0x0000FFFF0000FFFFL;
+        x = (x | x << 8) & 0x00FF00FF00FF00FFL;
+        x = (x | x << 4) & 0x0F0F0F0F0F0F0F0FL;
+        x = (x | x << 2) & 0x3333333333333333L;
+        x = (x | x << 1) & 0x5555555555555555L;
+        return x;
+    }
+
+    /** Grows the per-body arrays, or shrinks them once a shrinking set uses a quarter. */
+    private void reserve(int n) {
+        boolean shrink = this.keys.length > 64 && n < this.keys.length / 4;
+        if (n > this.keys.length || shrink) {
+            int capacity = shrink ? Math.max(16, 2 * n) : Math.max(n, 2 * this.keys.length);
+            this.keys = new long[capacity];
+            this.order = new int[capacity];
+            this.rank = new int[capacity];
+            this.sx = new double[capacity];
+            this.sy = new double[capacity];
+            this.sm = new double[capacity];
+        }
+    }
+
+    @FunctionalInterface
+    interface Range {
+        void run(int from, int to);
+    }
+
+    /** Runs {@code range} over {@code [0, n)}, in parallel chunks if enabled. */
+    void forEachChunk(int n, Range range) {
+        if (!this.parallel || n <= CHUNK) {
+            range.run(0, n);
+            return;
+        }
+        int chunks = (n + CHUNK - 1) / CHUNK;
+        IntStream.range(0, chunks).parallel()
+                .forEach(k -> range.run(k * CHUNK, Math.min(n, (k + 1) * CHUNK)));
+    }
+
+    boolean isParallel() {
+        return this.parallel;
+    }
+
+    void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    /**
+     * Growable tree nodes in depth-first order, packed so one walk step reads
+     * two short runs of memory: {@code links} holds skip, first and end body
+     * per node, {@code data} the center of mass, mass and squared cell width.
+     * Skip is the index of the first node after a node's subtree, so a leaf has
+     * {@code skip == index + 1} and an inner node's first child directly
+     * follows it.
+     */
+    static final class NodePool {
+        int count;
+        int[] links = new int[0];
+        double[] data = new double[0];
+
+        int push(int lo, int hi, double widthSq) {
+            int i = this.count;
+            grow(i + 1);
+            this.links[3 * i + 1] = lo;
+            this.links[3 * i + 2] = hi;
+            this.data[4 * i + 3] = widthSq;
+            this.count = i + 1;
+            return i;
+        }
+
+        /** Stores the moments of a node once its subtree is complete. */
+        void finish(int node, double m, double mx, double my) {
+            this.links[3 * node] = this.count;
+            this.data[4 * node] = m > 0 ? mx / m : 0.0;
+            this.data[4 * node + 1] = m > 0 ? my / m : 0.0;
+            this.data[4 * node + 2] = m;
+        }
+
+        /** Copies another pool's nodes to the end, shifting their links. */
+        void append(NodePool other, int offset) {
+            int n = other.count;
+            grow(this.count + n);
+            System.arraycopy(other.data, 0, this.data, 4 * this.count, 4 * n);
+            for (int k = 0; k < n; k++) {
+                int to = 3 * (this.count + k);
+                this.links[to] = other.links[3 * k] + offset;
+                this.links[to + 1] = other.links[3 * k + 1];
+                this.links[to + 2] = other.links[3 * k + 2];
+            }
+            this.count += n;
+        }
+
+        private void grow(int n) {
+            if (3 * n > this.links.length) {
+                int capacity = Math.max(n, Math.max(64, 2 * this.links.length / 3));
+                this.links = Arrays.copyOf(this.links, 3 * capacity);
+                this.data = Arrays.copyOf(this.data, 4 * capacity);
+            }
+        }
+    }
+
+    /** Minimal growable int list for the subtree tasks. */
+    private static final class IntArray {
+        int[] data = new int[48];
+        int size;
+
+        void add(int v) {
+            if (this.size == this.data.length) {
+                this.data = Arrays.copyOf(this.data, 2 * this.size);
+            }
+            this.data[this.size++] = v;
+        }
+    }
+}
@@ -0,0 +1,509 @@
+package gravity;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Particle-mesh gravity: masses are spread onto a grid, the grid's field is
+ * found with fast Fourier transforms and read back at the bodies, at a cost of
+ * O(N + G² log G) per solve for a grid of G × G nodes, whatever the number of
+ * bodies.
+ *
+ * <p>
+ * Each solve fits the grid over the bounding box of all bodies. Masses are
+ * deposited with cloud-in-cell weights: a body shares its mass between the
+ * four nodes around it in proportion to the overlapping areas. The field is
+ * the convolution of the mass grid with the pull of a unit mass at every node
+ * offset; the grid is zero-padded to 2G × 2G so the circular convolution of
+ * the FFT (see {@link Fft}) does not wrap around and isolated systems stay
+ * isolated. Both force components come out of one transform of the complex
+ * kernel {@code Kx + i Ky}. Cloud-in-cell interpolation of the node field
+ * gives each body its acceleration, so a body does not pull on itself.
+ * Deposit and interpolation each smooth the field with the cloud-in-cell
+ * window; the kernel's spectrum is divided by both windows, which would
+ * otherwise weaken the mesh pull over the first few spacings and leave a
+ * gap that the short-range correction does not fill.
+ * </p>
+ *
+ * <p>
+ * The kernel is the long-range part of a Gaussian split of Newtonian gravity,
+ * with potential {@code -erf(r / 2 rs) / r} for a split scale {@code rs} of
+ * 1.25 node spacings: smooth enough to be sampled on the grid and identical
+ * to {@code 1 / r²} beyond a few spacings. Without the short-range part the
+ * mesh is a softened solver that only resolves structure larger than a few
+ * cells, ideal for smooth, dense distributions. With P3M enabled the missing
+ * short-range part, the force law minus the long-range pull, is added for
+ * every pair closer than {@code 4.5 rs}, found through a cell list of that
+ * width (counting sort as in {@code SphFluid}); then close pairs follow the
+ * configured {@link Softening} exactly.
+ * </p>
+ *
+ * <p>
+ * The kernel's spectrum is cached for the node spacing, which is rounded up to
+ * a power of 2^(1/4) so the grid only has to be re-transformed when the
+ * bodies spread by about a fifth. Deposits run in parallel over bands of grid
+ * rows, in two rounds so neighboring bands never write the same row;
+ * transforms are parallel over rows and the interpolation over bodies.
+ * Bodies far away from the rest stretch the grid and coarsen it for all.
+ * </p>
+ */
+public final class ParticleMesh implements GravitySolver {
+    /** Smallest grid edge. */
+    public static final int MIN_GRID = 16;
+    /** Largest grid edge. */
+    public static final int MAX_GRID = 4096;
+    /** Split scale of the long-range kernel, in node spacings. */
+    private static final double SPLIT = 1.25;
+    /** Short-range cut-off in split scales; erfc(2.25) is about 1.5e-3. */
+    private static final double CUTOFF = 4.5;
+    /** Grid rows deposited by one task. */
+    private static final int BAND = 4;
+    /** Entries of the long-range pull table, uniform in squared distance up to the cut-off. */
+    private static final int TABLE = 2048;
+    /** Bodies interpolated by one task. */
+    private static final int CHUNK = 1024;
+
+    private final int grid;
+    private final int size;
+    private final Fft fft;
+    private final double[] re;
+    private final double[] im;
+    private final double[] kernelRe;
+    private final double[] kernelIm;
+    /** Inverse squared cloud-in-cell window per padded frequency along one axis. */
+    private final double[] deconvolution;
+    private double kernelSpacing = Double.NaN;
+    private final double[] longRange = new double[TABLE + 1];
+
+    private Softening softening = Softening.clamp(1.0, Double.POSITIVE_INFINITY);
+    private boolean p3m;
+    private boolean parallel = true;
+
+    // Geometry of the last solve
+    private double originX;
+    private double originY;
+    private double spacing;
+
+    // Massive bodies grouped by grid row for the deposit
+    private final int[] rowStart;
+    private int[] byRow = new int[0];
+    private int[] rowOf = new int[0];
+
+    // Cell list of the massive bodies for the short-range pass
+    private int columns;
+    private int rows;
+    private int[] cellStart = new int[0];
+    private int[] byCell = new int[0];
+    private int[] cellOf = new int[0];
+
+    /**
+     * Creates a solver.
+     *
+     * @param grid nodes per grid edge, a power of two from {@value #MIN_GRID}
+     *             to {@value #MAX_GRID}; the padded transforms are twice as
+     *             large in each direction
+     */
+    public ParticleMesh(int grid) {
+        if (grid < MIN_GRID || grid > MAX_GRID || Integer.bitCount(grid) != 1) {
+            throw new IllegalArgumentException(
+                    "grid must be a power of two in [" + MIN_GRID + ", " + MAX_GRID + "]: " + grid);
+        }
+        this.grid = grid;
+        this.size = 2 * grid;
+        this.fft = new Fft(this.size);
+        this.re = new double[this.size * this.size];
+        this.im = new double[this.size * this.size];
+        this.kernelRe = new double[this.size * this.size];
+        this.kernelIm = new double[this.size * this.size];
+        this.deconvolution = new double[this.size];
+        for (int u = 0; u < this.size; u++) {
+            int m = u < grid ? u : u - this.size;
+            double x = Math.PI * m / this.size;
+            double sinc = m == 0 ? 1.0 : Math.sin(x) / x;
+            // The window of one pass is sinc², deposit and interpolation make two
+            this.deconvolution[u] = 1.0 / (sinc * sinc * sinc * sinc);
+        }
+        this.rowStart = new int[grid + 1];
+    }
+
+    @Override
+    public void accelerations(Bodies bodies) {
+        int n = bodies.count;
+        if (n == 0) {
+            return;
+        }
+        fitGrid(bodies);
+        if (this.spacing != this.kernelSpacing) {
+            buildKernel(this.spacing);
+        }
+
+        deposit(bodies);
+        this.fft.forward(this.re, this.im);
+        double[] re = this.re;
+        double[] im = this.im;
+        double[] kr = this.kernelRe;
+        double[] ki = this.kernelIm;
+        int size = this.size;
+        forEach(size, r -> {
+            for (int i = r * size, end = i + size; i < end; i++) {
+                double a = re[i];
+                double b = im[i];
+                re[i] = a * kr[i] - b * ki[i];
+                im[i] = a * ki[i] + b * kr[i];
+            }
+        });
+        this.fft.inverse(this.re, this.im);
+
+        interpolate(bodies);
+        if (this.p3m) {
+            shortRange(bodies);
+        }
+    }
+
+    /** Places the grid's nodes over the bounding box of all bodies. */
+    private void fitGrid(Bodies bodies) {
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < bodies.count; i++) {
+            minX = Math.min(minX, bodies.x[i]);
+            maxX = Math.max(maxX, bodies.x[i]);
+            minY = Math.min(minY, bodies.y[i]);
+            maxY = Math.max(maxY, bodies.y[i]);
+        }
+        double extent = Math.max(Math.max(maxX - minX, maxY - minY), 1e-9);
+        // Nodes 0 .. grid - 1 span (grid - 1) spacings; half a spacing of
+        // margin on each side keeps every body between two nodes
+        double wanted = extent / (this.grid - 2);
+        double spacing = Math.pow(2.0, Math.ceil(4.0 * Math.log(wanted) / Math.log(2.0)) / 4.0);
+        this.spacing = spacing;
+        this.originX = 0.5 * (minX + maxX) - 0.5 * (this.grid - 1) * spacing;
+        this.originY = 0.5 * (minY + maxY) - 0.5 * (this.grid - 1) * spacing;
+    }
+
+    /**
+     * Transforms the long-range pull of a unit mass at every node offset,
+     * wrapped into the padded grid: {@code Kx + i Ky} at offset {@code d} is
+     * the acceleration at {@code d} towards a unit mass at the origin. The
+     * spectrum is then deconvolved with the cloud-in-cell windows.
+     */
+    private void buildKernel(double spacing) {
+        int size = this.size;
+        int grid = this.grid;
+        double rs = SPLIT * spacing;
+        double[] kr = this.kernelRe;
+        double[] ki = this.kernelIm;
+        forEach(size, r -> {
+            int oy = r < grid ? r : r - size;
+            for (int c = 0; c < size; c++) {
+                int ox = c < grid ? c : c - size;
+                double dx = ox * spacing;
+                double dy = oy * spacing;
+                double f = (ox == 0 && oy == 0) ? 0.0 : longRangePull(dx * dx + dy * dy, rs);
+                kr[r * size + c] = -f * dx;
+                ki[r * size + c] = -f * dy;
+            }
+        });
+        this.fft.forward(kr, ki);
+        double[] window = this.deconvolution;
+        forEach(size, r -> {
+            for (int c = 0; c < size; c++) {
+                double w = window[r] * window[c];
+                kr[r * size + c] *= w;
+                ki[r * size + c] *= w;
+            }
+        });
+
+        double cutoffSq = CUTOFF * rs * CUTOFF * rs;
+        double step = cutoffSq / (TABLE - 1);
+        this.longRange[0] = longRangePull(1e-12 * step, rs);
+        for (int e = 1; e <= TABLE; e++) {
+            this.longRange[e] = longRangePull(e * step, rs);
+        }
+        this.kernelSpacing = spacing;
+    }
+
+    /**
+     * Long-range pull per unit offset and unit mass,
+     * {@code (erf(x) - 2x exp(-x²) / sqrt(pi)) / r³} with {@code x = r / 2 rs}.
+     * Close to zero the two terms cancel, so there the difference is summed
+     * as a power series instead.
+     */
+    private static double longRangePull(double d2, double rs) {
+        double r = Math.sqrt(d2);
+        double x = r / (2.0 * rs);
+        double h;
+        if (x < 1.0) {
+            double x2 = x * x;
+            double p = x * x2;
+            h = 0.0;
+            for (int k = 1; k <= 14; k++) {
+                h += p * (2.0 * k) / (2.0 * k + 1.0);
+                p *= -x2 / (k + 1);
+            }
+            h *= 2.0 / Math.sqrt(Math.PI);
+        } else {
+            h = 1.0 - erfc(x) - 2.0 * x * Math.exp(-x * x) / Math.sqrt(Math.PI);
+        }
+        return h / (d2 * r);
+    }
+
+    /**
+     * Complementary error function for {@code x >= 0}, with a fractional error
+     * below 1.2e-7 (Chebyshev fit after Press et al.).
+     */
+    private static double erfc(double x) {
+        double t = 1.0 / (1.0 + 0.5 * x);
+        return t * Math.exp(-x * x - 1.26551223 + t * (1.00002368 + t * (0.37409196 + t * (0.09678418
+                + t * (-0.18628806 + t * (0.27886807 + t * (-1.13520398 + t * (1.48851587
+                        + t * (-0.82215223 + t * 0.17087277)))))))));
+    }
+
+    /**
+     * Cloud-in-cell deposit of the masses into the real part of the padded
+     * grid. The massive bodies are counting-sorted by the grid row below them;
+     * a band of rows writes into its own rows and the first row of the next
+     * band, so even bands run in parallel first and odd bands after.
+     */
+    private void deposit(Bodies bodies) {
+        int n = bodies.count;
+        int grid = this.grid;
+        int size = this.size;
+        Arrays.fill(this.re, 0.0);
+        Arrays.fill(this.im, 0.0);
+        if (this.rowOf.length < n) {
+            this.rowOf = new int[n];
+            this.byRow = new int[n];
+        }
+        int[] rowStart = this.rowStart;
+        Arrays.fill(rowStart, 0);
+        double inv = 1.0 / this.spacing;
+        for (int i = 0; i < n; i++) {
+            if (bodies.mass[i] == 0.0) {
+                this.rowOf[i] = -1;
+                continue;
+            }
+            int row = clamp((int) Math.floor((bodies.y[i] - this.originY) * inv), grid - 2);
+            this.rowOf[i] = row;
+            rowStart[row + 1]++;
+        }
+        for (int r = 0; r < grid; r++) {
+            rowStart[r + 1] += rowStart[r];
+        }
+        int[] fill = Arrays.copyOf(rowStart, grid);
+        for (int i = 0; i < n; i++) {
+            if (this.rowOf[i] >= 0) {
+                this.byRow[fill[this.rowOf[i]]++] = i;
+            }
+        }
+
+        double[] re = this.re;
+        int[] byRow = this.byRow;
+        int bands = (grid + BAND - 1) / BAND;
+        for (int round = 0; round < 2; round++) {
+            int first = round;
+            forEach((bands - first + 1) / 2, k -> {
+                int band = first + 2 * k;
+                int from = rowStart[band * BAND];
+                int to = rowStart[Math.min(grid, (band + 1) * BAND)];
+                for (int s = from; s < to; s++) {
+                    int i = byRow[s];
+                    double gx = (bodies.x[i] - this.originX) * inv;
+                    double gy = (bodies.y[i] - this.originY) * inv;
+                    int cx = clamp((int) Math.floor(gx), grid - 2);
+                    int cy = clamp((int) Math.floor(gy), grid - 2);
+                    double fx = gx - cx;
+                    double fy = gy - cy;
+                    double m = bodies.mass[i];
+                    int node = cy * size + cx;
+                    re[node] += m * (1 - fx) * (1 - fy);
+                    re[node + 1] += m * fx * (1 - fy);
+                    re[node + size] += m * (1 - fx) * fy;
+                    re[node + size + 1] += m * fx * fy;
+                }
+            });
+        }
+    }
+
+    /** Cloud-in-cell interpolation of the node field at every body. */
+    private void interpolate(Bodies bodies) {
+        int n = bodies.count;
+        int grid = this.grid;
+        int size = this.size;
+        double[] fxs = this.re;
+        double[] fys = this.im;
+        double inv = 1.0 / this.spacing;
+        forEach((n + CHUNK - 1) / CHUNK, k -> {
+            for (int i = k * CHUNK, end = Math.min(n, i + CHUNK); i < end; i++) {
+                double gx = (bodies.x[i] - this.originX) * inv;
+                double gy = (bodies.y[i] - this.originY) * inv;
+                int cx = clamp((int) Math.floor(gx), grid - 2);
+                int cy = clamp((int) Math.floor(gy), grid - 2);
+                double fx = gx - cx;
+                double fy = gy - cy;
+                double w00 = (1 - fx) * (1 - fy);
+                double w10 = fx * (1 - fy);
+                double w01 = (1 - fx) * fy;
+                double w11 = fx * fy;
+                int node = cy * size + cx;
+                bodies.ax[i] = w00 * fxs[node] + w10 * fxs[node + 1] + w01 * fxs[node + size]
+                        + w11 * fxs[node + size + 1];
+                bodies.ay[i] = w00 * fys[node] + w10 * fys[node + 1] + w01 * fys[node + size]
+                        + w11 * fys[node + size + 1];
+            }
+        });
+    }
+
+    /**
+     * P3M correction: adds the force law minus the long-range pull for all
+     * pairs closer than the cut-off, through a cell list one cut-off wide.
+     * Bodies are visited cell by cell, so the bodies of a cell scan the same
+     * neighbors while they are in the cache; the long-range pull comes from
+     * the table built with the kernel.
+     */
+    private void shortRange(Bodies bodies) {
+        int n = bodies.count;
+        double cutoff = CUTOFF * SPLIT * this.spacing;
+        double cutoffSq = cutoff * cutoff;
+        double width = (this.grid - 1) * this.spacing;
+        int columns = (int) (width / cutoff) + 1;
+        int rows = columns;
+        int cells = columns * rows;
+        if (this.cellStart.length < cells + 1) {
+            this.cellStart = new int[cells + 1];
+        }
+        if (this.cellOf.length < n) {
+            this.cellOf = new int[n];
+            this.byCell = new int[n];
+        }
+        this.columns = columns;
+        this.rows = rows;
+
+        int[] cellStart = this.cellStart;
+        Arrays.fill(cellStart, 0, cells + 1, 0);
+        double inv = 1.0 / cutoff;
+        for (int i = 0; i < n; i++) {
+            int c = cellOf(bodies.x[i], bodies.y[i], inv);
+            this.cellOf[i] = c;
+            cellStart[c + 1]++;
+        }
+        for (int c = 0; c < cells; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        int[] fill = Arrays.copyOf(cellStart, cells);
+        for (int i = 0; i < n; i++) {
+            this.byCell[fill[this.cellOf[i]]++] = i;
+        }
+
+        int[] byCell = this.byCell;
+        double[] table = this.longRange;
+        double perEntry = (TABLE - 1) / cutoffSq;
+        Softening law = this.softening;
+        forEach((n + CHUNK - 1) / CHUNK, k -> {
+            for (int s = k * CHUNK, end = Math.min(n, s + CHUNK); s < end; s++) {
+                int i = byCell[s];
+                double px = bodies.x[i];
+                double py = bodies.y[i];
+                int cx = clamp((int) ((px - this.originX) * inv), columns - 1);
+                int cy = clamp((int) ((py - this.originY) * inv), rows - 1);
+                double ax = 0.0;
+                double ay = 0.0;
+                for (int y = Math.max(0, cy - 1); y <= Math.min(rows - 1, cy + 1); y++) {
+                    int row = y * columns;
+                    int start = cellStart[row + Math.max(0, cx - 1)];
+                    int stop = cellStart[row + Math.min(columns - 1, cx + 1) + 1];
+                    for (int t = start; t < stop; t++) {
+                        int j = byCell[t];
+                        double m = bodies.mass[j];
+                        if (m == 0.0) {
+                            continue;
+                        }
+                        double dx = bodies.x[j] - px;
+                        double dy = bodies.y[j] - py;
+                        double d2 = dx * dx + dy * dy;
+                        if (d2 < cutoffSq && d2 > 0.0) {
+                            double e = d2 * perEntry;
+                            int e0 = (int) e;
+                            double lr = table[e0] + (e - e0) * (table[e0 + 1] - table[e0]);
+                            double f = m * (law.pull(d2) - lr);
+                            ax += f * dx;
+                            ay += f * dy;
+                        }
+                    }
+                }
+                bodies.ax[i] += ax;
+                bodies.ay[i] += ay;
+            }
+        });
+    }
+
+    private int cellOf(double x, double y, double inv) {
+        int cx = clamp((int) ((x - this.originX) * inv), this.columns - 1);
+        int cy = clamp((int) ((y - this.originY) * inv), this.rows - 1);
+        return cy * this.columns + cx;
+    }
+
+    private static int clamp(int v, int max) {
+        return v < 0 ? 0 : (v > max ? max : v);
+    }
+
+    private void forEach(int n, IntConsumer body) {
+        IntStream range = IntStream.range(0, n);
+        if (this.parallel && n > 1) {
+            range = range.parallel();
+        }
+        range.forEach(body);
+    }
+
+    /** @return nodes per grid edge */
+    public int getGridSize() {
+        return this.grid;
+    }
+
+    /** @return node spacing of the last solve */
+    public double getSpacing() {
+        return this.spacing;
+    }
+
+    /** @return whether close pairs get the short-range P3M correction */
+    public boolean isP3m() {
+        return this.p3m;
+    }
+
+    /**
+     * @param p3m whether to add the short-range correction for pairs closer
+     *            than about 5.6 node spacings; without it the mesh softens
+     *            gravity below a few spacings
+     */
+    public void setP3m(boolean p3m) {
+        this.p3m = p3m;
+    }
+
+    /** @return force law of the short-range correction */
+    public Softening getSoftening() {
+        return this.softening;
+    }
+
+    /**
+     * Sets the force law close pairs follow when P3M is on. The mesh assumes
+     * Newtonian gravity beyond the short-range cut-off, so the law must fall
+     * off freely: no upper clamp and no cut-off.
+     *
+     * @param softening force law at short range
+     */
+    public void setSoftening(Softening softening) {
+        if (softening.getMaxDistance() != Double.POSITIVE_INFINITY
+                || softening.getCutoff() != Double.POSITIVE_INFINITY) {
+            throw new IllegalArgumentException("the mesh needs a force law that falls off freely: " + softening);
+        }
+        this.softening = softening;
+    }
+
+    /** @param parallel whether to run deposits, transforms and interpolation on the common pool */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+        this.fft.setParallel(parallel);
+    }
+}
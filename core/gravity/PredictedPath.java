@@ -0,0 +1,114 @@
+package gravity;
+
+import java.awt.Graphics2D;
+import java.util.Arrays;
+
+/**
+ * Double-buffered polyline that one worker thread writes while the renderer
+ * draws it.
+ *
+ * <p>
+ * The worker appends points to a back buffer that nobody else touches and
+ * calls {@link #publish()} every few points, which swaps the buffers under the
+ * path's lock and then copies the points the new back buffer is missing. The
+ * renderer only ever sees a complete front buffer: {@link #draw(Graphics2D)}
+ * and {@link #size()} hold the lock for as long as they read it, so drawing a
+ * path that is still being extended neither tears nor blocks the worker for
+ * longer than one swap.
+ * </p>
+ *
+ * <p>
+ * {@link #clear()}, {@link #add(double, double)} and {@link #publish()} are
+ * for the single writer; {@link TrajectoryPredictor} is the usual one.
+ * </p>
+ */
+public final class PredictedPath {
+    /** One side of the double buffer. */
+    private static final class Buffer {
+        double[] x = new double[64];
+        double[] y = new double[64];
+        int count;
+        /** Number of the {@link PredictedPath#clear()} the points belong to. */
+        long epoch;
+    }
+
+    private Buffer front = new Buffer();
+    private Buffer back = new Buffer();
+    private long epoch;
+    private int[] px = new int[0];
+    private int[] py = new int[0];
+
+    /** Starts a new polyline in the back buffer; the front stays visible until the next publish. */
+    public void clear() {
+        this.epoch++;
+        this.back.count = 0;
+        this.back.epoch = this.epoch;
+    }
+
+    /**
+     * Appends a point to the back buffer.
+     *
+     * @param x x-coordinate
+     * @param y y-coordinate
+     */
+    public void add(double x, double y) {
+        Buffer b = this.back;
+        if (b.count == b.x.length) {
+            b.x = Arrays.copyOf(b.x, 2 * b.count);
+            b.y = Arrays.copyOf(b.y, 2 * b.count);
+        }
+        b.x[b.count] = x;
+        b.y[b.count] = y;
+        b.count++;
+    }
+
+    /** Makes the points added so far visible to the renderer. */
+    public void publish() {
+        Buffer shown;
+        synchronized (this) {
+            shown = this.front;
+            this.front = this.back;
+        }
+        // The old front is private to the writer now; bring it up to date
+        Buffer current = this.front;
+        if (shown.epoch != current.epoch) {
+            shown.count = 0;
+            shown.epoch = current.epoch;
+        }
+        if (shown.x.length < current.x.length) {
+            shown.x = Arrays.copyOf(shown.x, current.x.length);
+            shown.y = Arrays.copyOf(shown.y, current.x.length);
+        }
+        System.arraycopy(current.x, shown.count, shown.x, shown.count, current.count - shown.count);
+        System.arraycopy(current.y, shown.count, shown.y, shown.count, current.count - shown.count);
+        shown.count = current.count;
+        this.back = shown;
+    }
+
+    /** @return number of visible points */
+    public synchronized int size() {
+        return this.front.count;
+    }
+
+    /**
+     * Draws the visible points as a polyline with the current color and
+     * stroke.
+     *
+     * @param g graphics to draw into
+     */
+    public synchronized void draw(Graphics2D g) {
+        Buffer b = this.front;
+        if (b.count < 2) {
+            return;
+        }
+        if (this.px.length < b.count) {
+            this.px = new int[b.x.length];
+            this.py = new int[b.x.length];
+        }
+        for (int i = 0; i < b.count; i++) {
+            this.px[i] = (int) Math.round(b.x[i]);
+            this.py[i] = (int) Math.round(b.y[i]);
+        }
+        g.drawPolyline(this.px, this.py, b.count);
+    }
+}
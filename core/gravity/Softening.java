@@ -0,0 +1,247 @@
+package gravity;
+
+/**
+ * Force law between two bodies at short and long range: how the {@code M / d²}
+ * pull is tamed where it would blow up and where it may be dropped.
+ *
+ * <p>
+ * Point masses that pass close to each other pick up huge accelerations that
+ * a fixed time step cannot follow. Two remedies are available:
+ * </p>
+ * <ul>
+ * <li>{@link #plummer(double)} replaces every point mass with a Plummer sphere
+ * of scale length {@code epsilon}: the pull is {@code M d / (d² + ε²)^(3/2)},
+ * smooth everywhere, exactly Newtonian far away and derived from the potential
+ * {@code -M / sqrt(d² + ε²)}, so integrators can conserve energy.</li>
+ * <li>{@link #clamp(double, double)} clamps the distance used in the force law
+ * like {@code Ball.attract}; {@code (5, 25)} reproduces it. The clamp kinks the
+ * force at both ends, and above the upper bound the pull no longer falls
+ * off, so distant bodies feel far too much of each other.</li>
+ * </ul>
+ *
+ * <p>
+ * Either law can be cut off with {@link #withCutoff(double)}: the pull is
+ * multiplied by {@code (1 - (d / cutoff)²)²}, which fades it smoothly to zero
+ * at the cut-off so no body ever gets a kick from crossing it. A cut-off only
+ * makes sense for local interactions; gravity of a whole system needs the full
+ * range.
+ * </p>
+ *
+ * <p>
+ * Instances are immutable and shared freely between solvers and threads.
+ * </p>
+ */
+public final class Softening {
+    private final boolean plummer;
+    private final double epsilonSq;
+    private final double minDistance;
+    private final double maxDistance;
+    private final double cutoff;
+    private final double cutoffSq;
+    private final boolean hasCutoff;
+
+    private Softening(boolean plummer, double epsilonSq, double minDistance, double maxDistance, double cutoff) {
+        this.plummer = plummer;
+        this.epsilonSq = epsilonSq;
+        this.minDistance = minDistance;
+        this.maxDistance = maxDistance;
+        this.cutoff = cutoff;
+        this.cutoffSq = cutoff * cutoff;
+        this.hasCutoff = cutoff != Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Plummer softening.
+     *
+     * @param epsilon softening length, at least 0; about the distance below
+     *                which the pull stops growing
+     * @return softened force law
+     */
+    public static Softening plummer(double epsilon) {
+        if (!(epsilon >= 0)) {
+            throw new IllegalArgumentException("epsilon must not be negative: " + epsilon);
+        }
+        return new Softening(true, epsilon * epsilon, 0.0, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Distance clamp as in {@code Ball.attract}.
+     *
+     * @param minDistance closest distance the force grows to, at least 0
+     * @param maxDistance distance beyond which the force stops falling off
+     * @return clamped force law
+     */
+    public static Softening clamp(double minDistance, double maxDistance) {
+        if (minDistance < 0 || maxDistance < minDistance) {
+            throw new IllegalArgumentException("invalid clamp: " + minDistance + ", " + maxDistance);
+        }
+        return new Softening(false, 0.0, minDistance, maxDistance, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Returns this force law faded out towards a cut-off distance.
+     *
+     * @param cutoff distance at which the pull reaches zero, greater than 0;
+     *               infinity removes the cut-off
+     * @return force law with the cut-off
+     */
+    public Softening withCutoff(double cutoff) {
+        if (!(cutoff > 0)) {
+            throw new IllegalArgumentException("cutoff must be positive: " + cutoff);
+        }
+        return new Softening(this.plummer, this.epsilonSq, this.minDistance, this.maxDistance, cutoff);
+    }
+
+    /**
+     * Pull of a unit mass per unit offset at squared distance {@code d2}: the
+     * acceleration towards a mass {@code M} at offset {@code (dx, dy)} is
+     * {@code M * pull(dx² + dy²) * (dx, dy)}. Coincident bodies do not pull.
+     *
+     * @param d2 squared distance
+     * @return pull factor
+     */
+    public double pull(double d2) {
+        if (d2 == 0.0) {
+            return 0.0;
+        }
+        double f;
+        if (this.plummer) {
+            double s2 = d2 + this.epsilonSq;
+            f = 1.0 / (s2 * Math.sqrt(s2));
+        } else {
+            double d = Math.sqrt(d2);
+            double c = Math.min(Math.max(d, this.minDistance), this.maxDistance);
+            f = 1.0 / (c * c * d);
+        }
+        if (this.hasCutoff) {
+            double t = d2 < this.cutoffSq ? 1.0 - d2 / this.cutoffSq : 0.0;
+            f *= t * t;
+        }
+        return f;
+    }
+
+    /**
+     * Potential of a unit mass at squared distance {@code d2} from another:
+     * the potential energy of two masses is {@code m1 * m2 * potential(d2)}
+     * and its slope is the force of {@link #pull(double)}. Plummer softening
+     * gives {@code -1 / sqrt(d² + ε²)}, reaching zero at the cut-off if there
+     * is one. A clamp gives {@code -1 / d} between its bounds, continued
+     * linearly inside the lower and beyond the upper bound where the force is
+     * constant; the clamp's potential does not vanish far away, but energy
+     * differences are all that matter. With a cut-off the clamped force is
+     * integrated piecewise up to the cut-off, where the potential reaches
+     * zero.
+     *
+     * @param d2 squared distance
+     * @return potential, 0 where it would be infinite
+     */
+    public double potential(double d2) {
+        double phi;
+        if (this.plummer) {
+            if (!this.hasCutoff) {
+                phi = -1.0 / Math.sqrt(d2 + this.epsilonSq);
+            } else if (d2 >= this.cutoffSq) {
+                phi = 0.0;
+            } else {
+                phi = cutoffIntegral(d2 + this.epsilonSq) - cutoffIntegral(this.cutoffSq + this.epsilonSq);
+            }
+        } else if (this.hasCutoff) {
+            phi = d2 >= this.cutoffSq ? 0.0 : -clampedCutoffIntegral(Math.sqrt(d2));
+        } else {
+            double d = Math.sqrt(d2);
+            double lo = this.minDistance;
+            double hi = this.maxDistance;
+            if (d < lo) {
+                phi = -1.0 / lo - (lo - d) / (lo * lo);
+            } else if (d > hi) {
+                phi = -1.0 / hi + (d - hi) / (hi * hi);
+            } else {
+                phi = -1.0 / d;
+            }
+        }
+        return Double.isFinite(phi) ? phi : 0.0;
+    }
+
+    /**
+     * Antiderivative of the tapered Plummer force, in terms of
+     * {@code w = d² + ε²}: the potential at {@code d} is its value at
+     * {@code d} minus its value at the cut-off.
+     */
+    private double cutoffIntegral(double w) {
+        double a = 1.0 + this.epsilonSq / this.cutoffSq;
+        double sw = Math.sqrt(w);
+        return -a * a / sw - 2.0 * a * sw / this.cutoffSq + w * sw / (3.0 * this.cutoffSq * this.cutoffSq);
+    }
+
+    /**
+     * Integral of the tapered clamped force from {@code d} to the cut-off, in
+     * up to three pieces: constant {@code 1 / lo²} inside the lower bound,
+     * {@code 1 / s²} between the bounds and constant {@code 1 / hi²} beyond
+     * the upper bound, each times the taper.
+     */
+    private double clampedCutoffIntegral(double d) {
+        double lo = this.minDistance;
+        double hi = this.maxDistance;
+        double r = this.cutoff;
+        double sum = 0.0;
+        double inner = Math.min(lo, r);
+        if (d < inner) {
+            sum += (taperIntegral(inner) - taperIntegral(d)) / (lo * lo);
+        }
+        double from = Math.max(d, lo);
+        double to = Math.min(hi, r);
+        if (from < to) {
+            sum += inverseSquareTaperIntegral(to) - inverseSquareTaperIntegral(from);
+        }
+        from = Math.max(d, hi);
+        if (from < r) {
+            sum += (taperIntegral(r) - taperIntegral(from)) / (hi * hi);
+        }
+        return sum;
+    }
+
+    /** Antiderivative of the taper {@code (1 - s² / cutoff²)²}. */
+    private double taperIntegral(double s) {
+        double u = s * s / this.cutoffSq;
+        return s * (1.0 - 2.0 * u / 3.0 + u * u / 5.0);
+    }
+
+    /** Antiderivative of the taper divided by {@code s²}. */
+    private double inverseSquareTaperIntegral(double s) {
+        double u = s * s / this.cutoffSq;
+        return -1.0 / s - 2.0 * s / this.cutoffSq + s * u / (3.0 * this.cutoffSq);
+    }
+
+    /** @return whether this is Plummer softening rather than a clamp */
+    public boolean isPlummer() {
+        return this.plummer;
+    }
+
+    /** @return Plummer softening length, 0 for a clamp */
+    public double getEpsilon() {
+        return Math.sqrt(this.epsilonSq);
+    }
+
+    /** @return lower clamp distance, 0 for Plummer softening */
+    public double getMinDistance() {
+        return this.minDistance;
+    }
+
+    /** @return upper clamp distance, infinity for Plummer softening */
+    public double getMaxDistance() {
+        return this.maxDistance;
+    }
+
+    /** @return cut-off distance, infinity without a cut-off */
+    public double getCutoff() {
+        return this.cutoff;
+    }
+
+    @Override
+    public String toString() {
+        String law = this.plummer
+                ? String.format("plummer(%.3g)", getEpsilon())
+                : String.format("clamp(%.3g, %.3g)", this.minDistance, this.maxDistance);
+        return !this.hasCutoff ? law : law + String.format(" cutoff %.3g", this.cutoff);
+    }
+}
@@ -0,0 +1,324 @@
+package gravity;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Predicts the paths of test particles through a snapshot of attractors on a
+ * background thread, for showing where a launch will go while it is aimed.
+ *
+ * <p>
+ * {@link #predict(Bodies, Bodies)} copies the attractors and the candidate
+ * launches on the calling thread (usually the event dispatch thread) and
+ * returns at once. A single worker thread integrates the candidates with the
+ * same kick-drift-kick leapfrog as {@link Leapfrog} and streams every
+ * {@code stride}-th position into one {@link PredictedPath} per candidate, so
+ * the renderer shows the paths growing while they are computed.
+ * </p>
+ *
+ * <p>
+ * A call with a different snapshot cancels the running prediction: the worker
+ * checks a generation counter every step and drops stale work within one step.
+ * A call with an identical snapshot, as happens every frame while the aim and
+ * the attractors hold still, keeps the integrated state and only extends the
+ * paths by {@code steps} more steps, up to {@code maxSteps}, so a steady aim
+ * first gets a short path quickly and then a longer one without ever
+ * integrating the same stretch twice.
+ * </p>
+ *
+ * <p>
+ * By default the attractors move on straight lines with their snapshot
+ * velocities and only the candidates are pulled, the way scenes treat bodies
+ * flagged as attractors; {@link #setMutual(boolean)} integrates the attractors
+ * under each other's pull as well. The solver runs on the worker thread only
+ * and must not be shared with the simulation.
+ * </p>
+ */
+public final class TrajectoryPredictor implements AutoCloseable {
+    /** Points added between two publishes of a path. */
+    private static final int PUBLISH_EVERY = 32;
+
+    private final GravitySolver solver;
+    private final ExecutorService worker;
+
+    private double dt = 1.0;
+    private int stride = 1;
+    private int steps = 500;
+    private int maxSteps = 5000;
+    private boolean mutual;
+
+    // Caller side: the snapshot of the last prediction and its progress
+    private final Bodies snapshot = new Bodies();
+    private int attractorCount;
+    private PredictedPath[] paths = new PredictedPath[0];
+    private int horizon;
+    private Future<?> running;
+    private volatile long generation;
+    private long restarts;
+    private long extensions;
+
+    // Worker side: the integrated state of the current generation
+    private Bodies state;
+    private int[] active = new int[0];
+    private int stepsDone;
+
+    /**
+     * Creates a predictor with its own daemon worker thread.
+     *
+     * @param solver solver for the pull on the candidates, used only by the
+     *               worker; a {@link DirectSum} with the scene's softening
+     *               reproduces the scene's forces exactly
+     */
+    public TrajectoryPredictor(GravitySolver solver) {
+        this.solver = solver;
+        this.worker = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "trajectory-predictor");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Starts predicting the paths of the candidates, or extends the current
+     * prediction if neither the attractors nor the candidates changed.
+     *
+     * @param attractors bodies that pull, with their current velocities
+     * @param candidates launch positions and velocities; masses are ignored
+     */
+    public void predict(Bodies attractors, Bodies candidates) {
+        if (matches(attractors, candidates)) {
+            if ((this.running == null || this.running.isDone()) && this.horizon < this.maxSteps) {
+                this.horizon = Math.min(this.maxSteps, this.horizon + this.steps);
+                this.extensions++;
+                submit(false);
+            }
+            return;
+        }
+
+        this.generation++;
+        if (this.running != null) {
+            this.running.cancel(false);
+        }
+        this.snapshot.clear();
+        this.snapshot.reserve(attractors.count + candidates.count);
+        for (int i = 0; i < attractors.count; i++) {
+            this.snapshot.add(attractors.x[i], attractors.y[i], attractors.vx[i], attractors.vy[i], attractors.mass[i]);
+        }
+        for (int i = 0; i < candidates.count; i++) {
+            this.snapshot.add(candidates.x[i], candidates.y[i], candidates.vx[i], candidates.vy[i], 0.0);
+        }
+        this.attractorCount = attractors.count;
+        if (this.paths.length != candidates.count) {
+            this.paths = new PredictedPath[candidates.count];
+            for (int i = 0; i < this.paths.length; i++) {
+                this.paths[i] = new PredictedPath();
+            }
+        }
+        this.horizon = Math.min(this.maxSteps, this.steps);
+        this.restarts++;
+        submit(true);
+    }
+
+    /** Whether the attractors and candidates equal the last snapshot. */
+    private boolean matches(Bodies attractors, Bodies candidates) {
+        if (this.horizon == 0 || attractors.count != this.attractorCount
+                || attractors.count + candidates.count != this.snapshot.count) {
+            return false;
+        }
+        Bodies s = this.snapshot;
+        for (int i = 0; i < attractors.count; i++) {
+            if (attractors.x[i] != s.x[i] || attractors.y[i] != s.y[i] || attractors.vx[i] != s.vx[i]
+                    || attractors.vy[i] != s.vy[i] || attractors.mass[i] != s.mass[i]) {
+                return false;
+            }
+        }
+        for (int i = 0; i < candidates.count; i++) {
+            int j = this.attractorCount + i;
+            if (candidates.x[i] != s.x[j] || candidates.y[i] != s.y[j] || candidates.vx[i] != s.vx[j]
+                    || candidates.vy[i] != s.vy[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Hands the next stretch of work to the worker. Everything it needs is
+     * copied into final locals here, a new start state included, so later
+     * calls cannot change a running job.
+     */
+    private void submit(boolean restart) {
+        long gen = this.generation;
+        int target = this.horizon;
+        PredictedPath[] out = this.paths;
+        Bodies start = null;
+        if (restart) {
+            start = new Bodies();
+            start.reserve(this.snapshot.count);
+            for (int i = 0; i < this.snapshot.count; i++) {
+                start.add(this.snapshot.x[i], this.snapshot.y[i], this.snapshot.vx[i], this.snapshot.vy[i],
+                        this.snapshot.mass[i]);
+            }
+        }
+        Bodies from = start;
+        int first = this.attractorCount;
+        double h = this.dt;
+        int every = this.stride;
+        boolean all = this.mutual;
+        this.running = this.worker.submit(() -> integrate(gen, from, first, out, target, h, every, all));
+    }
+
+    /** Worker: integrates up to {@code target} steps while the generation is current. */
+    private void integrate(long gen, Bodies start, int first, PredictedPath[] out, int target, double h,
+            int every, boolean all) {
+        if (gen != this.generation) {
+            return;
+        }
+        if (start != null) {
+            this.state = start;
+            if (this.active.length < start.count) {
+                this.active = new int[start.count];
+            }
+            this.stepsDone = 0;
+            for (int k = 0; k < out.length; k++) {
+                out[k].clear();
+                out[k].add(start.x[first + k], start.y[first + k]);
+            }
+            solve(start, first, all);
+        }
+
+        Bodies b = this.state;
+        int sincePublish = 0;
+        double half = 0.5 * h;
+        while (this.stepsDone < target && gen == this.generation) {
+            int from = all ? 0 : first;
+            for (int i = from; i < b.count; i++) {
+                b.vx[i] += b.ax[i] * half;
+                b.vy[i] += b.ay[i] * half;
+            }
+            Leapfrog.drift(b, h);
+            solve(b, first, all);
+            for (int i = from; i < b.count; i++) {
+                b.vx[i] += b.ax[i] * half;
+                b.vy[i] += b.ay[i] * half;
+            }
+            this.stepsDone++;
+
+            if (this.stepsDone % every == 0) {
+                for (int k = 0; k < out.length; k++) {
+                    out[k].add(b.x[first + k], b.y[first + k]);
+                }
+                if (++sincePublish == PUBLISH_EVERY) {
+                    publish(out);
+                    sincePublish = 0;
+                }
+            }
+        }
+        if (gen == this.generation) {
+            publish(out);
+        }
+    }
+
+    /** Worker: solves the pulled bodies; attractors keep zero acceleration unless mutual. */
+    private void solve(Bodies b, int first, boolean all) {
+        int count = 0;
+        for (int i = all ? 0 : first; i < b.count; i++) {
+            this.active[count++] = i;
+        }
+        this.solver.accelerations(b, this.active, count);
+        if (!all) {
+            for (int i = 0; i < first; i++) {
+                b.ax[i] = 0.0;
+                b.ay[i] = 0.0;
+            }
+        }
+    }
+
+    private static void publish(PredictedPath[] out) {
+        for (PredictedPath path : out) {
+            path.publish();
+        }
+    }
+
+    /** Stops the running prediction; the next call of {@link #predict} starts afresh. */
+    public void cancel() {
+        this.generation++;
+        if (this.running != null) {
+            this.running.cancel(false);
+        }
+        this.horizon = 0;
+        this.snapshot.clear();
+    }
+
+    /**
+     * Path of one candidate of the last {@link #predict} call.
+     *
+     * @param candidate index of the candidate
+     * @return path, shared with the worker; draw it, do not write it
+     */
+    public PredictedPath getPath(int candidate) {
+        return this.paths[candidate];
+    }
+
+    /** @return number of candidates of the last {@link #predict} call */
+    public int getPathCount() {
+        return this.paths.length;
+    }
+
+    /** @return predictions started from a new snapshot so far */
+    public long getRestarts() {
+        return this.restarts;
+    }
+
+    /** @return predictions extended from an unchanged snapshot so far */
+    public long getExtensions() {
+        return this.extensions;
+    }
+
+    /**
+     * Sets how far ahead to look.
+     *
+     * @param steps    steps of the first prediction and of every extension,
+     *                 at least 1
+     * @param maxSteps steps after which an unchanged prediction stops growing,
+     *                 at least {@code steps}
+     */
+    public void setHorizon(int steps, int maxSteps) {
+        if (steps < 1 || maxSteps < steps) {
+            throw new IllegalArgumentException("invalid horizon: " + steps + ", " + maxSteps);
+        }
+        this.steps = steps;
+        this.maxSteps = maxSteps;
+        cancel();
+    }
+
+    /**
+     * Sets the integration step; takes effect with the next new snapshot.
+     *
+     * @param dt     time step, greater than 0; the scene's tick length makes
+     *               the prediction follow the scene step for step
+     * @param stride steps per path point, at least 1
+     */
+    public void setStep(double dt, int stride) {
+        if (!(dt > 0) || stride < 1) {
+            throw new IllegalArgumentException("invalid step: " + dt + ", " + stride);
+        }
+        this.dt = dt;
+        this.stride = stride;
+        cancel();
+    }
+
+    /** @param mutual whether the attractors pull each other too instead of moving on straight lines */
+    public void setMutual(boolean mutual) {
+        this.mutual = mutual;
+        cancel();
+    }
+
+    /** Stops the worker thread. */
+    @Override
+    public void close() {
+        cancel();
+        this.worker.shutdownNow();
+    }
+}
@@ -19,4 +19,36 @@ public interface Attractor {
      * @return attraction force vector to apply on {@code m}
      */
     Vec attract(Moveable m);
+
+    /**
+     * Adds the accelerations this attractor gives a batch of bodies to
+     * {@code ax} and {@code ay}, for scenes that keep their bodies in
+     * primitive arrays. One call covers all bodies, so implementations can
+     * stream through the arrays in a loop without allocating.
+     *
+     * <p>
+     * The default implementation calls {@link #attract(Moveable)} once per
+     * body with a probe at the body's position and of the body's mass, and
+     * divides the force by the mass. Bodies of zero mass are probed with unit
+     * mass, which gives their acceleration for any force proportional to the
+     * mass, like gravity. Implementations override it with a direct loop.
+     * </p>
+     *
+     * @param x     x-coordinates of the bodies
+     * @param y     y-coordinates of the bodies
+     * @param mass  masses of the bodies
+     * @param count number of bodies, from index 0
+     * @param ax    acceleration x-components to add to
+     * @param ay    acceleration y-components to add to
+     */
+    default void attract(double[] x, double[] y, double[] mass, int count, double[] ax, double[] ay) {
+        PointProbe probe = new PointProbe();
+        for (int i = 0; i < count; i++) {
+            double m = mass[i] > 0 ? mass[i] : 1.0;
+            probe.set(x[i], y[i], m);
+            Vec force = attract(probe);
+            ax[i] += force.x() / m;
+            ay[i] += force.y() / m;
+        }
+    }
 }
@@ -45,6 +45,14 @@ public interface Moveable {
      */
     Vec getLocation();
 
+    /**
+     * Moves the body's reference point, e.g. to resolve an overlap found by a
+     * collision pass.
+     *
+     * @param loc new location
+     */
+    void setLocation(Vec loc);
+
     /**
      * Current linear velocity.
      *
@@ -52,6 +60,13 @@ public interface Moveable {
      */
     Vec getVelocity();
 
+    /**
+     * Replaces the current linear velocity, e.g. after a collision impulse.
+     *
+     * @param velocity new velocity vector
+     */
+    void setVelocity(Vec velocity);
+
     /**
      * Current accumulated linear acceleration.
      *
@@ -66,6 +81,13 @@ public interface Moveable {
      */
     double getAngle();
 
+    /**
+     * Replaces the orientation angle, e.g. after a joint correction.
+     *
+     * @param angle angle in radians
+     */
+    void setAngle(double angle);
+
     /**
      * Current angular velocity representation.
      *
@@ -115,6 +137,13 @@ public interface Moveable {
      */
     void setBouncy(boolean bouncy);
 
+    /**
+     * Bounce restitution factor used when the body hits something.
+     *
+     * @return coefficient of restitution in [0, 1]
+     */
+    double getBounceFactor();
+
     /**
      * Sets the bounce restitution factor in [0, 1].
      *
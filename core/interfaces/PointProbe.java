@@ -0,0 +1,159 @@
+package interfaces;
+
+import data.Vec;
+
+/**
+ * Stand-in {@link Moveable} through which the default batch
+ * {@link Attractor#attract(double[], double[], double[], int, double[], double[])}
+ * feeds array entries to the pairwise method: a point at rest with a
+ * location and a mass. Forces applied to it are ignored and every flag is
+ * off.
+ */
+final class PointProbe implements Moveable {
+    private Vec loc = new Vec(0.0, 0.0);
+    private double mass = 1.0;
+
+    /** Moves the probe to a body of the batch. */
+    void set(double x, double y, double mass) {
+        this.loc = new Vec(x, y);
+        this.mass = mass;
+    }
+
+    @Override
+    public void applyForce(Vec force) {
+    }
+
+    @Override
+    public void applyMomentum(Vec momentum) {
+    }
+
+    @Override
+    public Vec getLocation() {
+        return this.loc;
+    }
+
+    @Override
+    public void setLocation(Vec loc) {
+        this.loc = loc;
+    }
+
+    @Override
+    public Vec getVelocity() {
+        return new Vec(0.0, 0.0);
+    }
+
+    @Override
+    public void setVelocity(Vec velocity) {
+    }
+
+    @Override
+    public Vec getAcceleration() {
+        return new Vec(0.0, 0.0);
+    }
+
+    @Override
+    public double getAngle() {
+        return 0.0;
+    }
+
+    @Override
+    public void setAngle(double angle) {
+    }
+
+    @Override
+    public Vec getAngularVelocity() {
+        return new Vec(0.0, 0.0);
+    }
+
+    @Override
+    public void setAngularVelocity(Vec angularVel) {
+    }
+
+    @Override
+    public Vec getAngularAcceleration() {
+        return new Vec(0.0, 0.0);
+    }
+
+    @Override
+    public double getMass() {
+        return this.mass;
+    }
+
+    @Override
+    public void setMass(double m) {
+        this.mass = m;
+    }
+
+    @Override
+    public boolean isBouncy() {
+        return false;
+    }
+
+    @Override
+    public void setBouncy(boolean bouncy) {
+    }
+
+    @Override
+    public double getBounceFactor() {
+        return 0.0;
+    }
+
+    @Override
+    public void setBounceFactor(double factor) {
+    }
+
+    @Override
+    public boolean isAttractor() {
+        return false;
+    }
+
+    @Override
+    public void setAttractor(boolean isAttractor) {
+    }
+
+    @Override
+    public boolean isLanded() {
+        return false;
+    }
+
+    @Override
+    public boolean isSliding() {
+        return false;
+    }
+
+    @Override
+    public boolean getHasFriction() {
+        return false;
+    }
+
+    @Override
+    public void setHasFriction(boolean hasFriction) {
+    }
+
+    @Override
+    public double getFrictionCoefficient() {
+        return 0.0;
+    }
+
+    @Override
+    public void setFrictionCoefficient(double coefficient) {
+    }
+
+    @Override
+    public boolean getHasDrag() {
+        return false;
+    }
+
+    @Override
+    public void setHasDrag(boolean hasDrag) {
+    }
+
+    @Override
+    public double getDragCoefficient() {
+        return 0.0;
+    }
+
+    @Override
+    public void setDragCoefficient(double coefficient) {
+    }
+}
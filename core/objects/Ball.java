@@ -9,6 +9,7 @@ import interfaces.Attractor;
 import interfaces.Moveable;
 import interfaces.Renderable;
 import interfaces.Updateable;
+import physics.CollisionWorld;
 
 // TODO: Finish documentation
 
@@ -63,18 +64,42 @@ public class Ball extends SceneObject implements Moveable, Attractor, Renderable
 
     @Override
     public Vec attract(Moveable m) {
-        Vec distanceVec = this.__loc.minus(m.getLocation());
+        Vec target = m.getLocation();
+        double dx = this.__loc.x() - target.x();
+        double dy = this.__loc.y() - target.y();
+        double d2 = dx * dx + dy * dy;
 
-        if (distanceVec.mag() == 0)
+        if (d2 == 0)
             return new Vec(0.0, 0.0);
 
-        Vec direction = distanceVec.norm();
-        double distance = distanceVec.mag();
-        distance = Math.min(Math.max(distance, 5), 25);
+        double distance = Math.sqrt(d2);
+        double clamped = Math.min(Math.max(distance, 5), 25);
 
-        double magnitude = (__mass * m.getMass()) / (distance * distance);
-        Vec force = direction.scale(magnitude);
-        return force;
+        // Magnitude M m / clamped², along the unit direction (dx, dy) / distance
+        double scale = (__mass * m.getMass()) / (clamped * clamped * distance);
+        return new Vec(dx * scale, dy * scale);
+    }
+
+    /**
+     * Batch form of {@link #attract(Moveable)}: the same clamped pull,
+     * {@code M / clamped²} towards this ball, added for all bodies in one
+     * loop without allocating. The acceleration does not depend on the
+     * bodies' masses.
+     */
+    @Override
+    public void attract(double[] x, double[] y, double[] mass, int count, double[] ax, double[] ay) {
+        double cx = this.__loc.x();
+        double cy = this.__loc.y();
+        double gm = this.__mass;
+        for (int i = 0; i < count; i++) {
+            double dx = cx - x[i];
+            double dy = cy - y[i];
+            double distance = Math.sqrt(dx * dx + dy * dy);
+            double clamped = Math.min(Math.max(distance, 5), 25);
+            double scale = distance > 0 ? gm / (clamped * clamped * distance) : 0.0;
+            ax[i] += dx * scale;
+            ay[i] += dy * scale;
+        }
     }
 
     private int __radius;
@@ -106,6 +131,9 @@ public class Ball extends SceneObject implements Moveable, Attractor, Renderable
     private boolean __isBouncy = false;
     private double __bounceFactor = 0.80;
 
+    private boolean __isContinuous = false;
+    private CollisionWorld __world;
+
     /**
      * <h1>Constructor of the Ball object</h1>
      *
@@ -147,7 +175,17 @@ public class Ball extends SceneObject implements Moveable, Attractor, Renderable
 
         // Translation
         this.__vel = this.__vel.plus(__acc);
-        this.__loc = this.__loc.plus(__vel);
+
+        // Fast continuous bodies are swept through the collision world so they
+        // cannot tunnel; everything else takes the cheap discrete step.
+        boolean swept = this.__isContinuous
+                && this.__world != null
+                && this.__vel.mag() > this.__radius;
+        if (swept) {
+            this.__loc = this.__world.sweep(this, this.__loc, this.__vel);
+        } else {
+            this.__loc = this.__loc.plus(__vel);
+        }
         __setLoc(
                 Math.max(Math.min(this.__loc.x(), dimX - this.__radius),
                         0 + this.__radius),
@@ -166,7 +204,7 @@ public class Ball extends SceneObject implements Moveable, Attractor, Renderable
             this.__angularAcc = this.__angularAcc.scale(0);
         }
 
-        if (this.__isBouncy && !this.__isLanded) {
+        if (this.__isBouncy && !swept && !this.__isLanded) {
 
             int locX = (int) this.__loc.x();
             int locY = (int) this.__loc.y();
@@ -199,7 +237,7 @@ public class Ball extends SceneObject implements Moveable, Attractor, Renderable
                 __setVelY(0.0);
                 this.__isLanded = true;
             }
-        } else if (this.__isBouncy && this.__isLanded) {
+        } else if (this.__isBouncy && !swept && this.__isLanded) {
             int locX = (int) this.__loc.x();
             int velX = (int) this.__vel.x();
             double velDotX = this.__vel.dot(new Vec(0, -1));
@@ -249,11 +287,17 @@ public class Ball extends SceneObject implements Moveable, Attractor, Renderable
         return this.__loc;
     }
 
+    @Override
+    public void setLocation(Vec loc) {
+        this.__loc = loc;
+    }
+
     @Override
     public Vec getVelocity() {
         return this.__vel;
     }
 
+    @Override
     public void setVelocity(Vec velocity) {
         this.__vel = velocity;
     }
@@ -332,6 +376,47 @@ public class Ball extends SceneObject implements Moveable, Attractor, Renderable
         return this.__radius;
     }
 
+    /**
+     * Resizes the ball, e.g. after it absorbed another one.
+     *
+     * @param radius radius in pixels, at least 1
+     */
+    public void setRadius(int radius) {
+        if (radius < 1) {
+            throw new IllegalArgumentException("radius must be at least 1: " + radius);
+        }
+        this.__radius = radius;
+        this.objectDim = new Dimension(radius, radius);
+    }
+
+    @Override
+    public double getBounceFactor() {
+        return this.__bounceFactor;
+    }
+
+    /**
+     * Enables continuous collision detection for this ball. Continuous balls
+     * that move further than their radius within one tick are swept through
+     * their {@link CollisionWorld} instead of jumping to the next location.
+     *
+     * @param continuous {@code true} to enable sweeping
+     */
+    public void setContinuous(boolean continuous) {
+        this.__isContinuous = continuous;
+    }
+
+    public boolean isContinuous() {
+        return this.__isContinuous;
+    }
+
+    public CollisionWorld getCollisionWorld() {
+        return this.__world;
+    }
+
+    public void setCollisionWorld(CollisionWorld world) {
+        this.__world = world;
+    }
+
     @Override
     public boolean getHasFriction() {
         return this.__hasFriction;
@@ -3,6 +3,8 @@ package objects;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.util.ArrayList;
 
 import data.Vec;
 import interfaces.Inert;
@@ -17,6 +19,8 @@ public class Box extends SceneObject implements Inert, Renderable {
     private boolean __isVisible = false;
     private Color __color;
 
+    private final ArrayList<Runnable> __poseListeners = new ArrayList<>();
+
     public Box(
             String name,
             Vec loc,
@@ -34,13 +38,15 @@ public class Box extends SceneObject implements Inert, Renderable {
     @Override
     public void render(Graphics2D g2d) {
         if (this.__isVisible) {
+            AffineTransform transform = g2d.getTransform();
             g2d.setColor(this.__color);
-            g2d.rotate(this.__angle, this.__loc.x() + (this.__width / 2), this.__loc.y() + (this.__height / 2));
+            g2d.rotate(this.__angle, this.__loc.x() + (this.__width / 2.0), this.__loc.y() + (this.__height / 2.0));
             g2d.fillRect(
                     (int) this.__loc.x(),
                     (int) this.__loc.y(),
                     this.__width,
                     this.__height);
+            g2d.setTransform(transform);
         }
     }
 
@@ -52,6 +58,7 @@ public class Box extends SceneObject implements Inert, Renderable {
     @Override
     public void setLocation(Vec loc) {
         this.__loc = loc;
+        firePoseChanged();
     }
 
     @Override
@@ -62,6 +69,7 @@ public class Box extends SceneObject implements Inert, Renderable {
     @Override
     public void setAngle(double angle) {
         this.__angle = angle;
+        firePoseChanged();
     }
 
     @Override
@@ -84,4 +92,20 @@ public class Box extends SceneObject implements Inert, Renderable {
         this.__isVisible = isVisible;
     }
 
+    /**
+     * Registers a callback that runs whenever the location or angle is changed
+     * through {@link #setLocation(Vec)} or {@link #setAngle(double)}. Collision
+     * worlds use this to rebuild their static geometry only when needed.
+     *
+     * @param listener callback to run on pose changes
+     */
+    public void addPoseListener(Runnable listener) {
+        this.__poseListeners.add(listener);
+    }
+
+    private void firePoseChanged() {
+        for (Runnable listener : this.__poseListeners) {
+            listener.run();
+        }
+    }
 }
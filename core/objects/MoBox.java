@@ -3,11 +3,13 @@ package objects;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
 
 import data.Vec;
 import interfaces.Moveable;
 import interfaces.Renderable;
 import interfaces.Updateable;
+import physics.CollisionWorld;
 
 public class MoBox extends SceneObject implements Moveable, Renderable, Updateable {
     private int __width;
@@ -22,8 +24,7 @@ public class MoBox extends SceneObject implements Moveable, Renderable, Updateab
 
     private double __angle;
 
-    private double __magAngularVel;
-    // private Vec __dirAngularVel;
+    private double __angularVel;
     private Vec __angularAcc;
 
     private Color __color;
@@ -43,6 +44,8 @@ public class MoBox extends SceneObject implements Moveable, Renderable, Updateab
     private boolean __isBouncy = false;
     private double __bounceFactor = 0.30;
 
+    private CollisionWorld __world;
+
     public MoBox(
             String name,
             Vec loc,
@@ -56,10 +59,12 @@ public class MoBox extends SceneObject implements Moveable, Renderable, Updateab
         this.__width = width;
         this.__height = height;
         this.__mass = mass;
+        __updateInertia();
 
         this.__loc = loc;
         this.__vel = new Vec(0.0, 0.0);
         this.__acc = new Vec(0.0, 0.0);
+        this.__angularAcc = new Vec(0.0, 0.0);
 
         this.__color = color;
     }
@@ -74,68 +79,59 @@ public class MoBox extends SceneObject implements Moveable, Renderable, Updateab
         // Translation
         this.__vel = this.__vel.plus(__acc);
         this.__loc = this.__loc.plus(__vel);
-
-        __setLoc(Math.max(Math.min(this.__loc.x(), dimX - this.__width),
-                0 + this.__width),
-                Math.max(Math.min(this.__loc.y(), dimY - this.__height),
-                        0 + this.__height));
-
         this.__acc = this.__acc.scale(0);
 
         // Rotation
-        this.__magAngularVel += this.__angularAcc.mag();
-        this.__angle += this.__magAngularVel;
+        this.__angularVel += signedRate(this.__angularAcc);
+        this.__angle += this.__angularVel;
         this.__angularAcc = new Vec(this.__angularAcc.scale(0));
 
-        // Bounce
-        if (this.__isBouncy && !this.__isLanded) {
-
-            int locX = (int) this.__loc.x();
-            int locY = (int) this.__loc.y();
-
-            int velX = (int) this.__vel.x();
-            int velY = (int) this.__vel.y();
-
-            double velDotX = this.__vel.dot(new Vec(0, -1));
-            double velDotY = this.__vel.dot(new Vec(0, -1));
-
-            if (locX + this.__width >= dimX && velDotX < 0 && Math.abs(velX) >= velCutOff) {
-                locX = Math.min(locX + this.__height, dimX);
-                bounce("horizontal");
-            } else if (locX - this.__width <= 0 && velDotX < 0 && Math.abs(velX) >= velCutOff) {
-                locX = Math.max(locX - this.__width, 0);
-                bounce("horizontal");
-            } else if ((locX + this.__width >= dimX || locX - this.__width <= 0) && Math.abs(velDotX) < velCutOff) {
-                locX = Math.min(locX + this.__width, dimX);
-                __setVelX(0.0);
-                this.__isSliding = true;
+        // Bounds: the location is the top-left corner of the unrotated box and
+        // the box rotates about its center, so the rotated extents around the
+        // center must stay inside the scene.
+        double halfW = this.__width / 2.0;
+        double halfH = this.__height / 2.0;
+        double cos = Math.abs(Math.cos(this.__angle));
+        double sin = Math.abs(Math.sin(this.__angle));
+        double extentX = cos * halfW + sin * halfH;
+        double extentY = sin * halfW + cos * halfH;
+        double centerX = this.__loc.x() + halfW;
+        double centerY = this.__loc.y() + halfH;
+
+        boolean hitLeft = centerX - extentX <= 0;
+        boolean hitRight = centerX + extentX >= dimX;
+        boolean hitTop = centerY - extentY <= 0;
+        boolean hitBottom = centerY + extentY >= dimY;
+
+        centerX = Math.max(Math.min(centerX, dimX - extentX), extentX);
+        centerY = Math.max(Math.min(centerY, dimY - extentY), extentY);
+        __setLoc(centerX - halfW, centerY - halfH);
+
+        // Bounce. Boxes registered with a collision world get their wall
+        // response, including the angular part, from the world's contact solver.
+        double velX = this.__vel.x();
+        double velY = this.__vel.y();
+
+        if (this.__world != null) {
+            this.__isSliding = hitLeft || hitRight;
+            this.__isLanded = hitBottom;
+        } else {
+            if ((hitRight && velX > 0) || (hitLeft && velX < 0)) {
+                if (this.__isBouncy && Math.abs(velX) >= velCutOff) {
+                    bounce("horizontal");
+                } else {
+                    __setVelX(0.0);
+                    this.__isSliding = true;
+                }
             }
 
-            if (locY + this.__height >= dimY && velDotY < 0 && Math.abs(velY) >= velCutOff) {
-                locY = Math.min(locY + this.__height, dimY);
-                bounce("vertical");
-            } else if (locY - this.__height <= 0 && -velDotY < 0 && Math.abs(velY) >= velCutOff) {
-                locY = Math.max(locY - this.__height, 0);
-                bounce("vertical");
-            } else if ((locY + this.__height >= dimY || locY - this.__height < 0) && Math.abs(velY) < velCutOff) {
-                __setVelY(0.0);
-                this.__isLanded = true;
-            }
-        } else if (this.__isBouncy && this.__isLanded) {
-            int locX = (int) this.__loc.x();
-            int velX = (int) this.__vel.x();
-            double velDotX = this.__vel.dot(new Vec(0, -1));
-
-            if (locX + this.__width >= dimX && velDotX < 0 && Math.abs(velX) >= velCutOff) {
-                locX = Math.min(locX + this.__width, dimX);
-                bounce("horizontal");
-            } else if (locX - this.__width <= 0 && velDotX < 0 && Math.abs(velX) >= velCutOff) {
-                locX = Math.max(locX - this.__width, 0);
-                bounce("horizontal");
-            } else if ((locX + this.__width >= dimX || locX - this.__width <= 0) && Math.abs(velDotX) < velCutOff) {
-                __setLoc(locX, (int) this.__loc.y());
-                __setVelX(0.0);
-                this.__isSliding = true;
+            if ((hitBottom && velY > 0) || (hitTop && velY < 0)) {
+                if (this.__isBouncy && Math.abs(velY) >= velCutOff) {
+                    bounce("vertical");
+                } else {
+                    __setVelY(0.0);
+                    this.__isLanded = true;
+                }
             }
         }
 
@@ -152,13 +148,15 @@ public class MoBox extends SceneObject implements Moveable, Renderable, Updateab
     @Override
     public void render(Graphics2D g2d) {
         if (this.__isVisible) {
+            AffineTransform transform = g2d.getTransform();
             g2d.setColor(this.__color);
-            g2d.rotate(this.__angle, this.__loc.x() + (this.__width / 2), this.__loc.y() + (this.__height / 2));
+            g2d.rotate(this.__angle, this.__loc.x() + (this.__width / 2.0), this.__loc.y() + (this.__height / 2.0));
             g2d.fillRect(
                     (int) this.__loc.x(),
                     (int) this.__loc.y(),
                     this.__width,
                     this.__height);
+            g2d.setTransform(transform);
         }
     }
 
@@ -168,24 +166,59 @@ public class MoBox extends SceneObject implements Moveable, Renderable, Updateab
         this.__acc = this.__acc.plus(f);
     }
 
+    /**
+     * Adds an angular impulse. The impulse is read as a signed scalar (see
+     * {@link #getAngularVelocity()}) and divided by the moment of inertia, so the
+     * resulting change of angular velocity is applied on the next update.
+     */
     @Override
     public void applyMomentum(Vec momentum) {
-        double effectiveRadius = (this.__width + this.__height) / 2;
-        this.__inertia = this.__mass * effectiveRadius * effectiveRadius;
-        Vec m = momentum.scale(1 / this.__inertia);
+        Vec m = momentum.scale(1 / getInertia());
         this.__angularAcc = this.__angularAcc.plus(m);
     }
 
+    public CollisionWorld getCollisionWorld() {
+        return this.__world;
+    }
+
+    public void setCollisionWorld(CollisionWorld world) {
+        this.__world = world;
+    }
+
+    /**
+     * Moment of inertia of a solid rectangle about its center, kept up to date
+     * whenever the mass changes.
+     *
+     * @return m · (w² + h²) / 12
+     */
+    public double getInertia() {
+        return this.__inertia;
+    }
+
+    private void __updateInertia() {
+        this.__inertia = this.__mass * (this.__width * this.__width + this.__height * this.__height) / 12.0;
+    }
+
     @Override
     public Vec getLocation() {
         return this.__loc;
     }
 
+    @Override
+    public void setLocation(Vec loc) {
+        this.__loc = loc;
+    }
+
     @Override
     public Vec getVelocity() {
         return this.__vel;
     }
 
+    @Override
+    public void setVelocity(Vec velocity) {
+        this.__vel = velocity;
+    }
+
     @Override
     public Vec getAcceleration() {
         return this.__acc;
@@ -201,19 +234,25 @@ public class MoBox extends SceneObject implements Moveable, Renderable, Updateab
         this.__angle = angle;
     }
 
+    /**
+     * Angular velocity as a signed rate in radians per tick, stored in the
+     * x-component. Positive rates turn the box clockwise on screen, matching
+     * {@link Graphics2D#rotate(double)}. Vectors passed in are read as their
+     * magnitude signed by their first non-zero component.
+     */
     @Override
     public Vec getAngularVelocity() {
-        return this.__vel;
+        return new Vec(this.__angularVel, 0.0);
     }
 
     @Override
     public void setAngularVelocity(Vec angularVel) {
-        this.__vel = angularVel;
+        this.__angularVel = signedRate(angularVel);
     }
 
     @Override
     public Vec getAngularAcceleration() {
-        return this.__acc;
+        return this.__angularAcc;
     }
 
     @Override
@@ -224,6 +263,7 @@ public class MoBox extends SceneObject implements Moveable, Renderable, Updateab
     @Override
     public void setMass(double m) {
         this.__mass = m;
+        __updateInertia();
     }
 
     @Override
@@ -276,6 +316,11 @@ public class MoBox extends SceneObject implements Moveable, Renderable, Updateab
         this.__isBouncy = bouncy;
     }
 
+    @Override
+    public double getBounceFactor() {
+        return this.__bounceFactor;
+    }
+
     @Override
     public void setBounceFactor(double factor) {
         this.__bounceFactor = factor;
@@ -332,4 +377,9 @@ public class MoBox extends SceneObject implements Moveable, Renderable, Updateab
     private void __setVelY(double velY) {
         this.__vel = new Vec(this.__vel.x(), velY);
     }
+
+    private static double signedRate(Vec v) {
+        double sign = v.x() != 0 ? v.x() : v.y();
+        return Math.copySign(v.mag(), sign);
+    }
 }
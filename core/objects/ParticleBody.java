@@ -0,0 +1,359 @@
+package objects;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.Stroke;
+
+import data.Vec;
+import interfaces.Renderable;
+import interfaces.Updateable;
+import physics.AreaConstraints;
+import physics.BendingConstraints;
+import physics.DistanceConstraints;
+import physics.ParticleSystem;
+import physics.XpbdSolver;
+
+/**
+ * <h1>ParticleBody</h1>
+ * A soft body made of small ball-like particles held together by XPBD
+ * constraints: a rope, a cloth sheet or a pressurized blob.
+ *
+ * <p>
+ * The particles live in a {@link ParticleSystem} owned by the body and are
+ * advanced by its own {@link XpbdSolver} in {@link #update()}, one tick per
+ * call. The body is not {@link interfaces.Moveable}; scenes push it around
+ * with {@link #applyForce(Vec)}, which acts on every particle the way a
+ * uniform field acts on a group of balls. Use the static factories to build
+ * one; the location reported by {@link #getLocation()} is the centroid of the
+ * particles after the last update.
+ * </p>
+ */
+public class ParticleBody extends SceneObject implements Renderable, Updateable {
+    private static final double GRAVITY = 0.2;
+
+    private final ParticleSystem __particles = new ParticleSystem();
+    private final XpbdSolver __solver = new XpbdSolver();
+    private final DistanceConstraints __links = new DistanceConstraints();
+    private final BendingConstraints __bending = new BendingConstraints();
+    private AreaConstraints __area;
+    private int[] __ring;
+
+    private double __angle;
+    private Color __color;
+    private boolean __isVisible = false;
+    private boolean __drawParticles = true;
+
+    private int __grabbed = -1;
+    private double __grabbedInvMass;
+
+    /**
+     * Creates an empty body. Prefer the factories {@link #rope}, {@link #cloth}
+     * and {@link #blob}.
+     *
+     * @param name     Type: String --> Name as identifier
+     * @param loc      Type: Vec --> Initial location
+     * @param sceneDim Type: Dimension --> Scene dimension, used as walls
+     * @param color    Type: Color --> Color of links and particles
+     */
+    public ParticleBody(String name, Vec loc, Dimension sceneDim, Color color) {
+        super(name, loc, new Dimension(0, 0), sceneDim);
+        this.__color = color;
+        this.__solver.setGravity(0.0, GRAVITY);
+        this.__solver.setBounds(sceneDim);
+        this.__solver.add(this.__bending);
+        this.__solver.add(this.__links);
+    }
+
+    /**
+     * Builds a rope hanging down from a pinned anchor.
+     *
+     * @param name          name as identifier
+     * @param anchor        location of the pinned first particle
+     * @param segments      number of segments (particles - 1)
+     * @param segmentLength rest length of a segment in pixels
+     * @param mass          mass of each particle
+     * @param radius        particle radius in pixels
+     * @param sceneDim      scene dimension
+     * @param color         color of the rope
+     * @return new rope
+     */
+    public static ParticleBody rope(String name, Vec anchor, int segments, double segmentLength,
+            double mass, int radius, Dimension sceneDim, Color color) {
+        ParticleBody body = new ParticleBody(name, anchor, sceneDim, color);
+        ParticleSystem ps = body.__particles;
+        for (int i = 0; i <= segments; i++) {
+            ps.add(anchor.x(), anchor.y() + i * segmentLength, i == 0 ? 0.0 : mass, radius);
+            if (i > 0) {
+                body.__links.add(i - 1, i, segmentLength, 0.0);
+            }
+            if (i > 1) {
+                body.__bending.add(ps, i - 2, i - 1, i, 50.0);
+            }
+        }
+        body.__updateLocation();
+        return body;
+    }
+
+    /**
+     * Builds a cloth sheet hanging from its top edge. Every fourth particle of
+     * the top row (and both corners) is pinned; the sheet is held together by
+     * stretch, shear and bending constraints.
+     *
+     * @param name     name as identifier
+     * @param topLeft  location of the top-left particle
+     * @param columns  particles per row (at least 2)
+     * @param rows     particles per column (at least 2)
+     * @param spacing  rest distance between neighbouring particles in pixels
+     * @param mass     mass of each particle
+     * @param radius   particle radius in pixels
+     * @param sceneDim scene dimension
+     * @param color    color of the cloth
+     * @return new cloth
+     */
+    public static ParticleBody cloth(String name, Vec topLeft, int columns, int rows, double spacing,
+            double mass, int radius, Dimension sceneDim, Color color) {
+        if (columns < 2 || rows < 2) {
+            throw new IllegalArgumentException("a cloth needs at least 2 x 2 particles");
+        }
+        ParticleBody body = new ParticleBody(name, topLeft, sceneDim, color);
+        body.__drawParticles = false;
+        ParticleSystem ps = body.__particles;
+        DistanceConstraints shear = new DistanceConstraints();
+        body.__solver.add(shear);
+
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < columns; c++) {
+                boolean pinned = r == 0 && (c % 4 == 0 || c == columns - 1);
+                ps.add(topLeft.x() + c * spacing, topLeft.y() + r * spacing, pinned ? 0.0 : mass, radius);
+            }
+        }
+
+        double diagonal = spacing * Math.sqrt(2.0);
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < columns; c++) {
+                int i = r * columns + c;
+                if (c + 1 < columns) {
+                    body.__links.add(i, i + 1, spacing, 0.0);
+                }
+                if (r + 1 < rows) {
+                    body.__links.add(i, i + columns, spacing, 0.0);
+                }
+                if (c + 1 < columns && r + 1 < rows) {
+                    shear.add(i, i + columns + 1, diagonal, 0.001);
+                    shear.add(i + 1, i + columns, diagonal, 0.001);
+                }
+                if (c + 2 < columns) {
+                    body.__bending.add(ps, i, i + 1, i + 2, 5.0);
+                }
+                if (r + 2 < rows) {
+                    body.__bending.add(ps, i, i + columns, i + 2 * columns, 5.0);
+                }
+            }
+        }
+        body.__updateLocation();
+        return body;
+    }
+
+    /**
+     * Builds a soft blob: a closed ring of particles whose enclosed area is
+     * kept close to its rest area, like a water balloon.
+     *
+     * @param name     name as identifier
+     * @param center   center of the ring
+     * @param segments number of particles on the ring (at least 3)
+     * @param size     ring radius in pixels
+     * @param mass     mass of each particle
+     * @param radius   particle radius in pixels
+     * @param sceneDim scene dimension
+     * @param color    color of the blob
+     * @return new blob
+     */
+    public static ParticleBody blob(String name, Vec center, int segments, double size,
+            double mass, int radius, Dimension sceneDim, Color color) {
+        if (segments < 3) {
+            throw new IllegalArgumentException("a blob needs at least 3 particles");
+        }
+        ParticleBody body = new ParticleBody(name, center, sceneDim, color);
+        ParticleSystem ps = body.__particles;
+        int[] ring = new int[segments];
+        for (int i = 0; i < segments; i++) {
+            double a = 2 * Math.PI * i / segments;
+            ring[i] = ps.add(center.x() + size * Math.cos(a), center.y() + size * Math.sin(a), mass, radius);
+        }
+        for (int i = 0; i < segments; i++) {
+            body.__links.add(ps, ring[i], ring[(i + 1) % segments], 0.01);
+            body.__bending.add(ps, ring[i], ring[(i + 1) % segments], ring[(i + 2) % segments], 20.0);
+        }
+        body.__area = new AreaConstraints();
+        body.__area.add(ps, ring, 1.0, 0.00001);
+        body.__solver.add(body.__area);
+        body.__ring = ring;
+        body.__updateLocation();
+        return body;
+    }
+
+    /**
+     * <h1>update() --> void</h1>
+     * Advances the particles by one tick and refreshes the centroid.
+     */
+    @Override
+    public void update() {
+        this.__solver.step(this.__particles, 1.0);
+        __updateLocation();
+    }
+
+    @Override
+    public void render(Graphics2D g2d) {
+        if (!this.__isVisible)
+            return;
+        ParticleSystem ps = this.__particles;
+
+        if (this.__ring != null) {
+            int[] xs = new int[this.__ring.length];
+            int[] ys = new int[this.__ring.length];
+            for (int i = 0; i < this.__ring.length; i++) {
+                xs[i] = (int) Math.round(ps.x[this.__ring[i]]);
+                ys[i] = (int) Math.round(ps.y[this.__ring[i]]);
+            }
+            g2d.setColor(new Color(this.__color.getRed(), this.__color.getGreen(), this.__color.getBlue(), 120));
+            g2d.fillPolygon(xs, ys, xs.length);
+        }
+
+        Stroke stroke = g2d.getStroke();
+        g2d.setStroke(new BasicStroke(1.5f));
+        g2d.setColor(this.__color);
+        for (int k = 0, n = this.__links.size(); k < n; k++) {
+            int i = this.__links.first(k);
+            int j = this.__links.second(k);
+            g2d.drawLine((int) Math.round(ps.x[i]), (int) Math.round(ps.y[i]),
+                    (int) Math.round(ps.x[j]), (int) Math.round(ps.y[j]));
+        }
+        g2d.setStroke(stroke);
+
+        if (this.__drawParticles) {
+            for (int i = 0; i < ps.count; i++) {
+                int r = (int) Math.round(ps.radius[i]);
+                g2d.fillOval((int) ps.x[i] - r, (int) ps.y[i] - r, 2 * r, 2 * r);
+            }
+        }
+    }
+
+    /**
+     * Applies a force to every movable particle for the next update.
+     *
+     * @param force force per particle
+     */
+    public void applyForce(Vec force) {
+        for (int i = 0; i < this.__particles.count; i++) {
+            this.__particles.applyForce(i, force.x(), force.y());
+        }
+    }
+
+    /**
+     * Pins the particle closest to a point so it can be dragged around.
+     *
+     * @param pos         pointer location
+     * @param maxDistance largest distance at which a particle is picked up
+     * @return whether a particle was grabbed
+     */
+    public boolean grab(Vec pos, double maxDistance) {
+        release();
+        int i = this.__particles.nearest(pos.x(), pos.y());
+        if (i < 0 || Math.hypot(this.__particles.x[i] - pos.x(), this.__particles.y[i] - pos.y()) > maxDistance) {
+            return false;
+        }
+        this.__grabbed = i;
+        this.__grabbedInvMass = this.__particles.invMass[i];
+        this.__particles.pin(i);
+        return true;
+    }
+
+    /**
+     * Moves the grabbed particle, if any.
+     *
+     * @param pos new location
+     */
+    public void drag(Vec pos) {
+        if (this.__grabbed >= 0) {
+            this.__particles.moveTo(this.__grabbed, pos.x(), pos.y());
+        }
+    }
+
+    /** Lets go of the grabbed particle and restores its mass. */
+    public void release() {
+        if (this.__grabbed >= 0) {
+            this.__particles.invMass[this.__grabbed] = this.__grabbedInvMass;
+            this.__grabbed = -1;
+        }
+    }
+
+    private void __updateLocation() {
+        ParticleSystem ps = this.__particles;
+        double x = 0.0;
+        double y = 0.0;
+        for (int i = 0; i < ps.count; i++) {
+            x += ps.x[i];
+            y += ps.y[i];
+        }
+        if (ps.count > 0) {
+            this.__loc = new Vec(x / ps.count, y / ps.count);
+        }
+    }
+
+    public Vec getLocation() {
+        return this.__loc;
+    }
+
+    public ParticleSystem getParticles() {
+        return this.__particles;
+    }
+
+    public XpbdSolver getSolver() {
+        return this.__solver;
+    }
+
+    public DistanceConstraints getLinks() {
+        return this.__links;
+    }
+
+    public BendingConstraints getBending() {
+        return this.__bending;
+    }
+
+    /** @return area constraint of a blob, {@code null} for ropes and cloth */
+    public AreaConstraints getArea() {
+        return this.__area;
+    }
+
+    @Override
+    public double getAngle() {
+        return this.__angle;
+    }
+
+    @Override
+    public void setAngle(double angle) {
+        this.__angle = angle;
+    }
+
+    @Override
+    public boolean isVisible() {
+        return this.__isVisible;
+    }
+
+    @Override
+    public void setVisible(boolean visible) {
+        this.__isVisible = visible;
+    }
+
+    @Override
+    public Color getColor() {
+        return this.__color;
+    }
+
+    @Override
+    public void setColor(Color color) {
+        this.__color = color;
+    }
+}
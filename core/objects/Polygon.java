@@ -0,0 +1,656 @@
+package objects;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.util.Arrays;
+
+import data.Vec;
+import interfaces.Moveable;
+import interfaces.Renderable;
+import interfaces.Updateable;
+import physics.CollisionWorld;
+import physics.ConvexShape;
+
+/**
+ * Convex polygon body.
+ *
+ * <p>
+ * The outline is given in local coordinates and reduced to its convex hull in
+ * counter-clockwise order (with respect to the math axes), centered on its
+ * centroid. Unlike {@link MoBox}, the location of a polygon is its centroid,
+ * which is also the center of rotation. World-space vertices and face normals
+ * are cached and only recomputed when the location or the angle has changed
+ * since they were last requested, so repeated narrowphase queries within a
+ * tick share one transform.
+ * </p>
+ */
+public class Polygon extends SceneObject implements Moveable, Renderable, Updateable, ConvexShape {
+    private final int __count;
+    private final double[] __localX;
+    private final double[] __localY;
+
+    private final double[] __worldX;
+    private final double[] __worldY;
+    private final double[] __normalX;
+    private final double[] __normalY;
+    private final int[] __pixelX;
+    private final int[] __pixelY;
+    private double __cachedX = Double.NaN;
+    private double __cachedY = Double.NaN;
+    private double __cachedAngle = Double.NaN;
+    private int __lastSupport;
+
+    private double __mass;
+    private double __inertia;
+
+    private Vec __loc;
+    private Vec __vel;
+    private Vec __acc;
+
+    private double __angle;
+
+    private double __angularVel;
+    private Vec __angularAcc;
+
+    private Color __color;
+    private boolean __isVisible = false;
+
+    private boolean __hasFriction = false;
+    private double __frictionCoefficient = 0.80;
+
+    private boolean __hasDrag = false;
+    private double __dragCoefficient = 0.0;
+
+    private boolean __isAttractor = false;
+
+    private boolean __isLanded = false;
+    private boolean __isSliding = false;
+    private boolean __isBouncy = false;
+    private double __bounceFactor = 0.30;
+
+    private CollisionWorld __world;
+
+    /**
+     * Creates a polygon body.
+     *
+     * @param name     object name
+     * @param loc      location of the centroid
+     * @param xs       outline x-coordinates in local space
+     * @param ys       outline y-coordinates in local space
+     * @param mass     body mass
+     * @param sceneDim scene dimension
+     * @param color    fill color
+     */
+    public Polygon(
+            String name,
+            Vec loc,
+            double[] xs,
+            double[] ys,
+            double mass,
+            Dimension sceneDim,
+            Color color) {
+
+        super(name, loc, new Dimension(0, 0), sceneDim);
+        if (xs.length != ys.length || xs.length < 3) {
+            throw new IllegalArgumentException("A polygon needs at least 3 vertices");
+        }
+
+        double[][] hull = hull(xs, ys);
+        this.__count = hull[0].length;
+        if (this.__count < 3) {
+            throw new IllegalArgumentException("Polygon vertices are collinear");
+        }
+        this.__localX = hull[0];
+        this.__localY = hull[1];
+        this.__mass = mass;
+        this.__inertia = centerOnCentroid();
+
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < this.__count; i++) {
+            minX = Math.min(minX, this.__localX[i]);
+            minY = Math.min(minY, this.__localY[i]);
+            maxX = Math.max(maxX, this.__localX[i]);
+            maxY = Math.max(maxY, this.__localY[i]);
+        }
+        this.objectDim = new Dimension((int) Math.ceil(maxX - minX), (int) Math.ceil(maxY - minY));
+
+        this.__worldX = new double[this.__count];
+        this.__worldY = new double[this.__count];
+        this.__normalX = new double[this.__count];
+        this.__normalY = new double[this.__count];
+        this.__pixelX = new int[this.__count];
+        this.__pixelY = new int[this.__count];
+
+        this.__loc = loc;
+        this.__vel = new Vec(0.0, 0.0);
+        this.__acc = new Vec(0.0, 0.0);
+        this.__angularAcc = new Vec(0.0, 0.0);
+
+        this.__color = color;
+    }
+
+    /**
+     * Creates a regular polygon.
+     *
+     * @param name     object name
+     * @param loc      location of the center
+     * @param sides    number of sides (at least 3)
+     * @param radius   circumradius
+     * @param mass     body mass
+     * @param sceneDim scene dimension
+     * @param color    fill color
+     * @return regular polygon body
+     */
+    public static Polygon regular(
+            String name,
+            Vec loc,
+            int sides,
+            double radius,
+            double mass,
+            Dimension sceneDim,
+            Color color) {
+        double[] xs = new double[sides];
+        double[] ys = new double[sides];
+        for (int i = 0; i < sides; i++) {
+            double a = 2 * Math.PI * i / sides;
+            xs[i] = radius * Math.cos(a);
+            ys[i] = radius * Math.sin(a);
+        }
+        return new Polygon(name, loc, xs, ys, mass, sceneDim, color);
+    }
+
+    @Override
+    public void update() {
+        double velCutOff = 0.05;
+
+        int dimX = this.getSceneDim().width;
+        int dimY = this.getSceneDim().height;
+
+        // Translation
+        this.__vel = this.__vel.plus(__acc);
+        this.__loc = this.__loc.plus(__vel);
+        this.__acc = this.__acc.scale(0);
+
+        // Rotation
+        this.__angularVel += signedRate(this.__angularAcc);
+        this.__angle += this.__angularVel;
+        this.__angularAcc = new Vec(this.__angularAcc.scale(0));
+
+        // Bounds from the rotated vertices
+        refreshWorldVertices();
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < this.__count; i++) {
+            minX = Math.min(minX, this.__worldX[i]);
+            minY = Math.min(minY, this.__worldY[i]);
+            maxX = Math.max(maxX, this.__worldX[i]);
+            maxY = Math.max(maxY, this.__worldY[i]);
+        }
+
+        boolean hitLeft = minX <= 0;
+        boolean hitRight = maxX >= dimX;
+        boolean hitTop = minY <= 0;
+        boolean hitBottom = maxY >= dimY;
+
+        double shiftX = hitLeft ? -minX : hitRight ? dimX - maxX : 0.0;
+        double shiftY = hitTop ? -minY : hitBottom ? dimY - maxY : 0.0;
+        if (shiftX != 0 || shiftY != 0) {
+            this.__loc = new Vec(this.__loc.x() + shiftX, this.__loc.y() + shiftY);
+        }
+
+        // Bounce. Polygons registered with a collision world get their wall
+        // response, including the angular part, from the world's contact solver.
+        double velX = this.__vel.x();
+        double velY = this.__vel.y();
+
+        if (this.__world != null) {
+            this.__isSliding = hitLeft || hitRight;
+            this.__isLanded = hitBottom;
+        } else {
+            if ((hitRight && velX > 0) || (hitLeft && velX < 0)) {
+                if (this.__isBouncy && Math.abs(velX) >= velCutOff) {
+                    bounce("horizontal");
+                } else {
+                    this.__vel = new Vec(0.0, this.__vel.y());
+                    this.__isSliding = true;
+                }
+            }
+
+            if ((hitBottom && velY > 0) || (hitTop && velY < 0)) {
+                if (this.__isBouncy && Math.abs(velY) >= velCutOff) {
+                    bounce("vertical");
+                } else {
+                    this.__vel = new Vec(this.__vel.x(), 0.0);
+                    this.__isLanded = true;
+                }
+            }
+        }
+
+        if (this.__vel.mag() > velCutOff) {
+            this.__isLanded = false;
+            this.__isSliding = false;
+        }
+    }
+
+    public void bounce(String mode) {
+        this.__vel = this.__vel.reflect2D(mode == "horizontal" ? 1 : 0).scale(this.__bounceFactor);
+    }
+
+    @Override
+    public void render(Graphics2D g2d) {
+        if (this.__isVisible) {
+            refreshWorldVertices();
+            for (int i = 0; i < this.__count; i++) {
+                this.__pixelX[i] = (int) Math.round(this.__worldX[i]);
+                this.__pixelY[i] = (int) Math.round(this.__worldY[i]);
+            }
+            g2d.setColor(this.__color);
+            g2d.fillPolygon(this.__pixelX, this.__pixelY, this.__count);
+        }
+    }
+
+    /** @return number of vertices of the convex hull */
+    public int getVertexCount() {
+        return this.__count;
+    }
+
+    /**
+     * World-space vertex x-coordinates. The returned array is the internal
+     * cache: it is refreshed in place when the pose changes and must not be
+     * modified.
+     *
+     * @return vertex x-coordinates for the current pose
+     */
+    public double[] getWorldX() {
+        refreshWorldVertices();
+        return this.__worldX;
+    }
+
+    /**
+     * World-space vertex y-coordinates (see {@link #getWorldX()}).
+     *
+     * @return vertex y-coordinates for the current pose
+     */
+    public double[] getWorldY() {
+        refreshWorldVertices();
+        return this.__worldY;
+    }
+
+    /**
+     * Outward unit normals of the world-space faces; face {@code i} runs from
+     * vertex {@code i} to vertex {@code i + 1}.
+     *
+     * @return face normal x-components for the current pose
+     */
+    public double[] getNormalX() {
+        refreshWorldVertices();
+        return this.__normalX;
+    }
+
+    /**
+     * Face normal y-components (see {@link #getNormalX()}).
+     *
+     * @return face normal y-components for the current pose
+     */
+    public double[] getNormalY() {
+        refreshWorldVertices();
+        return this.__normalY;
+    }
+
+    /**
+     * Support point for the current pose. The search starts at the vertex found
+     * by the previous query and climbs along the outline, which usually takes a
+     * step or two when consecutive queries use similar directions.
+     */
+    @Override
+    public void support(double dx, double dy, double[] out) {
+        refreshWorldVertices();
+        int n = this.__count;
+        int best = this.__lastSupport;
+        double bestDot = this.__worldX[best] * dx + this.__worldY[best] * dy;
+
+        for (int step = 0; step < n; step++) {
+            int next = best + 1 == n ? 0 : best + 1;
+            int prev = best == 0 ? n - 1 : best - 1;
+            double nextDot = this.__worldX[next] * dx + this.__worldY[next] * dy;
+            double prevDot = this.__worldX[prev] * dx + this.__worldY[prev] * dy;
+            if (nextDot > bestDot && nextDot >= prevDot) {
+                best = next;
+                bestDot = nextDot;
+            } else if (prevDot > bestDot) {
+                best = prev;
+                bestDot = prevDot;
+            } else {
+                break;
+            }
+        }
+
+        this.__lastSupport = best;
+        out[0] = this.__worldX[best];
+        out[1] = this.__worldY[best];
+    }
+
+    @Override
+    public double centerX() {
+        return this.__loc.x();
+    }
+
+    @Override
+    public double centerY() {
+        return this.__loc.y();
+    }
+
+    @Override
+    public void applyForce(Vec force) {
+        Vec f = force.scale(1 / __mass);
+        this.__acc = this.__acc.plus(f);
+    }
+
+    /**
+     * Adds an angular impulse. The impulse is read as a signed scalar (see
+     * {@link #getAngularVelocity()}) and divided by the moment of inertia, so the
+     * resulting change of angular velocity is applied on the next update.
+     */
+    @Override
+    public void applyMomentum(Vec momentum) {
+        Vec m = momentum.scale(1 / getInertia());
+        this.__angularAcc = this.__angularAcc.plus(m);
+    }
+
+    public CollisionWorld getCollisionWorld() {
+        return this.__world;
+    }
+
+    public void setCollisionWorld(CollisionWorld world) {
+        this.__world = world;
+    }
+
+    /**
+     * Moment of inertia of the solid polygon about its centroid.
+     *
+     * @return inertia for the current mass
+     */
+    public double getInertia() {
+        return this.__mass * this.__inertia;
+    }
+
+    @Override
+    public Vec getLocation() {
+        return this.__loc;
+    }
+
+    @Override
+    public void setLocation(Vec loc) {
+        this.__loc = loc;
+    }
+
+    @Override
+    public Vec getVelocity() {
+        return this.__vel;
+    }
+
+    @Override
+    public void setVelocity(Vec velocity) {
+        this.__vel = velocity;
+    }
+
+    @Override
+    public Vec getAcceleration() {
+        return this.__acc;
+    }
+
+    @Override
+    public double getAngle() {
+        return this.__angle;
+    }
+
+    @Override
+    public void setAngle(double angle) {
+        this.__angle = angle;
+    }
+
+    /**
+     * Angular velocity as a signed rate in radians per tick, stored in the
+     * x-component, with the same convention as {@link MoBox#getAngularVelocity()}.
+     */
+    @Override
+    public Vec getAngularVelocity() {
+        return new Vec(this.__angularVel, 0.0);
+    }
+
+    @Override
+    public void setAngularVelocity(Vec angularVel) {
+        this.__angularVel = signedRate(angularVel);
+    }
+
+    @Override
+    public Vec getAngularAcceleration() {
+        return this.__angularAcc;
+    }
+
+    @Override
+    public double getMass() {
+        return this.__mass;
+    }
+
+    @Override
+    public void setMass(double m) {
+        this.__mass = m;
+    }
+
+    @Override
+    public boolean isAttractor() {
+        return this.__isAttractor;
+    }
+
+    @Override
+    public void setAttractor(boolean isAttractor) {
+        this.__isAttractor = isAttractor;
+    }
+
+    @Override
+    public Color getColor() {
+        return this.__color;
+    }
+
+    @Override
+    public void setColor(Color color) {
+        this.__color = color;
+    }
+
+    @Override
+    public boolean isVisible() {
+        return this.__isVisible;
+    }
+
+    @Override
+    public void setVisible(boolean isVisible) {
+        this.__isVisible = isVisible;
+    }
+
+    @Override
+    public boolean isBouncy() {
+        return this.__isBouncy;
+    }
+
+    @Override
+    public boolean isLanded() {
+        return this.__isLanded;
+    }
+
+    @Override
+    public boolean isSliding() {
+        return this.__isSliding;
+    }
+
+    @Override
+    public void setBouncy(boolean bouncy) {
+        this.__isBouncy = bouncy;
+    }
+
+    @Override
+    public double getBounceFactor() {
+        return this.__bounceFactor;
+    }
+
+    @Override
+    public void setBounceFactor(double factor) {
+        this.__bounceFactor = factor;
+    }
+
+    @Override
+    public boolean getHasFriction() {
+        return this.__hasFriction;
+    }
+
+    @Override
+    public void setHasFriction(boolean hasFriction) {
+        this.__hasFriction = hasFriction;
+    }
+
+    @Override
+    public double getFrictionCoefficient() {
+        return this.__frictionCoefficient;
+    }
+
+    @Override
+    public void setFrictionCoefficient(double coefficient) {
+        this.__frictionCoefficient = coefficient;
+    }
+
+    @Override
+    public boolean getHasDrag() {
+        return this.__hasDrag;
+    }
+
+    @Override
+    public void setHasDrag(boolean hasDrag) {
+        this.__hasDrag = hasDrag;
+    }
+
+    @Override
+    public double getDragCoefficient() {
+        return this.__dragCoefficient;
+    }
+
+    @Override
+    public void setDragCoefficient(double coefficient) {
+        this.__dragCoefficient = coefficient;
+    }
+
+    /** Recomputes the world-space cache if the pose changed since the last call. */
+    private void refreshWorldVertices() {
+        double x = this.__loc.x();
+        double y = this.__loc.y();
+        if (x == this.__cachedX && y == this.__cachedY && this.__angle == this.__cachedAngle) {
+            return;
+        }
+
+        double cos = Math.cos(this.__angle);
+        double sin = Math.sin(this.__angle);
+        int n = this.__count;
+        for (int i = 0; i < n; i++) {
+            this.__worldX[i] = x + cos * this.__localX[i] - sin * this.__localY[i];
+            this.__worldY[i] = y + sin * this.__localX[i] + cos * this.__localY[i];
+        }
+        for (int i = 0; i < n; i++) {
+            int j = i + 1 == n ? 0 : i + 1;
+            double ex = this.__worldX[j] - this.__worldX[i];
+            double ey = this.__worldY[j] - this.__worldY[i];
+            double len = Math.hypot(ex, ey);
+            this.__normalX[i] = ey / len;
+            this.__normalY[i] = -ex / len;
+        }
+
+        this.__cachedX = x;
+        this.__cachedY = y;
+        this.__cachedAngle = this.__angle;
+    }
+
+    /**
+     * Moves the local outline so that its centroid is the origin.
+     *
+     * @return moment of inertia per unit mass about the centroid
+     */
+    private double centerOnCentroid() {
+        int n = this.__count;
+        double area = 0.0;
+        double cx = 0.0;
+        double cy = 0.0;
+        for (int i = 0; i < n; i++) {
+            int j = (i + 1) % n;
+            double cross = this.__localX[i] * this.__localY[j] - this.__localX[j] * this.__localY[i];
+            area += cross;
+            cx += (this.__localX[i] + this.__localX[j]) * cross;
+            cy += (this.__localY[i] + this.__localY[j]) * cross;
+        }
+        cx /= 3 * area;
+        cy /= 3 * area;
+        for (int i = 0; i < n; i++) {
+            this.__localX[i] -= cx;
+            this.__localY[i] -= cy;
+        }
+
+        double numerator = 0.0;
+        double denominator = 0.0;
+        for (int i = 0; i < n; i++) {
+            int j = (i + 1) % n;
+            double x1 = this.__localX[i];
+            double y1 = this.__localY[i];
+            double x2 = this.__localX[j];
+            double y2 = this.__localY[j];
+            double cross = Math.abs(x1 * y2 - x2 * y1);
+            numerator += cross * (x1 * x1 + x1 * x2 + x2 * x2 + y1 * y1 + y1 * y2 + y2 * y2);
+            denominator += cross;
+        }
+        return numerator / (6 * denominator);
+    }
+
+    /** Convex hull (monotone chain), counter-clockwise with respect to the math axes. */
+    private static double[][] hull(double[] xs, double[] ys) {
+        int n = xs.length;
+        Integer[] idx = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            idx[i] = i;
+        }
+        Arrays.sort(idx, (p, q) -> xs[p] != xs[q] ? Double.compare(xs[p], xs[q]) : Double.compare(ys[p], ys[q]));
+
+        int[] chain = new int[2 * n];
+        int k = 0;
+        for (int i = 0; i < n; i++) {
+            while (k >= 2 && cross(xs, ys, chain[k - 2], chain[k - 1], idx[i]) <= 0) {
+                k--;
+            }
+            chain[k++] = idx[i];
+        }
+        for (int i = n - 2, lower = k + 1; i >= 0; i--) {
+            while (k >= lower && cross(xs, ys, chain[k - 2], chain[k - 1], idx[i]) <= 0) {
+                k--;
+            }
+            chain[k++] = idx[i];
+        }
+
+        int m = Math.max(k - 1, 0);
+        double[][] out = new double[2][m];
+        for (int i = 0; i < m; i++) {
+            out[0][i] = xs[chain[i]];
+            out[1][i] = ys[chain[i]];
+        }
+        return out;
+    }
+
+    private static double cross(double[] xs, double[] ys, int o, int a, int b) {
+        return (xs[a] - xs[o]) * (ys[b] - ys[o]) - (ys[a] - ys[o]) * (xs[b] - xs[o]);
+    }
+
+    private static double signedRate(Vec v) {
+        double sign = v.x() != 0 ? v.x() : v.y();
+        return Math.copySign(v.mag(), sign);
+    }
+}
@@ -3,19 +3,34 @@ package objects;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics2D;
+import java.util.concurrent.atomic.LongAdder;
 
 import data.Vec;
 import interfaces.Inert;
 import interfaces.Moveable;
 import interfaces.Renderable;
 import interfaces.Updateable;
+import physics.LiquidField;
+import physics.TriggerVolume;
 
 public class SimpleLiquid extends SceneObject implements Inert, Renderable, Updateable {
+    // Diagnostics for contains(), off by default so the hot path stays quiet
+    private static volatile boolean __counting = false;
+    private static final LongAdder __containsCalls = new LongAdder();
+    private static final LongAdder __containsHits = new LongAdder();
+
     private Vec __loc;
     private double __angle;
     private double viscosity;
     private boolean __isVisible = false;
     private Color __color;
+    private LiquidField __field;
+
+    // Layer colors of the last render, rebuilt when the field or color changes
+    private Color[] __layerColors;
+    private LiquidField __layerField;
+    private int __layerVersion;
+    private Color __layerBase;
 
     public SimpleLiquid(String name, int width, int height, double viscosity, Vec loc, Dimension sceneDim,
             Color color) {
@@ -25,6 +40,7 @@ public class SimpleLiquid extends SceneObject implements Inert, Renderable, Upda
         this.__color = color;
         
         this.__loc = loc;
+        this.__field = new LiquidField(loc.x(), loc.y(), width, height, 8).fill(0.0, viscosity);
     }
 
     public boolean contains(Moveable mover) {
@@ -46,13 +62,82 @@ public class SimpleLiquid extends SceneObject implements Inert, Renderable, Upda
                 && moverBottomOverBodyBottom) {
             containes = true;
         }
-        System.out.println(obj.name + ": " + containes);
+        if (__counting) {
+            __containsCalls.increment();
+            if (containes) {
+                __containsHits.increment();
+            }
+        }
         return containes;
     }
 
+    /**
+     * <h1>setCounting(boolean) --> void</h1>
+     * Switches the {@link #contains(Moveable)} counters of all liquids on or
+     * off. Counting is off by default.
+     *
+     * @param counting Type: boolean --> Whether calls are counted
+     */
+    public static void setCounting(boolean counting) {
+        __counting = counting;
+    }
+
+    public static boolean isCounting() {
+        return __counting;
+    }
+
+    /** @return calls to {@link #contains(Moveable)} counted so far */
+    public static long getContainsCalls() {
+        return __containsCalls.sum();
+    }
+
+    /** @return counted calls to {@link #contains(Moveable)} that returned true */
+    public static long getContainsHits() {
+        return __containsHits.sum();
+    }
+
+    /** Sets both counters back to zero. */
+    public static void resetCounters() {
+        __containsCalls.reset();
+        __containsHits.reset();
+    }
+
+    /**
+     * Creates a trigger volume covering the liquid, so a
+     * {@link physics.TriggerWorld} can report the movers that enter or leave
+     * it instead of testing every mover with {@link #contains(Moveable)}.
+     *
+     * @return rectangle trigger with the liquid's name and area
+     */
+    public TriggerVolume toTrigger() {
+        return TriggerVolume.rectangle(this.name, this.__loc.x(), this.__loc.y(), this.objectDim.getWidth(),
+                this.objectDim.getHeight());
+    }
+
     public void drag(Moveable mover) {
+        // |v|·v instead of v̂·|v|², which would fail for a resting mover
         double speed = mover.getVelocity().mag();
-        mover.applyForce(mover.getVelocity().norm().scale(-1 * this.viscosity * speed * speed));
+        mover.applyForce(mover.getVelocity().scale(-1 * this.viscosity * speed));
+    }
+
+    /**
+     * <h1>getField() --> LiquidField</h1>
+     * Density and viscosity grid of the liquid, used for buoyancy and
+     * area-weighted drag. Starts weightless with this liquid's viscosity
+     * everywhere; layer it with {@link LiquidField#layer} or
+     * {@link LiquidField#profile}.
+     *
+     * @return Type: LiquidField --> Field covering the liquid's area
+     */
+    public LiquidField getField() {
+        return this.__field;
+    }
+
+    /**
+     * @param field Type: LiquidField --> Field covering the liquid's area
+     */
+    public void setField(LiquidField field) {
+        this.__field = field;
     }
 
     @Override
@@ -64,9 +149,56 @@ public class SimpleLiquid extends SceneObject implements Inert, Renderable, Upda
     public void render(Graphics2D g2d) {
         if (!__isVisible)
             return;
-        g2d.setColor(this.__color);
-        g2d.fillRect((int) this.__loc.x(), (int) this.__loc.y(), (int) this.objectDim.width,
-                (int) this.objectDim.height);
+        LiquidField field = this.__field;
+        Color[] colors = __layerColors(field);
+        if (colors == null) {
+            g2d.setColor(this.__color);
+            g2d.fillRect((int) this.__loc.x(), (int) this.__loc.y(), (int) this.objectDim.width,
+                    (int) this.objectDim.height);
+            return;
+        }
+
+        // Denser layers are drawn more opaque
+        int top = (int) this.__loc.y();
+        int bottom = top + this.objectDim.height;
+        for (int row = 0; row < field.getRows(); row++) {
+            int y0 = top + (int) (row * field.getCellSize());
+            int y1 = Math.min(bottom, top + (int) ((row + 1) * field.getCellSize()));
+            g2d.setColor(colors[row]);
+            g2d.fillRect((int) this.__loc.x(), y0, this.objectDim.width, y1 - y0);
+        }
+    }
+
+    /**
+     * One color per row of the field, more opaque for denser rows, or null
+     * while the liquid is weightless. Cached until the field, its contents
+     * or the liquid's color change.
+     */
+    private Color[] __layerColors(LiquidField field) {
+        if (field == this.__layerField && field.getVersion() == this.__layerVersion
+                && this.__color == this.__layerBase) {
+            return this.__layerColors;
+        }
+        this.__layerField = field;
+        this.__layerVersion = field.getVersion();
+        this.__layerBase = this.__color;
+
+        double densest = 0.0;
+        for (int row = 0; row < field.getRows(); row++) {
+            densest = Math.max(densest, field.getDensity(0, row));
+        }
+        if (densest <= 0.0) {
+            this.__layerColors = null;
+            return null;
+        }
+        Color[] colors = new Color[field.getRows()];
+        for (int row = 0; row < colors.length; row++) {
+            double share = 0.5 + 0.5 * field.getDensity(0, row) / densest;
+            colors[row] = new Color(this.__color.getRed(), this.__color.getGreen(), this.__color.getBlue(),
+                    (int) (this.__color.getAlpha() * share));
+        }
+        this.__layerColors = colors;
+        return colors;
     }
 
     @Override
@@ -0,0 +1,128 @@
+package physics;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the enclosed area of a closed ring of particles at a target value,
+ * which turns a loop of distance constraints into a pressurized soft body.
+ *
+ * <p>
+ * The area is the shoelace sum {@code A = ½ Σ (xᵢ·yᵢ₊₁ − xᵢ₊₁·yᵢ)}, whose
+ * gradient for particle {@code i} is {@code ½ (yᵢ₊₁ − yᵢ₋₁, xᵢ₋₁ − xᵢ₊₁)}: every
+ * particle is pushed along the outward normal of its neighbourhood. The target
+ * is the rest area times a pressure factor, so values above 1 inflate the
+ * ring.
+ * </p>
+ */
+public final class AreaConstraints extends ConstraintSet {
+    private double[] pressure = new double[0];
+
+    /**
+     * Adds a constraint over a closed ring, keeping its current area.
+     *
+     * @param ps         particle system holding the ring
+     * @param ring       particle indices in order around the ring (at least 3)
+     * @param pressure   multiplier applied to the rest area
+     * @param compliance compliance, 0 for an incompressible ring
+     * @return constraint index
+     */
+    public int add(ParticleSystem ps, int[] ring, double pressure, double compliance) {
+        if (ring.length < 3) {
+            throw new IllegalArgumentException("an area constraint needs at least 3 particles");
+        }
+        int k = append(ring, area(ps, ring, 0, ring.length), compliance);
+        if (k >= this.pressure.length) {
+            this.pressure = Arrays.copyOf(this.pressure, this.rest.length);
+        }
+        this.pressure[k] = pressure;
+        return k;
+    }
+
+    /**
+     * Changes the pressure factor of a ring.
+     *
+     * @param k        constraint index
+     * @param pressure multiplier applied to the rest area
+     */
+    public void setPressure(int k, double pressure) {
+        this.pressure[k] = pressure;
+    }
+
+    /**
+     * Current area of a ring.
+     *
+     * @param k  constraint index
+     * @param ps particle system holding the ring
+     * @return signed area (positive for rings that wind clockwise on screen)
+     */
+    public double area(int k, ParticleSystem ps) {
+        return area(ps, this.particles, this.first[k], this.first[k + 1]);
+    }
+
+    @Override
+    protected void project(int k, ParticleSystem ps, double invDt2) {
+        int start = this.first[k];
+        int end = this.first[k + 1];
+        int n = end - start;
+        double value = area(ps, this.particles, start, end) - this.rest[k] * this.pressure[k];
+
+        double w = 0.0;
+        for (int a = 0; a < n; a++) {
+            int i = this.particles[start + a];
+            int prev = this.particles[start + (a + n - 1) % n];
+            int next = this.particles[start + (a + 1) % n];
+            double gx = 0.5 * (ps.y[next] - ps.y[prev]);
+            double gy = 0.5 * (ps.x[prev] - ps.x[next]);
+            w += ps.invMass[i] * (gx * gx + gy * gy);
+        }
+        double alpha = this.compliance[k] * invDt2;
+        w += alpha;
+        if (w == 0) {
+            return;
+        }
+
+        double dLambda = (-value - alpha * this.lambda[k]) / w;
+        this.lambda[k] += dLambda;
+
+        // Gradients use the positions before the update, as in a Jacobi step
+        // over the ring, so the first particle's neighbours are remembered.
+        int last = this.particles[end - 1];
+        double lastX = ps.x[last];
+        double lastY = ps.y[last];
+        double prevX = lastX;
+        double prevY = lastY;
+        double firstX = ps.x[this.particles[start]];
+        double firstY = ps.y[this.particles[start]];
+        for (int a = 0; a < n; a++) {
+            int i = this.particles[start + a];
+            double nextX;
+            double nextY;
+            if (a == n - 1) {
+                nextX = firstX;
+                nextY = firstY;
+            } else {
+                int next = this.particles[start + a + 1];
+                nextX = ps.x[next];
+                nextY = ps.y[next];
+            }
+            double currentX = ps.x[i];
+            double currentY = ps.y[i];
+            double scale = ps.invMass[i] * dLambda * 0.5;
+            ps.x[i] += scale * (nextY - prevY);
+            ps.y[i] += scale * (prevX - nextX);
+            prevX = currentX;
+            prevY = currentY;
+        }
+    }
+
+    private static double area(ParticleSystem ps, int[] ids, int start, int end) {
+        double sum = 0.0;
+        int n = end - start;
+        for (int a = 0; a < n; a++) {
+            int i = ids[start + a];
+            int j = ids[start + (a + 1) % n];
+            sum += ps.x[i] * ps.y[j] - ps.x[j] * ps.y[i];
+        }
+        return 0.5 * sum;
+    }
+}
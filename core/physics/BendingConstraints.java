@@ -0,0 +1,94 @@
+package physics;
+
+/**
+ * Keeps the turning angle at the middle of three particles at its rest value.
+ *
+ * <p>
+ * For a chain {@code i → j → k} the constraint is the signed angle between the
+ * edges {@code e₁ = xⱼ − xᵢ} and {@code e₂ = xₖ − xⱼ}, wrapped to
+ * {@code (−π, π]}. Its gradients are perpendicular to the edges and scaled by
+ * their inverse lengths, so short segments resist bending as much as long
+ * ones. Ropes use one constraint per inner particle; cloth uses one per row
+ * and column triple.
+ * </p>
+ */
+public final class BendingConstraints extends ConstraintSet {
+    private final int[] triple = new int[3];
+
+    /**
+     * Adds a constraint that keeps the current angle at {@code j}.
+     *
+     * @param ps         particle system holding the particles
+     * @param i          previous particle
+     * @param j          middle particle
+     * @param k          next particle
+     * @param compliance compliance, 0 for a rigid joint
+     * @return constraint index
+     */
+    public int add(ParticleSystem ps, int i, int j, int k, double compliance) {
+        double e1x = ps.x[j] - ps.x[i];
+        double e1y = ps.y[j] - ps.y[i];
+        double e2x = ps.x[k] - ps.x[j];
+        double e2y = ps.y[k] - ps.y[j];
+        double angle = Math.atan2(e1x * e2y - e1y * e2x, e1x * e2x + e1y * e2y);
+        this.triple[0] = i;
+        this.triple[1] = j;
+        this.triple[2] = k;
+        return append(this.triple, angle, compliance);
+    }
+
+    @Override
+    protected void project(int c, ParticleSystem ps, double invDt2) {
+        int offset = this.first[c];
+        int i = this.particles[offset];
+        int j = this.particles[offset + 1];
+        int k = this.particles[offset + 2];
+
+        double e1x = ps.x[j] - ps.x[i];
+        double e1y = ps.y[j] - ps.y[i];
+        double e2x = ps.x[k] - ps.x[j];
+        double e2y = ps.y[k] - ps.y[j];
+        double l1 = e1x * e1x + e1y * e1y;
+        double l2 = e2x * e2x + e2y * e2y;
+        if (l1 == 0 || l2 == 0) {
+            return;
+        }
+
+        double angle = Math.atan2(e1x * e2y - e1y * e2x, e1x * e2x + e1y * e2y);
+        double value = angle - this.rest[c];
+        if (value > Math.PI) {
+            value -= 2 * Math.PI;
+        } else if (value <= -Math.PI) {
+            value += 2 * Math.PI;
+        }
+
+        // dθ/dxᵢ = perp(e₁)/|e₁|², dθ/dxₖ = perp(e₂)/|e₂|², dθ/dxⱼ = −(both)
+        double gix = -e1y / l1;
+        double giy = e1x / l1;
+        double gkx = -e2y / l2;
+        double gky = e2x / l2;
+        double gjx = -gix - gkx;
+        double gjy = -giy - gky;
+
+        double wi = ps.invMass[i];
+        double wj = ps.invMass[j];
+        double wk = ps.invMass[k];
+        double alpha = this.compliance[c] * invDt2;
+        double w = wi * (gix * gix + giy * giy)
+                + wj * (gjx * gjx + gjy * gjy)
+                + wk * (gkx * gkx + gky * gky)
+                + alpha;
+        if (w == 0) {
+            return;
+        }
+
+        double dLambda = (-value - alpha * this.lambda[c]) / w;
+        this.lambda[c] += dLambda;
+        ps.x[i] += wi * gix * dLambda;
+        ps.y[i] += wi * giy * dLambda;
+        ps.x[j] += wj * gjx * dLambda;
+        ps.y[j] += wj * gjy * dLambda;
+        ps.x[k] += wk * gkx * dLambda;
+        ps.y[k] += wk * gky * dLambda;
+    }
+}
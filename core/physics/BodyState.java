@@ -0,0 +1,64 @@
+package physics;
+
+import java.util.Arrays;
+
+/**
+ * Structure-of-arrays copy of the dynamic state that solvers work on.
+ *
+ * <p>
+ * The collision world gathers every registered body into these arrays once
+ * per step, solvers update them in place, and the world writes the results
+ * back to the bodies afterwards. Positions refer to the center of mass, which
+ * for boxes is the center rather than the drawing origin. Static geometry is
+ * not stored; an inverse mass and inertia of zero marks a body that solvers
+ * must not move.
+ * </p>
+ */
+public final class BodyState {
+    /** Number of valid entries. */
+    public int count;
+
+    /** Center x-coordinates. */
+    public double[] x = new double[0];
+    /** Center y-coordinates. */
+    public double[] y = new double[0];
+    /** Rotation angles in radians. */
+    public double[] angle = new double[0];
+    /** Linear velocity x-components per tick. */
+    public double[] vx = new double[0];
+    /** Linear velocity y-components per tick. */
+    public double[] vy = new double[0];
+    /** Signed angular velocities in radians per tick. */
+    public double[] w = new double[0];
+    /** Inverse masses (0 for immovable bodies). */
+    public double[] invMass = new double[0];
+    /** Inverse moments of inertia (0 for bodies that do not rotate). */
+    public double[] invInertia = new double[0];
+    /** Coefficients of restitution. */
+    public double[] restitution = new double[0];
+    /** Friction coefficients. */
+    public double[] friction = new double[0];
+
+    /**
+     * Resizes the arrays to hold at least {@code n} bodies and sets
+     * {@link #count}. Existing values are kept.
+     *
+     * @param n number of bodies
+     */
+    public void resize(int n) {
+        if (n > this.x.length) {
+            int capacity = Math.max(n, 2 * this.x.length);
+            this.x = Arrays.copyOf(this.x, capacity);
+            this.y = Arrays.copyOf(this.y, capacity);
+            this.angle = Arrays.copyOf(this.angle, capacity);
+            this.vx = Arrays.copyOf(this.vx, capacity);
+            this.vy = Arrays.copyOf(this.vy, capacity);
+            this.w = Arrays.copyOf(this.w, capacity);
+            this.invMass = Arrays.copyOf(this.invMass, capacity);
+            this.invInertia = Arrays.copyOf(this.invInertia, capacity);
+            this.restitution = Arrays.copyOf(this.restitution, capacity);
+            this.friction = Arrays.copyOf(this.friction, capacity);
+        }
+        this.count = n;
+    }
+}
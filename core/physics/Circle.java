@@ -0,0 +1,68 @@
+package physics;
+
+/**
+ * Circle shape. A radius of zero describes a single point, which is how
+ * circles enter {@link Gjk} queries: the distance to the center point is
+ * computed and the radius is accounted for afterwards.
+ *
+ * <p>
+ * The collision world keeps one circle per ball and moves it in place every
+ * step, so the shape is mutable within the package.
+ * </p>
+ */
+public final class Circle implements ConvexShape {
+    private double cx;
+    private double cy;
+    private double r;
+
+    /**
+     * Creates a circle.
+     *
+     * @param cx center x-coordinate
+     * @param cy center y-coordinate
+     * @param r  radius
+     */
+    public Circle(double cx, double cy, double r) {
+        set(cx, cy, r);
+    }
+
+    /**
+     * Moves and resizes the circle.
+     *
+     * @param cx center x-coordinate
+     * @param cy center y-coordinate
+     * @param r  radius
+     */
+    void set(double cx, double cy, double r) {
+        this.cx = cx;
+        this.cy = cy;
+        this.r = r;
+    }
+
+    @Override
+    public void support(double dx, double dy, double[] out) {
+        double len = Math.hypot(dx, dy);
+        if (len == 0 || this.r == 0) {
+            out[0] = this.cx;
+            out[1] = this.cy;
+            return;
+        }
+        out[0] = this.cx + this.r * dx / len;
+        out[1] = this.cy + this.r * dy / len;
+    }
+
+    @Override
+    public double centerX() {
+        return this.cx;
+    }
+
+    @Override
+    public double centerY() {
+        return this.cy;
+    }
+
+    /** @return radius, zero for a point */
+    public double radius() {
+        return this.r;
+    }
+}
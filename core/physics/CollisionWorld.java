@@ -0,0 +1,969 @@
+package physics;
+
+import java.awt.Dimension;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+import data.Vec;
+import interfaces.Moveable;
+import objects.Ball;
+import objects.Box;
+import objects.MoBox;
+import objects.Polygon;
+
+/**
+ * Collision context shared by the bodies of a scene.
+ *
+ * <p>
+ * The world knows the scene bounds, the dynamic bodies ({@link Ball},
+ * {@link MoBox} and {@link Polygon}) and the static {@link Box} obstacles. Static geometry is baked
+ * into an immutable {@link StaticBvh} the first time it is needed and rebuilt
+ * only after an obstacle reports a pose change, so the per-tick cost depends on
+ * the number of moving bodies rather than on the size of the level.
+ * </p>
+ *
+ * <p>
+ * Two collision paths are offered:
+ * </p>
+ * <ul>
+ * <li>{@link #step()} runs once per tick after the bodies have integrated and
+ * resolves contacts between the bodies and against the static obstacles with
+ * an impulse solver. Box and ball pairs use dedicated separating-axis and
+ * circle tests; pairs involving a {@link Polygon} use {@link Gjk} distance and
+ * {@link Epa} penetration queries.</li>
+ * <li>Balls flagged as continuous (see {@link Ball#setContinuous(boolean)}) ask
+ * the world to {@link #sweep(Ball, Vec, Vec)} their motion whenever they travel
+ * further than their own radius in a single tick, which prevents them from
+ * tunnelling through thin obstacles or other balls.</li>
+ * </ul>
+ */
+public class CollisionWorld {
+    /** Impacts a sweep responds to per tick before it only moves to the next contact. */
+    private static final int MAX_SWEEP_IMPACTS = 16;
+    private static final double EPSILON = 1e-9;
+    /** Distance at which box corners count as touching a scene wall. */
+    private static final double WALL_MARGIN = 0.5;
+    /** Pair id of the first scene wall; the others follow. */
+    private static final int WALL_ID = Integer.MIN_VALUE;
+
+    private final Dimension sceneDim;
+    private final ArrayList<Moveable> bodies = new ArrayList<>();
+    private final ArrayList<Ball> balls = new ArrayList<>();
+    private final ArrayList<Box> obstacles = new ArrayList<>();
+    private final ArrayList<Joint> joints = new ArrayList<>();
+    private final IdentityHashMap<Moveable, Integer> indices = new IdentityHashMap<>();
+
+    private Obb[] staticShapes = new Obb[0];
+    private StaticBvh staticBvh;
+    private boolean staticDirty = true;
+
+    private final BodyState state = new BodyState();
+    private final ContactSolver solver = new ContactSolver();
+    private final ArrayList<Manifold> manifolds = new ArrayList<>();
+    private int manifoldCount;
+
+    private final Gjk gjk = new Gjk();
+    private final Epa epa = new Epa();
+    /** Last GJK search direction per pair, reused as the next starting point. */
+    private final PairCache directions = new PairCache(2);
+    private final double[] direction = new double[2];
+    /** Center points of the circles in a GJK query. */
+    private final Circle pointA = new Circle(0.0, 0.0, 0.0);
+    private final Circle pointB = new Circle(0.0, 0.0, 0.0);
+
+    private ConvexShape[] shapes = new ConvexShape[0];
+    private double[] radius = new double[0];
+    private double[] minX = new double[0];
+    private double[] minY = new double[0];
+    private double[] maxX = new double[0];
+    private double[] maxY = new double[0];
+    private double[] startAngularVel = new double[0];
+    private int[] order = new int[0];
+
+    private ContactStream contactStream;
+    private long stepCount;
+    /** Sorted pair keys of the manifolds of the previous and the current step. */
+    private long[] touching = new long[64];
+    private long[] touchingNow = new long[64];
+    private int touchingCount;
+
+    /**
+     * Broad-phase of the balls for sweeps: their centers when the index was
+     * last built, and the ball indices sorted by that x.
+     */
+    private double[] sweepX = new double[0];
+    private double[] sweepY = new double[0];
+    private int[] sweepOrder = new int[0];
+    /** Largest radius plus the distance any ball may have moved since the build. */
+    private double sweepReach;
+    private long sweepIndexStep = -1;
+    private int sweepsSinceIndex;
+
+    private int[] hits = new int[16];
+    private final double[] normal = new double[2];
+    private final double[] candidate = new double[2];
+    private double[] ax = new double[4];
+    private double[] ay = new double[4];
+    private double[] anx = new double[4];
+    private double[] any = new double[4];
+    private double[] bx = new double[4];
+    private double[] by = new double[4];
+    private double[] bnx = new double[4];
+    private double[] bny = new double[4];
+
+    /**
+     * Creates an empty world for a scene of the given size.
+     *
+     * @param sceneDim scene dimension used as the outer walls
+     */
+    public CollisionWorld(Dimension sceneDim) {
+        this.sceneDim = sceneDim;
+    }
+
+    /**
+     * Registers a dynamic body. Balls are additionally linked to this world so
+     * they can sweep their motion when flagged as continuous; boxes and
+     * polygons are linked so they leave their wall response to {@link #step()}.
+     *
+     * @param body dynamic body
+     */
+    public void addBody(Moveable body) {
+        this.indices.put(body, this.bodies.size());
+        this.bodies.add(body);
+        if (body instanceof Ball) {
+            Ball ball = (Ball) body;
+            this.balls.add(ball);
+            ball.setCollisionWorld(this);
+        } else if (body instanceof MoBox) {
+            ((MoBox) body).setCollisionWorld(this);
+        } else if (body instanceof Polygon) {
+            ((Polygon) body).setCollisionWorld(this);
+        }
+    }
+
+    /**
+     * Registers a static obstacle. The static hierarchy is rebuilt lazily on the
+     * next query, and again whenever the box is moved or rotated.
+     *
+     * @param box obstacle box
+     */
+    public void addObstacle(Box box) {
+        this.obstacles.add(box);
+        box.addPoseListener(() -> this.staticDirty = true);
+        this.staticDirty = true;
+    }
+
+    /**
+     * Registers a joint. Its bodies must already be registered with
+     * {@link #addBody(Moveable)}; the anchors are converted to the bodies'
+     * local frames using their current pose.
+     *
+     * @param joint joint between registered bodies
+     */
+    public void addJoint(Joint joint) {
+        Integer a = this.indices.get(joint.getBodyA());
+        Integer b = joint.getBodyB() == null ? null : this.indices.get(joint.getBodyB());
+        if (a == null || (joint.getBodyB() != null && b == null)) {
+            throw new IllegalArgumentException("Joint bodies must be added to the world first");
+        }
+
+        double[] center = new double[2];
+        centerOf(joint.getBodyA(), center);
+        double ax = center[0];
+        double ay = center[1];
+        double bx = 0.0;
+        double by = 0.0;
+        double angleB = 0.0;
+        if (b != null) {
+            centerOf(joint.getBodyB(), center);
+            bx = center[0];
+            by = center[1];
+            angleB = joint.getBodyB().getAngle();
+        }
+        joint.bind(a, ax, ay, joint.getBodyA().getAngle(),
+                b == null ? Manifold.STATIC : b, bx, by, angleB);
+        this.joints.add(joint);
+    }
+
+    /**
+     * Removes a joint.
+     *
+     * @param joint joint to remove
+     * @return {@code true} if the joint was registered
+     */
+    public boolean removeJoint(Joint joint) {
+        return this.joints.remove(joint);
+    }
+
+    /** @return registered joints */
+    public ArrayList<Joint> getJoints() {
+        return this.joints;
+    }
+
+    /** @return registered dynamic bodies */
+    public ArrayList<Moveable> getBodies() {
+        return this.bodies;
+    }
+
+    /** @return registered static obstacles */
+    public ArrayList<Box> getObstacles() {
+        return this.obstacles;
+    }
+
+    /**
+     * Builds the static hierarchy from the current obstacle poses if any of them
+     * changed since the last build. Scenes may call this after setup to pay the
+     * build cost up front; otherwise it happens on the first query.
+     */
+    public void bake() {
+        if (!this.staticDirty) {
+            return;
+        }
+
+        int n = this.obstacles.size();
+        this.staticShapes = new Obb[n];
+        double[] staticMinX = new double[n];
+        double[] staticMinY = new double[n];
+        double[] staticMaxX = new double[n];
+        double[] staticMaxY = new double[n];
+        for (int i = 0; i < n; i++) {
+            Obb shape = Obb.of(this.obstacles.get(i));
+            this.staticShapes[i] = shape;
+            staticMinX[i] = shape.cx - shape.extentX();
+            staticMaxX[i] = shape.cx + shape.extentX();
+            staticMinY[i] = shape.cy - shape.extentY();
+            staticMaxY[i] = shape.cy + shape.extentY();
+        }
+
+        this.staticBvh = new StaticBvh(staticMinX, staticMinY, staticMaxX, staticMaxY, n);
+        this.staticDirty = false;
+    }
+
+    /**
+     * Resolves contacts between the dynamic bodies and against the static
+     * obstacles.
+     *
+     * <p>
+     * Candidate pairs come from cheap bounding-box tests (a BVH query for static
+     * geometry, sort-and-sweep for body pairs) so the separating-axis
+     * narrowphase only runs on likely contacts. The resulting manifolds are
+     * handed to the {@link ContactSolver}, and the solved velocities and
+     * positions are written back. Angular impulses reach {@link MoBox}es
+     * through {@link Moveable#applyMomentum(Vec)}; balls are treated as
+     * non-rotating.
+     * </p>
+     */
+    public void step() {
+        bake();
+        gather();
+
+        this.manifoldCount = 0;
+        int n = this.state.count;
+        for (int i = 0; i < n; i++) {
+            collideStatic(i);
+            if (!(this.shapes[i] instanceof Circle)) {
+                collideWalls(i);
+            }
+        }
+        collideBodies();
+
+        this.solver.solve(this.manifolds, this.manifoldCount, this.joints, this.state);
+        scatter();
+        this.directions.nextTick();
+        recordContacts();
+        this.stepCount++;
+    }
+
+    /**
+     * Publishes the contacts of every following step to a stream. Recording
+     * only happens while the stream has subscribers.
+     *
+     * @param stream stream to publish to, {@code null} to stop publishing
+     */
+    public void setContactStream(ContactStream stream) {
+        this.contactStream = stream;
+        this.touchingCount = 0;
+    }
+
+    public ContactStream getContactStream() {
+        return this.contactStream;
+    }
+
+    /**
+     * Classifies this step's manifolds against the previous step's (both as
+     * sorted pair keys) into begin, persist and end events and hands them to
+     * the contact stream as one batch.
+     */
+    private void recordContacts() {
+        ContactStream stream = this.contactStream;
+        if (stream == null || !stream.hasSubscribers()) {
+            this.touchingCount = 0;
+            return;
+        }
+
+        int n = this.manifoldCount;
+        if (n > this.touchingNow.length) {
+            this.touchingNow = new long[Integer.highestOneBit(n) << 1];
+        }
+        for (int k = 0; k < n; k++) {
+            this.touchingNow[k] = this.manifolds.get(k).id;
+        }
+        Arrays.sort(this.touchingNow, 0, n);
+
+        ContactBatch batch = stream.acquire(this.stepCount);
+        for (int k = 0; k < n; k++) {
+            Manifold m = this.manifolds.get(k);
+            double impulse = 0.0;
+            for (int p = 0; p < m.count; p++) {
+                impulse += m.normalImpulse[p];
+            }
+            boolean known = Arrays.binarySearch(this.touching, 0, this.touchingCount, m.id) >= 0;
+            batch.add((int) (m.id >> 32), (int) m.id, m.nx, m.ny, impulse,
+                    known ? ContactBatch.PERSIST : ContactBatch.BEGIN);
+        }
+        for (int k = 0; k < this.touchingCount; k++) {
+            long key = this.touching[k];
+            if (Arrays.binarySearch(this.touchingNow, 0, n, key) < 0) {
+                batch.add((int) (key >> 32), (int) key, 0.0, 0.0, 0.0, ContactBatch.END);
+            }
+        }
+
+        long[] swap = this.touching;
+        this.touching = this.touchingNow;
+        this.touchingNow = swap;
+        this.touchingCount = n;
+        stream.publish(batch);
+    }
+
+    /** @return solver used by {@link #step()} */
+    public ContactSolver getSolver() {
+        return this.solver;
+    }
+
+    /** Writes the center of mass of a body, which for boxes is not the location. */
+    static void centerOf(Moveable body, double[] out) {
+        Vec loc = body.getLocation();
+        out[0] = loc.x();
+        out[1] = loc.y();
+        if (body instanceof MoBox) {
+            out[0] += ((MoBox) body).getObjectDim().getWidth() / 2;
+            out[1] += ((MoBox) body).getObjectDim().getHeight() / 2;
+        }
+    }
+
+    /** Copies the registered bodies into the solver state and shape caches. */
+    private void gather() {
+        int n = this.bodies.size();
+        this.state.resize(n);
+        if (this.shapes.length < n) {
+            this.shapes = Arrays.copyOf(this.shapes, Math.max(n, 2 * this.shapes.length));
+            this.radius = Arrays.copyOf(this.radius, this.shapes.length);
+            this.minX = Arrays.copyOf(this.minX, this.shapes.length);
+            this.minY = Arrays.copyOf(this.minY, this.shapes.length);
+            this.maxX = Arrays.copyOf(this.maxX, this.shapes.length);
+            this.maxY = Arrays.copyOf(this.maxY, this.shapes.length);
+            this.startAngularVel = Arrays.copyOf(this.startAngularVel, this.shapes.length);
+            this.order = Arrays.copyOf(this.order, this.shapes.length);
+        }
+
+        BodyState s = this.state;
+        for (int i = 0; i < n; i++) {
+            Moveable body = this.bodies.get(i);
+            Vec v = body.getVelocity();
+            s.vx[i] = v.x();
+            s.vy[i] = v.y();
+            s.invMass[i] = 1.0 / body.getMass();
+            s.restitution[i] = body.isBouncy() ? body.getBounceFactor() : 0.0;
+            s.friction[i] = body.getHasFriction() ? body.getFrictionCoefficient() : 0.0;
+            s.angle[i] = body.getAngle();
+
+            if (body instanceof MoBox) {
+                MoBox box = (MoBox) body;
+                Obb shape = Obb.of(box);
+                this.shapes[i] = shape;
+                this.radius[i] = 0.0;
+                s.x[i] = shape.cx;
+                s.y[i] = shape.cy;
+                s.w[i] = box.getAngularVelocity().x();
+                s.invInertia[i] = 1.0 / box.getInertia();
+                this.minX[i] = shape.cx - shape.extentX();
+                this.maxX[i] = shape.cx + shape.extentX();
+                this.minY[i] = shape.cy - shape.extentY();
+                this.maxY[i] = shape.cy + shape.extentY();
+            } else if (body instanceof Polygon) {
+                Polygon polygon = (Polygon) body;
+                this.shapes[i] = polygon;
+                this.radius[i] = 0.0;
+                s.x[i] = polygon.centerX();
+                s.y[i] = polygon.centerY();
+                s.w[i] = polygon.getAngularVelocity().x();
+                s.invInertia[i] = 1.0 / polygon.getInertia();
+                double[] px = polygon.getWorldX();
+                double[] py = polygon.getWorldY();
+                this.minX[i] = Double.POSITIVE_INFINITY;
+                this.minY[i] = Double.POSITIVE_INFINITY;
+                this.maxX[i] = Double.NEGATIVE_INFINITY;
+                this.maxY[i] = Double.NEGATIVE_INFINITY;
+                for (int k = 0; k < polygon.getVertexCount(); k++) {
+                    this.minX[i] = Math.min(this.minX[i], px[k]);
+                    this.minY[i] = Math.min(this.minY[i], py[k]);
+                    this.maxX[i] = Math.max(this.maxX[i], px[k]);
+                    this.maxY[i] = Math.max(this.maxY[i], py[k]);
+                }
+            } else {
+                double r = body instanceof Ball ? ((Ball) body).getRadius() : 0.0;
+                // Ball shapes live as long as their slot and move in place
+                if (this.shapes[i] instanceof Circle) {
+                    ((Circle) this.shapes[i]).set(body.getLocation().x(), body.getLocation().y(), r);
+                } else {
+                    this.shapes[i] = new Circle(body.getLocation().x(), body.getLocation().y(), r);
+                }
+                this.radius[i] = r;
+                s.x[i] = body.getLocation().x();
+                s.y[i] = body.getLocation().y();
+                s.w[i] = 0.0;
+                s.invInertia[i] = 0.0;
+                this.minX[i] = s.x[i] - r;
+                this.maxX[i] = s.x[i] + r;
+                this.minY[i] = s.y[i] - r;
+                this.maxY[i] = s.y[i] + r;
+            }
+            this.startAngularVel[i] = s.w[i];
+        }
+    }
+
+    /** Writes solved velocities and corrected positions back to the bodies. */
+    private void scatter() {
+        BodyState s = this.state;
+        for (int i = 0; i < s.count; i++) {
+            Moveable body = this.bodies.get(i);
+            Vec v = body.getVelocity();
+            if (s.vx[i] != v.x() || s.vy[i] != v.y()) {
+                body.setVelocity(new Vec(s.vx[i], s.vy[i]));
+            }
+
+            ConvexShape shape = this.shapes[i];
+            if (shape instanceof Obb) {
+                Obb box = (Obb) shape;
+                if (s.x[i] != box.cx || s.y[i] != box.cy) {
+                    body.setLocation(new Vec(s.x[i] - box.hx, s.y[i] - box.hy));
+                }
+            } else if (s.x[i] != shape.centerX() || s.y[i] != shape.centerY()) {
+                body.setLocation(new Vec(s.x[i], s.y[i]));
+            }
+
+            if (s.angle[i] != body.getAngle()) {
+                body.setAngle(s.angle[i]);
+            }
+
+            double dw = s.w[i] - this.startAngularVel[i];
+            if (dw != 0 && s.invInertia[i] > 0) {
+                body.applyMomentum(new Vec(dw / s.invInertia[i], 0.0));
+            }
+        }
+    }
+
+    private void collideStatic(int i) {
+        int count = queryStatic(this.minX[i], this.minY[i], this.maxX[i], this.maxY[i]);
+        for (int k = 0; k < count; k++) {
+            int obstacle = this.hits[k];
+            Obb box = this.staticShapes[obstacle];
+            Manifold m = nextManifold(Manifold.STATIC, i);
+            ConvexShape shape = this.shapes[i];
+            boolean touching;
+            if (shape instanceof Obb) {
+                box.polygon(this.ax, this.ay, this.anx, this.any);
+                ((Obb) shape).polygon(this.bx, this.by, this.bnx, this.bny);
+                touching = Sat.polygonPolygon(this.ax, this.ay, this.anx, this.any, 4,
+                        this.bx, this.by, this.bnx, this.bny, 4, m);
+            } else if (shape instanceof Circle) {
+                touching = Sat.obbCircle(box, this.state.x[i], this.state.y[i], this.radius[i], m);
+            } else {
+                touching = collideConvex(-2 - obstacle, box, i, shape, m);
+            }
+            if (touching) {
+                m.staticIndex = obstacle;
+                m.id = PairCache.key(-2 - obstacle, i);
+                this.manifoldCount++;
+            }
+        }
+    }
+
+    /**
+     * Boxes and polygons clamp themselves to the scene in their update, which
+     * leaves their corners resting on the walls. Corners within
+     * {@link #WALL_MARGIN} of a wall become contacts so off-center wall hits
+     * still exchange angular momentum.
+     */
+    private void collideWalls(int i) {
+        if (this.minX[i] > WALL_MARGIN && this.minY[i] > WALL_MARGIN
+                && this.maxX[i] < this.sceneDim.getWidth() - WALL_MARGIN
+                && this.maxY[i] < this.sceneDim.getHeight() - WALL_MARGIN) {
+            return;
+        }
+
+        reserveOutlines(corners(this.shapes[i]));
+        int corners = outline(this.shapes[i], false);
+        double width = this.sceneDim.getWidth();
+        double height = this.sceneDim.getHeight();
+        for (int wall = 0; wall < 4; wall++) {
+            // Inward wall normal and plane offset (n · p >= offset inside)
+            double nx = wall == 0 ? 1.0 : wall == 1 ? -1.0 : 0.0;
+            double ny = wall == 2 ? 1.0 : wall == 3 ? -1.0 : 0.0;
+            double offset = wall == 1 ? -width : wall == 3 ? -height : 0.0;
+
+            Manifold m = nextManifold(Manifold.STATIC, i);
+            m.id = PairCache.key(WALL_ID + wall, i);
+            m.nx = nx;
+            m.ny = ny;
+            for (int c = 0; c < corners; c++) {
+                double depth = offset - (nx * this.bx[c] + ny * this.by[c]);
+                if (depth > -WALL_MARGIN) {
+                    m.addPoint(this.bx[c], this.by[c], Math.max(depth, 0.0));
+                }
+            }
+            if (m.count > 0) {
+                this.manifoldCount++;
+            }
+        }
+    }
+
+    /** Sort-and-sweep along x, then narrowphase on overlapping bounds. */
+    private void collideBodies() {
+        int n = this.state.count;
+        for (int i = 0; i < n; i++) {
+            this.order[i] = i;
+        }
+        // Insertion sort: body order barely changes between ticks
+        for (int i = 1; i < n; i++) {
+            int body = this.order[i];
+            double key = this.minX[body];
+            int j = i - 1;
+            while (j >= 0 && this.minX[this.order[j]] > key) {
+                this.order[j + 1] = this.order[j];
+                j--;
+            }
+            this.order[j + 1] = body;
+        }
+
+        for (int i = 0; i < n; i++) {
+            int a = this.order[i];
+            for (int j = i + 1; j < n; j++) {
+                int b = this.order[j];
+                if (this.minX[b] > this.maxX[a]) {
+                    break;
+                }
+                if (this.minY[b] > this.maxY[a] || this.maxY[b] < this.minY[a]) {
+                    continue;
+                }
+                // The sweep order flips when two bodies swap left edges;
+                // narrowphase in index order keeps the pair's key, and with
+                // it the cached impulses and search direction, unchanged
+                collidePair(Math.min(a, b), Math.max(a, b));
+            }
+        }
+    }
+
+    /**
+     * Narrowphase of two bodies; the manifold's normal points from {@code a}
+     * to {@code b}.
+     *
+     * @param a lower body index
+     * @param b higher body index
+     */
+    private void collidePair(int a, int b) {
+        Manifold m = nextManifold(a, b);
+        ConvexShape shapeA = this.shapes[a];
+        ConvexShape shapeB = this.shapes[b];
+        BodyState s = this.state;
+        boolean touching;
+        if (shapeA instanceof Polygon || shapeB instanceof Polygon) {
+            touching = collideConvex(a, shapeA, b, shapeB, m);
+        } else if (shapeA instanceof Obb && shapeB instanceof Obb) {
+            ((Obb) shapeA).polygon(this.ax, this.ay, this.anx, this.any);
+            ((Obb) shapeB).polygon(this.bx, this.by, this.bnx, this.bny);
+            touching = Sat.polygonPolygon(this.ax, this.ay, this.anx, this.any, 4,
+                    this.bx, this.by, this.bnx, this.bny, 4, m);
+        } else if (shapeA instanceof Obb) {
+            touching = Sat.obbCircle((Obb) shapeA, s.x[b], s.y[b], this.radius[b], m);
+        } else if (shapeB instanceof Obb) {
+            touching = Sat.obbCircle((Obb) shapeB, s.x[a], s.y[a], this.radius[a], m);
+            m.nx = -m.nx;
+            m.ny = -m.ny;
+        } else {
+            touching = Sat.circleCircle(s.x[a], s.y[a], this.radius[a], s.x[b], s.y[b], this.radius[b], m);
+        }
+        if (touching) {
+            this.manifoldCount++;
+        }
+    }
+
+    /**
+     * GJK/EPA narrowphase for pairs involving a polygon. Circles enter the
+     * distance query as their center point and their radius is added
+     * afterwards, so a circle touching a polygon never needs the slowly
+     * converging penetration query on a round shape. The search direction of
+     * the previous tick is looked up by pair id and stored again afterwards.
+     *
+     * @param idA first id: body index, or {@code -2 - obstacle} for static
+     *            obstacles
+     * @param a   first shape
+     * @param idB second body index
+     * @param b   second shape
+     * @param m   manifold to fill; the normal points from a to b
+     * @return {@code true} if the shapes touch
+     */
+    private boolean collideConvex(int idA, ConvexShape a, int idB, ConvexShape b, Manifold m) {
+        double ra = 0.0;
+        double rb = 0.0;
+        ConvexShape coreA = a;
+        ConvexShape coreB = b;
+        if (a instanceof Circle) {
+            ra = ((Circle) a).radius();
+            this.pointA.set(a.centerX(), a.centerY(), 0.0);
+            coreA = this.pointA;
+        }
+        if (b instanceof Circle) {
+            rb = ((Circle) b).radius();
+            this.pointB.set(b.centerX(), b.centerY(), 0.0);
+            coreB = this.pointB;
+        }
+
+        int offset = this.directions.acquire(PairCache.key(idA, idB));
+        double[] cached = this.directions.values();
+        double dist = this.gjk.distance(coreA, coreB, cached[offset], cached[offset + 1]);
+        this.gjk.direction(this.direction);
+        cached[offset] = this.direction[0];
+        cached[offset + 1] = this.direction[1];
+
+        double radii = ra + rb;
+        m.count = 0;
+        if (!this.gjk.overlap()) {
+            if (dist >= radii) {
+                return false;
+            }
+            // Only circles reach this point: the cores are apart but the
+            // radii overlap
+            m.nx = (this.gjk.pointBX() - this.gjk.pointAX()) / dist;
+            m.ny = (this.gjk.pointBY() - this.gjk.pointAY()) / dist;
+            m.addPoint(this.gjk.pointAX() + m.nx * ra, this.gjk.pointAY() + m.ny * ra, radii - dist);
+            return true;
+        }
+
+        double depth = this.epa.penetration(this.gjk, coreA, coreB) + radii;
+        double nx = this.epa.normalX();
+        double ny = this.epa.normalY();
+        if (ra == 0 && rb == 0) {
+            reserveOutlines(Math.max(corners(a), corners(b)));
+            int an = outline(a, true);
+            int bn = outline(b, false);
+            if (Sat.polygonPolygonAlong(this.ax, this.ay, this.anx, this.any, an,
+                    this.bx, this.by, this.bnx, this.bny, bn, nx, ny, m)) {
+                return true;
+            }
+        }
+
+        // Single deepest point on b
+        b.support(-nx, -ny, this.direction);
+        m.nx = nx;
+        m.ny = ny;
+        m.count = 0;
+        m.addPoint(this.direction[0], this.direction[1], depth);
+        return true;
+    }
+
+    /**
+     * Writes the corners and face normals of a box or polygon into the first
+     * ({@code ax..any}) or second ({@code bx..bny}) scratch outline, which must
+     * have been sized with {@link #reserveOutlines(int)}.
+     *
+     * @return number of corners
+     */
+    private int outline(ConvexShape shape, boolean first) {
+        double[] x = first ? this.ax : this.bx;
+        double[] y = first ? this.ay : this.by;
+        double[] nx = first ? this.anx : this.bnx;
+        double[] ny = first ? this.any : this.bny;
+
+        if (shape instanceof Polygon) {
+            Polygon polygon = (Polygon) shape;
+            int n = polygon.getVertexCount();
+            System.arraycopy(polygon.getWorldX(), 0, x, 0, n);
+            System.arraycopy(polygon.getWorldY(), 0, y, 0, n);
+            System.arraycopy(polygon.getNormalX(), 0, nx, 0, n);
+            System.arraycopy(polygon.getNormalY(), 0, ny, 0, n);
+            return n;
+        }
+        ((Obb) shape).polygon(x, y, nx, ny);
+        return 4;
+    }
+
+    private static int corners(ConvexShape shape) {
+        return shape instanceof Polygon ? ((Polygon) shape).getVertexCount() : 4;
+    }
+
+    /**
+     * Pushes soft-body particles out of the static obstacles.
+     *
+     * <p>
+     * Called by the {@link XpbdSolver} after every constraint pass. Each
+     * particle is treated as a small disc: a BVH query finds the obstacles near
+     * it, and a particle closer to a box surface than its radius is moved out
+     * along the surface normal. Sliding is damped by removing a share of the
+     * tangential displacement of the substep, which approximates dry friction
+     * in position-based dynamics. Pinned particles are left alone.
+     * </p>
+     *
+     * @param ps       particles to resolve
+     * @param friction share of the tangential displacement removed on contact
+     */
+    public void collideParticles(ParticleSystem ps, double friction) {
+        bake();
+        for (int i = 0; i < ps.count; i++) {
+            if (ps.invMass[i] == 0) {
+                continue;
+            }
+            double r = ps.radius[i];
+            int count = queryStatic(ps.x[i] - r, ps.y[i] - r, ps.x[i] + r, ps.y[i] + r);
+            for (int k = 0; k < count; k++) {
+                Obb box = this.staticShapes[this.hits[k]];
+                double depth = r - box.distance(ps.x[i], ps.y[i]);
+                if (depth <= 0) {
+                    continue;
+                }
+                box.normal(ps.x[i], ps.y[i], this.normal);
+                double nx = this.normal[0];
+                double ny = this.normal[1];
+                ps.x[i] += depth * nx;
+                ps.y[i] += depth * ny;
+
+                double dx = ps.x[i] - ps.px[i];
+                double dy = ps.y[i] - ps.py[i];
+                double tangent = dx * -ny + dy * nx;
+                ps.x[i] -= friction * tangent * -ny;
+                ps.y[i] -= friction * tangent * nx;
+            }
+        }
+    }
+
+    /** Grows the scratch outlines to hold at least n corners. */
+    private void reserveOutlines(int n) {
+        if (this.ax.length >= n) {
+            return;
+        }
+        int size = Integer.highestOneBit(n) << 1;
+        this.ax = new double[size];
+        this.ay = new double[size];
+        this.anx = new double[size];
+        this.any = new double[size];
+        this.bx = new double[size];
+        this.by = new double[size];
+        this.bnx = new double[size];
+        this.bny = new double[size];
+    }
+
+    /** Returns the next pooled manifold, reset for the given bodies. */
+    private Manifold nextManifold(int a, int b) {
+        if (this.manifoldCount == this.manifolds.size()) {
+            this.manifolds.add(new Manifold());
+        }
+        Manifold m = this.manifolds.get(this.manifoldCount);
+        m.reset(a, b);
+        return m;
+    }
+
+    /**
+     * Moves a ball along its velocity for one tick, stopping at every impact
+     * with a wall, obstacle or other ball and reflecting the velocity with the
+     * ball's bounce factor before continuing with the remaining time. A ball
+     * wedged between surfaces stops responding after
+     * {@value #MAX_SWEEP_IMPACTS} impacts in one tick and moves on until its
+     * next contact.
+     *
+     * <p>
+     * Other balls are treated as resting at their current location during the
+     * sweep; their velocity only matters for the exchanged impulse. They are
+     * found through an index of their centers that is rebuilt once per
+     * {@link #step()} and padded by four times the fastest ball's speed, so
+     * balls that moved since then are still found. The resulting velocity is
+     * written back through {@link Ball#setVelocity(Vec)}.
+     * </p>
+     *
+     * @param ball moving ball
+     * @param loc  location at the start of the tick
+     * @param vel  velocity for this tick
+     * @return location at the end of the tick
+     */
+    public Vec sweep(Ball ball, Vec loc, Vec vel) {
+        bake();
+        indexBalls();
+
+        double px = loc.x();
+        double py = loc.y();
+        double vx = vel.x();
+        double vy = vel.y();
+        double r = ball.getRadius();
+        double e = ball.getBounceFactor();
+        double remaining = 1.0;
+
+        for (int impact = 0; remaining > EPSILON; impact++) {
+            double best = Sweep.circleWalls(px, py, vx, vy, r,
+                    this.sceneDim.getWidth(), this.sceneDim.getHeight(), remaining, this.normal);
+            Ball hitBall = null;
+
+            double endX = px + vx * remaining;
+            double endY = py + vy * remaining;
+            double boundMinX = Math.min(px, endX) - r;
+            double boundMinY = Math.min(py, endY) - r;
+            double boundMaxX = Math.max(px, endX) + r;
+            double boundMaxY = Math.max(py, endY) + r;
+            int count = queryStatic(boundMinX, boundMinY, boundMaxX, boundMaxY);
+            for (int k = 0; k < count; k++) {
+                Obb box = this.staticShapes[this.hits[k]];
+                double t = Sweep.circleBox(px, py, vx, vy, r, box, remaining, this.candidate);
+                if (t < best) {
+                    best = t;
+                    this.normal[0] = this.candidate[0];
+                    this.normal[1] = this.candidate[1];
+                }
+            }
+
+            double reach = this.sweepReach;
+            int n = this.sweepOrder.length;
+            for (int k = firstIndexedAt(boundMinX - reach); k < n; k++) {
+                int i = this.sweepOrder[k];
+                if (this.sweepX[i] > boundMaxX + reach) {
+                    break;
+                }
+                Ball other = this.balls.get(i);
+                if (other == ball || this.sweepY[i] < boundMinY - reach || this.sweepY[i] > boundMaxY + reach) {
+                    continue;
+                }
+                Vec q = other.getLocation();
+                double t = Sweep.circleCircle(px - q.x(), py - q.y(), vx, vy,
+                        r + other.getRadius(), remaining, this.candidate);
+                if (t < best) {
+                    best = t;
+                    hitBall = other;
+                    this.normal[0] = this.candidate[0];
+                    this.normal[1] = this.candidate[1];
+                }
+            }
+
+            if (best == Sweep.NO_HIT) {
+                px = endX;
+                py = endY;
+                break;
+            }
+
+            px += vx * best;
+            py += vy * best;
+            remaining -= best;
+            if (impact == MAX_SWEEP_IMPACTS) {
+                // Wedged: rest against the surface for the rest of the tick
+                // rather than bouncing in place forever
+                break;
+            }
+
+            double nx = this.normal[0];
+            double ny = this.normal[1];
+            if (hitBall == null) {
+                double vn = vx * nx + vy * ny;
+                if (vn < 0) {
+                    vx -= (1 + e) * vn * nx;
+                    vy -= (1 + e) * vn * ny;
+                }
+            } else {
+                Vec ov = hitBall.getVelocity();
+                double vn = (vx - ov.x()) * nx + (vy - ov.y()) * ny;
+                if (vn < 0) {
+                    double invA = 1.0 / ball.getMass();
+                    double invB = 1.0 / hitBall.getMass();
+                    double j = -(1 + e) * vn / (invA + invB);
+                    vx += j * invA * nx;
+                    vy += j * invA * ny;
+                    hitBall.setVelocity(new Vec(ov.x() - j * invB * nx, ov.y() - j * invB * ny));
+                }
+            }
+        }
+
+        ball.setVelocity(new Vec(vx, vy));
+        return new Vec(px, py);
+    }
+
+    /**
+     * Rebuilds the ball index for sweeps once per step, or after as many
+     * sweeps as there are balls if the world is not stepped.
+     */
+    private void indexBalls() {
+        int n = this.balls.size();
+        if (this.sweepIndexStep == this.stepCount && this.sweepOrder.length == n && this.sweepsSinceIndex < n) {
+            this.sweepsSinceIndex++;
+            return;
+        }
+        this.sweepIndexStep = this.stepCount;
+        this.sweepsSinceIndex = 1;
+
+        if (this.sweepOrder.length != n) {
+            this.sweepX = new double[n];
+            this.sweepY = new double[n];
+            this.sweepOrder = new int[n];
+            for (int i = 0; i < n; i++) {
+                this.sweepOrder[i] = i;
+            }
+        }
+        double maxRadius = 0.0;
+        double maxSpeed = 0.0;
+        for (int i = 0; i < n; i++) {
+            Ball b = this.balls.get(i);
+            Vec q = b.getLocation();
+            Vec v = b.getVelocity();
+            this.sweepX[i] = q.x();
+            this.sweepY[i] = q.y();
+            maxRadius = Math.max(maxRadius, b.getRadius());
+            maxSpeed = Math.max(maxSpeed, Math.hypot(v.x(), v.y()));
+        }
+        // A ball struck during the tick can leave faster than any ball was
+        // going; a heavy ball hitting head-on adds up to twice the closing
+        // speed, which is itself up to twice the top speed
+        this.sweepReach = maxRadius + 4 * maxSpeed + 1;
+
+        // Insertion sort: ball order barely changes between ticks
+        for (int i = 1; i < n; i++) {
+            int ball = this.sweepOrder[i];
+            double key = this.sweepX[ball];
+            int j = i - 1;
+            while (j >= 0 && this.sweepX[this.sweepOrder[j]] > key) {
+                this.sweepOrder[j + 1] = this.sweepOrder[j];
+                j--;
+            }
+            this.sweepOrder[j + 1] = ball;
+        }
+    }
+
+    /** @return position in the sweep order of the first ball indexed at or right of x */
+    private int firstIndexedAt(double x) {
+        int lo = 0;
+        int hi = this.sweepOrder.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (this.sweepX[this.sweepOrder[mid]] < x) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /** Queries the static hierarchy into {@link #hits}, growing it as needed. */
+    private int queryStatic(double minX, double minY, double maxX, double maxY) {
+        int count = this.staticBvh.query(minX, minY, maxX, maxY, this.hits);
+        if (count > this.hits.length) {
+            this.hits = Arrays.copyOf(this.hits, Integer.highestOneBit(count) << 1);
+            count = this.staticBvh.query(minX, minY, maxX, maxY, this.hits);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,197 @@
+package physics;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * A batch of XPBD constraints of one kind over a {@link ParticleSystem}.
+ *
+ * <p>
+ * Constraints are stored in flat arrays: the particles of constraint
+ * {@code k} are {@code particles[first[k] .. first[k + 1])}, and each
+ * constraint has a rest value, a compliance (inverse stiffness, 0 for a rigid
+ * constraint) and the Lagrange multiplier accumulated during the current
+ * substep. Subclasses only implement {@link #project(int, ParticleSystem,
+ * double)}, the XPBD update of a single constraint:
+ * </p>
+ *
+ * <pre>
+ * Δλ = (−C − α̃·λ) / (Σ wᵢ·|∇ᵢC|² + α̃),   α̃ = α / h²
+ * Δxᵢ = wᵢ · ∇ᵢC · Δλ
+ * </pre>
+ *
+ * <p>
+ * For the parallel solver the set partitions its constraints with a greedy
+ * graph coloring so that no two constraints of one color share a particle;
+ * all constraints of a color can then be projected concurrently without
+ * locks. The coloring is rebuilt lazily after constraints were added.
+ * </p>
+ */
+public abstract class ConstraintSet {
+    /** Colors a constraint may receive; the rest is projected serially. */
+    private static final int MAX_COLORS = 64;
+
+    protected int count;
+    protected int[] first = new int[1];
+    protected int[] particles = new int[0];
+    protected double[] rest = new double[0];
+    protected double[] compliance = new double[0];
+    protected double[] lambda = new double[0];
+
+    private int[] colorStart = new int[1];
+    private int[] colorOrder = new int[0];
+    private int colors;
+    private boolean colored;
+    private boolean forward = true;
+
+    /**
+     * Projects a single constraint, moving its particles and accumulating its
+     * multiplier.
+     *
+     * @param k      constraint index
+     * @param ps     particles to move
+     * @param invDt2 inverse squared substep length, used to scale the
+     *               compliance
+     */
+    protected abstract void project(int k, ParticleSystem ps, double invDt2);
+
+    /**
+     * Appends a constraint.
+     *
+     * @param ids             particle indices
+     * @param restValue       rest value of the constraint function
+     * @param complianceValue compliance, 0 for a rigid constraint
+     * @return constraint index
+     */
+    protected int append(int[] ids, double restValue, double complianceValue) {
+        if (complianceValue < 0) {
+            throw new IllegalArgumentException("compliance must not be negative: " + complianceValue);
+        }
+        int k = this.count;
+        int offset = this.first[k];
+        if (k + 2 > this.first.length) {
+            int capacity = Math.max(16, 2 * this.first.length);
+            this.first = Arrays.copyOf(this.first, capacity);
+            this.rest = Arrays.copyOf(this.rest, capacity);
+            this.compliance = Arrays.copyOf(this.compliance, capacity);
+            this.lambda = Arrays.copyOf(this.lambda, capacity);
+        }
+        if (offset + ids.length > this.particles.length) {
+            this.particles = Arrays.copyOf(this.particles, Math.max(offset + ids.length, 2 * this.particles.length));
+        }
+        System.arraycopy(ids, 0, this.particles, offset, ids.length);
+        this.first[k + 1] = offset + ids.length;
+        this.rest[k] = restValue;
+        this.compliance[k] = complianceValue;
+        this.lambda[k] = 0.0;
+        this.count = k + 1;
+        this.colored = false;
+        return k;
+    }
+
+    /** @return number of constraints */
+    public int size() {
+        return this.count;
+    }
+
+    /**
+     * Changes the compliance of every constraint in the set.
+     *
+     * @param value compliance, 0 for rigid constraints
+     */
+    public void setCompliance(double value) {
+        Arrays.fill(this.compliance, 0, this.count, value);
+    }
+
+    /** Clears the multipliers at the start of a substep. */
+    void resetLambdas() {
+        Arrays.fill(this.lambda, 0, this.count, 0.0);
+    }
+
+    /**
+     * Projects every constraint once (Gauss-Seidel). The sweep direction
+     * alternates between calls: a fixed order lets the last constraints of a
+     * closed loop always win, which slowly spins rings and drifts sheets.
+     */
+    void solveSerial(ParticleSystem ps, double invDt2) {
+        if (this.forward) {
+            for (int k = 0; k < this.count; k++) {
+                project(k, ps, invDt2);
+            }
+        } else {
+            for (int k = this.count - 1; k >= 0; k--) {
+                project(k, ps, invDt2);
+            }
+        }
+        this.forward = !this.forward;
+    }
+
+    /**
+     * Projects every constraint once, color by color. Colors with at least
+     * {@code threshold} constraints run on the common fork/join pool.
+     */
+    void solveColored(ParticleSystem ps, double invDt2, int threshold) {
+        if (!this.colored) {
+            color(ps.count);
+        }
+        for (int c = 0; c < this.colors; c++) {
+            int start = this.colorStart[c];
+            int end = this.colorStart[c + 1];
+            // The last color holds the constraints that did not fit into
+            // MAX_COLORS and may share particles, so it always runs serially
+            boolean conflicts = c == MAX_COLORS;
+            if (!conflicts && end - start >= threshold) {
+                IntStream.range(start, end).parallel()
+                        .forEach(i -> project(this.colorOrder[i], ps, invDt2));
+            } else {
+                for (int i = start; i < end; i++) {
+                    project(this.colorOrder[i], ps, invDt2);
+                }
+            }
+        }
+    }
+
+    /** @return number of colors of the current coloring, 0 before the first parallel solve */
+    public int colorCount() {
+        return this.colors;
+    }
+
+    /**
+     * Greedy coloring: each constraint takes the lowest color none of its
+     * particles has been used with yet.
+     */
+    private void color(int particleCount) {
+        long[] used = new long[particleCount];
+        int[] colorOf = new int[this.count];
+        int[] sizes = new int[MAX_COLORS + 1];
+        int highest = -1;
+        for (int k = 0; k < this.count; k++) {
+            long mask = 0L;
+            for (int p = this.first[k]; p < this.first[k + 1]; p++) {
+                mask |= used[this.particles[p]];
+            }
+            int c = mask == -1L ? MAX_COLORS : Long.numberOfTrailingZeros(~mask);
+            if (c < MAX_COLORS) {
+                long bit = 1L << c;
+                for (int p = this.first[k]; p < this.first[k + 1]; p++) {
+                    used[this.particles[p]] |= bit;
+                }
+            }
+            colorOf[k] = c;
+            sizes[c]++;
+            highest = Math.max(highest, c);
+        }
+
+        this.colors = highest + 1;
+        this.colorStart = new int[this.colors + 1];
+        for (int c = 0; c < this.colors; c++) {
+            this.colorStart[c + 1] = this.colorStart[c] + sizes[c];
+        }
+        this.colorOrder = new int[this.count];
+        int[] fill = Arrays.copyOf(this.colorStart, this.colors);
+        for (int k = 0; k < this.count; k++) {
+            this.colorOrder[fill[colorOf[k]]++] = k;
+        }
+        this.colored = true;
+    }
+}
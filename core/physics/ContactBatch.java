@@ -0,0 +1,182 @@
+package physics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The contact events of one {@link CollisionWorld#step()}, stored in flat
+ * primitive arrays.
+ *
+ * <p>
+ * Each event names the two colliders, the contact normal (pointing from the
+ * first collider to the second), the normal impulse the solver applied in
+ * this step and a phase: {@link #BEGIN} for pairs that started touching,
+ * {@link #PERSIST} for pairs that were already touching in the previous step
+ * and {@link #END} for pairs that separated (with a zero normal and impulse).
+ * </p>
+ *
+ * <p>
+ * Collider ids are the indices of the dynamic bodies in
+ * {@link CollisionWorld#getBodies()}. Static geometry gets negative ids: use
+ * {@link #isObstacle(int)} / {@link #obstacleIndex(int)} for the
+ * {@link objects.Box} obstacles and {@link #isWall(int)} /
+ * {@link #wallIndex(int)} for the scene walls (left, right, top, bottom).
+ * Balls bounce off the walls in their own update, so only boxes and polygons
+ * report wall contacts.
+ * </p>
+ *
+ * <p>
+ * Batches are pooled by their {@link ContactStream}. A subscriber may read a
+ * batch only inside {@code onNext}; once every subscriber has returned, the
+ * batch is cleared and reused for a later step. Copy whatever has to outlive
+ * the call.
+ * </p>
+ */
+public final class ContactBatch {
+    /** The pair started touching in this step. */
+    public static final byte BEGIN = 0;
+    /** The pair was already touching in the previous step. */
+    public static final byte PERSIST = 1;
+    /** The pair touched in the previous step but no longer does. */
+    public static final byte END = 2;
+
+    private static final int WALL_ID = Integer.MIN_VALUE;
+
+    private long tick;
+    private int size;
+    private int[] bodyA = new int[64];
+    private int[] bodyB = new int[64];
+    private double[] normalX = new double[64];
+    private double[] normalY = new double[64];
+    private double[] impulse = new double[64];
+    private byte[] phase = new byte[64];
+
+    /** Channels that still hold this batch, plus one while it is published. */
+    final AtomicInteger pending = new AtomicInteger();
+
+    ContactBatch() {
+    }
+
+    /** @return step counter of the world when the batch was recorded */
+    public long tick() {
+        return this.tick;
+    }
+
+    /** @return number of events */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @param k event index
+     * @return id of the first collider
+     */
+    public int bodyA(int k) {
+        return this.bodyA[k];
+    }
+
+    /**
+     * @param k event index
+     * @return id of the second collider (always a dynamic body)
+     */
+    public int bodyB(int k) {
+        return this.bodyB[k];
+    }
+
+    /**
+     * @param k event index
+     * @return contact normal x-component, from the first collider to the second
+     */
+    public double normalX(int k) {
+        return this.normalX[k];
+    }
+
+    /**
+     * @param k event index
+     * @return contact normal y-component, from the first collider to the second
+     */
+    public double normalY(int k) {
+        return this.normalY[k];
+    }
+
+    /**
+     * @param k event index
+     * @return total normal impulse applied in the step (mass × pixels per tick)
+     */
+    public double impulse(int k) {
+        return this.impulse[k];
+    }
+
+    /**
+     * @param k event index
+     * @return {@link #BEGIN}, {@link #PERSIST} or {@link #END}
+     */
+    public byte phase(int k) {
+        return this.phase[k];
+    }
+
+    /**
+     * @param id collider id
+     * @return whether the id names a dynamic body
+     */
+    public static boolean isBody(int id) {
+        return id >= 0;
+    }
+
+    /**
+     * @param id collider id
+     * @return whether the id names a static obstacle
+     */
+    public static boolean isObstacle(int id) {
+        return id <= -2 && id > WALL_ID + 3;
+    }
+
+    /**
+     * @param id obstacle id
+     * @return index into {@link CollisionWorld#getObstacles()}
+     */
+    public static int obstacleIndex(int id) {
+        return -2 - id;
+    }
+
+    /**
+     * @param id collider id
+     * @return whether the id names a scene wall
+     */
+    public static boolean isWall(int id) {
+        return id >= WALL_ID && id <= WALL_ID + 3;
+    }
+
+    /**
+     * @param id wall id
+     * @return 0 left, 1 right, 2 top, 3 bottom
+     */
+    public static int wallIndex(int id) {
+        return id - WALL_ID;
+    }
+
+    void reset(long stepTick) {
+        this.tick = stepTick;
+        this.size = 0;
+    }
+
+    void add(int a, int b, double nx, double ny, double j, byte p) {
+        int k = this.size;
+        if (k == this.bodyA.length) {
+            int capacity = 2 * k;
+            this.bodyA = Arrays.copyOf(this.bodyA, capacity);
+            this.bodyB = Arrays.copyOf(this.bodyB, capacity);
+            this.normalX = Arrays.copyOf(this.normalX, capacity);
+            this.normalY = Arrays.copyOf(this.normalY, capacity);
+            this.impulse = Arrays.copyOf(this.impulse, capacity);
+            this.phase = Arrays.copyOf(this.phase, capacity);
+        }
+        this.bodyA[k] = a;
+        this.bodyB[k] = b;
+        this.normalX[k] = nx;
+        this.normalY[k] = ny;
+        this.impulse[k] = j;
+        this.phase[k] = p;
+        this.size = k + 1;
+    }
+}
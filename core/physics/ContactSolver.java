@@ -0,0 +1,595 @@
+package physics;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Sequential-impulse constraint solver for contacts and {@link Joint}s.
+ *
+ * <p>
+ * Every contact point receives a normal impulse that removes the approaching
+ * relative velocity (plus a restitution bounce for fast impacts) and a
+ * Coulomb friction impulse bounded by the normal impulse. Impulses act at the
+ * contact point, so off-center contacts also change the angular velocity of
+ * bodies with a finite moment of inertia. Accumulated impulses are clamped
+ * rather than the per-iteration increments, which lets the iterations
+ * converge towards the simultaneous solution; the two normal impulses of a
+ * face contact are even solved simultaneously (block solver), which keeps
+ * stacked boxes from rocking. Remaining overlap and joint
+ * drift are removed by a separate position pass so they do not add energy.
+ * </p>
+ *
+ * <p>
+ * The solver warm starts: contact impulses are kept in a persistent cache keyed
+ * by {@link Manifold#id} and matched to the new contact points by position,
+ * joints keep their own accumulated impulses, and both are applied before the
+ * first iteration. Resting stacks and chains then start close to their
+ * solution, so a few iterations per step suffice.
+ * </p>
+ *
+ * <p>
+ * Bodies connected by contacts or joints form islands that do not influence
+ * each other within a step. Islands are solved independently, in parallel on
+ * the common fork/join pool when there is enough work to pay for it.
+ * </p>
+ */
+public class ContactSolver {
+    /** Overlap that is tolerated to keep resting contacts stable. */
+    private static final double SLOP = 0.5;
+    /** Fraction of the remaining overlap removed per step. */
+    private static final double CORRECTION = 0.8;
+    /** Normal speeds below this value do not bounce. */
+    private static final double RESTING_SPEED = 0.5;
+    /** Contact points closer than this to last tick's points inherit their impulses. */
+    private static final double MATCH_DISTANCE = 2.0;
+    /** Condition number above which two-point manifolds are solved point by point. */
+    private static final double MAX_CONDITION = 1000.0;
+    /** Constraint count from which islands are solved in parallel. */
+    private static final int PARALLEL_THRESHOLD = 64;
+
+    /** Cached values per manifold: (x, y, normal, tangent) per point, then the point count. */
+    private static final int CACHE_WIDTH = 4 * Manifold.MAX_POINTS + 1;
+
+    private int iterations = 4;
+    private int positionIterations = 3;
+    private boolean warmStarting = true;
+    private boolean parallel = true;
+
+    private final PairCache contactCache = new PairCache(CACHE_WIDTH);
+
+    // Island bookkeeping, reused between steps
+    private int[] parent = new int[0];
+    private int[] islandOf = new int[0];
+    private int[] contactStart = new int[0];
+    private int[] jointStart = new int[0];
+    private int[] contactOrder = new int[0];
+    private int[] jointOrder = new int[0];
+    private int[] contactIsland = new int[0];
+    private int[] jointIsland = new int[0];
+    private int[] cursor = new int[0];
+    private int islands;
+
+    /** @return velocity iterations per step */
+    public int getIterations() {
+        return this.iterations;
+    }
+
+    /**
+     * Sets the number of velocity iterations per step.
+     *
+     * @param iterations iteration count (at least 1)
+     */
+    public void setIterations(int iterations) {
+        this.iterations = Math.max(1, iterations);
+    }
+
+    /** @return joint position iterations per step */
+    public int getPositionIterations() {
+        return this.positionIterations;
+    }
+
+    /**
+     * Sets the number of position iterations used to remove joint drift.
+     *
+     * @param iterations iteration count (0 disables the correction)
+     */
+    public void setPositionIterations(int iterations) {
+        this.positionIterations = Math.max(0, iterations);
+    }
+
+    /** @return whether impulses of the previous step are reused */
+    public boolean isWarmStarting() {
+        return this.warmStarting;
+    }
+
+    /**
+     * Enables or disables warm starting. Without it every step starts from zero
+     * impulses and needs several times more iterations for stable stacks.
+     *
+     * @param warmStarting {@code true} to reuse previous impulses
+     */
+    public void setWarmStarting(boolean warmStarting) {
+        this.warmStarting = warmStarting;
+        if (!warmStarting) {
+            this.contactCache.clear();
+        }
+    }
+
+    /** @return whether independent islands may be solved in parallel */
+    public boolean isParallel() {
+        return this.parallel;
+    }
+
+    /**
+     * Allows or forbids solving islands on multiple threads.
+     *
+     * @param parallel {@code true} to use the common fork/join pool
+     */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    /**
+     * Solves the given contacts in place on the body state.
+     *
+     * @param manifolds contacts of this step
+     * @param count     number of valid manifolds in the list
+     * @param bodies    body state to update
+     */
+    public void solve(List<Manifold> manifolds, int count, BodyState bodies) {
+        solve(manifolds, count, List.of(), bodies);
+    }
+
+    /**
+     * Solves the given contacts and joints in place on the body state.
+     *
+     * @param manifolds contacts of this step
+     * @param count     number of valid manifolds in the list
+     * @param joints    joints whose bodies are part of the state
+     * @param bodies    body state to update
+     */
+    public void solve(List<Manifold> manifolds, int count, List<Joint> joints, BodyState bodies) {
+        for (int k = 0; k < count; k++) {
+            restoreImpulses(manifolds.get(k));
+        }
+
+        buildIslands(manifolds, count, joints, bodies.count);
+        if (this.parallel && this.islands > 1 && count + joints.size() >= PARALLEL_THRESHOLD) {
+            IntStream.range(0, this.islands).parallel()
+                    .forEach(island -> solveIsland(island, manifolds, joints, bodies));
+        } else {
+            for (int island = 0; island < this.islands; island++) {
+                solveIsland(island, manifolds, joints, bodies);
+            }
+        }
+
+        for (int k = 0; k < count; k++) {
+            storeImpulses(manifolds.get(k));
+        }
+        this.contactCache.nextTick();
+    }
+
+    /**
+     * Normal impulse the last {@link #solve} call stored for a pair, summed
+     * over its contact points, which is what the next step warm starts from.
+     *
+     * @param id pair key of the manifold, see {@link Manifold#id}
+     * @return cached impulse, or 0 if the pair was not solved in the last call
+     */
+    double cachedNormalImpulse(long id) {
+        int offset = this.contactCache.find(id);
+        if (offset < 0 || this.contactCache.stamp(id) != this.contactCache.tick() - 1) {
+            return 0.0;
+        }
+        double[] cache = this.contactCache.values();
+        double impulse = 0.0;
+        for (int p = 0; p < (int) cache[offset + CACHE_WIDTH - 1]; p++) {
+            impulse += cache[offset + 4 * p + 2];
+        }
+        return impulse;
+    }
+
+    /** @return number of islands found by the last {@link #solve} call */
+    public int getIslandCount() {
+        return this.islands;
+    }
+
+    private void solveIsland(int island, List<Manifold> manifolds, List<Joint> joints, BodyState s) {
+        int contactFrom = this.contactStart[island];
+        int contactTo = this.contactStart[island + 1];
+        int jointFrom = this.jointStart[island];
+        int jointTo = this.jointStart[island + 1];
+
+        for (int k = contactFrom; k < contactTo; k++) {
+            prepare(manifolds.get(this.contactOrder[k]), s);
+        }
+        for (int k = jointFrom; k < jointTo; k++) {
+            Joint joint = joints.get(this.jointOrder[k]);
+            joint.prepare(s);
+            if (this.warmStarting) {
+                joint.warmStart(s);
+            } else {
+                joint.resetImpulses();
+            }
+        }
+        if (this.warmStarting) {
+            for (int k = contactFrom; k < contactTo; k++) {
+                warmStart(manifolds.get(this.contactOrder[k]), s);
+            }
+        }
+
+        for (int i = 0; i < this.iterations; i++) {
+            for (int k = jointFrom; k < jointTo; k++) {
+                joints.get(this.jointOrder[k]).solveVelocity(s);
+            }
+            for (int k = contactFrom; k < contactTo; k++) {
+                solveVelocity(manifolds.get(this.contactOrder[k]), s);
+            }
+        }
+
+        for (int k = contactFrom; k < contactTo; k++) {
+            solvePosition(manifolds.get(this.contactOrder[k]), s);
+        }
+        for (int i = 0; i < this.positionIterations; i++) {
+            for (int k = jointFrom; k < jointTo; k++) {
+                joints.get(this.jointOrder[k]).solvePosition(s);
+            }
+        }
+    }
+
+    /**
+     * Groups bodies connected by contacts or joints with a union-find and
+     * buckets the constraints by island. Static geometry does not connect
+     * islands because the solver never moves it.
+     */
+    private void buildIslands(List<Manifold> manifolds, int count, List<Joint> joints, int bodies) {
+        if (this.parent.length < bodies) {
+            this.parent = new int[Math.max(bodies, 2 * this.parent.length)];
+            this.islandOf = new int[this.parent.length];
+        }
+        for (int i = 0; i < bodies; i++) {
+            this.parent[i] = i;
+            this.islandOf[i] = -1;
+        }
+        for (int k = 0; k < count; k++) {
+            Manifold m = manifolds.get(k);
+            union(m.a, m.b);
+        }
+        for (Joint joint : joints) {
+            union(joint.a, joint.b);
+        }
+
+        // Number the roots that carry at least one constraint
+        this.islands = 0;
+        int jointCount = joints.size();
+        if (this.contactIsland.length < count) {
+            this.contactIsland = new int[Math.max(count, 2 * this.contactIsland.length)];
+        }
+        if (this.jointIsland.length < jointCount) {
+            this.jointIsland = new int[Math.max(jointCount, 2 * this.jointIsland.length)];
+        }
+        for (int k = 0; k < count; k++) {
+            Manifold m = manifolds.get(k);
+            this.contactIsland[k] = island(m.a >= 0 ? m.a : m.b);
+        }
+        for (int k = 0; k < jointCount; k++) {
+            Joint joint = joints.get(k);
+            this.jointIsland[k] = island(joint.a >= 0 ? joint.a : joint.b);
+        }
+
+        this.contactStart = bucket(this.contactIsland, count, this.contactStart);
+        this.contactOrder = order(this.contactIsland, count, this.contactStart, this.contactOrder);
+        this.jointStart = bucket(this.jointIsland, jointCount, this.jointStart);
+        this.jointOrder = order(this.jointIsland, jointCount, this.jointStart, this.jointOrder);
+    }
+
+    private int find(int i) {
+        while (this.parent[i] != i) {
+            this.parent[i] = this.parent[this.parent[i]];
+            i = this.parent[i];
+        }
+        return i;
+    }
+
+    private void union(int a, int b) {
+        if (a < 0 || b < 0) {
+            return;
+        }
+        int rootA = find(a);
+        int rootB = find(b);
+        if (rootA != rootB) {
+            this.parent[rootA] = rootB;
+        }
+    }
+
+    private int island(int body) {
+        int root = find(body);
+        if (this.islandOf[root] < 0) {
+            this.islandOf[root] = this.islands++;
+        }
+        return this.islandOf[root];
+    }
+
+    /** Prefix sums of the constraint count per island. */
+    private int[] bucket(int[] islandIndex, int n, int[] start) {
+        if (start.length < this.islands + 1) {
+            start = new int[Math.max(this.islands + 1, 2 * start.length)];
+        }
+        Arrays.fill(start, 0, this.islands + 1, 0);
+        for (int k = 0; k < n; k++) {
+            start[islandIndex[k] + 1]++;
+        }
+        for (int i = 0; i < this.islands; i++) {
+            start[i + 1] += start[i];
+        }
+        return start;
+    }
+
+    /** Constraint indices sorted by island (counting sort). */
+    private int[] order(int[] islandIndex, int n, int[] start, int[] order) {
+        if (order.length < n) {
+            order = new int[Math.max(n, 2 * order.length)];
+        }
+        if (this.cursor.length < this.islands) {
+            this.cursor = new int[Math.max(this.islands, 2 * this.cursor.length)];
+        }
+        System.arraycopy(start, 0, this.cursor, 0, this.islands);
+        for (int k = 0; k < n; k++) {
+            order[this.cursor[islandIndex[k]]++] = k;
+        }
+        return order;
+    }
+
+    /** Copies last tick's impulses onto the contact points they still match. */
+    private void restoreImpulses(Manifold m) {
+        if (!this.warmStarting) {
+            return;
+        }
+        int offset = this.contactCache.acquire(m.id);
+        double[] cache = this.contactCache.values();
+        int previous = (int) cache[offset + CACHE_WIDTH - 1];
+        for (int p = 0; p < m.count; p++) {
+            for (int q = 0; q < previous; q++) {
+                int slot = offset + 4 * q;
+                double dx = m.px[p] - cache[slot];
+                double dy = m.py[p] - cache[slot + 1];
+                if (dx * dx + dy * dy < MATCH_DISTANCE * MATCH_DISTANCE) {
+                    m.normalImpulse[p] = cache[slot + 2];
+                    m.tangentImpulse[p] = cache[slot + 3];
+                    break;
+                }
+            }
+        }
+    }
+
+    /** Stores this tick's points and impulses for the next tick. */
+    private void storeImpulses(Manifold m) {
+        if (!this.warmStarting) {
+            return;
+        }
+        int offset = this.contactCache.acquire(m.id);
+        double[] cache = this.contactCache.values();
+        for (int p = 0; p < m.count; p++) {
+            int slot = offset + 4 * p;
+            cache[slot] = m.px[p];
+            cache[slot + 1] = m.py[p];
+            cache[slot + 2] = m.normalImpulse[p];
+            cache[slot + 3] = m.tangentImpulse[p];
+        }
+        cache[offset + CACHE_WIDTH - 1] = m.count;
+    }
+
+    private void prepare(Manifold m, BodyState s) {
+        int a = m.a;
+        int b = m.b;
+        double invMassA = a < 0 ? 0.0 : s.invMass[a];
+        double invMassB = b < 0 ? 0.0 : s.invMass[b];
+        double invIA = a < 0 ? 0.0 : s.invInertia[a];
+        double invIB = b < 0 ? 0.0 : s.invInertia[b];
+        double restitution = Math.max(a < 0 ? 0.0 : s.restitution[a], b < 0 ? 0.0 : s.restitution[b]);
+        double tx = -m.ny;
+        double ty = m.nx;
+
+        for (int p = 0; p < m.count; p++) {
+            double rax = a < 0 ? 0.0 : m.px[p] - s.x[a];
+            double ray = a < 0 ? 0.0 : m.py[p] - s.y[a];
+            double rbx = b < 0 ? 0.0 : m.px[p] - s.x[b];
+            double rby = b < 0 ? 0.0 : m.py[p] - s.y[b];
+
+            double rnA = rax * m.ny - ray * m.nx;
+            double rnB = rbx * m.ny - rby * m.nx;
+            double kNormal = invMassA + invMassB + invIA * rnA * rnA + invIB * rnB * rnB;
+            m.normalMass[p] = kNormal > 0 ? 1.0 / kNormal : 0.0;
+
+            double rtA = rax * ty - ray * tx;
+            double rtB = rbx * ty - rby * tx;
+            double kTangent = invMassA + invMassB + invIA * rtA * rtA + invIB * rtB * rtB;
+            m.tangentMass[p] = kTangent > 0 ? 1.0 / kTangent : 0.0;
+
+            // Bounce target from the approach speed before any impulse is applied
+            double vn = relativeVelocity(m, s, p, m.nx, m.ny);
+            m.velocityBias[p] = vn < -RESTING_SPEED ? -restitution * vn : 0.0;
+            if (!this.warmStarting) {
+                m.normalImpulse[p] = 0.0;
+                m.tangentImpulse[p] = 0.0;
+            }
+        }
+
+        m.block = false;
+        if (m.count == 2) {
+            double rn1A = a < 0 ? 0.0 : (m.px[0] - s.x[a]) * m.ny - (m.py[0] - s.y[a]) * m.nx;
+            double rn1B = b < 0 ? 0.0 : (m.px[0] - s.x[b]) * m.ny - (m.py[0] - s.y[b]) * m.nx;
+            double rn2A = a < 0 ? 0.0 : (m.px[1] - s.x[a]) * m.ny - (m.py[1] - s.y[a]) * m.nx;
+            double rn2B = b < 0 ? 0.0 : (m.px[1] - s.x[b]) * m.ny - (m.py[1] - s.y[b]) * m.nx;
+            double k11 = invMassA + invMassB + invIA * rn1A * rn1A + invIB * rn1B * rn1B;
+            double k22 = invMassA + invMassB + invIA * rn2A * rn2A + invIB * rn2B * rn2B;
+            double k12 = invMassA + invMassB + invIA * rn1A * rn2A + invIB * rn1B * rn2B;
+            double det = k11 * k22 - k12 * k12;
+            if (det > 0 && k11 * k11 < MAX_CONDITION * det) {
+                m.block = true;
+                m.k11 = k11;
+                m.k12 = k12;
+                m.k22 = k22;
+            }
+        }
+    }
+
+    private void warmStart(Manifold m, BodyState s) {
+        double tx = -m.ny;
+        double ty = m.nx;
+        for (int p = 0; p < m.count; p++) {
+            double jx = m.normalImpulse[p] * m.nx + m.tangentImpulse[p] * tx;
+            double jy = m.normalImpulse[p] * m.ny + m.tangentImpulse[p] * ty;
+            applyImpulse(m, s, p, jx, jy);
+        }
+    }
+
+    private void solveVelocity(Manifold m, BodyState s) {
+        double friction = friction(m, s);
+        double tx = -m.ny;
+        double ty = m.nx;
+
+        // Friction first so the normal constraint has the final say
+        for (int p = 0; p < m.count; p++) {
+            double vt = relativeVelocity(m, s, p, tx, ty);
+            double lambda = -vt * m.tangentMass[p];
+            double maxFriction = friction * m.normalImpulse[p];
+            double old = m.tangentImpulse[p];
+            m.tangentImpulse[p] = Math.max(-maxFriction, Math.min(old + lambda, maxFriction));
+            applyImpulse(m, s, p, (m.tangentImpulse[p] - old) * tx, (m.tangentImpulse[p] - old) * ty);
+        }
+
+        if (m.block) {
+            solveBlock(m, s);
+            return;
+        }
+        for (int p = 0; p < m.count; p++) {
+            double vn = relativeVelocity(m, s, p, m.nx, m.ny);
+            double lambda = -(vn - m.velocityBias[p]) * m.normalMass[p];
+            double old = m.normalImpulse[p];
+            m.normalImpulse[p] = Math.max(old + lambda, 0.0);
+            double delta = m.normalImpulse[p] - old;
+            applyImpulse(m, s, p, delta * m.nx, delta * m.ny);
+        }
+    }
+
+    /**
+     * Solves both normal impulses of a two-point manifold at once as a small
+     * linear complementarity problem: either both points push, only one of
+     * them does, or the contact separates. The first case whose impulses and
+     * resulting velocities are both non-negative is applied.
+     */
+    private static void solveBlock(Manifold m, BodyState s) {
+        double a1 = m.normalImpulse[0];
+        double a2 = m.normalImpulse[1];
+        double b1 = relativeVelocity(m, s, 0, m.nx, m.ny) - m.velocityBias[0]
+                - (m.k11 * a1 + m.k12 * a2);
+        double b2 = relativeVelocity(m, s, 1, m.nx, m.ny) - m.velocityBias[1]
+                - (m.k12 * a1 + m.k22 * a2);
+
+        double x1;
+        double x2;
+        double det = m.k11 * m.k22 - m.k12 * m.k12;
+        // Both points active
+        x1 = -(m.k22 * b1 - m.k12 * b2) / det;
+        x2 = -(m.k11 * b2 - m.k12 * b1) / det;
+        if (x1 < 0 || x2 < 0) {
+            // Only the first point active
+            x1 = -b1 / m.k11;
+            x2 = 0.0;
+            if (x1 < 0 || m.k12 * x1 + b2 < 0) {
+                // Only the second point active
+                x1 = 0.0;
+                x2 = -b2 / m.k22;
+                if (x2 < 0 || m.k12 * x2 + b1 < 0) {
+                    // Separating (or no valid solution): release both
+                    x1 = 0.0;
+                    x2 = 0.0;
+                    if (b1 < 0 || b2 < 0) {
+                        return;
+                    }
+                }
+            }
+        }
+
+        double d1 = x1 - a1;
+        double d2 = x2 - a2;
+        applyImpulse(m, s, 0, d1 * m.nx, d1 * m.ny);
+        applyImpulse(m, s, 1, d2 * m.nx, d2 * m.ny);
+        m.normalImpulse[0] = x1;
+        m.normalImpulse[1] = x2;
+    }
+
+    private void solvePosition(Manifold m, BodyState s) {
+        int a = m.a;
+        int b = m.b;
+        double invMassA = a < 0 ? 0.0 : s.invMass[a];
+        double invMassB = b < 0 ? 0.0 : s.invMass[b];
+        double invMass = invMassA + invMassB;
+        if (invMass == 0 || m.count == 0) {
+            return;
+        }
+
+        double deepest = 0.0;
+        for (int p = 0; p < m.count; p++) {
+            deepest = Math.max(deepest, m.depth[p]);
+        }
+        double correction = Math.max(deepest - SLOP, 0.0) * CORRECTION / invMass;
+        if (a >= 0) {
+            s.x[a] -= m.nx * correction * invMassA;
+            s.y[a] -= m.ny * correction * invMassA;
+        }
+        if (b >= 0) {
+            s.x[b] += m.nx * correction * invMassB;
+            s.y[b] += m.ny * correction * invMassB;
+        }
+    }
+
+    /** Relative velocity of b with respect to a at contact point p along (dx, dy). */
+    private static double relativeVelocity(Manifold m, BodyState s, int p, double dx, double dy) {
+        double vx = 0.0;
+        double vy = 0.0;
+        if (m.b >= 0) {
+            int b = m.b;
+            vx += s.vx[b] - s.w[b] * (m.py[p] - s.y[b]);
+            vy += s.vy[b] + s.w[b] * (m.px[p] - s.x[b]);
+        }
+        if (m.a >= 0) {
+            int a = m.a;
+            vx -= s.vx[a] - s.w[a] * (m.py[p] - s.y[a]);
+            vy -= s.vy[a] + s.w[a] * (m.px[p] - s.x[a]);
+        }
+        return vx * dx + vy * dy;
+    }
+
+    /** Applies +impulse to b and -impulse to a at contact point p. */
+    private static void applyImpulse(Manifold m, BodyState s, int p, double jx, double jy) {
+        if (m.a >= 0) {
+            int a = m.a;
+            double rx = m.px[p] - s.x[a];
+            double ry = m.py[p] - s.y[a];
+            s.vx[a] -= jx * s.invMass[a];
+            s.vy[a] -= jy * s.invMass[a];
+            s.w[a] -= (rx * jy - ry * jx) * s.invInertia[a];
+        }
+        if (m.b >= 0) {
+            int b = m.b;
+            double rx = m.px[p] - s.x[b];
+            double ry = m.py[p] - s.y[b];
+            s.vx[b] += jx * s.invMass[b];
+            s.vy[b] += jy * s.invMass[b];
+            s.w[b] += (rx * jy - ry * jx) * s.invInertia[b];
+        }
+    }
+
+    private static double friction(Manifold m, BodyState s) {
+        if (m.a < 0) {
+            return s.friction[m.b];
+        }
+        if (m.b < 0) {
+            return s.friction[m.a];
+        }
+        return Math.sqrt(s.friction[m.a] * s.friction[m.b]);
+    }
+}
@@ -0,0 +1,221 @@
+package physics;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the contact events of a {@link CollisionWorld} as one
+ * {@link ContactBatch} per step through {@link java.util.concurrent.Flow}.
+ *
+ * <p>
+ * The world fills a pooled batch while it walks its manifolds and hands it
+ * over after the step; subscribers run on the stream's executor, never on the
+ * simulation thread. By default that is a daemon thread owned by the stream,
+ * so a slow or blocking listener cannot starve the fork/join pool the solvers
+ * run their parallel passes on. Every subscriber has a bounded buffer: if a listener
+ * (sound, scoring, analytics) falls behind or stops requesting, further
+ * batches are dropped for that listener instead of blocking the step, and
+ * {@link #getDropped()} counts the losses. Subscribers should request items
+ * freely, e.g. {@code Long.MAX_VALUE} in {@code onSubscribe}.
+ * </p>
+ *
+ * <p>
+ * Batches return to the pool once every subscriber that received them has
+ * returned from {@code onNext} (or was skipped), so a steady stream neither
+ * allocates per contact nor per step. Each subscriber has its own channel,
+ * and a batch holds one reference per channel it was actually offered to; a
+ * listener that subscribes or cancels while a batch is handed out can
+ * therefore never see a recycled batch. A batch still buffered for a
+ * listener that cancels is left to the garbage collector.
+ * </p>
+ */
+public final class ContactStream implements AutoCloseable {
+    /** Default number of batches buffered per subscriber. */
+    public static final int DEFAULT_BUFFER = 16;
+
+    private final Executor executor;
+    /** The default executor, shut down with the stream; null for a caller's executor. */
+    private final ExecutorService ownExecutor;
+    private final int bufferCapacity;
+    private final CopyOnWriteArrayList<SubmissionPublisher<ContactBatch>> channels = new CopyOnWriteArrayList<>();
+    private final ArrayBlockingQueue<ContactBatch> pool;
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile boolean closed;
+    private long published;
+
+    /**
+     * Creates a stream with the default buffer whose subscribers run on its
+     * own daemon thread, stopped by {@link #close()}.
+     */
+    public ContactStream() {
+        this(Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "contact-stream");
+            t.setDaemon(true);
+            return t;
+        }), DEFAULT_BUFFER, true);
+    }
+
+    /**
+     * Creates a stream.
+     *
+     * @param executor       executor that runs the subscribers
+     * @param bufferCapacity batches buffered per subscriber before dropping
+     *                       (rounded up to a power of two by the publisher)
+     */
+    public ContactStream(Executor executor, int bufferCapacity) {
+        this(executor, bufferCapacity, false);
+    }
+
+    private ContactStream(Executor executor, int bufferCapacity, boolean owned) {
+        this.executor = executor;
+        this.ownExecutor = owned ? (ExecutorService) executor : null;
+        this.bufferCapacity = bufferCapacity;
+        this.pool = new ArrayBlockingQueue<>(4 * Math.max(1, bufferCapacity) + 4);
+    }
+
+    /**
+     * Registers a listener. Each batch is only valid during the listener's
+     * {@code onNext} call.
+     *
+     * @param subscriber listener for contact batches
+     */
+    public void subscribe(Flow.Subscriber<? super ContactBatch> subscriber) {
+        SubmissionPublisher<ContactBatch> channel = new SubmissionPublisher<>(this.executor, this.bufferCapacity);
+        channel.subscribe(new Releasing(subscriber));
+        this.channels.add(channel);
+        // Checked after adding, so a concurrent close() cannot miss the channel
+        if (this.closed) {
+            this.channels.remove(channel);
+            channel.close();
+        }
+    }
+
+    /** @return whether anybody listens; the world skips recording otherwise */
+    public boolean hasSubscribers() {
+        for (SubmissionPublisher<ContactBatch> channel : this.channels) {
+            if (channel.hasSubscribers()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** @return batches dropped for slow subscribers so far (counted per subscriber) */
+    public long getDropped() {
+        return this.dropped.get();
+    }
+
+    /** @return batches published so far */
+    public long getPublished() {
+        return this.published;
+    }
+
+    /** Completes all subscribers and stops the stream's own thread; later batches are discarded. */
+    @Override
+    public void close() {
+        this.closed = true;
+        for (SubmissionPublisher<ContactBatch> channel : this.channels) {
+            channel.close();
+        }
+        this.channels.clear();
+        if (this.ownExecutor != null) {
+            // Lets the queued completions run, then ends the thread
+            this.ownExecutor.shutdown();
+        }
+    }
+
+    /** Takes a cleared batch from the pool, or creates one if the pool is empty. */
+    ContactBatch acquire(long tick) {
+        ContactBatch batch = this.pool.poll();
+        if (batch == null) {
+            batch = new ContactBatch();
+        }
+        batch.reset(tick);
+        return batch;
+    }
+
+    /**
+     * Hands a filled batch to the subscribers without blocking. Subscribers
+     * whose buffer is full are skipped.
+     */
+    void publish(ContactBatch batch) {
+        // One reference for this method, so a batch cannot be recycled while
+        // it is still being handed out
+        batch.pending.set(1);
+        boolean offered = false;
+        for (SubmissionPublisher<ContactBatch> channel : this.channels) {
+            if (!channel.hasSubscribers()) {
+                // The listener cancelled
+                this.channels.remove(channel);
+                channel.close();
+                continue;
+            }
+            // Counted before the hand-off, released by onNext or the drop
+            batch.pending.incrementAndGet();
+            try {
+                channel.offer(batch, (subscriber, item) -> {
+                    this.dropped.incrementAndGet();
+                    release(item);
+                    return false;
+                });
+                offered = true;
+            } catch (IllegalStateException closedMeanwhile) {
+                release(batch);
+            }
+        }
+        if (offered) {
+            this.published++;
+        }
+        release(batch);
+    }
+
+    private void release(ContactBatch batch) {
+        if (batch.pending.decrementAndGet() == 0) {
+            recycle(batch);
+        }
+    }
+
+    private void recycle(ContactBatch batch) {
+        batch.reset(0);
+        this.pool.offer(batch);
+    }
+
+    /** Wraps a listener so every batch it saw goes back to the pool. */
+    private final class Releasing implements Flow.Subscriber<ContactBatch> {
+        private final Flow.Subscriber<? super ContactBatch> delegate;
+
+        Releasing(Flow.Subscriber<? super ContactBatch> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.delegate.onSubscribe(subscription);
+        }
+
+        @Override
+        public void onNext(ContactBatch batch) {
+            try {
+                this.delegate.onNext(batch);
+            } finally {
+                release(batch);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            this.delegate.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            this.delegate.onComplete();
+        }
+    }
+}
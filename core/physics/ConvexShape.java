@@ -0,0 +1,22 @@
+package physics;
+
+/**
+ * Convex shape described by its support mapping, the query used by the
+ * {@link Gjk} and {@link Epa} narrowphases.
+ */
+public interface ConvexShape {
+    /**
+     * Writes the point of the shape that lies furthest along a direction.
+     *
+     * @param dx  direction x-component (need not be normalized)
+     * @param dy  direction y-component (need not be normalized)
+     * @param out receives the support point as {@code {x, y}}
+     */
+    void support(double dx, double dy, double[] out);
+
+    /** @return x-coordinate of a point inside the shape (e.g. its center) */
+    double centerX();
+
+    /** @return y-coordinate of a point inside the shape (e.g. its center) */
+    double centerY();
+}
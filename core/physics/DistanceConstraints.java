@@ -0,0 +1,89 @@
+package physics;
+
+/**
+ * Keeps pairs of particles at a rest distance: {@code C = |xᵢ − xⱼ| − L}.
+ *
+ * <p>
+ * With zero compliance the pair behaves like a rigid rod; larger compliance
+ * values give a spring whose stiffness does not depend on the substep length
+ * or the iteration count, which is what lets ropes and cloth stay stable at
+ * the scene's 60 Hz tick.
+ * </p>
+ */
+public final class DistanceConstraints extends ConstraintSet {
+    private final int[] pair = new int[2];
+
+    /**
+     * Adds a constraint that keeps the current distance of two particles.
+     *
+     * @param ps         particle system holding both particles
+     * @param i          first particle
+     * @param j          second particle
+     * @param compliance compliance, 0 for a rigid rod
+     * @return constraint index
+     */
+    public int add(ParticleSystem ps, int i, int j, double compliance) {
+        return add(i, j, Math.hypot(ps.x[j] - ps.x[i], ps.y[j] - ps.y[i]), compliance);
+    }
+
+    /**
+     * Adds a constraint with an explicit rest length.
+     *
+     * @param i          first particle
+     * @param j          second particle
+     * @param length     rest length in pixels
+     * @param compliance compliance, 0 for a rigid rod
+     * @return constraint index
+     */
+    public int add(int i, int j, double length, double compliance) {
+        this.pair[0] = i;
+        this.pair[1] = j;
+        return append(this.pair, length, compliance);
+    }
+
+    /**
+     * @param k constraint index
+     * @return first particle of the constraint
+     */
+    public int first(int k) {
+        return this.particles[this.first[k]];
+    }
+
+    /**
+     * @param k constraint index
+     * @return second particle of the constraint
+     */
+    public int second(int k) {
+        return this.particles[this.first[k] + 1];
+    }
+
+    @Override
+    protected void project(int k, ParticleSystem ps, double invDt2) {
+        int i = this.particles[this.first[k]];
+        int j = this.particles[this.first[k] + 1];
+        double wi = ps.invMass[i];
+        double wj = ps.invMass[j];
+        double alpha = this.compliance[k] * invDt2;
+        double w = wi + wj + alpha;
+        if (w == 0) {
+            return;
+        }
+
+        double dx = ps.x[i] - ps.x[j];
+        double dy = ps.y[i] - ps.y[j];
+        double length = Math.sqrt(dx * dx + dy * dy);
+        if (length == 0) {
+            return;
+        }
+        double c = length - this.rest[k];
+        double dLambda = (-c - alpha * this.lambda[k]) / w;
+        this.lambda[k] += dLambda;
+
+        double nx = dx / length * dLambda;
+        double ny = dy / length * dLambda;
+        ps.x[i] += wi * nx;
+        ps.y[i] += wi * ny;
+        ps.x[j] -= wj * nx;
+        ps.y[j] -= wj * ny;
+    }
+}
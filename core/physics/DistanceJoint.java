@@ -0,0 +1,114 @@
+package physics;
+
+import data.Vec;
+import interfaces.Moveable;
+
+/**
+ * Rigid rod between two anchors: their distance stays at a fixed length while
+ * both bodies may swing and rotate freely. Chaining balls with distance joints
+ * gives a rope; a single joint to the world gives a pendulum.
+ */
+public class DistanceJoint extends Joint {
+    private double length;
+    private double impulse;
+
+    private double ux;
+    private double uy;
+    private double mass;
+
+    /**
+     * Connects two anchors at their current distance.
+     *
+     * @param bodyA   first body
+     * @param bodyB   second body, or {@code null} to attach to a world point
+     * @param anchorA anchor on the first body in world coordinates
+     * @param anchorB anchor on the second body (or world point)
+     */
+    public DistanceJoint(Moveable bodyA, Moveable bodyB, Vec anchorA, Vec anchorB) {
+        this(bodyA, bodyB, anchorA, anchorB, -1.0);
+    }
+
+    /**
+     * Connects two anchors with a rod of the given length.
+     *
+     * @param bodyA   first body
+     * @param bodyB   second body, or {@code null} to attach to a world point
+     * @param anchorA anchor on the first body in world coordinates
+     * @param anchorB anchor on the second body (or world point)
+     * @param length  rod length; negative to use the initial anchor distance
+     */
+    public DistanceJoint(Moveable bodyA, Moveable bodyB, Vec anchorA, Vec anchorB, double length) {
+        super(bodyA, bodyB, anchorA, anchorB);
+        this.length = length >= 0
+                ? length
+                : Math.hypot(anchorB.x() - anchorA.x(), anchorB.y() - anchorA.y());
+    }
+
+    /** @return rod length */
+    public double getLength() {
+        return this.length;
+    }
+
+    /**
+     * Sets the rod length.
+     *
+     * @param length new length
+     */
+    public void setLength(double length) {
+        this.length = length;
+    }
+
+    @Override
+    void prepare(BodyState s) {
+        super.prepare(s);
+        direction(s);
+        double crA = this.rAX * this.uy - this.rAY * this.ux;
+        double crB = this.rBX * this.uy - this.rBY * this.ux;
+        double k = this.massA + this.massB + this.inertiaA * crA * crA + this.inertiaB * crB * crB;
+        this.mass = k > 0 ? 1.0 / k : 0.0;
+    }
+
+    @Override
+    void warmStart(BodyState s) {
+        applyImpulse(s, this.impulse * this.ux, this.impulse * this.uy);
+    }
+
+    @Override
+    void solveVelocity(BodyState s) {
+        double cdot = relativeVelocityX(s) * this.ux + relativeVelocityY(s) * this.uy;
+        double lambda = -this.mass * cdot;
+        this.impulse += lambda;
+        applyImpulse(s, lambda * this.ux, lambda * this.uy);
+    }
+
+    @Override
+    void solvePosition(BodyState s) {
+        updateAnchors(s);
+        double current = direction(s);
+        double crA = this.rAX * this.uy - this.rAY * this.ux;
+        double crB = this.rBX * this.uy - this.rBY * this.ux;
+        double k = this.massA + this.massB + this.inertiaA * crA * crA + this.inertiaB * crB * crB;
+        if (k == 0) {
+            return;
+        }
+        double lambda = -(current - this.length) / k;
+        applyPositionImpulse(s, lambda * this.ux, lambda * this.uy);
+    }
+
+    @Override
+    public void resetImpulses() {
+        this.impulse = 0.0;
+    }
+
+    /** Stores the unit direction from anchor a to anchor b and returns the distance. */
+    private double direction(BodyState s) {
+        double dx = anchorBX(s) - anchorAX(s);
+        double dy = anchorBY(s) - anchorAY(s);
+        double len = Math.hypot(dx, dy);
+        if (len > 0) {
+            this.ux = dx / len;
+            this.uy = dy / len;
+        }
+        return len;
+    }
+}
@@ -0,0 +1,156 @@
+package physics;
+
+/**
+ * Expanding polytope algorithm: penetration depth and direction of two
+ * overlapping convex shapes.
+ *
+ * <p>
+ * Starting from the simplex of an overlapping {@link Gjk} query, the polytope
+ * inside the Minkowski difference {@code A - B} is repeatedly expanded at the
+ * edge closest to the origin until that edge lies on the boundary. Its normal
+ * is the direction in which {@code B} has to move (or {@code A} in the
+ * opposite direction) to separate the shapes, and its distance to the origin
+ * the penetration depth. An instance keeps the polytope in scratch arrays and
+ * must be used from one thread at a time.
+ * </p>
+ */
+public final class Epa {
+    private static final int MAX_ITERATIONS = 32;
+    private static final int MAX_VERTICES = MAX_ITERATIONS + 3;
+    private static final double TOLERANCE = 1e-6;
+
+    private final double[] px = new double[MAX_VERTICES];
+    private final double[] py = new double[MAX_VERTICES];
+    private final double[] supportA = new double[2];
+    private final double[] supportB = new double[2];
+    private int count;
+
+    private double normalX;
+    private double normalY;
+    private double depth;
+
+    /**
+     * Computes the penetration of two shapes that the given query found
+     * overlapping.
+     *
+     * @param gjk overlapping query whose simplex seeds the polytope
+     * @param a   first shape of that query
+     * @param b   second shape of that query
+     * @return penetration depth (non-negative)
+     */
+    public double penetration(Gjk gjk, ConvexShape a, ConvexShape b) {
+        this.count = 0;
+        for (int i = 0; i < gjk.count; i++) {
+            this.px[this.count] = gjk.wx[i];
+            this.py[this.count] = gjk.wy[i];
+            this.count++;
+        }
+        seed(a, b);
+
+        // Interior reference point: the polytope only grows, so it stays inside
+        double cx = (this.px[0] + this.px[1] + this.px[2]) / 3.0;
+        double cy = (this.py[0] + this.py[1] + this.py[2]) / 3.0;
+
+        double bestNx = 0.0;
+        double bestNy = 1.0;
+        double bestDistance = 0.0;
+        for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+            int edge = -1;
+            bestDistance = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < this.count; i++) {
+                int j = i + 1 == this.count ? 0 : i + 1;
+                double ex = this.px[j] - this.px[i];
+                double ey = this.py[j] - this.py[i];
+                double len = Math.hypot(ex, ey);
+                if (len == 0) {
+                    continue;
+                }
+                double nx = ey / len;
+                double ny = -ex / len;
+                if (nx * (this.px[i] - cx) + ny * (this.py[i] - cy) < 0) {
+                    nx = -nx;
+                    ny = -ny;
+                }
+                double d = nx * this.px[i] + ny * this.py[i];
+                if (d < bestDistance) {
+                    bestDistance = d;
+                    bestNx = nx;
+                    bestNy = ny;
+                    edge = i;
+                }
+            }
+            if (edge < 0) {
+                break;
+            }
+
+            a.support(bestNx, bestNy, this.supportA);
+            b.support(-bestNx, -bestNy, this.supportB);
+            double wx = this.supportA[0] - this.supportB[0];
+            double wy = this.supportA[1] - this.supportB[1];
+            double reach = bestNx * wx + bestNy * wy;
+            if (reach - bestDistance < TOLERANCE || this.count == MAX_VERTICES) {
+                break;
+            }
+
+            // Insert the new vertex between edge and edge + 1
+            for (int k = this.count; k > edge + 1; k--) {
+                this.px[k] = this.px[k - 1];
+                this.py[k] = this.py[k - 1];
+            }
+            this.px[edge + 1] = wx;
+            this.py[edge + 1] = wy;
+            this.count++;
+        }
+
+        this.normalX = bestNx;
+        this.normalY = bestNy;
+        this.depth = Math.max(bestDistance, 0.0);
+        return this.depth;
+    }
+
+    /** @return penetration normal x-component, pointing from a towards b */
+    public double normalX() {
+        return this.normalX;
+    }
+
+    /** @return penetration normal y-component, pointing from a towards b */
+    public double normalY() {
+        return this.normalY;
+    }
+
+    /** @return penetration depth of the last query */
+    public double depth() {
+        return this.depth;
+    }
+
+    /**
+     * Completes a degenerate simplex (shapes merely touching) to a triangle by
+     * adding support points in directions orthogonal to it.
+     */
+    private void seed(ConvexShape a, ConvexShape b) {
+        if (this.count == 1) {
+            add(a, b, 1.0, 0.0);
+            if (this.px[1] == this.px[0] && this.py[1] == this.py[0]) {
+                this.count = 1;
+                add(a, b, -1.0, 0.0);
+            }
+        }
+        if (this.count == 2) {
+            double ex = this.px[1] - this.px[0];
+            double ey = this.py[1] - this.py[0];
+            add(a, b, ey, -ex);
+            if (Math.abs(ex * (this.py[2] - this.py[0]) - ey * (this.px[2] - this.px[0])) < TOLERANCE) {
+                this.count = 2;
+                add(a, b, -ey, ex);
+            }
+        }
+    }
+
+    private void add(ConvexShape a, ConvexShape b, double dx, double dy) {
+        a.support(dx, dy, this.supportA);
+        b.support(-dx, -dy, this.supportB);
+        this.px[this.count] = this.supportA[0] - this.supportB[0];
+        this.py[this.count] = this.supportA[1] - this.supportB[1];
+        this.count++;
+    }
+}
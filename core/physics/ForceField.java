@@ -0,0 +1,471 @@
+package physics;
+
+import java.awt.Dimension;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.DoubleSupplier;
+
+import data.NoiseTiles;
+import data.SimplexNoise;
+import data.Vec;
+import interfaces.Moveable;
+
+/**
+ * A position-dependent force, such as wind or a current, cached on a grid.
+ *
+ * <p>
+ * The field is the sum of its {@link Generator}s and a painted layer. Both are
+ * evaluated once per grid node and stored in flat arrays; bodies then look up
+ * their force by bilinear interpolation between the four surrounding nodes,
+ * which costs the same for a cheap uniform wind as for a sum of vortices and
+ * noise. Changes only recompute the nodes they touch: painting marks the
+ * painted disc dirty, {@link #invalidate(double, double, double, double)}
+ * marks a rectangle after a generator changed, and the dirty rectangle is
+ * refreshed lazily before the next lookup.
+ * </p>
+ *
+ * <p>
+ * Like the rest of the scene physics, positions are in pixels and forces are
+ * applied once per tick.
+ * </p>
+ */
+public final class ForceField {
+    /**
+     * Force as a function of position. Generators are only evaluated at grid
+     * nodes when the field is refreshed, so they may be expensive.
+     */
+    @FunctionalInterface
+    public interface Generator {
+        /**
+         * Writes the force at a point.
+         *
+         * @param x   x-coordinate in pixels
+         * @param y   y-coordinate in pixels
+         * @param out force x- and y-component (output)
+         */
+        void force(double x, double y, double[] out);
+    }
+
+    private final double cellSize;
+    private final int columns;
+    private final int rows;
+    private final int nodesX;
+    private final double[] fx;
+    private final double[] fy;
+    private final double[] paintX;
+    private final double[] paintY;
+
+    private final ArrayList<Generator> generators = new ArrayList<>();
+
+    // Dirty and painted node rectangles, inclusive; empty when min > max
+    private int dirtyX0;
+    private int dirtyY0;
+    private int dirtyX1 = -1;
+    private int dirtyY1 = -1;
+    private int paintX0;
+    private int paintY0;
+    private int paintX1 = -1;
+    private int paintY1 = -1;
+
+    private final double[] scratch = new double[2];
+    private double[] bx = new double[0];
+    private double[] by = new double[0];
+    private double[] bfx = new double[0];
+    private double[] bfy = new double[0];
+    private int refreshed;
+
+    /**
+     * Creates an empty (zero) field covering the scene.
+     *
+     * @param sceneDim scene dimension
+     * @param cellSize distance between grid nodes in pixels
+     */
+    public ForceField(Dimension sceneDim, double cellSize) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("cell size must be positive: " + cellSize);
+        }
+        this.cellSize = cellSize;
+        this.columns = Math.max(1, (int) Math.ceil(sceneDim.getWidth() / cellSize));
+        this.rows = Math.max(1, (int) Math.ceil(sceneDim.getHeight() / cellSize));
+        this.nodesX = this.columns + 1;
+        int nodes = this.nodesX * (this.rows + 1);
+        this.fx = new double[nodes];
+        this.fy = new double[nodes];
+        this.paintX = new double[nodes];
+        this.paintY = new double[nodes];
+    }
+
+    /**
+     * Adds a generator; the whole field is recomputed before the next lookup.
+     *
+     * @param generator force function
+     */
+    public void add(Generator generator) {
+        this.generators.add(generator);
+        invalidateAll();
+    }
+
+    public boolean remove(Generator generator) {
+        boolean removed = this.generators.remove(generator);
+        if (removed) {
+            invalidateAll();
+        }
+        return removed;
+    }
+
+    /**
+     * Marks a rectangle to be recomputed, e.g. after moving a generator.
+     *
+     * @param x0 left edge in pixels
+     * @param y0 top edge in pixels
+     * @param x1 right edge in pixels
+     * @param y1 bottom edge in pixels
+     */
+    public void invalidate(double x0, double y0, double x1, double y1) {
+        int i0 = clampX((int) Math.floor(x0 / this.cellSize));
+        int j0 = clampY((int) Math.floor(y0 / this.cellSize));
+        int i1 = clampX((int) Math.ceil(x1 / this.cellSize));
+        int j1 = clampY((int) Math.ceil(y1 / this.cellSize));
+        if (this.dirtyX1 < this.dirtyX0) {
+            this.dirtyX0 = i0;
+            this.dirtyY0 = j0;
+            this.dirtyX1 = i1;
+            this.dirtyY1 = j1;
+        } else {
+            this.dirtyX0 = Math.min(this.dirtyX0, i0);
+            this.dirtyY0 = Math.min(this.dirtyY0, j0);
+            this.dirtyX1 = Math.max(this.dirtyX1, i1);
+            this.dirtyY1 = Math.max(this.dirtyY1, j1);
+        }
+    }
+
+    /** Marks the whole field to be recomputed. */
+    public void invalidateAll() {
+        this.dirtyX0 = 0;
+        this.dirtyY0 = 0;
+        this.dirtyX1 = this.columns;
+        this.dirtyY1 = this.rows;
+    }
+
+    /**
+     * Paints force into the field, strongest at the center of a disc and
+     * fading to nothing at its rim; e.g. a gust under the mouse cursor.
+     *
+     * @param x      disc center x in pixels
+     * @param y      disc center y in pixels
+     * @param radius disc radius in pixels
+     * @param forceX force x-component added at the center
+     * @param forceY force y-component added at the center
+     */
+    public void paint(double x, double y, double radius, double forceX, double forceY) {
+        int i0 = clampX((int) Math.floor((x - radius) / this.cellSize));
+        int j0 = clampY((int) Math.floor((y - radius) / this.cellSize));
+        int i1 = clampX((int) Math.ceil((x + radius) / this.cellSize));
+        int j1 = clampY((int) Math.ceil((y + radius) / this.cellSize));
+        double r2 = radius * radius;
+        for (int j = j0; j <= j1; j++) {
+            for (int i = i0; i <= i1; i++) {
+                double dx = i * this.cellSize - x;
+                double dy = j * this.cellSize - y;
+                double q = 1.0 - (dx * dx + dy * dy) / r2;
+                if (q > 0) {
+                    int k = j * this.nodesX + i;
+                    this.paintX[k] += forceX * q;
+                    this.paintY[k] += forceY * q;
+                }
+            }
+        }
+        if (this.paintX1 < this.paintX0) {
+            this.paintX0 = i0;
+            this.paintY0 = j0;
+            this.paintX1 = i1;
+            this.paintY1 = j1;
+        } else {
+            this.paintX0 = Math.min(this.paintX0, i0);
+            this.paintY0 = Math.min(this.paintY0, j0);
+            this.paintX1 = Math.max(this.paintX1, i1);
+            this.paintY1 = Math.max(this.paintY1, j1);
+        }
+        invalidate(i0 * this.cellSize, j0 * this.cellSize, i1 * this.cellSize, j1 * this.cellSize);
+    }
+
+    /**
+     * Fades the painted layer, so gusts die down over a few ticks. Only the
+     * painted rectangle is touched.
+     *
+     * @param keep share of the painted force kept, 0 to clear it
+     */
+    public void fadePaint(double keep) {
+        if (this.paintX1 < this.paintX0) {
+            return;
+        }
+        double largest = 0.0;
+        for (int j = this.paintY0; j <= this.paintY1; j++) {
+            for (int k = j * this.nodesX + this.paintX0; k <= j * this.nodesX + this.paintX1; k++) {
+                this.paintX[k] *= keep;
+                this.paintY[k] *= keep;
+                largest = Math.max(largest, Math.abs(this.paintX[k]) + Math.abs(this.paintY[k]));
+            }
+        }
+        invalidate(this.paintX0 * this.cellSize, this.paintY0 * this.cellSize,
+                this.paintX1 * this.cellSize, this.paintY1 * this.cellSize);
+        if (largest < 1e-6) {
+            for (int j = this.paintY0; j <= this.paintY1; j++) {
+                int row = j * this.nodesX;
+                Arrays.fill(this.paintX, row + this.paintX0, row + this.paintX1 + 1, 0.0);
+                Arrays.fill(this.paintY, row + this.paintX0, row + this.paintX1 + 1, 0.0);
+            }
+            this.paintX1 = -1;
+            this.paintY1 = -1;
+            this.paintX0 = 0;
+            this.paintY0 = 0;
+        }
+    }
+
+    /** Recomputes the dirty nodes from the generators and the painted layer. */
+    public void refresh() {
+        this.refreshed = 0;
+        if (this.dirtyX1 < this.dirtyX0) {
+            return;
+        }
+        double[] out = this.scratch;
+        for (int j = this.dirtyY0; j <= this.dirtyY1; j++) {
+            double y = j * this.cellSize;
+            for (int i = this.dirtyX0; i <= this.dirtyX1; i++) {
+                double x = i * this.cellSize;
+                int k = j * this.nodesX + i;
+                double sx = this.paintX[k];
+                double sy = this.paintY[k];
+                for (int g = 0; g < this.generators.size(); g++) {
+                    out[0] = 0.0;
+                    out[1] = 0.0;
+                    this.generators.get(g).force(x, y, out);
+                    sx += out[0];
+                    sy += out[1];
+                }
+                this.fx[k] = sx;
+                this.fy[k] = sy;
+            }
+        }
+        this.refreshed = (this.dirtyX1 - this.dirtyX0 + 1) * (this.dirtyY1 - this.dirtyY0 + 1);
+        this.dirtyX0 = 0;
+        this.dirtyY0 = 0;
+        this.dirtyX1 = -1;
+        this.dirtyY1 = -1;
+    }
+
+    /**
+     * Looks up the force at many points.
+     *
+     * @param xs     point x-coordinates in pixels
+     * @param ys     point y-coordinates in pixels
+     * @param n      number of points
+     * @param forceX force x-components (output)
+     * @param forceY force y-components (output)
+     */
+    public void sample(double[] xs, double[] ys, int n, double[] forceX, double[] forceY) {
+        refresh();
+        double inv = 1.0 / this.cellSize;
+        for (int p = 0; p < n; p++) {
+            double gx = Math.max(0.0, Math.min(this.columns, xs[p] * inv));
+            double gy = Math.max(0.0, Math.min(this.rows, ys[p] * inv));
+            int i = Math.min(this.columns - 1, (int) gx);
+            int j = Math.min(this.rows - 1, (int) gy);
+            double s = gx - i;
+            double t = gy - j;
+            int k = j * this.nodesX + i;
+            int below = k + this.nodesX;
+            forceX[p] = (1 - t) * ((1 - s) * this.fx[k] + s * this.fx[k + 1])
+                    + t * ((1 - s) * this.fx[below] + s * this.fx[below + 1]);
+            forceY[p] = (1 - t) * ((1 - s) * this.fy[k] + s * this.fy[k + 1])
+                    + t * ((1 - s) * this.fy[below] + s * this.fy[below + 1]);
+        }
+    }
+
+    /**
+     * Looks up the force at a point.
+     *
+     * @param x x-coordinate in pixels
+     * @param y y-coordinate in pixels
+     * @return interpolated force
+     */
+    public Vec sample(double x, double y) {
+        double[] fxOut = new double[1];
+        double[] fyOut = new double[1];
+        sample(new double[] { x }, new double[] { y }, 1, fxOut, fyOut);
+        return new Vec(fxOut[0], fyOut[0]);
+    }
+
+    /**
+     * Applies the field to every mover at its center. Centers are gathered
+     * into flat arrays and looked up in one pass.
+     *
+     * @param movers bodies to push
+     */
+    public void apply(List<? extends Moveable> movers) {
+        int n = movers.size();
+        if (this.bx.length < n) {
+            int capacity = Math.max(16, 2 * n);
+            this.bx = new double[capacity];
+            this.by = new double[capacity];
+            this.bfx = new double[capacity];
+            this.bfy = new double[capacity];
+        }
+        double[] center = this.scratch;
+        for (int p = 0; p < n; p++) {
+            CollisionWorld.centerOf(movers.get(p), center);
+            this.bx[p] = center[0];
+            this.by[p] = center[1];
+        }
+        sample(this.bx, this.by, n, this.bfx, this.bfy);
+        for (int p = 0; p < n; p++) {
+            if (this.bfx[p] != 0.0 || this.bfy[p] != 0.0) {
+                movers.get(p).applyForce(new Vec(this.bfx[p], this.bfy[p]));
+            }
+        }
+    }
+
+    /** @return grid nodes recomputed by the last refresh */
+    public int getRefreshedNodes() {
+        return this.refreshed;
+    }
+
+    public double getCellSize() {
+        return this.cellSize;
+    }
+
+    public int getColumns() {
+        return this.columns;
+    }
+
+    public int getRows() {
+        return this.rows;
+    }
+
+    /**
+     * @param i node column
+     * @param j node row
+     * @return cached force x-component at the node
+     */
+    public double getForceX(int i, int j) {
+        return this.fx[j * this.nodesX + i];
+    }
+
+    /**
+     * @param i node column
+     * @param j node row
+     * @return cached force y-component at the node
+     */
+    public double getForceY(int i, int j) {
+        return this.fy[j * this.nodesX + i];
+    }
+
+    private int clampX(int i) {
+        return Math.max(0, Math.min(this.columns, i));
+    }
+
+    private int clampY(int j) {
+        return Math.max(0, Math.min(this.rows, j));
+    }
+
+    /**
+     * Constant force everywhere.
+     *
+     * @param forceX force x-component
+     * @param forceY force y-component
+     * @return generator
+     */
+    public static Generator uniform(double forceX, double forceY) {
+        return (x, y, out) -> {
+            out[0] = forceX;
+            out[1] = forceY;
+        };
+    }
+
+    /**
+     * Swirl around a center, strongest at {@code radius} and fading with a
+     * Gaussian beyond it; positive strength turns clockwise on screen.
+     *
+     * @param cx       center x in pixels
+     * @param cy       center y in pixels
+     * @param strength largest tangential force
+     * @param radius   radius of the strongest swirl in pixels
+     * @return generator
+     */
+    public static Generator vortex(double cx, double cy, double strength, double radius) {
+        return (x, y, out) -> {
+            double dx = x - cx;
+            double dy = y - cy;
+            double r = Math.hypot(dx, dy);
+            if (r < 1e-9) {
+                return;
+            }
+            double q = r / radius;
+            double magnitude = strength * q * Math.exp(0.5 * (1 - q * q));
+            out[0] = -dy / r * magnitude;
+            out[1] = dx / r * magnitude;
+        };
+    }
+
+    /**
+     * Push away from (positive strength) or pull towards (negative) a center,
+     * fading linearly to zero at {@code radius}.
+     *
+     * @param cx       center x in pixels
+     * @param cy       center y in pixels
+     * @param strength force at the center
+     * @param radius   reach in pixels
+     * @return generator
+     */
+    public static Generator radial(double cx, double cy, double strength, double radius) {
+        return (x, y, out) -> {
+            double dx = x - cx;
+            double dy = y - cy;
+            double r = Math.hypot(dx, dy);
+            if (r < 1e-9 || r >= radius) {
+                return;
+            }
+            double magnitude = strength * (1 - r / radius);
+            out[0] = dx / r * magnitude;
+            out[1] = dy / r * magnitude;
+        };
+    }
+
+    /**
+     * Turbulent flow: the force has constant magnitude and a direction that
+     * wanders smoothly over the scene.
+     *
+     * @param strength force magnitude
+     * @param scale    size of the features in pixels
+     * @param seed     noise seed
+     * @return generator
+     */
+    public static Generator noise(double strength, double scale, long seed) {
+        SimplexNoise noise = new SimplexNoise(seed);
+        return (x, y, out) -> {
+            double angle = 2 * Math.PI * noise.noise(x / scale, y / scale);
+            out[0] = strength * Math.cos(angle);
+            out[1] = strength * Math.sin(angle);
+        };
+    }
+
+    /**
+     * Animated turbulent flow read from cached noise tiles. The generator only
+     * changes when {@code time} does, so call {@link #invalidateAll()} every
+     * few ticks to let the field follow it; refreshing then reads the tiles of
+     * the current time slices instead of evaluating noise at every node.
+     *
+     * @param tiles    noise cache, in pixels and ticks
+     * @param strength force magnitude
+     * @param time     current time in the units of {@code tiles}
+     * @return generator
+     */
+    public static Generator noise(NoiseTiles tiles, double strength, DoubleSupplier time) {
+        return (x, y, out) -> {
+            double angle = 2 * Math.PI * tiles.sample(x, y, time.getAsDouble());
+            out[0] = strength * Math.cos(angle);
+            out[1] = strength * Math.sin(angle);
+        };
+    }
+}
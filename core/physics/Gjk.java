@@ -0,0 +1,315 @@
+package physics;
+
+/**
+ * Gilbert-Johnson-Keerthi distance query between two convex shapes.
+ *
+ * <p>
+ * The query walks a simplex of up to three points of the Minkowski difference
+ * {@code A - B} towards the origin. If the origin ends up inside the simplex
+ * the shapes overlap and the simplex can be handed to {@link Epa} for the
+ * penetration depth; otherwise the closest point of the simplex yields the
+ * distance and the witness points on both shapes.
+ * </p>
+ *
+ * <p>
+ * The initial search direction is supplied by the caller. Passing the
+ * direction stored by the previous query on the same pair (see
+ * {@link #direction(double[])}) lets the walk start next to the answer, so pairs
+ * that barely move between ticks usually converge in one or two iterations.
+ * An instance keeps its simplex in scratch arrays and must be used from one
+ * thread at a time.
+ * </p>
+ */
+public final class Gjk {
+    private static final int MAX_ITERATIONS = 32;
+    private static final double TOLERANCE = 1e-9;
+
+    // Simplex vertices: Minkowski point w = a - b and the support points
+    final double[] wx = new double[3];
+    final double[] wy = new double[3];
+    private final double[] ax = new double[3];
+    private final double[] ay = new double[3];
+    private final double[] bx = new double[3];
+    private final double[] by = new double[3];
+    private final double[] lambda = new double[3];
+    int count;
+
+    private final double[] supportA = new double[2];
+    private final double[] supportB = new double[2];
+
+    private boolean overlap;
+    private double distance;
+    private double pointAX;
+    private double pointAY;
+    private double pointBX;
+    private double pointBY;
+    private double dirX;
+    private double dirY;
+    private int iterations;
+
+    /**
+     * Computes the distance between two shapes.
+     *
+     * @param a    first shape
+     * @param b    second shape
+     * @param dirX initial search direction x (e.g. the cached direction of the
+     *             previous tick); zero falls back to the center offset
+     * @param dirY initial search direction y
+     * @return distance between the shapes, 0 if they overlap
+     */
+    public double distance(ConvexShape a, ConvexShape b, double dirX, double dirY) {
+        if (dirX == 0 && dirY == 0) {
+            dirX = b.centerX() - a.centerX();
+            dirY = b.centerY() - a.centerY();
+            if (dirX == 0 && dirY == 0) {
+                dirX = 1.0;
+            }
+        }
+
+        this.count = 0;
+        push(a, b, dirX, dirY);
+        this.overlap = false;
+
+        double vx = 0.0;
+        double vy = 0.0;
+        int iteration = 0;
+        while (iteration < MAX_ITERATIONS) {
+            iteration++;
+            solve();
+            vx = 0.0;
+            vy = 0.0;
+            for (int i = 0; i < this.count; i++) {
+                vx += this.lambda[i] * this.wx[i];
+                vy += this.lambda[i] * this.wy[i];
+            }
+            double vv = vx * vx + vy * vy;
+
+            if (this.count == 3 || vv < TOLERANCE * TOLERANCE) {
+                this.overlap = true;
+                break;
+            }
+
+            // Search towards the origin
+            a.support(-vx, -vy, this.supportA);
+            b.support(vx, vy, this.supportB);
+            double wxNew = this.supportA[0] - this.supportB[0];
+            double wyNew = this.supportA[1] - this.supportB[1];
+
+            // No progress: the closest point is final
+            if (vv - (vx * wxNew + vy * wyNew) <= TOLERANCE * Math.max(vv, 1.0)) {
+                break;
+            }
+            if (isDuplicate(wxNew, wyNew)) {
+                break;
+            }
+            store(this.count++, wxNew, wyNew);
+        }
+        this.iterations = iteration;
+
+        if (this.overlap) {
+            this.distance = 0.0;
+            this.dirX = b.centerX() - a.centerX();
+            this.dirY = b.centerY() - a.centerY();
+            return 0.0;
+        }
+
+        this.pointAX = 0.0;
+        this.pointAY = 0.0;
+        this.pointBX = 0.0;
+        this.pointBY = 0.0;
+        for (int i = 0; i < this.count; i++) {
+            this.pointAX += this.lambda[i] * this.ax[i];
+            this.pointAY += this.lambda[i] * this.ay[i];
+            this.pointBX += this.lambda[i] * this.bx[i];
+            this.pointBY += this.lambda[i] * this.by[i];
+        }
+        this.distance = Math.hypot(vx, vy);
+        this.dirX = -vx;
+        this.dirY = -vy;
+        return this.distance;
+    }
+
+    /** @return whether the last query found the shapes overlapping */
+    public boolean overlap() {
+        return this.overlap;
+    }
+
+    /** @return x-coordinate of the closest point on the first shape */
+    public double pointAX() {
+        return this.pointAX;
+    }
+
+    /** @return y-coordinate of the closest point on the first shape */
+    public double pointAY() {
+        return this.pointAY;
+    }
+
+    /** @return x-coordinate of the closest point on the second shape */
+    public double pointBX() {
+        return this.pointBX;
+    }
+
+    /** @return y-coordinate of the closest point on the second shape */
+    public double pointBY() {
+        return this.pointBY;
+    }
+
+    /**
+     * Search direction to cache for the next query on the same pair: the
+     * direction from the Minkowski difference towards the origin, or the center
+     * offset if the shapes overlap.
+     *
+     * @param out receives the direction as {@code {x, y}}
+     * @return {@code out}
+     */
+    public double[] direction(double[] out) {
+        out[0] = this.dirX;
+        out[1] = this.dirY;
+        return out;
+    }
+
+    /** @return iterations used by the last query */
+    public int iterations() {
+        return this.iterations;
+    }
+
+    private void push(ConvexShape a, ConvexShape b, double dx, double dy) {
+        a.support(dx, dy, this.supportA);
+        b.support(-dx, -dy, this.supportB);
+        store(this.count++, this.supportA[0] - this.supportB[0], this.supportA[1] - this.supportB[1]);
+    }
+
+    private void store(int i, double w0, double w1) {
+        this.wx[i] = w0;
+        this.wy[i] = w1;
+        this.ax[i] = this.supportA[0];
+        this.ay[i] = this.supportA[1];
+        this.bx[i] = this.supportB[0];
+        this.by[i] = this.supportB[1];
+    }
+
+    private boolean isDuplicate(double x, double y) {
+        for (int i = 0; i < this.count; i++) {
+            if (this.wx[i] == x && this.wy[i] == y) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void copy(int from, int to) {
+        this.wx[to] = this.wx[from];
+        this.wy[to] = this.wy[from];
+        this.ax[to] = this.ax[from];
+        this.ay[to] = this.ay[from];
+        this.bx[to] = this.bx[from];
+        this.by[to] = this.by[from];
+    }
+
+    /**
+     * Reduces the simplex to the smallest sub-simplex containing the point
+     * closest to the origin and stores its barycentric coordinates.
+     */
+    private void solve() {
+        switch (this.count) {
+            case 1:
+                this.lambda[0] = 1.0;
+                break;
+            case 2:
+                solve2();
+                break;
+            default:
+                solve3();
+                break;
+        }
+    }
+
+    private void solve2() {
+        double ex = this.wx[1] - this.wx[0];
+        double ey = this.wy[1] - this.wy[0];
+        double d2 = -(this.wx[0] * ex + this.wy[0] * ey);
+        if (d2 <= 0) {
+            this.lambda[0] = 1.0;
+            this.count = 1;
+            return;
+        }
+        double d1 = this.wx[1] * ex + this.wy[1] * ey;
+        if (d1 <= 0) {
+            copy(1, 0);
+            this.lambda[0] = 1.0;
+            this.count = 1;
+            return;
+        }
+        double inv = 1.0 / (d1 + d2);
+        this.lambda[0] = d1 * inv;
+        this.lambda[1] = d2 * inv;
+        this.count = 2;
+    }
+
+    private void solve3() {
+        double w1x = this.wx[0];
+        double w1y = this.wy[0];
+        double w2x = this.wx[1];
+        double w2y = this.wy[1];
+        double w3x = this.wx[2];
+        double w3y = this.wy[2];
+
+        double e12x = w2x - w1x;
+        double e12y = w2y - w1y;
+        double d12_1 = w2x * e12x + w2y * e12y;
+        double d12_2 = -(w1x * e12x + w1y * e12y);
+
+        double e13x = w3x - w1x;
+        double e13y = w3y - w1y;
+        double d13_1 = w3x * e13x + w3y * e13y;
+        double d13_2 = -(w1x * e13x + w1y * e13y);
+
+        double e23x = w3x - w2x;
+        double e23y = w3y - w2y;
+        double d23_1 = w3x * e23x + w3y * e23y;
+        double d23_2 = -(w2x * e23x + w2y * e23y);
+
+        double n123 = e12x * e13y - e12y * e13x;
+        double d123_1 = n123 * (w2x * w3y - w2y * w3x);
+        double d123_2 = n123 * (w3x * w1y - w3y * w1x);
+        double d123_3 = n123 * (w1x * w2y - w1y * w2x);
+
+        if (d12_2 <= 0 && d13_2 <= 0) {
+            this.lambda[0] = 1.0;
+            this.count = 1;
+        } else if (d12_1 > 0 && d12_2 > 0 && d123_3 <= 0) {
+            double inv = 1.0 / (d12_1 + d12_2);
+            this.lambda[0] = d12_1 * inv;
+            this.lambda[1] = d12_2 * inv;
+            this.count = 2;
+        } else if (d13_1 > 0 && d13_2 > 0 && d123_2 <= 0) {
+            double inv = 1.0 / (d13_1 + d13_2);
+            this.lambda[0] = d13_1 * inv;
+            this.lambda[1] = d13_2 * inv;
+            copy(2, 1);
+            this.count = 2;
+        } else if (d12_1 <= 0 && d23_2 <= 0) {
+            copy(1, 0);
+            this.lambda[0] = 1.0;
+            this.count = 1;
+        } else if (d13_1 <= 0 && d23_1 <= 0) {
+            copy(2, 0);
+            this.lambda[0] = 1.0;
+            this.count = 1;
+        } else if (d23_1 > 0 && d23_2 > 0 && d123_1 <= 0) {
+            double inv = 1.0 / (d23_1 + d23_2);
+            copy(2, 0);
+            this.lambda[0] = d23_2 * inv;
+            this.lambda[1] = d23_1 * inv;
+            this.count = 2;
+        } else {
+            // Origin inside the triangle (or on a degenerate, collinear one)
+            double sum = d123_1 + d123_2 + d123_3;
+            double inv = sum != 0 ? 1.0 / sum : 0.0;
+            this.lambda[0] = d123_1 * inv;
+            this.lambda[1] = d123_2 * inv;
+            this.lambda[2] = d123_3 * inv;
+            this.count = 3;
+        }
+    }
+}
@@ -0,0 +1,586 @@
+package physics;
+
+import java.awt.Dimension;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import data.Vec;
+import objects.Ball;
+
+/**
+ * Event-driven simulation of elastic hard discs in a closed box.
+ *
+ * <p>
+ * Instead of stepping every body each tick, the engine predicts when each disc
+ * will next hit another disc, a wall or the border of its grid cell, keeps
+ * these events in a binary heap ordered by time, and jumps straight from one
+ * event to the next. Between events discs fly in straight lines, so positions
+ * are stored together with the time they refer to and only brought up to date
+ * when a disc takes part in an event or when a frame samples it. On dilute
+ * gases almost every tick passes without a collision, so the cost is
+ * proportional to the number of collisions rather than to ticks × bodies.
+ * </p>
+ *
+ * <p>
+ * Events are invalidated lazily: every disc carries a collision counter that
+ * is bumped whenever its velocity changes, and each event remembers the
+ * counters its prediction was based on. Stale events are simply skipped when
+ * they reach the top of the heap and purged in bulk when the heap grows too
+ * large. A uniform grid with cells at least one diameter wide limits the
+ * prediction after a collision to the neighbouring cells; crossing a cell
+ * border is an event of its own.
+ * </p>
+ *
+ * <p>
+ * Time is measured in ticks and velocities in pixels per tick, like everywhere
+ * else in the scenes. The engine knows no forces: gravity, drag or friction
+ * require the time-stepped {@link CollisionWorld}.
+ * </p>
+ */
+public final class HardSphereEngine {
+    private static final int WALL_X = -1;
+    private static final int WALL_Y = -2;
+    private static final int CELL_X = -3;
+    private static final int CELL_Y = -4;
+    /** Heap entries per disc before stale events are purged. */
+    private static final int PURGE_FACTOR = 8;
+
+    private final double width;
+    private final double height;
+
+    // Disc state at time t0[i]
+    private int count;
+    private double[] x = new double[0];
+    private double[] y = new double[0];
+    private double[] vx = new double[0];
+    private double[] vy = new double[0];
+    private double[] t0 = new double[0];
+    private double[] radius = new double[0];
+    private double[] mass = new double[0];
+    private int[] collisions = new int[0];
+    private final ArrayList<Ball> balls = new ArrayList<>();
+
+    // Event heap
+    private int size;
+    private double[] eventTime = new double[64];
+    private int[] eventA = new int[64];
+    private int[] eventB = new int[64];
+    private int[] eventCountA = new int[64];
+    private int[] eventCountB = new int[64];
+
+    // Uniform grid: intrusive doubly linked lists per cell
+    private double cellSize;
+    private int columns;
+    private int rows;
+    private int[] head = new int[0];
+    private int[] next = new int[0];
+    private int[] prev = new int[0];
+    private int[] cellX = new int[0];
+    private int[] cellY = new int[0];
+
+    private double time;
+    private boolean dirty = true;
+    private long events;
+    private long pairCollisions;
+    private long wallCollisions;
+
+    /**
+     * Creates an empty box.
+     *
+     * @param sceneDim size of the box; its edges are the walls
+     */
+    public HardSphereEngine(Dimension sceneDim) {
+        this.width = sceneDim.getWidth();
+        this.height = sceneDim.getHeight();
+    }
+
+    /**
+     * Adds a disc. Discs must not overlap each other or the walls.
+     *
+     * @param px     center x-coordinate
+     * @param py     center y-coordinate
+     * @param pvx    velocity x-component per tick
+     * @param pvy    velocity y-component per tick
+     * @param r      radius in pixels
+     * @param m      mass (positive)
+     * @return index of the disc
+     */
+    public int add(double px, double py, double pvx, double pvy, double r, double m) {
+        if (r <= 0 || m <= 0) {
+            throw new IllegalArgumentException("radius and mass must be positive");
+        }
+        int i = this.count;
+        if (i == this.x.length) {
+            int capacity = Math.max(16, 2 * i);
+            this.x = Arrays.copyOf(this.x, capacity);
+            this.y = Arrays.copyOf(this.y, capacity);
+            this.vx = Arrays.copyOf(this.vx, capacity);
+            this.vy = Arrays.copyOf(this.vy, capacity);
+            this.t0 = Arrays.copyOf(this.t0, capacity);
+            this.radius = Arrays.copyOf(this.radius, capacity);
+            this.mass = Arrays.copyOf(this.mass, capacity);
+            this.collisions = Arrays.copyOf(this.collisions, capacity);
+        }
+        this.x[i] = px;
+        this.y[i] = py;
+        this.vx[i] = pvx;
+        this.vy[i] = pvy;
+        this.t0[i] = this.time;
+        this.radius[i] = r;
+        this.mass[i] = m;
+        this.collisions[i] = 0;
+        this.count = i + 1;
+        this.dirty = true;
+        return i;
+    }
+
+    /**
+     * Adds a {@link Ball} with its current location and velocity. The engine
+     * owns its motion from now on: scenes should not call {@link Ball#update()}
+     * but {@link #advanceTo(double)}, which writes the sampled state back.
+     *
+     * @param ball ball to simulate
+     * @return index of the disc
+     */
+    public int addBall(Ball ball) {
+        Vec loc = ball.getLocation();
+        Vec vel = ball.getVelocity();
+        int i = add(loc.x(), loc.y(), vel.x(), vel.y(), ball.getRadius(), ball.getMass());
+        while (this.balls.size() < i) {
+            this.balls.add(null);
+        }
+        this.balls.add(ball);
+        return i;
+    }
+
+    /**
+     * Processes all events up to {@code target}, then moves every disc to that
+     * time and writes the positions and velocities back to registered balls.
+     *
+     * @param target simulation time in ticks, not before {@link #getTime()}
+     */
+    public void advanceTo(double target) {
+        if (this.dirty) {
+            rebuild();
+        }
+        while (this.size > 0 && this.eventTime[0] <= target) {
+            double t = this.eventTime[0];
+            int a = this.eventA[0];
+            int b = this.eventB[0];
+            int countA = this.eventCountA[0];
+            int countB = this.eventCountB[0];
+            pop();
+
+            if (this.collisions[a] != countA || (b >= 0 && this.collisions[b] != countB)) {
+                continue;
+            }
+            this.time = t;
+            this.events++;
+            moveTo(a, t);
+
+            switch (b) {
+                case WALL_X:
+                    this.vx[a] = -this.vx[a];
+                    this.collisions[a]++;
+                    this.wallCollisions++;
+                    predict(a);
+                    break;
+                case WALL_Y:
+                    this.vy[a] = -this.vy[a];
+                    this.collisions[a]++;
+                    this.wallCollisions++;
+                    predict(a);
+                    break;
+                case CELL_X:
+                    relink(a, this.cellX[a] + (this.vx[a] > 0 ? 1 : -1), this.cellY[a]);
+                    predictCell(a);
+                    predictNeighbours(a);
+                    break;
+                case CELL_Y:
+                    relink(a, this.cellX[a], this.cellY[a] + (this.vy[a] > 0 ? 1 : -1));
+                    predictCell(a);
+                    predictNeighbours(a);
+                    break;
+                default:
+                    moveTo(b, t);
+                    bounce(a, b);
+                    this.collisions[a]++;
+                    this.collisions[b]++;
+                    this.pairCollisions++;
+                    predict(a);
+                    predict(b);
+                    break;
+            }
+
+            if (this.size > PURGE_FACTOR * this.count + 1024) {
+                purge();
+            }
+        }
+
+        this.time = Math.max(this.time, target);
+        for (int i = 0; i < this.count; i++) {
+            moveTo(i, this.time);
+        }
+        writeBack();
+    }
+
+    /**
+     * Changes the velocity of a disc, e.g. to heat or stir the gas. Pending
+     * events of the disc are invalidated.
+     *
+     * @param i   disc index
+     * @param pvx new velocity x-component
+     * @param pvy new velocity y-component
+     */
+    public void setVelocity(int i, double pvx, double pvy) {
+        moveTo(i, this.time);
+        this.vx[i] = pvx;
+        this.vy[i] = pvy;
+        this.collisions[i]++;
+        if (!this.dirty) {
+            predict(i);
+        }
+    }
+
+    /** @return current simulation time in ticks */
+    public double getTime() {
+        return this.time;
+    }
+
+    /** @return number of discs */
+    public int size() {
+        return this.count;
+    }
+
+    /**
+     * @param i disc index
+     * @return x-coordinate at {@link #getTime()}
+     */
+    public double getX(int i) {
+        return this.x[i] + this.vx[i] * (this.time - this.t0[i]);
+    }
+
+    /**
+     * @param i disc index
+     * @return y-coordinate at {@link #getTime()}
+     */
+    public double getY(int i) {
+        return this.y[i] + this.vy[i] * (this.time - this.t0[i]);
+    }
+
+    public double getVelocityX(int i) {
+        return this.vx[i];
+    }
+
+    public double getVelocityY(int i) {
+        return this.vy[i];
+    }
+
+    public double getRadius(int i) {
+        return this.radius[i];
+    }
+
+    /** @return total kinetic energy, constant up to rounding */
+    public double kineticEnergy() {
+        double e = 0.0;
+        for (int i = 0; i < this.count; i++) {
+            e += 0.5 * this.mass[i] * (this.vx[i] * this.vx[i] + this.vy[i] * this.vy[i]);
+        }
+        return e;
+    }
+
+    /** @return valid events processed so far, including cell crossings */
+    public long getEventCount() {
+        return this.events;
+    }
+
+    /** @return disc-disc collisions so far */
+    public long getPairCollisions() {
+        return this.pairCollisions;
+    }
+
+    /** @return disc-wall collisions so far */
+    public long getWallCollisions() {
+        return this.wallCollisions;
+    }
+
+    /** @return events waiting in the queue, including stale ones */
+    public int getQueueSize() {
+        return this.size;
+    }
+
+    /** Elastic collision of two touching discs. */
+    private void bounce(int a, int b) {
+        double dx = this.x[b] - this.x[a];
+        double dy = this.y[b] - this.y[a];
+        double dvx = this.vx[b] - this.vx[a];
+        double dvy = this.vy[b] - this.vy[a];
+        double dist = Math.sqrt(dx * dx + dy * dy);
+        double dvdr = dx * dvx + dy * dvy;
+        double ma = this.mass[a];
+        double mb = this.mass[b];
+        double j = 2 * ma * mb * dvdr / ((ma + mb) * dist);
+        double jx = j * dx / dist;
+        double jy = j * dy / dist;
+        this.vx[a] += jx / ma;
+        this.vy[a] += jy / ma;
+        this.vx[b] -= jx / mb;
+        this.vy[b] -= jy / mb;
+    }
+
+    /** Brings the stored position of a disc to time t. */
+    private void moveTo(int i, double t) {
+        double dt = t - this.t0[i];
+        if (dt != 0) {
+            this.x[i] += this.vx[i] * dt;
+            this.y[i] += this.vy[i] * dt;
+            this.t0[i] = t;
+        }
+    }
+
+    /** Schedules the next wall hit, cell crossing and neighbour collisions of a disc. */
+    private void predict(int i) {
+        predictWalls(i);
+        predictCell(i);
+        predictNeighbours(i);
+    }
+
+    private void predictWalls(int i) {
+        double r = this.radius[i];
+        if (this.vx[i] > 0) {
+            push(this.time + Math.max(0.0, (this.width - r - this.x[i]) / this.vx[i]), i, WALL_X);
+        } else if (this.vx[i] < 0) {
+            push(this.time + Math.max(0.0, (r - this.x[i]) / this.vx[i]), i, WALL_X);
+        }
+        if (this.vy[i] > 0) {
+            push(this.time + Math.max(0.0, (this.height - r - this.y[i]) / this.vy[i]), i, WALL_Y);
+        } else if (this.vy[i] < 0) {
+            push(this.time + Math.max(0.0, (r - this.y[i]) / this.vy[i]), i, WALL_Y);
+        }
+    }
+
+    private void predictCell(int i) {
+        double tx = Double.POSITIVE_INFINITY;
+        double ty = Double.POSITIVE_INFINITY;
+        if (this.vx[i] > 0 && this.cellX[i] < this.columns - 1) {
+            tx = ((this.cellX[i] + 1) * this.cellSize - this.x[i]) / this.vx[i];
+        } else if (this.vx[i] < 0 && this.cellX[i] > 0) {
+            tx = (this.cellX[i] * this.cellSize - this.x[i]) / this.vx[i];
+        }
+        if (this.vy[i] > 0 && this.cellY[i] < this.rows - 1) {
+            ty = ((this.cellY[i] + 1) * this.cellSize - this.y[i]) / this.vy[i];
+        } else if (this.vy[i] < 0 && this.cellY[i] > 0) {
+            ty = (this.cellY[i] * this.cellSize - this.y[i]) / this.vy[i];
+        }
+        if (tx <= ty && tx != Double.POSITIVE_INFINITY) {
+            push(this.time + Math.max(0.0, tx), i, CELL_X);
+        } else if (ty != Double.POSITIVE_INFINITY) {
+            push(this.time + Math.max(0.0, ty), i, CELL_Y);
+        }
+    }
+
+    private void predictNeighbours(int i) {
+        int cx = this.cellX[i];
+        int cy = this.cellY[i];
+        for (int gy = Math.max(0, cy - 1); gy <= Math.min(this.rows - 1, cy + 1); gy++) {
+            for (int gx = Math.max(0, cx - 1); gx <= Math.min(this.columns - 1, cx + 1); gx++) {
+                for (int j = this.head[gy * this.columns + gx]; j >= 0; j = this.next[j]) {
+                    if (j != i) {
+                        predictPair(i, j);
+                    }
+                }
+            }
+        }
+    }
+
+    private void predictPair(int i, int j) {
+        double dt = this.time - this.t0[j];
+        double dx = this.x[j] + this.vx[j] * dt - this.x[i];
+        double dy = this.y[j] + this.vy[j] * dt - this.y[i];
+        double dvx = this.vx[j] - this.vx[i];
+        double dvy = this.vy[j] - this.vy[i];
+        double dvdr = dx * dvx + dy * dvy;
+        if (dvdr >= 0) {
+            return;
+        }
+        double dvdv = dvx * dvx + dvy * dvy;
+        double sigma = this.radius[i] + this.radius[j];
+        double drdr = dx * dx + dy * dy;
+        double d = dvdr * dvdr - dvdv * (drdr - sigma * sigma);
+        if (d < 0) {
+            return;
+        }
+        // Slightly overlapping discs that still approach collide right away
+        double t = Math.max(0.0, -(dvdr + Math.sqrt(d)) / dvdv);
+        push(this.time + t, i, j);
+    }
+
+    /** Rebuilds the grid and the event queue from scratch. */
+    private void rebuild() {
+        double maxRadius = 0.0;
+        for (int i = 0; i < this.count; i++) {
+            maxRadius = Math.max(maxRadius, this.radius[i]);
+            moveTo(i, this.time);
+        }
+        // About one disc per cell: smaller cells only add crossing events
+        this.cellSize = Math.max(2 * maxRadius, Math.sqrt(this.width * this.height / Math.max(1, this.count)));
+        this.columns = Math.max(1, (int) (this.width / this.cellSize));
+        this.rows = Math.max(1, (int) (this.height / this.cellSize));
+        this.cellSize = Math.max(this.width / this.columns, this.height / this.rows);
+        this.head = new int[this.columns * this.rows];
+        Arrays.fill(this.head, -1);
+        this.next = new int[this.count];
+        this.prev = new int[this.count];
+        this.cellX = new int[this.count];
+        this.cellY = new int[this.count];
+        for (int i = 0; i < this.count; i++) {
+            int gx = Math.min(this.columns - 1, Math.max(0, (int) (this.x[i] / this.cellSize)));
+            int gy = Math.min(this.rows - 1, Math.max(0, (int) (this.y[i] / this.cellSize)));
+            this.cellX[i] = gx;
+            this.cellY[i] = gy;
+            link(i);
+        }
+
+        this.size = 0;
+        this.dirty = false;
+        for (int i = 0; i < this.count; i++) {
+            predictWalls(i);
+            predictCell(i);
+            // Each pair only needs to be predicted from one side here
+            int cx = this.cellX[i];
+            int cy = this.cellY[i];
+            for (int gy = Math.max(0, cy - 1); gy <= Math.min(this.rows - 1, cy + 1); gy++) {
+                for (int gx = Math.max(0, cx - 1); gx <= Math.min(this.columns - 1, cx + 1); gx++) {
+                    for (int j = this.head[gy * this.columns + gx]; j >= 0; j = this.next[j]) {
+                        if (j > i) {
+                            predictPair(i, j);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void link(int i) {
+        int cell = this.cellY[i] * this.columns + this.cellX[i];
+        this.prev[i] = -1;
+        this.next[i] = this.head[cell];
+        if (this.head[cell] >= 0) {
+            this.prev[this.head[cell]] = i;
+        }
+        this.head[cell] = i;
+    }
+
+    private void relink(int i, int gx, int gy) {
+        int cell = this.cellY[i] * this.columns + this.cellX[i];
+        if (this.prev[i] >= 0) {
+            this.next[this.prev[i]] = this.next[i];
+        } else {
+            this.head[cell] = this.next[i];
+        }
+        if (this.next[i] >= 0) {
+            this.prev[this.next[i]] = this.prev[i];
+        }
+        this.cellX[i] = gx;
+        this.cellY[i] = gy;
+        link(i);
+    }
+
+    private void writeBack() {
+        for (int i = 0, n = Math.min(this.count, this.balls.size()); i < n; i++) {
+            Ball ball = this.balls.get(i);
+            if (ball != null) {
+                ball.setLocation(new Vec(this.x[i], this.y[i]));
+                ball.setVelocity(new Vec(this.vx[i], this.vy[i]));
+            }
+        }
+    }
+
+    /** Removes stale events and restores the heap order. */
+    private void purge() {
+        int kept = 0;
+        for (int k = 0; k < this.size; k++) {
+            int a = this.eventA[k];
+            int b = this.eventB[k];
+            if (this.collisions[a] == this.eventCountA[k]
+                    && (b < 0 || this.collisions[b] == this.eventCountB[k])) {
+                this.eventTime[kept] = this.eventTime[k];
+                this.eventA[kept] = a;
+                this.eventB[kept] = b;
+                this.eventCountA[kept] = this.eventCountA[k];
+                this.eventCountB[kept] = this.eventCountB[k];
+                kept++;
+            }
+        }
+        this.size = kept;
+        for (int k = kept / 2 - 1; k >= 0; k--) {
+            siftDown(k);
+        }
+    }
+
+    private void push(double t, int a, int b) {
+        if (this.size == this.eventTime.length) {
+            int capacity = 2 * this.size;
+            this.eventTime = Arrays.copyOf(this.eventTime, capacity);
+            this.eventA = Arrays.copyOf(this.eventA, capacity);
+            this.eventB = Arrays.copyOf(this.eventB, capacity);
+            this.eventCountA = Arrays.copyOf(this.eventCountA, capacity);
+            this.eventCountB = Arrays.copyOf(this.eventCountB, capacity);
+        }
+        int k = this.size++;
+        this.eventTime[k] = t;
+        this.eventA[k] = a;
+        this.eventB[k] = b;
+        this.eventCountA[k] = this.collisions[a];
+        this.eventCountB[k] = b >= 0 ? this.collisions[b] : 0;
+        while (k > 0) {
+            int parent = (k - 1) >>> 1;
+            if (this.eventTime[parent] <= this.eventTime[k]) {
+                break;
+            }
+            swap(k, parent);
+            k = parent;
+        }
+    }
+
+    private void pop() {
+        this.size--;
+        if (this.size > 0) {
+            swap(0, this.size);
+            siftDown(0);
+        }
+    }
+
+    private void siftDown(int k) {
+        while (true) {
+            int left = 2 * k + 1;
+            if (left >= this.size) {
+                return;
+            }
+            int child = left + 1 < this.size && this.eventTime[left + 1] < this.eventTime[left] ? left + 1 : left;
+            if (this.eventTime[k] <= this.eventTime[child]) {
+                return;
+            }
+            swap(k, child);
+            k = child;
+        }
+    }
+
+    private void swap(int i, int j) {
+        double t = this.eventTime[i];
+        this.eventTime[i] = this.eventTime[j];
+        this.eventTime[j] = t;
+        int v = this.eventA[i];
+        this.eventA[i] = this.eventA[j];
+        this.eventA[j] = v;
+        v = this.eventB[i];
+        this.eventB[i] = this.eventB[j];
+        this.eventB[j] = v;
+        v = this.eventCountA[i];
+        this.eventCountA[i] = this.eventCountA[j];
+        this.eventCountA[j] = v;
+        v = this.eventCountB[i];
+        this.eventCountB[i] = this.eventCountB[j];
+        this.eventCountB[j] = v;
+    }
+}
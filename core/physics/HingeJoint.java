@@ -0,0 +1,45 @@
+package physics;
+
+import data.Vec;
+import interfaces.Moveable;
+
+/**
+ * Revolute joint: both bodies share one anchor point and rotate freely around
+ * it. With a {@code null} second body this is a fixed pivot, e.g. for a
+ * pendulum; a row of boxes hinged corner to corner forms a chain.
+ */
+public class HingeJoint extends Joint {
+    private final double[] impulse = new double[2];
+
+    /**
+     * Connects two bodies at a shared world point.
+     *
+     * @param bodyA  first body
+     * @param bodyB  second body, or {@code null} for a fixed pivot
+     * @param anchor hinge point in world coordinates
+     */
+    public HingeJoint(Moveable bodyA, Moveable bodyB, Vec anchor) {
+        super(bodyA, bodyB, anchor, anchor);
+    }
+
+    @Override
+    void warmStart(BodyState s) {
+        applyImpulse(s, this.impulse[0], this.impulse[1]);
+    }
+
+    @Override
+    void solveVelocity(BodyState s) {
+        solvePointVelocity(s, this.impulse);
+    }
+
+    @Override
+    void solvePosition(BodyState s) {
+        solvePointPosition(s);
+    }
+
+    @Override
+    public void resetImpulses() {
+        this.impulse[0] = 0.0;
+        this.impulse[1] = 0.0;
+    }
+}
@@ -0,0 +1,266 @@
+package physics;
+
+import data.Vec;
+import interfaces.Moveable;
+
+/**
+ * Constraint between two bodies of a {@link CollisionWorld}, solved by the
+ * {@link ContactSolver} together with the contacts of a step.
+ *
+ * <p>
+ * Anchors are given in world coordinates when the joint is created and are
+ * converted to the local frames of the bodies (relative to their center of
+ * mass and rotation) when the joint is added to a world, so they follow the
+ * bodies afterwards. The second body may be {@code null}, which pins the joint
+ * to a fixed point in the world, e.g. the pivot of a pendulum. Balls do not
+ * rotate in the solver, so anchors on balls should sit at their center.
+ * </p>
+ *
+ * <p>
+ * Each joint keeps its accumulated impulse from the previous step and applies
+ * it again before iterating (warm starting). Joints are therefore the
+ * persistent cache for their own constraint: the solver converges in a few
+ * iterations for chains and pendulums that change slowly from tick to tick.
+ * </p>
+ */
+public abstract class Joint {
+    final Moveable bodyA;
+    final Moveable bodyB;
+    private final Vec anchorA;
+    private final Vec anchorB;
+
+    /** Solver indices of the bodies, {@link Manifold#STATIC} for the world. */
+    int a = Manifold.STATIC;
+    int b = Manifold.STATIC;
+
+    /** Anchors in the local frames of the bodies (world frame for the world). */
+    double localAX;
+    double localAY;
+    double localBX;
+    double localBY;
+    /** Relative angle of the bodies when the joint was bound. */
+    double referenceAngle;
+
+    // Per-step values shared by the subclasses
+    double rAX;
+    double rAY;
+    double rBX;
+    double rBY;
+    double massA;
+    double massB;
+    double inertiaA;
+    double inertiaB;
+
+    /**
+     * Creates a joint.
+     *
+     * @param bodyA   first body
+     * @param bodyB   second body, or {@code null} to pin to the world
+     * @param anchorA anchor on the first body in world coordinates
+     * @param anchorB anchor on the second body in world coordinates
+     */
+    protected Joint(Moveable bodyA, Moveable bodyB, Vec anchorA, Vec anchorB) {
+        if (bodyA == null) {
+            throw new IllegalArgumentException("The first body of a joint must not be null");
+        }
+        this.bodyA = bodyA;
+        this.bodyB = bodyB;
+        this.anchorA = anchorA;
+        this.anchorB = anchorB;
+    }
+
+    /** @return first body */
+    public Moveable getBodyA() {
+        return this.bodyA;
+    }
+
+    /** @return second body, or {@code null} if the joint is pinned to the world */
+    public Moveable getBodyB() {
+        return this.bodyB;
+    }
+
+    /**
+     * Converts the world anchors into body frames. Called by the world when
+     * the joint is added.
+     */
+    void bind(int a, double centerAX, double centerAY, double angleA,
+            int b, double centerBX, double centerBY, double angleB) {
+        this.a = a;
+        this.b = b;
+
+        double dx = this.anchorA.x() - centerAX;
+        double dy = this.anchorA.y() - centerAY;
+        double cos = Math.cos(angleA);
+        double sin = Math.sin(angleA);
+        this.localAX = cos * dx + sin * dy;
+        this.localAY = -sin * dx + cos * dy;
+
+        dx = this.anchorB.x() - centerBX;
+        dy = this.anchorB.y() - centerBY;
+        cos = Math.cos(angleB);
+        sin = Math.sin(angleB);
+        this.localBX = cos * dx + sin * dy;
+        this.localBY = -sin * dx + cos * dy;
+
+        this.referenceAngle = angleB - angleA;
+    }
+
+    /** Computes the anchor offsets and mass terms for the current pose. */
+    void prepare(BodyState s) {
+        this.massA = this.a < 0 ? 0.0 : s.invMass[this.a];
+        this.massB = this.b < 0 ? 0.0 : s.invMass[this.b];
+        this.inertiaA = this.a < 0 ? 0.0 : s.invInertia[this.a];
+        this.inertiaB = this.b < 0 ? 0.0 : s.invInertia[this.b];
+        updateAnchors(s);
+    }
+
+    /** Re-applies the impulses accumulated during the previous step. */
+    abstract void warmStart(BodyState s);
+
+    /** One velocity iteration. */
+    abstract void solveVelocity(BodyState s);
+
+    /** One position iteration; moves and rotates the bodies directly. */
+    abstract void solvePosition(BodyState s);
+
+    /** Forgets the accumulated impulses. */
+    public abstract void resetImpulses();
+
+    /** Recomputes the world-space anchor offsets from the current angles. */
+    void updateAnchors(BodyState s) {
+        double angleA = this.a < 0 ? 0.0 : s.angle[this.a];
+        double cos = Math.cos(angleA);
+        double sin = Math.sin(angleA);
+        this.rAX = cos * this.localAX - sin * this.localAY;
+        this.rAY = sin * this.localAX + cos * this.localAY;
+
+        double angleB = this.b < 0 ? 0.0 : s.angle[this.b];
+        cos = Math.cos(angleB);
+        sin = Math.sin(angleB);
+        this.rBX = cos * this.localBX - sin * this.localBY;
+        this.rBY = sin * this.localBX + cos * this.localBY;
+    }
+
+    /** @return world x-coordinate of the anchor on the first body */
+    double anchorAX(BodyState s) {
+        return (this.a < 0 ? 0.0 : s.x[this.a]) + this.rAX;
+    }
+
+    /** @return world y-coordinate of the anchor on the first body */
+    double anchorAY(BodyState s) {
+        return (this.a < 0 ? 0.0 : s.y[this.a]) + this.rAY;
+    }
+
+    /** @return world x-coordinate of the anchor on the second body */
+    double anchorBX(BodyState s) {
+        return (this.b < 0 ? 0.0 : s.x[this.b]) + this.rBX;
+    }
+
+    /** @return world y-coordinate of the anchor on the second body */
+    double anchorBY(BodyState s) {
+        return (this.b < 0 ? 0.0 : s.y[this.b]) + this.rBY;
+    }
+
+    /** @return x-component of the anchor velocity of b relative to a */
+    double relativeVelocityX(BodyState s) {
+        double v = 0.0;
+        if (this.b >= 0) {
+            v += s.vx[this.b] - s.w[this.b] * this.rBY;
+        }
+        if (this.a >= 0) {
+            v -= s.vx[this.a] - s.w[this.a] * this.rAY;
+        }
+        return v;
+    }
+
+    /** @return y-component of the anchor velocity of b relative to a */
+    double relativeVelocityY(BodyState s) {
+        double v = 0.0;
+        if (this.b >= 0) {
+            v += s.vy[this.b] + s.w[this.b] * this.rBX;
+        }
+        if (this.a >= 0) {
+            v -= s.vy[this.a] + s.w[this.a] * this.rAX;
+        }
+        return v;
+    }
+
+    /** Applies +P to b and -P to a at the anchors. */
+    void applyImpulse(BodyState s, double px, double py) {
+        if (this.a >= 0) {
+            s.vx[this.a] -= this.massA * px;
+            s.vy[this.a] -= this.massA * py;
+            s.w[this.a] -= this.inertiaA * (this.rAX * py - this.rAY * px);
+        }
+        if (this.b >= 0) {
+            s.vx[this.b] += this.massB * px;
+            s.vy[this.b] += this.massB * py;
+            s.w[this.b] += this.inertiaB * (this.rBX * py - this.rBY * px);
+        }
+    }
+
+    /** Moves b by +P and a by -P (position-level impulse at the anchors). */
+    void applyPositionImpulse(BodyState s, double px, double py) {
+        if (this.a >= 0) {
+            s.x[this.a] -= this.massA * px;
+            s.y[this.a] -= this.massA * py;
+            s.angle[this.a] -= this.inertiaA * (this.rAX * py - this.rAY * px);
+        }
+        if (this.b >= 0) {
+            s.x[this.b] += this.massB * px;
+            s.y[this.b] += this.massB * py;
+            s.angle[this.b] += this.inertiaB * (this.rBX * py - this.rBY * px);
+        }
+    }
+
+    /**
+     * Solves the point-to-point constraint (both anchors coincide) shared by
+     * {@link HingeJoint} and {@link WeldJoint} at velocity level.
+     *
+     * @param s       body state
+     * @param impulse accumulated impulse {@code {x, y}}, updated in place
+     */
+    void solvePointVelocity(BodyState s, double[] impulse) {
+        double cx = relativeVelocityX(s);
+        double cy = relativeVelocityY(s);
+        double k11 = this.massA + this.massB
+                + this.inertiaA * this.rAY * this.rAY + this.inertiaB * this.rBY * this.rBY;
+        double k12 = -this.inertiaA * this.rAX * this.rAY - this.inertiaB * this.rBX * this.rBY;
+        double k22 = this.massA + this.massB
+                + this.inertiaA * this.rAX * this.rAX + this.inertiaB * this.rBX * this.rBX;
+        double det = k11 * k22 - k12 * k12;
+        if (det == 0) {
+            return;
+        }
+        double px = -(k22 * cx - k12 * cy) / det;
+        double py = -(k11 * cy - k12 * cx) / det;
+        impulse[0] += px;
+        impulse[1] += py;
+        applyImpulse(s, px, py);
+    }
+
+    /**
+     * Moves the bodies so that both anchors coincide again.
+     *
+     * @param s body state
+     * @return remaining separation before the correction
+     */
+    double solvePointPosition(BodyState s) {
+        updateAnchors(s);
+        double cx = anchorBX(s) - anchorAX(s);
+        double cy = anchorBY(s) - anchorAY(s);
+        double k11 = this.massA + this.massB
+                + this.inertiaA * this.rAY * this.rAY + this.inertiaB * this.rBY * this.rBY;
+        double k12 = -this.inertiaA * this.rAX * this.rAY - this.inertiaB * this.rBX * this.rBY;
+        double k22 = this.massA + this.massB
+                + this.inertiaA * this.rAX * this.rAX + this.inertiaB * this.rBX * this.rBX;
+        double det = k11 * k22 - k12 * k12;
+        if (det == 0) {
+            return 0.0;
+        }
+        double px = -(k22 * cx - k12 * cy) / det;
+        double py = -(k11 * cy - k12 * cx) / det;
+        applyPositionImpulse(s, px, py);
+        return Math.hypot(cx, cy);
+    }
+}
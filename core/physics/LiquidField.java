@@ -0,0 +1,363 @@
+package physics;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.DoubleUnaryOperator;
+
+import data.Vec;
+import interfaces.Moveable;
+import objects.Ball;
+import objects.SceneObject;
+
+/**
+ * Density and viscosity of a rectangular body of liquid, sampled on a grid.
+ *
+ * <p>
+ * The rectangle's top edge is the surface line. Cells can be filled
+ * uniformly, in horizontal layers or from a depth profile, so one liquid can
+ * hold e.g. light water over heavy brine. For every cell the field caches the
+ * lift per submerged pixel² (density × gravity) and the drag coefficient, so
+ * the per-tick work is a cell lookup and a few multiplications per body.
+ * </p>
+ *
+ * <p>
+ * Bodies are treated as discs: balls with their radius, other movers with the
+ * disc of equal area. For a disc the field computes the area below the
+ * surface (and above the bottom) in closed form and applies
+ * </p>
+ *
+ * <pre>
+ * buoyancy = −ρ · g · A                 (upwards)
+ * drag     = −μ · (A / πr²) · |v| · v
+ * </pre>
+ *
+ * <p>
+ * with ρ and μ taken from the cell at the middle of the submerged part. The
+ * drag is written as {@code |v| · v}, so resting bodies cost nothing and no
+ * direction has to be normalized. Lengths are in pixels and time in ticks,
+ * like the rest of the scene physics; a ball of mass {@code m} and radius
+ * {@code r} floats where ρ exceeds {@code m / (π r²)}.
+ * </p>
+ */
+public final class LiquidField {
+    private final double x0;
+    private final double y0;
+    private final double width;
+    private final double height;
+    private final double cellSize;
+    private final int columns;
+    private final int rows;
+    private final double[] density;
+    private final double[] viscosity;
+
+    // Cached per-cell coefficients; lift depends on the gravity last used
+    private final double[] lift;
+    private double liftGravity = Double.NaN;
+    /** Bumped whenever densities or viscosities are set. */
+    private int version;
+
+    // Scratch arrays for the bulk evaluation of movers
+    private double[] bx = new double[0];
+    private double[] by = new double[0];
+    private double[] br = new double[0];
+    private double[] bvx = new double[0];
+    private double[] bvy = new double[0];
+    private double[] bfx = new double[0];
+    private double[] bfy = new double[0];
+    private final double[] center = new double[2];
+
+    /**
+     * Creates a field of still, weightless liquid (density and viscosity 0).
+     *
+     * @param x        left edge
+     * @param y        surface line (top edge)
+     * @param width    width in pixels
+     * @param height   depth in pixels
+     * @param cellSize edge length of a grid cell in pixels
+     */
+    public LiquidField(double x, double y, double width, double height, double cellSize) {
+        if (width <= 0 || height <= 0 || cellSize <= 0) {
+            throw new IllegalArgumentException("liquid field needs a positive size and cell size");
+        }
+        this.x0 = x;
+        this.y0 = y;
+        this.width = width;
+        this.height = height;
+        this.cellSize = cellSize;
+        this.columns = Math.max(1, (int) Math.ceil(width / cellSize));
+        this.rows = Math.max(1, (int) Math.ceil(height / cellSize));
+        this.density = new double[this.columns * this.rows];
+        this.viscosity = new double[this.columns * this.rows];
+        this.lift = new double[this.columns * this.rows];
+    }
+
+    /**
+     * Sets density and viscosity everywhere.
+     *
+     * @param densityValue   mass per pixel²
+     * @param viscosityValue quadratic drag coefficient
+     * @return this field
+     */
+    public LiquidField fill(double densityValue, double viscosityValue) {
+        Arrays.fill(this.density, densityValue);
+        Arrays.fill(this.viscosity, viscosityValue);
+        this.liftGravity = Double.NaN;
+        this.version++;
+        return this;
+    }
+
+    /**
+     * Sets density and viscosity of the rows whose centers lie between two
+     * depths below the surface.
+     *
+     * @param fromDepth      upper depth in pixels (inclusive)
+     * @param toDepth        lower depth in pixels (exclusive)
+     * @param densityValue   mass per pixel²
+     * @param viscosityValue quadratic drag coefficient
+     * @return this field
+     */
+    public LiquidField layer(double fromDepth, double toDepth, double densityValue, double viscosityValue) {
+        return profile(depth -> depth >= fromDepth && depth < toDepth ? densityValue : Double.NaN,
+                depth -> depth >= fromDepth && depth < toDepth ? viscosityValue : Double.NaN);
+    }
+
+    /**
+     * Sets density and viscosity of every row from functions of its depth
+     * below the surface. A function returning {@code NaN} leaves the row
+     * unchanged.
+     *
+     * @param densityAt   density as a function of depth
+     * @param viscosityAt viscosity as a function of depth
+     * @return this field
+     */
+    public LiquidField profile(DoubleUnaryOperator densityAt, DoubleUnaryOperator viscosityAt) {
+        for (int row = 0; row < this.rows; row++) {
+            double depth = (row + 0.5) * this.cellSize;
+            double d = densityAt.applyAsDouble(depth);
+            double v = viscosityAt.applyAsDouble(depth);
+            for (int col = 0; col < this.columns; col++) {
+                int c = row * this.columns + col;
+                if (!Double.isNaN(d)) {
+                    this.density[c] = d;
+                }
+                if (!Double.isNaN(v)) {
+                    this.viscosity[c] = v;
+                }
+            }
+        }
+        this.liftGravity = Double.NaN;
+        this.version++;
+        return this;
+    }
+
+    /**
+     * Sets density and viscosity of a single cell.
+     *
+     * @param column         cell column
+     * @param row            cell row, 0 at the surface
+     * @param densityValue   mass per pixel²
+     * @param viscosityValue quadratic drag coefficient
+     */
+    public void set(int column, int row, double densityValue, double viscosityValue) {
+        int c = row * this.columns + column;
+        this.density[c] = densityValue;
+        this.viscosity[c] = viscosityValue;
+        this.liftGravity = Double.NaN;
+        this.version++;
+    }
+
+    /**
+     * @return counter that changes whenever {@link #fill}, {@link #layer},
+     *         {@link #profile} or {@link #set} change the field, so views can
+     *         cache what they derive from it
+     */
+    public int getVersion() {
+        return this.version;
+    }
+
+    /** @return density of the cell containing a point, 0 outside the liquid */
+    public double densityAt(double x, double y) {
+        int c = cellAt(x, y);
+        return c < 0 ? 0.0 : this.density[c];
+    }
+
+    /** @return viscosity of the cell containing a point, 0 outside the liquid */
+    public double viscosityAt(double x, double y) {
+        int c = cellAt(x, y);
+        return c < 0 ? 0.0 : this.viscosity[c];
+    }
+
+    /**
+     * Area of a disc lying between the surface and the bottom of the liquid.
+     *
+     * @param cy     disc center y-coordinate
+     * @param radius disc radius
+     * @return submerged area in pixels²
+     */
+    public double submergedArea(double cy, double radius) {
+        return areaBelow(this.y0 - cy, radius) - areaBelow(this.y0 + this.height - cy, radius);
+    }
+
+    /**
+     * Computes buoyancy and drag for many discs at once. Forces are added to
+     * {@code fx}/{@code fy}; discs whose center is left or right of the liquid
+     * or who do not reach below the surface are skipped.
+     *
+     * @param x       center x-coordinates
+     * @param y       center y-coordinates
+     * @param radius  disc radii
+     * @param vx      velocity x-components
+     * @param vy      velocity y-components
+     * @param n       number of discs
+     * @param gravity gravitational acceleration (positive, downwards)
+     * @param fx      force x-components to add to
+     * @param fy      force y-components to add to
+     * @return number of discs touching the liquid
+     */
+    public int apply(double[] x, double[] y, double[] radius, double[] vx, double[] vy, int n,
+            double gravity, double[] fx, double[] fy) {
+        if (gravity != this.liftGravity) {
+            for (int c = 0; c < this.lift.length; c++) {
+                this.lift[c] = this.density[c] * gravity;
+            }
+            this.liftGravity = gravity;
+        }
+
+        double x1 = this.x0 + this.width;
+        double bottom = this.y0 + this.height;
+        int touching = 0;
+        for (int i = 0; i < n; i++) {
+            double r = radius[i];
+            double cy = y[i];
+            if (x[i] < this.x0 || x[i] >= x1 || cy + r <= this.y0 || cy - r >= bottom) {
+                continue;
+            }
+            double area = submergedArea(cy, r);
+            if (area <= 0.0) {
+                continue;
+            }
+            touching++;
+
+            // Sample the middle of the submerged part
+            double top = Math.max(this.y0, cy - r);
+            double low = Math.min(bottom, cy + r);
+            int row = Math.min(this.rows - 1, (int) ((0.5 * (top + low) - this.y0) / this.cellSize));
+            int col = Math.min(this.columns - 1, (int) ((x[i] - this.x0) / this.cellSize));
+            int c = row * this.columns + col;
+
+            double k = this.viscosity[c] * area / (Math.PI * r * r) * Math.hypot(vx[i], vy[i]);
+            fx[i] -= k * vx[i];
+            fy[i] -= k * vy[i] + this.lift[c] * area;
+        }
+        return touching;
+    }
+
+    /**
+     * Applies buoyancy and drag to movers. Positions, radii and velocities are
+     * gathered into flat arrays and evaluated in one pass by
+     * {@link #apply(double[], double[], double[], double[], double[], int, double, double[], double[])}.
+     *
+     * @param movers  movers to push; balls use their radius, other
+     *                {@link SceneObject}s the disc of equal area
+     * @param gravity gravitational acceleration (positive, downwards)
+     * @return number of movers touching the liquid
+     */
+    public int apply(List<? extends Moveable> movers, double gravity) {
+        int n = movers.size();
+        if (this.bx.length < n) {
+            int capacity = Math.max(16, 2 * n);
+            this.bx = new double[capacity];
+            this.by = new double[capacity];
+            this.br = new double[capacity];
+            this.bvx = new double[capacity];
+            this.bvy = new double[capacity];
+            this.bfx = new double[capacity];
+            this.bfy = new double[capacity];
+        }
+        for (int i = 0; i < n; i++) {
+            Moveable m = movers.get(i);
+            CollisionWorld.centerOf(m, this.center);
+            this.bx[i] = this.center[0];
+            this.by[i] = this.center[1];
+            this.br[i] = radiusOf(m);
+            Vec v = m.getVelocity();
+            this.bvx[i] = v.x();
+            this.bvy[i] = v.y();
+            this.bfx[i] = 0.0;
+            this.bfy[i] = 0.0;
+        }
+        int touching = apply(this.bx, this.by, this.br, this.bvx, this.bvy, n, gravity, this.bfx, this.bfy);
+        if (touching > 0) {
+            for (int i = 0; i < n; i++) {
+                if (this.bfx[i] != 0.0 || this.bfy[i] != 0.0) {
+                    movers.get(i).applyForce(new Vec(this.bfx[i], this.bfy[i]));
+                }
+            }
+        }
+        return touching;
+    }
+
+    public int getColumns() {
+        return this.columns;
+    }
+
+    public int getRows() {
+        return this.rows;
+    }
+
+    public double getCellSize() {
+        return this.cellSize;
+    }
+
+    /**
+     * @param column cell column
+     * @param row    cell row, 0 at the surface
+     * @return density of the cell
+     */
+    public double getDensity(int column, int row) {
+        return this.density[row * this.columns + column];
+    }
+
+    /**
+     * @param column cell column
+     * @param row    cell row, 0 at the surface
+     * @return viscosity of the cell
+     */
+    public double getViscosity(int column, int row) {
+        return this.viscosity[row * this.columns + column];
+    }
+
+    private int cellAt(double x, double y) {
+        if (x < this.x0 || y < this.y0 || x >= this.x0 + this.width || y >= this.y0 + this.height) {
+            return -1;
+        }
+        int col = Math.min(this.columns - 1, (int) ((x - this.x0) / this.cellSize));
+        int row = Math.min(this.rows - 1, (int) ((y - this.y0) / this.cellSize));
+        return row * this.columns + col;
+    }
+
+    /**
+     * Area of a disc below a horizontal line (y grows downwards).
+     *
+     * @param d      signed distance from the disc center down to the line
+     * @param radius disc radius
+     */
+    private static double areaBelow(double d, double radius) {
+        if (d >= radius) {
+            return 0.0;
+        }
+        if (d <= -radius) {
+            return Math.PI * radius * radius;
+        }
+        return radius * radius * Math.acos(d / radius) - d * Math.sqrt(radius * radius - d * d);
+    }
+
+    private static double radiusOf(Moveable m) {
+        if (m instanceof Ball) {
+            return ((Ball) m).getRadius();
+        }
+        double w = ((SceneObject) m).getObjectDim().getWidth();
+        double h = ((SceneObject) m).getObjectDim().getHeight();
+        return Math.sqrt(w * h / Math.PI);
+    }
+}
@@ -0,0 +1,92 @@
+package physics;
+
+/**
+ * Contact manifold between two shapes: a shared normal and up to two contact
+ * points with their penetration depths.
+ *
+ * <p>
+ * Bodies are referenced by their index in the owning {@link CollisionWorld};
+ * an index of {@link #STATIC} marks static geometry, in which case
+ * {@link #staticIndex} identifies the obstacle. The normal always points from
+ * body {@link #a} towards body {@link #b}. Manifolds are pooled and reused by
+ * the world, so they must not be retained across ticks.
+ * </p>
+ */
+public final class Manifold {
+    /** Maximum number of contact points in 2D. */
+    public static final int MAX_POINTS = 2;
+    /** Body index used for static geometry. */
+    public static final int STATIC = -1;
+
+    /** Index of the first body, or {@link #STATIC}. */
+    public int a;
+    /** Index of the second body, or {@link #STATIC}. */
+    public int b;
+    /** Index of the static obstacle if one side is static, otherwise -1. */
+    public int staticIndex;
+    /**
+     * Stable identity of the touching pair (see {@link PairCache#key(int, int)}),
+     * used to carry impulses over to the next tick.
+     */
+    public long id;
+
+    /** Contact normal x-component (from a towards b). */
+    public double nx;
+    /** Contact normal y-component (from a towards b). */
+    public double ny;
+
+    /** Number of valid contact points. */
+    public int count;
+    /** Contact point x-coordinates in world space. */
+    public final double[] px = new double[MAX_POINTS];
+    /** Contact point y-coordinates in world space. */
+    public final double[] py = new double[MAX_POINTS];
+    /** Penetration depth per contact point (positive when overlapping). */
+    public final double[] depth = new double[MAX_POINTS];
+
+    /** Accumulated normal impulse per point, filled in by the solver. */
+    public final double[] normalImpulse = new double[MAX_POINTS];
+    /** Accumulated friction impulse per point, filled in by the solver. */
+    public final double[] tangentImpulse = new double[MAX_POINTS];
+
+    final double[] normalMass = new double[MAX_POINTS];
+    final double[] tangentMass = new double[MAX_POINTS];
+    final double[] velocityBias = new double[MAX_POINTS];
+    /** Coupled normal mass matrix of two-point manifolds (block solver). */
+    boolean block;
+    double k11;
+    double k12;
+    double k22;
+
+    /**
+     * Clears the manifold for reuse.
+     *
+     * @param a first body index or {@link #STATIC}
+     * @param b second body index or {@link #STATIC}
+     */
+    public void reset(int a, int b) {
+        this.a = a;
+        this.b = b;
+        this.staticIndex = -1;
+        this.id = PairCache.key(a, b);
+        this.count = 0;
+    }
+
+    /**
+     * Appends a contact point.
+     *
+     * @param x     contact x-coordinate
+     * @param y     contact y-coordinate
+     * @param depth penetration depth
+     */
+    public void addPoint(double x, double y, double depth) {
+        if (this.count < MAX_POINTS) {
+            this.px[this.count] = x;
+            this.py[this.count] = y;
+            this.depth[this.count] = depth;
+            this.normalImpulse[this.count] = 0.0;
+            this.tangentImpulse[this.count] = 0.0;
+            this.count++;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package physics;
+
+import objects.Box;
+import objects.MoBox;
+
+/**
+ * Immutable oriented box described by its center, half-extents and rotation.
+ *
+ * <p>
+ * The rotation follows the {@link java.awt.Graphics2D#rotate(double)}
+ * convention used by the renderers: a positive angle turns the local x-axis
+ * towards the local y-axis (clockwise on screen because y grows downwards). A
+ * world point therefore relates to its local coordinates by
+ * {@code world = center + R(angle) · local}.
+ * </p>
+ */
+public final class Obb implements ConvexShape {
+    /** Center x-coordinate in world space. */
+    public final double cx;
+    /** Center y-coordinate in world space. */
+    public final double cy;
+    /** Half-extent along the local x-axis. */
+    public final double hx;
+    /** Half-extent along the local y-axis. */
+    public final double hy;
+    /** Rotation angle in radians. */
+    public final double angle;
+    /** Cached cosine of {@link #angle}. */
+    public final double cos;
+    /** Cached sine of {@link #angle}. */
+    public final double sin;
+
+    /**
+     * Creates an oriented box.
+     *
+     * @param cx    center x-coordinate
+     * @param cy    center y-coordinate
+     * @param hx    half-extent along the local x-axis
+     * @param hy    half-extent along the local y-axis
+     * @param angle rotation angle in radians
+     */
+    public Obb(double cx, double cy, double hx, double hy, double angle) {
+        this.cx = cx;
+        this.cy = cy;
+        this.hx = hx;
+        this.hy = hy;
+        this.angle = angle;
+        this.cos = Math.cos(angle);
+        this.sin = Math.sin(angle);
+    }
+
+    /**
+     * Builds the collision shape of a {@link Box}. Boxes are drawn from their
+     * top-left location and rotated around their center, so the center is
+     * offset by half the object dimension.
+     *
+     * @param box source box
+     * @return oriented box matching the rendered rectangle
+     */
+    public static Obb of(Box box) {
+        double w = box.getObjectDim().getWidth();
+        double h = box.getObjectDim().getHeight();
+        return new Obb(
+                box.getLocation().x() + w / 2,
+                box.getLocation().y() + h / 2,
+                w / 2,
+                h / 2,
+                box.getAngle());
+    }
+
+    /**
+     * Builds the collision shape of a {@link MoBox}, including its rotation.
+     *
+     * @param box source box
+     * @return oriented box matching the rendered rectangle
+     */
+    public static Obb of(MoBox box) {
+        double w = box.getObjectDim().getWidth();
+        double h = box.getObjectDim().getHeight();
+        return new Obb(
+                box.getLocation().x() + w / 2,
+                box.getLocation().y() + h / 2,
+                w / 2,
+                h / 2,
+                box.getAngle());
+    }
+
+    /**
+     * Writes the corners and outward face normals as a convex polygon. Edge
+     * {@code i} runs from corner {@code i} to corner {@code (i + 1) % 4} and has
+     * normal {@code i}.
+     *
+     * @param x  receives the 4 corner x-coordinates
+     * @param y  receives the 4 corner y-coordinates
+     * @param nx receives the 4 face normal x-components
+     * @param ny receives the 4 face normal y-components
+     */
+    public void polygon(double[] x, double[] y, double[] nx, double[] ny) {
+        double ax = this.cos * this.hx;
+        double ay = this.sin * this.hx;
+        double bx = -this.sin * this.hy;
+        double by = this.cos * this.hy;
+
+        x[0] = this.cx - ax - bx;
+        y[0] = this.cy - ay - by;
+        x[1] = this.cx + ax - bx;
+        y[1] = this.cy + ay - by;
+        x[2] = this.cx + ax + bx;
+        y[2] = this.cy + ay + by;
+        x[3] = this.cx - ax + bx;
+        y[3] = this.cy - ay + by;
+
+        nx[0] = this.sin;
+        ny[0] = -this.cos;
+        nx[1] = this.cos;
+        ny[1] = this.sin;
+        nx[2] = -this.sin;
+        ny[2] = this.cos;
+        nx[3] = -this.cos;
+        ny[3] = -this.sin;
+    }
+
+    /** @return half-width of the world-space bounding box */
+    public double extentX() {
+        return Math.abs(this.cos) * this.hx + Math.abs(this.sin) * this.hy;
+    }
+
+    /** @return half-height of the world-space bounding box */
+    public double extentY() {
+        return Math.abs(this.sin) * this.hx + Math.abs(this.cos) * this.hy;
+    }
+
+    /**
+     * Signed distance from a point to the box surface.
+     *
+     * @param px point x-coordinate
+     * @param py point y-coordinate
+     * @return distance to the surface; negative if the point lies inside
+     */
+    public double distance(double px, double py) {
+        double dx = px - this.cx;
+        double dy = py - this.cy;
+        double qx = Math.abs(this.cos * dx + this.sin * dy) - this.hx;
+        double qy = Math.abs(-this.sin * dx + this.cos * dy) - this.hy;
+
+        double outside = Math.hypot(Math.max(qx, 0.0), Math.max(qy, 0.0));
+        double inside = Math.min(Math.max(qx, qy), 0.0);
+        return outside + inside;
+    }
+
+    /**
+     * Outward unit normal of the surface feature closest to a point. Points
+     * outside a corner get the diagonal direction towards the point, points
+     * inside get the normal of the nearest face.
+     *
+     * @param px  point x-coordinate
+     * @param py  point y-coordinate
+     * @param out receives the world-space normal as {@code {nx, ny}}
+     */
+    public void normal(double px, double py, double[] out) {
+        double dx = px - this.cx;
+        double dy = py - this.cy;
+        double lx = this.cos * dx + this.sin * dy;
+        double ly = -this.sin * dx + this.cos * dy;
+        double qx = Math.abs(lx) - this.hx;
+        double qy = Math.abs(ly) - this.hy;
+
+        double nx;
+        double ny;
+        if (qx > 0 || qy > 0) {
+            nx = Math.copySign(Math.max(qx, 0.0), lx);
+            ny = Math.copySign(Math.max(qy, 0.0), ly);
+            double len = Math.hypot(nx, ny);
+            nx /= len;
+            ny /= len;
+        } else if (qx > qy) {
+            nx = Math.copySign(1.0, lx);
+            ny = 0.0;
+        } else {
+            nx = 0.0;
+            ny = Math.copySign(1.0, ly);
+        }
+
+        out[0] = this.cos * nx - this.sin * ny;
+        out[1] = this.sin * nx + this.cos * ny;
+    }
+
+    @Override
+    public void support(double dx, double dy, double[] out) {
+        double sx = (this.cos * dx + this.sin * dy) >= 0 ? this.hx : -this.hx;
+        double sy = (-this.sin * dx + this.cos * dy) >= 0 ? this.hy : -this.hy;
+        out[0] = this.cx + this.cos * sx - this.sin * sy;
+        out[1] = this.cy + this.sin * sx + this.cos * sy;
+    }
+
+    @Override
+    public double centerX() {
+        return this.cx;
+    }
+
+    @Override
+    public double centerY() {
+        return this.cy;
+    }
+}
@@ -0,0 +1,191 @@
+package physics;
+
+import java.util.Arrays;
+
+/**
+ * Small open-addressing map from body pairs to a fixed number of doubles,
+ * used to carry per-pair data (such as the last GJK search direction) from one
+ * tick to the next without allocating.
+ *
+ * <p>
+ * Every lookup through {@link #acquire(long)} stamps the entry with the
+ * current tick. Entries that were not touched during a tick are dropped the
+ * next time the table grows or is compacted in {@link #nextTick()}, so pairs
+ * that stopped touching do not accumulate.
+ * </p>
+ */
+public final class PairCache {
+    private static final long EMPTY = Long.MIN_VALUE;
+    private static final int COMPACT_INTERVAL = 64;
+
+    private final int width;
+    private long[] keys;
+    private int[] stamps;
+    private double[] values;
+    private int size;
+    private int tick = 1;
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param width number of doubles stored per pair
+     */
+    public PairCache(int width) {
+        this.width = width;
+        allocate(64);
+    }
+
+    /**
+     * Packs two body ids into a pair key. The order matters: the data stored
+     * for {@code (a, b)} usually depends on which body comes first.
+     *
+     * @param a first id (may be negative, e.g. for static geometry)
+     * @param b second id
+     * @return pair key
+     */
+    public static long key(int a, int b) {
+        return ((long) a << 32) | (b & 0xffffffffL);
+    }
+
+    /**
+     * Finds or inserts the entry of a pair and marks it as used this tick. New
+     * entries are zero-filled.
+     *
+     * @param key pair key from {@link #key(int, int)}
+     * @return offset of the entry's first value in {@link #values()}
+     */
+    public int acquire(long key) {
+        if (2 * (this.size + 1) > this.keys.length) {
+            rehash(Integer.highestOneBit(Math.max(this.live(), 32)) << 2);
+        }
+        int mask = this.keys.length - 1;
+        int slot = hash(key) & mask;
+        while (this.keys[slot] != EMPTY) {
+            if (this.keys[slot] == key) {
+                this.stamps[slot] = this.tick;
+                return slot * this.width;
+            }
+            slot = (slot + 1) & mask;
+        }
+        this.keys[slot] = key;
+        this.stamps[slot] = this.tick;
+        Arrays.fill(this.values, slot * this.width, (slot + 1) * this.width, 0.0);
+        this.size++;
+        return slot * this.width;
+    }
+
+    /**
+     * Backing value array. Offsets returned by {@link #acquire(long)} stay
+     * valid until the next call to {@code acquire} or {@link #nextTick()}.
+     *
+     * @return value storage
+     */
+    public double[] values() {
+        return this.values;
+    }
+
+    /**
+     * Tick in which a pair was last used, without touching it.
+     *
+     * @param key pair key
+     * @return last tick stamp, or 0 if the pair is unknown
+     */
+    public int stamp(long key) {
+        int slot = slot(key);
+        return slot < 0 ? 0 : this.stamps[slot];
+    }
+
+    /**
+     * Finds the entry of a pair without inserting or touching it.
+     *
+     * @param key pair key
+     * @return offset of the entry's first value in {@link #values()}, or -1
+     *         if the pair is unknown
+     */
+    public int find(long key) {
+        int slot = slot(key);
+        return slot < 0 ? -1 : slot * this.width;
+    }
+
+    private int slot(long key) {
+        int mask = this.keys.length - 1;
+        int slot = hash(key) & mask;
+        while (this.keys[slot] != EMPTY) {
+            if (this.keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /** @return current tick stamp */
+    public int tick() {
+        return this.tick;
+    }
+
+    /** Ends the current tick; periodically drops entries that were not used. */
+    public void nextTick() {
+        if (this.tick % COMPACT_INTERVAL == 0) {
+            rehash(this.keys.length);
+        }
+        this.tick++;
+    }
+
+    /** Removes all entries. */
+    public void clear() {
+        Arrays.fill(this.keys, EMPTY);
+        this.size = 0;
+    }
+
+    /** @return number of stored pairs, including stale ones */
+    public int size() {
+        return this.size;
+    }
+
+    private int live() {
+        int count = 0;
+        for (int i = 0; i < this.keys.length; i++) {
+            if (this.keys[i] != EMPTY && this.stamps[i] >= this.tick - 1) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /** Rebuilds the table, keeping only entries used in this or the previous tick. */
+    private void rehash(int capacity) {
+        long[] oldKeys = this.keys;
+        int[] oldStamps = this.stamps;
+        double[] oldValues = this.values;
+        allocate(capacity);
+
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == EMPTY || oldStamps[i] < this.tick - 1) {
+                continue;
+            }
+            int slot = hash(oldKeys[i]) & mask;
+            while (this.keys[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            this.keys[slot] = oldKeys[i];
+            this.stamps[slot] = oldStamps[i];
+            System.arraycopy(oldValues, i * this.width, this.values, slot * this.width, this.width);
+            this.size++;
+        }
+    }
+
+    private void allocate(int capacity) {
+        this.keys = new long[capacity];
+        Arrays.fill(this.keys, EMPTY);
+        this.stamps = new int[capacity];
+        this.values = new double[capacity * this.width];
+        this.size = 0;
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
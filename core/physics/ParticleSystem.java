@@ -0,0 +1,154 @@
+package physics;
+
+import java.util.Arrays;
+
+/**
+ * Structure-of-arrays storage for the point masses of position-based soft
+ * bodies.
+ *
+ * <p>
+ * Every particle carries its current and previous position, the velocity
+ * derived from them, an inverse mass, a collision radius and a force
+ * accumulator. Like {@link BodyState} the arrays are public so constraint
+ * sets and the {@link XpbdSolver} can work on them without accessors; an
+ * inverse mass of zero pins a particle in place.
+ * </p>
+ */
+public final class ParticleSystem {
+    /** Number of valid particles. */
+    public int count;
+
+    /** Current x-coordinates. */
+    public double[] x = new double[0];
+    /** Current y-coordinates. */
+    public double[] y = new double[0];
+    /** X-coordinates at the start of the current substep. */
+    public double[] px = new double[0];
+    /** Y-coordinates at the start of the current substep. */
+    public double[] py = new double[0];
+    /** Velocity x-components per tick. */
+    public double[] vx = new double[0];
+    /** Velocity y-components per tick. */
+    public double[] vy = new double[0];
+    /** Inverse masses (0 for pinned particles). */
+    public double[] invMass = new double[0];
+    /** Collision radii in pixels. */
+    public double[] radius = new double[0];
+    /** Accumulated force x-components, cleared after every step. */
+    public double[] fx = new double[0];
+    /** Accumulated force y-components, cleared after every step. */
+    public double[] fy = new double[0];
+
+    /**
+     * Appends a particle at rest.
+     *
+     * @param x      x-coordinate
+     * @param y      y-coordinate
+     * @param mass   mass; zero or less creates a pinned particle
+     * @param radius collision radius in pixels
+     * @return index of the new particle
+     */
+    public int add(double x, double y, double mass, double radius) {
+        int i = this.count;
+        reserve(i + 1);
+        this.x[i] = x;
+        this.y[i] = y;
+        this.px[i] = x;
+        this.py[i] = y;
+        this.vx[i] = 0.0;
+        this.vy[i] = 0.0;
+        this.invMass[i] = mass > 0 ? 1.0 / mass : 0.0;
+        this.radius[i] = radius;
+        this.fx[i] = 0.0;
+        this.fy[i] = 0.0;
+        this.count = i + 1;
+        return i;
+    }
+
+    /**
+     * Pins a particle so no constraint or force can move it.
+     *
+     * @param i particle index
+     */
+    public void pin(int i) {
+        this.invMass[i] = 0.0;
+        this.vx[i] = 0.0;
+        this.vy[i] = 0.0;
+    }
+
+    /**
+     * Moves a particle without giving it velocity, e.g. to drag a pinned
+     * particle with the mouse.
+     *
+     * @param i particle index
+     * @param x new x-coordinate
+     * @param y new y-coordinate
+     */
+    public void moveTo(int i, double x, double y) {
+        this.x[i] = x;
+        this.y[i] = y;
+        this.px[i] = x;
+        this.py[i] = y;
+    }
+
+    /**
+     * Adds a force to one particle for the next step.
+     *
+     * @param i  particle index
+     * @param fx force x-component
+     * @param fy force y-component
+     */
+    public void applyForce(int i, double fx, double fy) {
+        this.fx[i] += fx;
+        this.fy[i] += fy;
+    }
+
+    /**
+     * Index of the particle closest to a point.
+     *
+     * @param x point x-coordinate
+     * @param y point y-coordinate
+     * @return closest particle, or -1 if the system is empty
+     */
+    public int nearest(double x, double y) {
+        int best = -1;
+        double bestDistance = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < this.count; i++) {
+            double dx = this.x[i] - x;
+            double dy = this.y[i] - y;
+            double d = dx * dx + dy * dy;
+            if (d < bestDistance) {
+                bestDistance = d;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /** @return total mass of all movable particles */
+    public double totalMass() {
+        double mass = 0.0;
+        for (int i = 0; i < this.count; i++) {
+            if (this.invMass[i] > 0) {
+                mass += 1.0 / this.invMass[i];
+            }
+        }
+        return mass;
+    }
+
+    private void reserve(int n) {
+        if (n > this.x.length) {
+            int capacity = Math.max(n, Math.max(16, 2 * this.x.length));
+            this.x = Arrays.copyOf(this.x, capacity);
+            this.y = Arrays.copyOf(this.y, capacity);
+            this.px = Arrays.copyOf(this.px, capacity);
+            this.py = Arrays.copyOf(this.py, capacity);
+            this.vx = Arrays.copyOf(this.vx, capacity);
+            this.vy = Arrays.copyOf(this.vy, capacity);
+            this.invMass = Arrays.copyOf(this.invMass, capacity);
+            this.radius = Arrays.copyOf(this.radius, capacity);
+            this.fx = Arrays.copyOf(this.fx, capacity);
+            this.fy = Arrays.copyOf(this.fy, capacity);
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package physics;
+
+import java.awt.Dimension;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import interfaces.Inert;
+import interfaces.Moveable;
+import objects.SceneObject;
+
+/**
+ * Static index over axis-aligned regions, answering which regions contain a
+ * point or a box.
+ *
+ * <p>
+ * Regions are sorted by their left edge and laid out as an implicit balanced
+ * interval tree: the node of a range is its middle element and every node
+ * stores the largest right edge of its subtree. A stabbing query at {@code x}
+ * skips subtrees ending left of {@code x} and everything right of the first
+ * region starting after it, so a lookup costs O(log n + k) for k candidate
+ * regions; the vertical extent is checked on the candidates. The index is
+ * immutable; area objects are expected to stay put, so rebuild it with
+ * {@link #of(List)} or a new {@link Builder} when one moves.
+ * </p>
+ *
+ * <p>
+ * Queries write into reusable {@link Hits}, so scenes can look up a whole
+ * array of movers per tick without allocating.
+ * </p>
+ *
+ * @param <T> region payload, e.g. {@link objects.SimpleLiquid}
+ */
+public final class RegionIndex<T> {
+    private final int count;
+    private final Object[] items;
+    private final int[] ids;
+    private final double[] minX;
+    private final double[] minY;
+    private final double[] maxX;
+    private final double[] maxY;
+    private final double[] subtreeMaxX;
+
+    private RegionIndex(Builder<T> builder) {
+        int n = builder.items.size();
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(builder.bounds[4 * a], builder.bounds[4 * b]));
+
+        this.count = n;
+        this.items = builder.items.toArray();
+        this.ids = new int[n];
+        this.minX = new double[n];
+        this.minY = new double[n];
+        this.maxX = new double[n];
+        this.maxY = new double[n];
+        for (int k = 0; k < n; k++) {
+            int i = order[k];
+            this.ids[k] = i;
+            this.minX[k] = builder.bounds[4 * i];
+            this.minY[k] = builder.bounds[4 * i + 1];
+            this.maxX[k] = builder.bounds[4 * i + 2];
+            this.maxY[k] = builder.bounds[4 * i + 3];
+        }
+        this.subtreeMaxX = new double[n];
+        augment(0, n);
+    }
+
+    /**
+     * Indexes inert area objects by the rectangle spanned by their location
+     * (top-left corner) and object dimension.
+     *
+     * @param regions area objects such as liquids
+     * @param <T>     region type
+     * @return new index; region ids are positions in {@code regions}
+     */
+    public static <T extends SceneObject & Inert> RegionIndex<T> of(List<T> regions) {
+        Builder<T> builder = new Builder<>();
+        for (T region : regions) {
+            Dimension d = region.getObjectDim();
+            double x = region.getLocation().x();
+            double y = region.getLocation().y();
+            builder.add(region, x, y, x + d.getWidth(), y + d.getHeight());
+        }
+        return builder.build();
+    }
+
+    /** @return number of indexed regions */
+    public int size() {
+        return this.count;
+    }
+
+    /**
+     * @param id region id as reported by {@link Hits#region(int)}
+     * @return payload the region was added with
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int id) {
+        return (T) this.items[id];
+    }
+
+    /**
+     * Finds the regions containing a point (edges included).
+     *
+     * @param x    point x-coordinate
+     * @param y    point y-coordinate
+     * @param hits cleared and filled with a single query
+     */
+    public void queryPoint(double x, double y, Hits hits) {
+        hits.clear();
+        stab(0, this.count, x, x, y, y, hits);
+        hits.close();
+    }
+
+    /**
+     * Finds the regions containing a point, for many points at once. Query
+     * {@code i} of the result belongs to point {@code i}.
+     *
+     * @param xs   point x-coordinates
+     * @param ys   point y-coordinates
+     * @param n    number of points
+     * @param hits cleared and filled with {@code n} queries
+     */
+    public void queryPoints(double[] xs, double[] ys, int n, Hits hits) {
+        hits.clear();
+        for (int i = 0; i < n; i++) {
+            stab(0, this.count, xs[i], xs[i], ys[i], ys[i], hits);
+            hits.close();
+        }
+    }
+
+    /**
+     * Finds the regions that fully contain a box.
+     *
+     * @param x0   box left edge
+     * @param y0   box top edge
+     * @param x1   box right edge
+     * @param y1   box bottom edge
+     * @param hits cleared and filled with a single query
+     */
+    public void queryBox(double x0, double y0, double x1, double y1, Hits hits) {
+        hits.clear();
+        stab(0, this.count, x0, x1, y0, y1, hits);
+        hits.close();
+    }
+
+    /**
+     * Finds the regions whose bounds overlap a box (edges included).
+     *
+     * @param x0   box left edge
+     * @param y0   box top edge
+     * @param x1   box right edge
+     * @param y1   box bottom edge
+     * @param hits cleared and filled with a single query
+     */
+    public void queryOverlapping(double x0, double y0, double x1, double y1, Hits hits) {
+        hits.clear();
+        overlap(0, this.count, x0, x1, y0, y1, hits);
+        hits.close();
+    }
+
+    /**
+     * Finds the regions fully containing each mover's box, spanned by its
+     * location and object dimension like {@link objects.SimpleLiquid#contains}
+     * does. Query {@code i} of the result belongs to {@code movers.get(i)}.
+     *
+     * @param movers movers to look up; must be {@link SceneObject}s
+     * @param hits   cleared and filled with one query per mover
+     */
+    public void queryMovers(List<? extends Moveable> movers, Hits hits) {
+        hits.clear();
+        for (int i = 0; i < movers.size(); i++) {
+            Moveable mover = movers.get(i);
+            Dimension d = ((SceneObject) mover).getObjectDim();
+            double x = mover.getLocation().x();
+            double y = mover.getLocation().y();
+            stab(0, this.count, x, x + d.getWidth(), y, y + d.getHeight(), hits);
+            hits.close();
+        }
+    }
+
+    /** Stores the largest right edge of each implicit subtree at its middle node. */
+    private double augment(int lo, int hi) {
+        if (lo >= hi) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        int mid = (lo + hi) >>> 1;
+        double max = Math.max(this.maxX[mid], Math.max(augment(lo, mid), augment(mid + 1, hi)));
+        this.subtreeMaxX[mid] = max;
+        return max;
+    }
+
+    /**
+     * Reports regions with {@code minX <= x0}, {@code maxX >= x1} and the
+     * vertical range {@code [y0, y1]} inside them.
+     */
+    private void stab(int lo, int hi, double x0, double x1, double y0, double y1, Hits hits) {
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (this.subtreeMaxX[mid] < x1) {
+                return;
+            }
+            stab(lo, mid, x0, x1, y0, y1, hits);
+            if (this.minX[mid] > x0) {
+                // Regions right of mid start even further right
+                return;
+            }
+            if (this.maxX[mid] >= x1 && this.minY[mid] <= y0 && this.maxY[mid] >= y1) {
+                hits.add(this.ids[mid]);
+            }
+            lo = mid + 1;
+        }
+    }
+
+    /** Reports regions whose bounds overlap {@code [x0, x1] × [y0, y1]}. */
+    private void overlap(int lo, int hi, double x0, double x1, double y0, double y1, Hits hits) {
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (this.subtreeMaxX[mid] < x0) {
+                return;
+            }
+            overlap(lo, mid, x0, x1, y0, y1, hits);
+            if (this.minX[mid] > x1) {
+                return;
+            }
+            if (this.maxX[mid] >= x0 && this.minY[mid] <= y1 && this.maxY[mid] >= y0) {
+                hits.add(this.ids[mid]);
+            }
+            lo = mid + 1;
+        }
+    }
+
+    /**
+     * Collects regions and their bounds before the index is built.
+     *
+     * @param <T> region payload
+     */
+    public static final class Builder<T> {
+        private final ArrayList<T> items = new ArrayList<>();
+        private double[] bounds = new double[16];
+
+        /**
+         * Adds a region. Its id is the number of regions added before it.
+         *
+         * @param item payload returned by {@link RegionIndex#get(int)}
+         * @param x0   left edge
+         * @param y0   top edge
+         * @param x1   right edge
+         * @param y1   bottom edge
+         * @return this builder
+         */
+        public Builder<T> add(T item, double x0, double y0, double x1, double y1) {
+            if (x1 < x0 || y1 < y0) {
+                throw new IllegalArgumentException("region bounds are inverted: " + x0 + ", " + y0 + ", " + x1 + ", " + y1);
+            }
+            int i = this.items.size();
+            if (4 * i + 4 > this.bounds.length) {
+                this.bounds = Arrays.copyOf(this.bounds, 2 * this.bounds.length);
+            }
+            this.bounds[4 * i] = x0;
+            this.bounds[4 * i + 1] = y0;
+            this.bounds[4 * i + 2] = x1;
+            this.bounds[4 * i + 3] = y1;
+            this.items.add(item);
+            return this;
+        }
+
+        /** @return immutable index over the regions added so far */
+        public RegionIndex<T> build() {
+            return new RegionIndex<>(this);
+        }
+    }
+
+    /**
+     * Results of one or more queries, stored as consecutive runs of region ids.
+     * Reuse one instance across ticks to avoid allocation.
+     */
+    public static final class Hits {
+        private int queries;
+        private int[] start = new int[17];
+        private int size;
+        private int[] regions = new int[16];
+
+        /** @return number of queries answered */
+        public int queries() {
+            return this.queries;
+        }
+
+        /**
+         * @param query query index
+         * @return number of regions found by that query
+         */
+        public int count(int query) {
+            return this.start[query + 1] - this.start[query];
+        }
+
+        /**
+         * @param query query index
+         * @return offset of the query's first region id
+         */
+        public int start(int query) {
+            return this.start[query];
+        }
+
+        /**
+         * @param query query index
+         * @return offset one past the query's last region id
+         */
+        public int end(int query) {
+            return this.start[query + 1];
+        }
+
+        /**
+         * @param k offset between {@link #start(int)} and {@link #end(int)}
+         * @return region id
+         */
+        public int region(int k) {
+            return this.regions[k];
+        }
+
+        void clear() {
+            this.queries = 0;
+            this.size = 0;
+            this.start[0] = 0;
+        }
+
+        void add(int region) {
+            if (this.size == this.regions.length) {
+                this.regions = Arrays.copyOf(this.regions, 2 * this.size);
+            }
+            this.regions[this.size++] = region;
+        }
+
+        /** Ends the current query. */
+        void close() {
+            if (this.queries + 2 > this.start.length) {
+                this.start = Arrays.copyOf(this.start, 2 * this.start.length);
+            }
+            this.start[++this.queries] = this.size;
+        }
+    }
+}
@@ -0,0 +1,356 @@
+package physics;
+
+/**
+ * Separating-axis tests between convex shapes.
+ *
+ * <p>
+ * The overlap tests return the penetration depth along the axis of least
+ * overlap and write the corresponding unit normal, oriented to push the first
+ * shape out of the second. A depth of zero or less means the shapes are
+ * separated.
+ * </p>
+ *
+ * <p>
+ * The manifold tests fill a {@link Manifold} with the contact normal (from the
+ * first shape towards the second) and up to two contact points. Polygon
+ * contacts are found by picking the reference face with the largest
+ * separation and clipping the most anti-parallel incident edge of the other
+ * polygon against the reference face's side planes.
+ * </p>
+ */
+public final class Sat {
+    /** Relative tolerance preferring the first polygon as reference face. */
+    private static final double REFERENCE_TOLERANCE = 0.005;
+
+    private Sat() {
+    }
+
+    /**
+     * Oriented box against oriented box. Only the two face axes of each box can
+     * separate them in 2D.
+     *
+     * @param a      first box
+     * @param b      second box
+     * @param normal receives the minimum translation direction for {@code a}
+     * @return penetration depth, or a value ≤ 0 if separated
+     */
+    public static double obbObb(Obb a, Obb b, double[] normal) {
+        double dx = a.cx - b.cx;
+        double dy = a.cy - b.cy;
+        double best = Double.POSITIVE_INFINITY;
+
+        double[][] axes = {
+                { a.cos, a.sin }, { -a.sin, a.cos },
+                { b.cos, b.sin }, { -b.sin, b.cos }
+        };
+        for (double[] axis : axes) {
+            double lx = axis[0];
+            double ly = axis[1];
+            double overlap = radius(a, lx, ly) + radius(b, lx, ly) - Math.abs(dx * lx + dy * ly);
+            if (overlap <= 0) {
+                return overlap;
+            }
+            if (overlap < best) {
+                best = overlap;
+                double sign = (dx * lx + dy * ly) < 0 ? -1.0 : 1.0;
+                normal[0] = sign * lx;
+                normal[1] = sign * ly;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Circle against oriented box.
+     *
+     * @param px     circle center x
+     * @param py     circle center y
+     * @param r      circle radius
+     * @param b      box
+     * @param normal receives the direction pushing the circle out of the box
+     * @return penetration depth, or a value ≤ 0 if separated
+     */
+    public static double circleObb(double px, double py, double r, Obb b, double[] normal) {
+        double depth = r - b.distance(px, py);
+        if (depth > 0) {
+            b.normal(px, py, normal);
+        }
+        return depth;
+    }
+
+    /** Projection radius of a box onto a unit axis. */
+    static double radius(Obb box, double lx, double ly) {
+        return box.hx * Math.abs(box.cos * lx + box.sin * ly)
+                + box.hy * Math.abs(-box.sin * lx + box.cos * ly);
+    }
+
+    /**
+     * Manifold between two convex polygons given as corner and outward face
+     * normal arrays (edge {@code i} runs from corner {@code i} to corner
+     * {@code i + 1}).
+     *
+     * @param ax  first polygon corner x-coordinates
+     * @param ay  first polygon corner y-coordinates
+     * @param anx first polygon face normal x-components
+     * @param any first polygon face normal y-components
+     * @param an  first polygon corner count
+     * @param bx  second polygon corner x-coordinates
+     * @param by  second polygon corner y-coordinates
+     * @param bnx second polygon face normal x-components
+     * @param bny second polygon face normal y-components
+     * @param bn  second polygon corner count
+     * @param m   manifold to fill; its body indices are left untouched
+     * @return {@code true} if the polygons overlap
+     */
+    public static boolean polygonPolygon(
+            double[] ax, double[] ay, double[] anx, double[] any, int an,
+            double[] bx, double[] by, double[] bnx, double[] bny, int bn,
+            Manifold m) {
+        int edgeA = maxSeparationEdge(ax, ay, anx, any, an, bx, by, bn);
+        double sepA = separation(ax, ay, anx, any, edgeA, bx, by, bn);
+        if (sepA > 0) {
+            return false;
+        }
+        int edgeB = maxSeparationEdge(bx, by, bnx, bny, bn, ax, ay, an);
+        double sepB = separation(bx, by, bnx, bny, edgeB, ax, ay, an);
+        if (sepB > 0) {
+            return false;
+        }
+
+        if (sepB > sepA + REFERENCE_TOLERANCE) {
+            clip(bx, by, bnx, bny, bn, edgeB, ax, ay, anx, any, an, m);
+            m.nx = -m.nx;
+            m.ny = -m.ny;
+        } else {
+            clip(ax, ay, anx, any, an, edgeA, bx, by, bnx, bny, bn, m);
+        }
+        return m.count > 0;
+    }
+
+    /**
+     * Manifold between two overlapping convex polygons along a known
+     * separation normal, e.g. one found by {@link Epa}. The reference face is
+     * the face of either polygon best aligned with the normal, and the contact
+     * points are clipped exactly as in
+     * {@link #polygonPolygon(double[], double[], double[], double[], int, double[], double[], double[], double[], int, Manifold)}.
+     *
+     * @param ax  first polygon corner x-coordinates
+     * @param ay  first polygon corner y-coordinates
+     * @param anx first polygon face normal x-components
+     * @param any first polygon face normal y-components
+     * @param an  first polygon corner count
+     * @param bx  second polygon corner x-coordinates
+     * @param by  second polygon corner y-coordinates
+     * @param bnx second polygon face normal x-components
+     * @param bny second polygon face normal y-components
+     * @param bn  second polygon corner count
+     * @param nx  separation normal x-component (from the first polygon to the
+     *            second)
+     * @param ny  separation normal y-component
+     * @param m   manifold to fill; its body indices are left untouched
+     * @return {@code true} if clipping produced contact points
+     */
+    public static boolean polygonPolygonAlong(
+            double[] ax, double[] ay, double[] anx, double[] any, int an,
+            double[] bx, double[] by, double[] bnx, double[] bny, int bn,
+            double nx, double ny, Manifold m) {
+        int edgeA = 0;
+        double alignA = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < an; i++) {
+            double dot = anx[i] * nx + any[i] * ny;
+            if (dot > alignA) {
+                alignA = dot;
+                edgeA = i;
+            }
+        }
+        int edgeB = 0;
+        double alignB = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < bn; i++) {
+            double dot = -(bnx[i] * nx + bny[i] * ny);
+            if (dot > alignB) {
+                alignB = dot;
+                edgeB = i;
+            }
+        }
+
+        if (alignB > alignA + REFERENCE_TOLERANCE) {
+            clip(bx, by, bnx, bny, bn, edgeB, ax, ay, anx, any, an, m);
+            m.nx = -m.nx;
+            m.ny = -m.ny;
+        } else {
+            clip(ax, ay, anx, any, an, edgeA, bx, by, bnx, bny, bn, m);
+        }
+        return m.count > 0;
+    }
+
+    /**
+     * Manifold between an oriented box and a circle.
+     *
+     * @param box box (first shape)
+     * @param cx  circle center x
+     * @param cy  circle center y
+     * @param r   circle radius
+     * @param m   manifold to fill; the normal points from the box to the circle
+     * @return {@code true} if the shapes overlap
+     */
+    public static boolean obbCircle(Obb box, double cx, double cy, double r, Manifold m) {
+        double dist = box.distance(cx, cy);
+        if (dist >= r) {
+            return false;
+        }
+        double[] n = new double[2];
+        box.normal(cx, cy, n);
+        m.nx = n[0];
+        m.ny = n[1];
+        m.count = 0;
+        m.addPoint(cx - n[0] * dist, cy - n[1] * dist, r - dist);
+        return true;
+    }
+
+    /**
+     * Manifold between two circles.
+     *
+     * @param ax first center x
+     * @param ay first center y
+     * @param ar first radius
+     * @param bx second center x
+     * @param by second center y
+     * @param br second radius
+     * @param m  manifold to fill; the normal points from the first circle to
+     *           the second
+     * @return {@code true} if the circles overlap
+     */
+    public static boolean circleCircle(double ax, double ay, double ar, double bx, double by, double br,
+            Manifold m) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double radii = ar + br;
+        double d2 = dx * dx + dy * dy;
+        if (d2 >= radii * radii) {
+            return false;
+        }
+        double d = Math.sqrt(d2);
+        if (d == 0) {
+            m.nx = 0.0;
+            m.ny = 1.0;
+        } else {
+            m.nx = dx / d;
+            m.ny = dy / d;
+        }
+        double depth = radii - d;
+        m.count = 0;
+        m.addPoint(ax + m.nx * (ar - depth / 2), ay + m.ny * (ar - depth / 2), depth);
+        return true;
+    }
+
+    /** Face of polygon p with the largest separation from polygon q. */
+    private static int maxSeparationEdge(double[] px, double[] py, double[] pnx, double[] pny, int pn,
+            double[] qx, double[] qy, int qn) {
+        int best = 0;
+        double bestSeparation = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < pn; i++) {
+            double s = separation(px, py, pnx, pny, i, qx, qy, qn);
+            if (s > bestSeparation) {
+                bestSeparation = s;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /** Signed distance of the deepest vertex of q below face i of p. */
+    private static double separation(double[] px, double[] py, double[] pnx, double[] pny, int i,
+            double[] qx, double[] qy, int qn) {
+        double min = Double.POSITIVE_INFINITY;
+        for (int j = 0; j < qn; j++) {
+            double s = pnx[i] * (qx[j] - px[i]) + pny[i] * (qy[j] - py[i]);
+            min = Math.min(min, s);
+        }
+        return min;
+    }
+
+    /**
+     * Clips the incident edge of polygon inc against reference face e of
+     * polygon ref and stores the points that lie below the reference face.
+     */
+    private static void clip(
+            double[] rx, double[] ry, double[] rnx, double[] rny, int rn, int e,
+            double[] ix, double[] iy, double[] inx, double[] iny, int in,
+            Manifold m) {
+        double nx = rnx[e];
+        double ny = rny[e];
+
+        // Incident edge: the face most anti-parallel to the reference normal
+        int incident = 0;
+        double minDot = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < in; i++) {
+            double dot = inx[i] * nx + iny[i] * ny;
+            if (dot < minDot) {
+                minDot = dot;
+                incident = i;
+            }
+        }
+        double x1 = ix[incident];
+        double y1 = iy[incident];
+        double x2 = ix[(incident + 1) % in];
+        double y2 = iy[(incident + 1) % in];
+
+        double r1x = rx[e];
+        double r1y = ry[e];
+        double r2x = rx[(e + 1) % rn];
+        double r2y = ry[(e + 1) % rn];
+        double tx = r2x - r1x;
+        double ty = r2y - r1y;
+        double len = Math.hypot(tx, ty);
+        tx /= len;
+        ty /= len;
+
+        // Clip against the side plane through r1 (keep t·p >= t·r1)
+        double lower = tx * r1x + ty * r1y;
+        double d1 = tx * x1 + ty * y1 - lower;
+        double d2 = tx * x2 + ty * y2 - lower;
+        if (d1 < 0 && d2 < 0) {
+            m.count = 0;
+            return;
+        }
+        if (d1 < 0) {
+            double f = d1 / (d1 - d2);
+            x1 = x1 + f * (x2 - x1);
+            y1 = y1 + f * (y2 - y1);
+        } else if (d2 < 0) {
+            double f = d1 / (d1 - d2);
+            x2 = x1 + f * (x2 - x1);
+            y2 = y1 + f * (y2 - y1);
+        }
+
+        // Clip against the side plane through r2 (keep t·p <= t·r2)
+        double upper = tx * r2x + ty * r2y;
+        d1 = upper - (tx * x1 + ty * y1);
+        d2 = upper - (tx * x2 + ty * y2);
+        if (d1 < 0 && d2 < 0) {
+            m.count = 0;
+            return;
+        }
+        if (d1 < 0) {
+            double f = d1 / (d1 - d2);
+            x1 = x1 + f * (x2 - x1);
+            y1 = y1 + f * (y2 - y1);
+        } else if (d2 < 0) {
+            double f = d1 / (d1 - d2);
+            x2 = x1 + f * (x2 - x1);
+            y2 = y1 + f * (y2 - y1);
+        }
+
+        m.nx = nx;
+        m.ny = ny;
+        m.count = 0;
+        double s1 = nx * (x1 - r1x) + ny * (y1 - r1y);
+        if (s1 <= 0) {
+            m.addPoint(x1, y1, -s1);
+        }
+        double s2 = nx * (x2 - r1x) + ny * (y2 - r1y);
+        if (s2 <= 0) {
+            m.addPoint(x2, y2, -s2);
+        }
+    }
+}
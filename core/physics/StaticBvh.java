@@ -0,0 +1,216 @@
+package physics;
+
+import java.util.Arrays;
+
+/**
+ * Immutable bounding volume hierarchy over axis-aligned boxes.
+ *
+ * <p>
+ * The tree is built once from the bounds of static geometry and stored in flat
+ * primitive arrays (no node objects). Nodes are laid out depth-first: the left
+ * child of an internal node directly follows it, the right child index is
+ * stored explicitly. Leaves reference a contiguous range of item indices.
+ * Items are split at the median centroid along the longest axis, which keeps
+ * the depth logarithmic regardless of how the geometry is distributed.
+ * </p>
+ *
+ * <p>
+ * Queries reuse a scratch traversal stack, so a tree should be queried from
+ * one thread at a time (the simulation thread in the bundled scenes).
+ * </p>
+ */
+public final class StaticBvh {
+    private static final int LEAF_SIZE = 4;
+
+    private final double[] nodeMinX;
+    private final double[] nodeMinY;
+    private final double[] nodeMaxX;
+    private final double[] nodeMaxY;
+    private final int[] nodeRight;
+    private final int[] nodeFirst;
+    private final int[] nodeCount;
+    private final int[] items;
+    private final int[] stack;
+    private int nodes;
+    private int depth;
+
+    private final double[] minX;
+    private final double[] minY;
+    private final double[] maxX;
+    private final double[] maxY;
+
+    /**
+     * Builds the hierarchy. The bound arrays are copied.
+     *
+     * @param minX item lower x bounds
+     * @param minY item lower y bounds
+     * @param maxX item upper x bounds
+     * @param maxY item upper y bounds
+     * @param n    number of items
+     */
+    public StaticBvh(double[] minX, double[] minY, double[] maxX, double[] maxY, int n) {
+        this.minX = Arrays.copyOf(minX, n);
+        this.minY = Arrays.copyOf(minY, n);
+        this.maxX = Arrays.copyOf(maxX, n);
+        this.maxY = Arrays.copyOf(maxY, n);
+
+        int capacity = Math.max(1, 2 * n);
+        this.nodeMinX = new double[capacity];
+        this.nodeMinY = new double[capacity];
+        this.nodeMaxX = new double[capacity];
+        this.nodeMaxY = new double[capacity];
+        this.nodeRight = new int[capacity];
+        this.nodeFirst = new int[capacity];
+        this.nodeCount = new int[capacity];
+
+        this.items = new int[n];
+        for (int i = 0; i < n; i++) {
+            this.items[i] = i;
+        }
+
+        if (n > 0) {
+            build(0, n, 1);
+        }
+        this.stack = new int[this.depth + 1];
+    }
+
+    /** @return number of items in the hierarchy */
+    public int size() {
+        return this.items.length;
+    }
+
+    /**
+     * Collects the items whose bounds overlap the query box.
+     *
+     * <p>
+     * At most {@code out.length} indices are written, but the total number of
+     * overlapping items is always returned so callers can grow their buffer and
+     * repeat the query if needed.
+     * </p>
+     *
+     * @param qMinX query lower x bound
+     * @param qMinY query lower y bound
+     * @param qMaxX query upper x bound
+     * @param qMaxY query upper y bound
+     * @param out   receives item indices
+     * @return number of overlapping items
+     */
+    public int query(double qMinX, double qMinY, double qMaxX, double qMaxY, int[] out) {
+        if (this.nodes == 0) {
+            return 0;
+        }
+
+        int found = 0;
+        int top = 0;
+        this.stack[top++] = 0;
+        while (top > 0) {
+            int node = this.stack[--top];
+            if (this.nodeMinX[node] > qMaxX || this.nodeMaxX[node] < qMinX
+                    || this.nodeMinY[node] > qMaxY || this.nodeMaxY[node] < qMinY) {
+                continue;
+            }
+
+            int count = this.nodeCount[node];
+            if (count > 0) {
+                int first = this.nodeFirst[node];
+                for (int k = first; k < first + count; k++) {
+                    int item = this.items[k];
+                    if (this.minX[item] <= qMaxX && this.maxX[item] >= qMinX
+                            && this.minY[item] <= qMaxY && this.maxY[item] >= qMinY) {
+                        if (found < out.length) {
+                            out[found] = item;
+                        }
+                        found++;
+                    }
+                }
+            } else {
+                this.stack[top++] = this.nodeRight[node];
+                this.stack[top++] = node + 1;
+            }
+        }
+        return found;
+    }
+
+    private int build(int lo, int hi, int level) {
+        int node = this.nodes++;
+        this.depth = Math.max(this.depth, level);
+
+        double bMinX = Double.POSITIVE_INFINITY;
+        double bMinY = Double.POSITIVE_INFINITY;
+        double bMaxX = Double.NEGATIVE_INFINITY;
+        double bMaxY = Double.NEGATIVE_INFINITY;
+        double cMinX = Double.POSITIVE_INFINITY;
+        double cMinY = Double.POSITIVE_INFINITY;
+        double cMaxX = Double.NEGATIVE_INFINITY;
+        double cMaxY = Double.NEGATIVE_INFINITY;
+        for (int k = lo; k < hi; k++) {
+            int i = this.items[k];
+            bMinX = Math.min(bMinX, this.minX[i]);
+            bMinY = Math.min(bMinY, this.minY[i]);
+            bMaxX = Math.max(bMaxX, this.maxX[i]);
+            bMaxY = Math.max(bMaxY, this.maxY[i]);
+            double cx = centroid(i, 0);
+            double cy = centroid(i, 1);
+            cMinX = Math.min(cMinX, cx);
+            cMinY = Math.min(cMinY, cy);
+            cMaxX = Math.max(cMaxX, cx);
+            cMaxY = Math.max(cMaxY, cy);
+        }
+        this.nodeMinX[node] = bMinX;
+        this.nodeMinY[node] = bMinY;
+        this.nodeMaxX[node] = bMaxX;
+        this.nodeMaxY[node] = bMaxY;
+
+        if (hi - lo <= LEAF_SIZE) {
+            this.nodeFirst[node] = lo;
+            this.nodeCount[node] = hi - lo;
+            return node;
+        }
+
+        int axis = (cMaxX - cMinX) >= (cMaxY - cMinY) ? 0 : 1;
+        int mid = (lo + hi) >>> 1;
+        select(lo, hi - 1, mid, axis);
+
+        build(lo, mid, level + 1);
+        this.nodeRight[node] = build(mid, hi, level + 1);
+        this.nodeCount[node] = 0;
+        return node;
+    }
+
+    private double centroid(int item, int axis) {
+        return axis == 0
+                ? 0.5 * (this.minX[item] + this.maxX[item])
+                : 0.5 * (this.minY[item] + this.maxY[item]);
+    }
+
+    /** Quickselect: partially orders items[lo..hi] so that items[k] is the median. */
+    private void select(int lo, int hi, int k, int axis) {
+        while (hi > lo) {
+            double pivot = centroid(this.items[(lo + hi) >>> 1], axis);
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (centroid(this.items[i], axis) < pivot) {
+                    i++;
+                }
+                while (centroid(this.items[j], axis) > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int tmp = this.items[i];
+                    this.items[i] = this.items[j];
+                    this.items[j] = tmp;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                hi = j;
+            } else if (k >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+}
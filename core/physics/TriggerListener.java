@@ -0,0 +1,29 @@
+package physics;
+
+import interfaces.Moveable;
+
+/**
+ * Receives occupancy changes of a {@link TriggerVolume}. Both callbacks run on
+ * the thread that calls {@link TriggerWorld#update()}, once per change; bodies
+ * that stay inside or outside produce no calls.
+ */
+public interface TriggerListener {
+    /**
+     * Called when a body's center moved into the volume.
+     *
+     * @param volume volume that was entered
+     * @param body   body that entered
+     */
+    default void onEnter(TriggerVolume volume, Moveable body) {
+    }
+
+    /**
+     * Called when a body's center left the volume or the body was removed
+     * from the trigger world.
+     *
+     * @param volume volume that was left
+     * @param body   body that left
+     */
+    default void onExit(TriggerVolume volume, Moveable body) {
+    }
+}
@@ -0,0 +1,230 @@
+package physics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import interfaces.Moveable;
+
+/**
+ * A static region of the scene that tracks which bodies are inside it.
+ *
+ * <p>
+ * Volumes are rectangles, circles or simple polygons. A body counts as inside
+ * while its center of mass is inside the region. The occupants are kept up to
+ * date by the {@link TriggerWorld} the volume is registered with, which also
+ * notifies the volume's {@link TriggerListener}s when a body enters or leaves.
+ * Region effects can therefore be applied to {@link #getOccupants()} directly
+ * instead of testing every body against every region each tick.
+ * </p>
+ */
+public final class TriggerVolume {
+    private enum Kind {
+        RECTANGLE, CIRCLE, POLYGON
+    }
+
+    private final String name;
+    private final Kind kind;
+    private final double minX;
+    private final double minY;
+    private final double maxX;
+    private final double maxY;
+    private final double cx;
+    private final double cy;
+    private final double r;
+    private final double[] xs;
+    private final double[] ys;
+
+    private final ArrayList<Moveable> occupants = new ArrayList<>();
+    private final List<Moveable> occupantsView = Collections.unmodifiableList(this.occupants);
+    private final ArrayList<TriggerListener> listeners = new ArrayList<>();
+
+    private TriggerVolume(String name, Kind kind, double minX, double minY, double maxX, double maxY,
+            double cx, double cy, double r, double[] xs, double[] ys) {
+        this.name = name;
+        this.kind = kind;
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+        this.cx = cx;
+        this.cy = cy;
+        this.r = r;
+        this.xs = xs;
+        this.ys = ys;
+    }
+
+    /**
+     * Creates an axis-aligned rectangle.
+     *
+     * @param name   name as identifier
+     * @param x      left edge
+     * @param y      top edge
+     * @param width  width in pixels
+     * @param height height in pixels
+     * @return new volume
+     */
+    public static TriggerVolume rectangle(String name, double x, double y, double width, double height) {
+        return new TriggerVolume(name, Kind.RECTANGLE, x, y, x + width, y + height, 0, 0, 0, null, null);
+    }
+
+    /**
+     * Creates a circle.
+     *
+     * @param name   name as identifier
+     * @param cx     center x-coordinate
+     * @param cy     center y-coordinate
+     * @param radius radius in pixels
+     * @return new volume
+     */
+    public static TriggerVolume circle(String name, double cx, double cy, double radius) {
+        return new TriggerVolume(name, Kind.CIRCLE, cx - radius, cy - radius, cx + radius, cy + radius,
+                cx, cy, radius, null, null);
+    }
+
+    /**
+     * Creates a simple (not self-intersecting) polygon; it need not be convex.
+     *
+     * @param name name as identifier
+     * @param xs   vertex x-coordinates
+     * @param ys   vertex y-coordinates
+     * @return new volume
+     */
+    public static TriggerVolume polygon(String name, double[] xs, double[] ys) {
+        if (xs.length < 3 || xs.length != ys.length) {
+            throw new IllegalArgumentException("a polygon needs at least 3 vertices with x and y");
+        }
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < xs.length; i++) {
+            minX = Math.min(minX, xs[i]);
+            minY = Math.min(minY, ys[i]);
+            maxX = Math.max(maxX, xs[i]);
+            maxY = Math.max(maxY, ys[i]);
+        }
+        return new TriggerVolume(name, Kind.POLYGON, minX, minY, maxX, maxY, 0, 0, 0,
+                xs.clone(), ys.clone());
+    }
+
+    /**
+     * Point-in-region test.
+     *
+     * @param x point x-coordinate
+     * @param y point y-coordinate
+     * @return whether the point is inside
+     */
+    public boolean contains(double x, double y) {
+        if (x < this.minX || x > this.maxX || y < this.minY || y > this.maxY) {
+            return false;
+        }
+        switch (this.kind) {
+            case RECTANGLE:
+                return true;
+            case CIRCLE:
+                double dx = x - this.cx;
+                double dy = y - this.cy;
+                return dx * dx + dy * dy <= this.r * this.r;
+            default:
+                // Even-odd crossing test
+                boolean inside = false;
+                for (int i = 0, j = this.xs.length - 1; i < this.xs.length; j = i++) {
+                    if ((this.ys[i] > y) != (this.ys[j] > y)
+                            && x < (this.xs[j] - this.xs[i]) * (y - this.ys[i]) / (this.ys[j] - this.ys[i]) + this.xs[i]) {
+                        inside = !inside;
+                    }
+                }
+                return inside;
+        }
+    }
+
+    /**
+     * Distance from a point to the region's outline, inside or outside: a
+     * point can move this far without entering or leaving.
+     *
+     * @param x point x-coordinate
+     * @param y point y-coordinate
+     * @return distance to the nearest edge
+     */
+    double boundaryDistance(double x, double y) {
+        switch (this.kind) {
+            case RECTANGLE:
+                double outX = Math.max(Math.max(this.minX - x, x - this.maxX), 0.0);
+                double outY = Math.max(Math.max(this.minY - y, y - this.maxY), 0.0);
+                if (outX > 0 || outY > 0) {
+                    return Math.hypot(outX, outY);
+                }
+                return Math.min(Math.min(x - this.minX, this.maxX - x), Math.min(y - this.minY, this.maxY - y));
+            case CIRCLE:
+                return Math.abs(Math.hypot(x - this.cx, y - this.cy) - this.r);
+            default:
+                double nearest = Double.POSITIVE_INFINITY;
+                for (int i = 0, j = this.xs.length - 1; i < this.xs.length; j = i++) {
+                    double ex = this.xs[i] - this.xs[j];
+                    double ey = this.ys[i] - this.ys[j];
+                    double lengthSq = ex * ex + ey * ey;
+                    double t = lengthSq == 0 ? 0.0
+                            : Math.max(0.0, Math.min(1.0, ((x - this.xs[j]) * ex + (y - this.ys[j]) * ey) / lengthSq));
+                    nearest = Math.min(nearest, Math.hypot(x - this.xs[j] - t * ex, y - this.ys[j] - t * ey));
+                }
+                return nearest;
+        }
+    }
+
+    /**
+     * Registers a listener for enter and exit events.
+     *
+     * @param listener listener to add
+     */
+    public void addListener(TriggerListener listener) {
+        this.listeners.add(listener);
+    }
+
+    public boolean removeListener(TriggerListener listener) {
+        return this.listeners.remove(listener);
+    }
+
+    /** @return bodies currently inside, in order of entry (read-only) */
+    public List<Moveable> getOccupants() {
+        return this.occupantsView;
+    }
+
+    public int getOccupantCount() {
+        return this.occupants.size();
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public double getMinX() {
+        return this.minX;
+    }
+
+    public double getMinY() {
+        return this.minY;
+    }
+
+    public double getMaxX() {
+        return this.maxX;
+    }
+
+    public double getMaxY() {
+        return this.maxY;
+    }
+
+    void enter(Moveable body) {
+        this.occupants.add(body);
+        for (int i = 0; i < this.listeners.size(); i++) {
+            this.listeners.get(i).onEnter(this, body);
+        }
+    }
+
+    void exit(Moveable body) {
+        this.occupants.remove(body);
+        for (int i = 0; i < this.listeners.size(); i++) {
+            this.listeners.get(i).onExit(this, body);
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package physics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import interfaces.Moveable;
+
+/**
+ * Keeps the occupancy of {@link TriggerVolume}s up to date and reports
+ * changes.
+ *
+ * <p>
+ * The static volumes are indexed by their bounds in a {@link RegionIndex},
+ * built once and rebuilt only after a volume was added. When a body is looked
+ * up, only the volumes whose bounds contain its center are tested exactly,
+ * and the body also gets a clearance: the distance to the nearest volume
+ * outline, capped at {@value #MAX_CLEARANCE} pixels. Its occupancy cannot
+ * change until it moves further than that from where it was looked up, so
+ * {@link #update()} reads every body's center but only queries and tests the
+ * bodies that left their clearance. Each body remembers the volumes it was
+ * inside; enter and exit notifications are only sent for the difference, so
+ * region effects that run in the listeners cost nothing while bodies stay
+ * where they are.
+ * </p>
+ */
+public final class TriggerWorld {
+    /** Largest clearance; volumes further away than this are not looked at. */
+    private static final double MAX_CLEARANCE = 64.0;
+
+    private final ArrayList<TriggerVolume> volumes = new ArrayList<>();
+    private final ArrayList<Moveable> bodies = new ArrayList<>();
+
+    /** Volumes each body was inside after the last update. */
+    private final ArrayList<int[]> inside = new ArrayList<>();
+    private int[] insideCount = new int[0];
+
+    /** Center of each body when it was last looked up, and its clearance there. */
+    private double[] anchorX = new double[0];
+    private double[] anchorY = new double[0];
+    private double[] clearance = new double[0];
+
+    private RegionIndex<TriggerVolume> index;
+    private final RegionIndex.Hits hits = new RegionIndex.Hits();
+    private final RegionIndex.Hits near = new RegionIndex.Hits();
+
+    private final double[] center = new double[2];
+    private int[] found = new int[4];
+    private int tests;
+
+    /**
+     * Registers a volume. Bodies already inside are reported as entering on
+     * the next update.
+     *
+     * @param volume volume to track
+     */
+    public void addVolume(TriggerVolume volume) {
+        this.volumes.add(volume);
+        this.index = null;
+        // The new outline may be closer than any clearance
+        Arrays.fill(this.clearance, -1.0);
+    }
+
+    /**
+     * Registers a body whose center is tested against the volumes.
+     *
+     * @param body body to track
+     */
+    public void addBody(Moveable body) {
+        this.bodies.add(body);
+        this.inside.add(new int[2]);
+        if (this.insideCount.length < this.bodies.size()) {
+            int capacity = Math.max(16, 2 * this.bodies.size());
+            this.insideCount = Arrays.copyOf(this.insideCount, capacity);
+            this.anchorX = Arrays.copyOf(this.anchorX, capacity);
+            this.anchorY = Arrays.copyOf(this.anchorY, capacity);
+            this.clearance = Arrays.copyOf(this.clearance, capacity);
+        }
+        this.clearance[this.bodies.size() - 1] = -1.0;
+    }
+
+    /**
+     * Stops tracking a body and sends exit notifications for every volume it
+     * was inside.
+     *
+     * @param body body to remove
+     * @return whether the body was registered
+     */
+    public boolean removeBody(Moveable body) {
+        int i = this.bodies.indexOf(body);
+        if (i < 0) {
+            return false;
+        }
+        int[] was = this.inside.get(i);
+        for (int k = 0; k < this.insideCount[i]; k++) {
+            this.volumes.get(was[k]).exit(body);
+        }
+        int last = this.bodies.size() - 1;
+        this.bodies.set(i, this.bodies.get(last));
+        this.inside.set(i, this.inside.get(last));
+        this.insideCount[i] = this.insideCount[last];
+        this.anchorX[i] = this.anchorX[last];
+        this.anchorY[i] = this.anchorY[last];
+        this.clearance[i] = this.clearance[last];
+        this.bodies.remove(last);
+        this.inside.remove(last);
+        return true;
+    }
+
+    /**
+     * Looks up every body that moved further than its clearance, testing it
+     * against the volumes whose bounds contain its center, and notifies the
+     * listeners of each volume that was entered or left since the last call.
+     */
+    public void update() {
+        if (this.index == null) {
+            RegionIndex.Builder<TriggerVolume> builder = new RegionIndex.Builder<>();
+            for (TriggerVolume volume : this.volumes) {
+                builder.add(volume, volume.getMinX(), volume.getMinY(), volume.getMaxX(), volume.getMaxY());
+            }
+            this.index = builder.build();
+        }
+        this.tests = 0;
+
+        int n = this.bodies.size();
+        for (int i = 0; i < n; i++) {
+            Moveable body = this.bodies.get(i);
+            CollisionWorld.centerOf(body, this.center);
+            double x = this.center[0];
+            double y = this.center[1];
+            double dx = x - this.anchorX[i];
+            double dy = y - this.anchorY[i];
+            if (dx * dx + dy * dy < this.clearance[i] * this.clearance[i]) {
+                continue;
+            }
+            this.anchorX[i] = x;
+            this.anchorY[i] = y;
+            this.clearance[i] = clearanceAt(x, y);
+
+            this.index.queryPoint(x, y, this.hits);
+            int foundCount = 0;
+            for (int k = this.hits.start(0); k < this.hits.end(0); k++) {
+                int v = this.hits.region(k);
+                this.tests++;
+                if (this.volumes.get(v).contains(x, y)) {
+                    if (foundCount == this.found.length) {
+                        this.found = Arrays.copyOf(this.found, 2 * foundCount);
+                    }
+                    this.found[foundCount++] = v;
+                }
+            }
+
+            int[] was = this.inside.get(i);
+            int wasCount = this.insideCount[i];
+            if (wasCount == 0 && foundCount == 0) {
+                continue;
+            }
+            for (int k = 0; k < wasCount; k++) {
+                if (!containsIndex(this.found, foundCount, was[k])) {
+                    this.volumes.get(was[k]).exit(body);
+                }
+            }
+            for (int k = 0; k < foundCount; k++) {
+                if (!containsIndex(was, wasCount, this.found[k])) {
+                    this.volumes.get(this.found[k]).enter(body);
+                }
+            }
+
+            if (was.length < foundCount) {
+                was = new int[this.found.length];
+                this.inside.set(i, was);
+            }
+            System.arraycopy(this.found, 0, was, 0, foundCount);
+            this.insideCount[i] = foundCount;
+        }
+    }
+
+    /** Distance from a point to the nearest volume outline, at most {@link #MAX_CLEARANCE}. */
+    private double clearanceAt(double x, double y) {
+        double nearest = MAX_CLEARANCE;
+        this.index.queryOverlapping(x - nearest, y - nearest, x + nearest, y + nearest, this.near);
+        for (int k = this.near.start(0); k < this.near.end(0); k++) {
+            nearest = Math.min(nearest, this.volumes.get(this.near.region(k)).boundaryDistance(x, y));
+        }
+        return nearest;
+    }
+
+    public ArrayList<TriggerVolume> getVolumes() {
+        return this.volumes;
+    }
+
+    public ArrayList<Moveable> getBodies() {
+        return this.bodies;
+    }
+
+    /** @return exact point-in-volume tests run by the last update; bodies within their clearance run none */
+    public int getTestCount() {
+        return this.tests;
+    }
+
+    private static boolean containsIndex(int[] values, int count, int value) {
+        for (int k = 0; k < count; k++) {
+            if (values[k] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,77 @@
+package physics;
+
+import data.Vec;
+import interfaces.Moveable;
+
+/**
+ * Rigid joint: the bodies share an anchor point and keep the relative angle
+ * they had when the joint was added. Bodies that cannot rotate (balls) only
+ * keep the shared point.
+ */
+public class WeldJoint extends Joint {
+    private final double[] impulse = new double[2];
+    private double angularImpulse;
+
+    /**
+     * Welds two bodies at a shared world point.
+     *
+     * @param bodyA  first body
+     * @param bodyB  second body, or {@code null} to weld to the world
+     * @param anchor weld point in world coordinates
+     */
+    public WeldJoint(Moveable bodyA, Moveable bodyB, Vec anchor) {
+        super(bodyA, bodyB, anchor, anchor);
+    }
+
+    @Override
+    void warmStart(BodyState s) {
+        applyImpulse(s, this.impulse[0], this.impulse[1]);
+        applyAngularImpulse(s, this.angularImpulse);
+    }
+
+    @Override
+    void solveVelocity(BodyState s) {
+        double inertia = this.inertiaA + this.inertiaB;
+        if (inertia > 0) {
+            double wA = this.a < 0 ? 0.0 : s.w[this.a];
+            double wB = this.b < 0 ? 0.0 : s.w[this.b];
+            double lambda = -(wB - wA) / inertia;
+            this.angularImpulse += lambda;
+            applyAngularImpulse(s, lambda);
+        }
+        solvePointVelocity(s, this.impulse);
+    }
+
+    @Override
+    void solvePosition(BodyState s) {
+        double inertia = this.inertiaA + this.inertiaB;
+        if (inertia > 0) {
+            double angleA = this.a < 0 ? 0.0 : s.angle[this.a];
+            double angleB = this.b < 0 ? 0.0 : s.angle[this.b];
+            double lambda = -(angleB - angleA - this.referenceAngle) / inertia;
+            if (this.a >= 0) {
+                s.angle[this.a] -= this.inertiaA * lambda;
+            }
+            if (this.b >= 0) {
+                s.angle[this.b] += this.inertiaB * lambda;
+            }
+        }
+        solvePointPosition(s);
+    }
+
+    @Override
+    public void resetImpulses() {
+        this.impulse[0] = 0.0;
+        this.impulse[1] = 0.0;
+        this.angularImpulse = 0.0;
+    }
+
+    private void applyAngularImpulse(BodyState s, double lambda) {
+        if (this.a >= 0) {
+            s.w[this.a] -= this.inertiaA * lambda;
+        }
+        if (this.b >= 0) {
+            s.w[this.b] += this.inertiaB * lambda;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package ui;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.util.List;
+
+import gravity.ConservationMonitor;
+import gravity.ConservationMonitor.Sample;
+
+/**
+ * Draws the latest sample of a {@link ConservationMonitor} as text and its
+ * history as a plot of the relative energy drift (green) and angular momentum
+ * drift (yellow), scaled to the largest drift shown.
+ */
+public class ConservationOverlay {
+    private static final Color PANEL_COLOR = new Color(0, 0, 0, 160);
+    private static final Color ENERGY_COLOR = new Color(120, 255, 140);
+    private static final Color ANGULAR_COLOR = new Color(255, 220, 90);
+    private static final int LINE_HEIGHT = 14;
+    private static final int TEXT_LINES = 5;
+
+    /**
+     * Draws the overlay into a box.
+     *
+     * @param g       graphics to draw into
+     * @param monitor monitor to show
+     * @param x       left edge of the box
+     * @param y       top edge of the box
+     * @param width   width of the box
+     * @param height  height of the box, text and plot
+     */
+    public static void draw(Graphics2D g, ConservationMonitor monitor, int x, int y, int width, int height) {
+        g.setColor(PANEL_COLOR);
+        g.fillRect(x, y, width, height);
+        Sample latest = monitor.getLatest();
+        g.setColor(Color.white);
+        if (latest == null) {
+            g.drawString("conservation: waiting for the first sample", x + 6, y + LINE_HEIGHT);
+            return;
+        }
+
+        int ty = y + LINE_HEIGHT;
+        g.drawString(String.format("tick %d   E %.6g   KE %.4g   PE %.4g", latest.tick(), latest.energy(),
+                latest.kinetic(), latest.potential()), x + 6, ty);
+        ty += LINE_HEIGHT;
+        g.setColor(ENERGY_COLOR);
+        g.drawString(String.format("dE/E0 %+.3e", monitor.energyDrift(latest)), x + 6, ty);
+        ty += LINE_HEIGHT;
+        g.setColor(ANGULAR_COLOR);
+        g.drawString(String.format("L %.6g   dL/L0 %+.3e", latest.angularMomentum(),
+                monitor.angularMomentumDrift(latest)), x + 6, ty);
+        ty += LINE_HEIGHT;
+        g.setColor(Color.white);
+        g.drawString(String.format("p (%.4g, %.4g)", latest.momentumX(), latest.momentumY()), x + 6, ty);
+        ty += LINE_HEIGHT;
+        g.drawString(String.format("every %d ticks, %.2f ms off-thread, %d skipped", monitor.getInterval(),
+                monitor.getComputeNanos() / 1e6, monitor.getSkipped()), x + 6, ty);
+
+        int plotTop = y + TEXT_LINES * LINE_HEIGHT + 8;
+        int plotHeight = y + height - plotTop - 4;
+        if (plotHeight < 8) {
+            return;
+        }
+        List<Sample> history = monitor.getHistory();
+        int n = history.size();
+        double[] energy = new double[n];
+        double[] angular = new double[n];
+        double scale = 0.0;
+        for (int i = 0; i < n; i++) {
+            energy[i] = monitor.energyDrift(history.get(i));
+            angular[i] = monitor.angularMomentumDrift(history.get(i));
+            scale = Math.max(scale, Math.max(Math.abs(energy[i]), Math.abs(angular[i])));
+        }
+        int mid = plotTop + plotHeight / 2;
+        g.setColor(Color.darkGray);
+        g.drawLine(x + 4, mid, x + width - 4, mid);
+        g.drawString(String.format("±%.1e", scale), x + 6, plotTop + LINE_HEIGHT - 4);
+        if (n < 2 || scale == 0.0) {
+            return;
+        }
+        plot(g, energy, scale, x + 4, width - 8, mid, plotHeight / 2, ENERGY_COLOR);
+        plot(g, angular, scale, x + 4, width - 8, mid, plotHeight / 2, ANGULAR_COLOR);
+    }
+
+    private static void plot(Graphics2D g, double[] values, double scale, int left, int width, int mid, int half,
+            Color color) {
+        int n = values.length;
+        int[] px = new int[n];
+        int[] py = new int[n];
+        for (int i = 0; i < n; i++) {
+            px[i] = left + (int) ((long) i * width / (n - 1));
+            py[i] = mid - (int) Math.round(values[i] / scale * half);
+        }
+        g.setColor(color);
+        g.drawPolyline(px, py, n);
+    }
+}
@@ -0,0 +1,38 @@
+package gravity;
+
+import java.util.Random;
+
+import support.Check;
+
+/**
+ * A sample whose snapshot was taken before {@link ConservationMonitor#reset()}
+ * must not become the new reference, however late the worker finishes it.
+ */
+public class ConservationMonitorTest {
+    public static void main(String[] args) throws InterruptedException {
+        Bodies bodies = new Bodies();
+        Random random = new Random(5);
+        for (int i = 0; i < 2000; i++) {
+            bodies.add(400 * random.nextDouble(), 400 * random.nextDouble(), random.nextGaussian(),
+                    random.nextGaussian(), 1.0);
+        }
+        try (ConservationMonitor monitor = new ConservationMonitor(Softening.plummer(1), 1, 8)) {
+            monitor.setTheta(0);
+            Check.isTrue(monitor.sample(0, bodies), "the first tick should be sampled");
+            monitor.reset();
+
+            long tick = 1;
+            while (!monitor.sample(tick, bodies)) {
+                tick++;
+                Thread.sleep(1);
+            }
+            while (monitor.getLatest() == null) {
+                Thread.sleep(1);
+            }
+            Check.isTrue(monitor.getFirst().tick() == tick,
+                    "reference from tick " + monitor.getFirst().tick() + ", expected " + tick);
+            Check.isTrue(monitor.getHistory().size() == 1, "stale sample kept in the history");
+        }
+        System.out.println("ConservationMonitorTest passed");
+    }
+}
@@ -0,0 +1,49 @@
+package gravity;
+
+import java.util.Random;
+
+import support.Check;
+
+/**
+ * P3M accelerations of a clustered set must match direct summation, and must
+ * not get worse on a finer grid.
+ */
+public class ParticleMeshTest {
+    public static void main(String[] args) {
+        Random random = new Random(3);
+        Bodies bodies = new Bodies();
+        for (int c = 0; c < 8; c++) {
+            double cx = 1000 * random.nextDouble();
+            double cy = 1000 * random.nextDouble();
+            double spread = 5 + 40 * random.nextDouble();
+            for (int i = 0; i < 250; i++) {
+                bodies.add(cx + spread * random.nextGaussian(), cy + spread * random.nextGaussian(), 0, 0, 1);
+            }
+        }
+        for (int i = 0; i < 500; i++) {
+            bodies.add(1000 * random.nextDouble(), 1000 * random.nextDouble(), 0, 0, 1);
+        }
+
+        DirectSum direct = new DirectSum();
+        direct.accelerations(bodies);
+        double[] exactX = bodies.ax.clone();
+        double[] exactY = bodies.ay.clone();
+
+        for (int grid : new int[] {128, 256}) {
+            ParticleMesh mesh = new ParticleMesh(grid);
+            mesh.setP3m(true);
+            mesh.accelerations(bodies);
+            double mean = 0.0;
+            double max = 0.0;
+            for (int i = 0; i < bodies.count; i++) {
+                double error = Math.hypot(bodies.ax[i] - exactX[i], bodies.ay[i] - exactY[i])
+                        / Math.hypot(exactX[i], exactY[i]);
+                mean += error / bodies.count;
+                max = Math.max(max, error);
+            }
+            Check.isTrue(mean < 4e-3, "grid " + grid + ": mean relative error " + mean);
+            Check.isTrue(max < 0.2, "grid " + grid + ": max relative error " + max);
+        }
+        System.out.println("ParticleMeshTest passed");
+    }
+}
@@ -0,0 +1,38 @@
+package gravity;
+
+import support.Check;
+
+/**
+ * The slope of every force law's potential must match its pull, the
+ * potential must be continuous across the clamp bounds and reach zero at a
+ * cut-off.
+ */
+public class SofteningTest {
+    public static void main(String[] args) {
+        Softening[] laws = {
+                Softening.plummer(2),
+                Softening.plummer(2).withCutoff(40),
+                Softening.clamp(5, 25),
+                Softening.clamp(5, 25).withCutoff(40),
+                Softening.clamp(5, 25).withCutoff(15),
+                Softening.clamp(5, 25).withCutoff(3),
+                Softening.clamp(0, 25).withCutoff(40),
+        };
+        for (Softening law : laws) {
+            for (double d = 0.5; d < 60; d += 0.37) {
+                double h = 1e-5;
+                double slope = (law.potential((d + h) * (d + h)) - law.potential((d - h) * (d - h))) / (2 * h);
+                double force = d * law.pull(d * d);
+                Check.isTrue(Math.abs(slope - force) <= 1e-6 * Math.max(1.0, Math.abs(force)),
+                        law + " at " + d + ": slope " + slope + ", force " + force);
+            }
+            if (law.getCutoff() < Double.POSITIVE_INFINITY) {
+                double c = law.getCutoff();
+                Check.isTrue(law.potential(c * c) == 0.0, law + ": nonzero potential at the cut-off");
+                Check.isTrue(Math.abs(law.potential(c * c * (1 - 1e-9))) < 1e-9,
+                        law + ": potential jumps at the cut-off");
+            }
+        }
+        System.out.println("SofteningTest passed");
+    }
+}
@@ -0,0 +1,50 @@
+package physics;
+
+import java.awt.Color;
+import java.awt.Dimension;
+
+import data.Vec;
+import objects.Ball;
+import support.Check;
+
+/**
+ * Two balls pressed together slide past each other, so their order along the
+ * sweep axis flips while they keep touching. The solver's cached impulse of
+ * the pair must be stored under the same key on every step, including the
+ * steps around the flip, or the next step would start cold.
+ */
+public class ContactCacheTest {
+    public static void main(String[] args) {
+        Dimension dim = new Dimension(400, 400);
+        CollisionWorld world = new CollisionWorld(dim);
+        Ball upper = new Ball("upper", 10, 1.0, new Vec(197, 191), dim, Color.white);
+        Ball lower = new Ball("lower", 10, 1.0, new Vec(203, 209), dim, Color.white);
+        world.addBody(upper);
+        world.addBody(lower);
+        long key = PairCache.key(0, 1);
+
+        boolean upperLeft = true;
+        int flips = 0;
+        for (int tick = 0; tick < 30; tick++) {
+            // Driven towards each other across the contact while sliding
+            // sideways in opposite directions
+            upper.setVelocity(new Vec(0.3, 0.4));
+            lower.setVelocity(new Vec(-0.3, -0.4));
+            upper.update();
+            lower.update();
+            world.step();
+
+            double impulse = world.getSolver().cachedNormalImpulse(key);
+            Check.isTrue(impulse > 0, "tick " + tick + ": no impulse cached for the pair, got " + impulse);
+            boolean left = upper.getLocation().x() < lower.getLocation().x();
+            if (left != upperLeft) {
+                flips++;
+                upperLeft = left;
+            }
+        }
+        Check.isTrue(flips == 1, "the balls should pass each other once, passed " + flips + " times");
+        Check.isTrue(world.getSolver().cachedNormalImpulse(PairCache.key(1, 0)) == 0,
+                "impulse cached under the reversed key");
+        System.out.println("ContactCacheTest passed");
+    }
+}
@@ -0,0 +1,132 @@
+package physics;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+
+import data.Vec;
+import objects.Ball;
+import support.Check;
+
+/**
+ * Two balls pressed together slide past each other, so their order along the
+ * sweep axis flips while they keep touching. The stream must report one
+ * {@link ContactBatch#BEGIN} and then only {@link ContactBatch#PERSIST} for
+ * the pair, always as (0, 1). A second listener subscribes and cancels every
+ * few steps; the steady listener must still see every batch intact. A stream
+ * built without an executor must run its listeners on its own thread, off the
+ * common fork/join pool.
+ */
+public class ContactStreamTest {
+    public static void main(String[] args) throws InterruptedException {
+        Dimension dim = new Dimension(400, 400);
+        CollisionWorld world = new CollisionWorld(dim);
+        Ball upper = new Ball("upper", 10, 1.0, new Vec(197, 191), dim, Color.white);
+        Ball lower = new Ball("lower", 10, 1.0, new Vec(203, 209), dim, Color.white);
+        world.addBody(upper);
+        world.addBody(lower);
+
+        // Runs the subscribers on the stepping thread, so every batch is
+        // delivered before step() returns
+        ContactStream stream = new ContactStream(Runnable::run, 4);
+        Recorder steady = new Recorder();
+        stream.subscribe(steady);
+        world.setContactStream(stream);
+
+        Recorder churn = null;
+        for (int tick = 0; tick < 30; tick++) {
+            if (tick % 3 == 0) {
+                churn = new Recorder();
+                stream.subscribe(churn);
+            } else if (tick % 3 == 2) {
+                churn.subscription.cancel();
+            }
+            upper.setVelocity(new Vec(0.3, 0.4));
+            lower.setVelocity(new Vec(-0.3, -0.4));
+            upper.update();
+            lower.update();
+            world.step();
+            Check.isTrue(steady.batches == tick + 1, "tick " + tick + ": batch missing, saw " + steady.batches);
+        }
+        Check.isTrue(steady.begins == 1, "expected one BEGIN, got " + steady.begins);
+        Check.isTrue(steady.ends == 0, "expected no END, got " + steady.ends);
+        Check.isTrue(steady.persists == 29, "expected 29 PERSIST, got " + steady.persists);
+        Check.isTrue(stream.getDropped() == 0, "dropped " + stream.getDropped() + " batches");
+        stream.close();
+        Check.isTrue(steady.completed, "close() should complete the listener");
+        Check.isTrue(!stream.hasSubscribers(), "closed stream still has subscribers");
+
+        ownThread();
+        System.out.println("ContactStreamTest passed");
+    }
+
+    private static void ownThread() throws InterruptedException {
+        ContactStream stream = new ContactStream();
+        CountDownLatch done = new CountDownLatch(1);
+        Thread[] listener = new Thread[1];
+        stream.subscribe(new Recorder() {
+            @Override
+            public void onComplete() {
+                listener[0] = Thread.currentThread();
+                done.countDown();
+            }
+        });
+        stream.close();
+        Check.isTrue(done.await(10, TimeUnit.SECONDS), "close() should complete the listener");
+        Check.isTrue(!(listener[0] instanceof ForkJoinWorkerThread), "listener ran on " + listener[0].getName());
+        Check.isTrue(listener[0].isDaemon(), "the stream's thread should be a daemon");
+    }
+
+    private static class Recorder implements Flow.Subscriber<ContactBatch> {
+        Flow.Subscription subscription;
+        long expectedTick = -1;
+        int batches;
+        int begins;
+        int persists;
+        int ends;
+        boolean completed;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(ContactBatch batch) {
+            if (this.expectedTick >= 0) {
+                Check.isTrue(batch.tick() == this.expectedTick,
+                        "expected tick " + this.expectedTick + ", got " + batch.tick());
+            }
+            this.expectedTick = batch.tick() + 1;
+            this.batches++;
+            for (int k = 0; k < batch.size(); k++) {
+                Check.isTrue(batch.bodyA(k) == 0 && batch.bodyB(k) == 1,
+                        "event for (" + batch.bodyA(k) + ", " + batch.bodyB(k) + ")");
+                switch (batch.phase(k)) {
+                    case ContactBatch.BEGIN:
+                        this.begins++;
+                        break;
+                    case ContactBatch.PERSIST:
+                        this.persists++;
+                        break;
+                    default:
+                        this.ends++;
+                }
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            throw new AssertionError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            this.completed = true;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package physics;
+
+import java.awt.Color;
+import java.awt.Dimension;
+
+import data.Vec;
+import objects.MoBox;
+import support.Check;
+
+/**
+ * The hinged chain of the MassiveBalls scene, pushed sideways and then left to
+ * swing under gravity with one integration and one world step per tick: every
+ * link's hinge points must stay together.
+ */
+public class HingeChainTest {
+    private static final int LINKS = 5;
+
+    public static void main(String[] args) {
+        Dimension dim = new Dimension(1280, 720);
+        CollisionWorld world = new CollisionWorld(dim);
+        MoBox[] links = new MoBox[LINKS];
+        MoBox previous = null;
+        for (int i = 0; i < LINKS; i++) {
+            MoBox link = new MoBox("link" + i, new Vec(316, 20 + 36 * i), 8, 36, 4, dim, Color.lightGray);
+            world.addBody(link);
+            world.addJoint(new HingeJoint(link, previous, new Vec(320, 20 + 36 * i)));
+            links[i] = link;
+            previous = link;
+        }
+
+        for (int tick = 0; tick < 900; tick++) {
+            Vec push = new Vec(tick < 60 ? 0.6 : 0.0, 0.3);
+            for (MoBox link : links) {
+                link.applyForce(push.scale(link.getMass()));
+            }
+            for (MoBox link : links) {
+                link.update();
+            }
+            world.step();
+
+            // Walk down the chain from the ceiling anchor: each link's top
+            // end must sit on the previous link's bottom end
+            double hingeX = 320;
+            double hingeY = 20;
+            for (int i = 0; i < LINKS; i++) {
+                MoBox link = links[i];
+                double half = link.getObjectDim().getHeight() / 2;
+                double cx = link.getLocation().x() + link.getObjectDim().getWidth() / 2;
+                double cy = link.getLocation().y() + half;
+                double sin = Math.sin(link.getAngle());
+                double cos = Math.cos(link.getAngle());
+                double gap = Math.hypot(cx + half * sin - hingeX, cy - half * cos - hingeY);
+                Check.isTrue(gap < 3, "tick " + tick + ": link " + i + " came " + gap + " px off its hinge");
+                hingeX = cx - half * sin;
+                hingeY = cy + half * cos;
+            }
+        }
+        System.out.println("HingeChainTest passed");
+    }
+}
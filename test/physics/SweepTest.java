@@ -0,0 +1,55 @@
+package physics;
+
+import java.awt.Color;
+import java.awt.Dimension;
+
+import data.Vec;
+import objects.Ball;
+import objects.Box;
+import support.Check;
+
+/**
+ * A grazing sweep that runs out of advancement steps must not report a hit
+ * while moving away, and a ball bouncing many times in one tick must still
+ * cover its whole distance.
+ */
+public class SweepTest {
+    public static void main(String[] args) {
+        grazingDeparture();
+        manyImpacts();
+        System.out.println("SweepTest passed");
+    }
+
+    /** Slides along a rotated face just outside the tolerance, drifting off. */
+    private static void grazingDeparture() {
+        Obb box = new Obb(0, 0, 10, 10, Math.PI / 4);
+        double s = Math.sqrt(0.5);
+        double r = 1.0;
+        double gap = 0.05;
+        // Face normal (s, s), face direction (-s, s)
+        double px = (10 + r + gap) * s + 8 * s;
+        double py = (10 + r + gap) * s - 8 * s;
+        double vx = -s + 0.001 * s;
+        double vy = s + 0.001 * s;
+        double[] normal = new double[2];
+        double t = Sweep.circleBox(px, py, vx, vy, r, box, 10, normal);
+        Check.isTrue(t == Sweep.NO_HIT, "grazing departure reported a hit at t = " + t);
+    }
+
+    /** Bounces about nine times between two obstacles within one tick. */
+    private static void manyImpacts() {
+        Dimension dim = new Dimension(400, 400);
+        CollisionWorld world = new CollisionWorld(dim);
+        world.addObstacle(new Box("left", new Vec(100, 0), 10, 400, dim, Color.gray));
+        world.addObstacle(new Box("right", new Vec(130, 0), 10, 400, dim, Color.gray));
+        Ball ball = new Ball("ball", 5, 1.0, new Vec(120, 200), dim, Color.white);
+        ball.setBounceFactor(1.0);
+        world.addBody(ball);
+
+        // The center moves between 115 and 125; 93 pixels to the right end
+        // 18 pixels into a 20 pixel round trip, at 117 heading left
+        Vec end = world.sweep(ball, ball.getLocation(), new Vec(93, 0));
+        Check.isTrue(Math.abs(end.x() - 117) < 0.5, "ended at x = " + end.x() + ", expected 117");
+        Check.isTrue(ball.getVelocity().x() < 0, "should be heading left");
+    }
+}
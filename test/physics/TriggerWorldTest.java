@@ -0,0 +1,60 @@
+package physics;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.util.Random;
+
+import data.Vec;
+import objects.Ball;
+import support.Check;
+
+/**
+ * Bodies wander through a rectangle, a circle and a polygon. After every
+ * update each volume's occupants must match a brute-force containment test,
+ * and bodies that did not move must not be tested again.
+ */
+public class TriggerWorldTest {
+    public static void main(String[] args) {
+        Dimension dim = new Dimension(400, 400);
+        TriggerWorld triggers = new TriggerWorld();
+        triggers.addVolume(TriggerVolume.rectangle("rectangle", 40, 40, 120, 80));
+        triggers.addVolume(TriggerVolume.circle("circle", 260, 120, 60));
+        triggers.addVolume(TriggerVolume.polygon("polygon",
+                new double[] {60, 340, 200}, new double[] {360, 360, 200}));
+
+        Random random = new Random(11);
+        Ball[] balls = new Ball[200];
+        for (int i = 0; i < balls.length; i++) {
+            balls[i] = new Ball("ball" + i, 2, 1.0, new Vec(400 * random.nextDouble(), 400 * random.nextDouble()),
+                    dim, Color.white);
+            triggers.addBody(balls[i]);
+        }
+
+        for (int tick = 0; tick < 300; tick++) {
+            for (Ball ball : balls) {
+                Vec loc = ball.getLocation();
+                ball.setLocation(new Vec(loc.x() + 3 * random.nextGaussian(), loc.y() + 3 * random.nextGaussian()));
+            }
+            triggers.update();
+            for (TriggerVolume volume : triggers.getVolumes()) {
+                int expected = 0;
+                for (Ball ball : balls) {
+                    boolean in = volume.contains(ball.getLocation().x(), ball.getLocation().y());
+                    if (in) {
+                        expected++;
+                    }
+                    Check.isTrue(in == volume.getOccupants().contains(ball),
+                            "tick " + tick + ": " + ball.getName() + " wrongly " + (in ? "outside " : "inside ")
+                                    + volume.getName());
+                }
+                Check.isTrue(expected == volume.getOccupantCount(), "tick " + tick + ": occupants of "
+                        + volume.getName() + " " + volume.getOccupantCount() + ", expected " + expected);
+            }
+        }
+
+        triggers.update();
+        Check.isTrue(triggers.getTestCount() == 0,
+                "resting bodies were tested " + triggers.getTestCount() + " times");
+        System.out.println("TriggerWorldTest passed");
+    }
+}
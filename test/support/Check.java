@@ -0,0 +1,18 @@
+package support;
+
+/** Minimal assertions shared by the checks under test/. */
+public final class Check {
+    private Check() {
+    }
+
+    /**
+     * @param condition condition that must hold
+     * @param message   failure message
+     * @throws AssertionError if the condition is false
+     */
+    public static void isTrue(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}